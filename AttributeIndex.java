@@ -0,0 +1,118 @@
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The `AttributeIndex` class indexes the positions of items by their type and status, and keeps
+ * the counts the `QueryPlanner` uses to estimate how selective a `type:` or `status:` term is.
+ */
+
+public class AttributeIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, BitSet> types = new HashMap<>();
+    private final Map<String, Integer> typeCounts = new HashMap<>();
+    private final BitSet borrowed = new BitSet();
+    private int borrowedCount;
+
+    /**
+     * Adds an item at a position.
+     *
+     * @param item     The item.
+     * @param position The position of the item.
+     */
+
+    public void add(LibraryItem item, int position) {
+        String type = LibraryQuery.typeOf(item);
+        types.computeIfAbsent(type, t -> new BitSet()).set(position);
+        typeCounts.merge(type, 1, Integer::sum);
+        if ("borrowed".equals(item.getStatus())) {
+            setBorrowed(position, true);
+        }
+    }
+
+    /**
+     * Records the status of the item at a position after it was borrowed or returned.
+     *
+     * @param position The position of the item.
+     * @param isBorrowed Whether the item is now borrowed.
+     */
+
+    public void setBorrowed(int position, boolean isBorrowed) {
+        if (borrowed.get(position) != isBorrowed) {
+            borrowed.set(position, isBorrowed);
+            borrowedCount += isBorrowed ? 1 : -1;
+        }
+    }
+
+    /**
+     * Checks whether the entries of a position agree with the type and status of an item.
+     *
+     * @param item     The item expected at the position.
+     * @param position The position of the item.
+     * @return true if the position is indexed under the item's type and status.
+     */
+
+    public boolean agrees(LibraryItem item, int position) {
+        BitSet positions = types.get(LibraryQuery.typeOf(item));
+        return positions != null && positions.get(position)
+                && borrowed.get(position) == "borrowed".equals(item.getStatus());
+    }
+
+    /**
+     * Removes all entries.
+     */
+
+    public void clear() {
+        types.clear();
+        typeCounts.clear();
+        borrowed.clear();
+        borrowedCount = 0;
+    }
+
+    /**
+     * Estimates the number of items matching a term.
+     *
+     * @param term The term.
+     * @param size The number of items in the catalog.
+     * @return The exact number of matches for `type:` and `status:` terms, or -1 for other terms.
+     */
+
+    public long estimate(LibraryQuery.Term term, int size) {
+        switch (term.getField()) {
+        case TYPE:
+            return typeCounts.getOrDefault(term.getValue(), 0);
+        case STATUS:
+            if ("borrowed".equals(term.getValue())) {
+                return borrowedCount;
+            }
+            return "available".equals(term.getValue()) ? size - borrowedCount : 0;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * Retrieves the positions of the items matching a `type:` or `status:` term.
+     *
+     * @param term The term.
+     * @param size The number of items in the catalog.
+     * @return The positions in ascending order.
+     */
+
+    public int[] lookup(LibraryQuery.Term term, int size) {
+        BitSet positions;
+        if (term.getField() == LibraryQuery.Field.TYPE) {
+            positions = types.getOrDefault(term.getValue(), new BitSet());
+        } else if ("borrowed".equals(term.getValue())) {
+            positions = borrowed;
+        } else if ("available".equals(term.getValue())) {
+            positions = (BitSet) borrowed.clone();
+            positions.flip(0, size);
+        } else {
+            positions = new BitSet();
+        }
+        return positions.stream().filter(position -> position < size).toArray();
+    }
+}
@@ -0,0 +1,117 @@
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The `BlockCache` class keeps the most recently read data blocks of `SortedTable` files in
+ * memory, up to a fixed number of blocks, and evicts the least recently used block first.
+ * Point lookups go through the cache; full scans read around it so they do not evict the blocks
+ * that lookups keep hitting.
+ */
+
+public final class BlockCache {
+    private final int capacity;
+    private final Map<Long, ByteBuffer> blocks;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity The maximum number of blocks to keep.
+     * @throws IllegalArgumentException if the capacity is negative.
+     */
+
+    public BlockCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Cache capacity cannot be negative");
+        }
+        this.capacity = capacity;
+        this.blocks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+                return size() > BlockCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Retrieves a cached block.
+     *
+     * @param table The id of the table.
+     * @param block The number of the block within the table.
+     * @return The block, or null if it is not cached.
+     */
+
+    public ByteBuffer get(long table, int block) {
+        ByteBuffer buffer = blocks.get(key(table, block));
+        if (buffer == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return buffer;
+    }
+
+    /**
+     * Adds a block to the cache.
+     *
+     * @param table  The id of the table.
+     * @param block  The number of the block within the table.
+     * @param buffer The content of the block.
+     */
+
+    public void put(long table, int block, ByteBuffer buffer) {
+        if (capacity > 0) {
+            blocks.put(key(table, block), buffer);
+        }
+    }
+
+    /**
+     * Removes every block of a table, after the table was deleted.
+     *
+     * @param table The id of the table.
+     */
+
+    public void invalidate(long table) {
+        blocks.keySet().removeIf(key -> key >>> 32 == table);
+    }
+
+    /**
+     * Retrieves the number of blocks in the cache.
+     *
+     * @return The number of cached blocks.
+     */
+
+    public int size() {
+        return blocks.size();
+    }
+
+    /**
+     * Retrieves the number of lookups that found their block in the cache.
+     *
+     * @return The number of hits.
+     */
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of lookups that had to read their block from disk.
+     *
+     * @return The number of misses.
+     */
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Combines a table id and block number into one cache key.
+     */
+
+    private static long key(long table, int block) {
+        return table << 32 | Integer.toUnsignedLong(block);
+    }
+}
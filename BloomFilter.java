@@ -0,0 +1,135 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The `BloomFilter` class is a compact set of strings that answers "definitely absent" or
+ * "possibly present". A `SortedTable` keeps one for its keys, so a lookup of an identifier that is
+ * not in the table is answered from memory without reading a block from disk.
+ *
+ * With ten bits per key and seven hash functions about one lookup in a hundred of an absent key
+ * is a false positive.
+ */
+
+public final class BloomFilter {
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+    private final int hashes;
+
+    /**
+     * Creates an empty filter sized for the given number of keys.
+     *
+     * @param expectedKeys The number of keys that will be added.
+     */
+
+    public BloomFilter(int expectedKeys) {
+        this(new long[Math.max(1, (int) (((long) Math.max(1, expectedKeys) * BITS_PER_KEY + 63) / 64))], HASHES);
+    }
+
+    /**
+     * Creates a filter from its parts.
+     */
+
+    private BloomFilter(long[] bits, int hashes) {
+        this.bits = bits;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param key The key.
+     */
+
+    public void add(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long size = bits.length * 64L;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % size;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @param key The key.
+     * @return false if the key was certainly never added, true if it may have been.
+     */
+
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long size = bits.length * 64L;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % size;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the number of bytes `writeTo` produces.
+     *
+     * @return The serialized size in bytes.
+     */
+
+    public int serializedSize() {
+        return 2 * Integer.BYTES + bits.length * Long.BYTES;
+    }
+
+    /**
+     * Writes the filter to a buffer.
+     *
+     * @param buffer The buffer, which must have `serializedSize` bytes remaining.
+     */
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(hashes);
+        buffer.putInt(bits.length);
+        for (long word : bits) {
+            buffer.putLong(word);
+        }
+    }
+
+    /**
+     * Reads a filter written by `writeTo`.
+     *
+     * @param buffer The buffer positioned at the filter.
+     * @return The filter.
+     */
+
+    public static BloomFilter readFrom(ByteBuffer buffer) {
+        int hashes = buffer.getInt();
+        long[] bits = new long[buffer.getInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = buffer.getLong();
+        }
+        return new BloomFilter(bits, hashes);
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of the UTF-8 bytes of a key, finished with a mixing step so
+     * both halves can be used as independent hashes.
+     */
+
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -6,9 +6,12 @@ import java.util.List;
  * It includes properties specific to this class such as author and ISBN.
  */
 
-public class Book extends LibraryItem {
+public final class Book extends LibraryItem {
+    private static final long serialVersionUID = 1466398873885300240L;
+
     private String author;
     private String ISBN;
+    private transient String lowerCaseAuthor; // computed by the first search
 
     /**
      * Initializes a new instance of the `Book` class with the title, author, and ISBN.
@@ -46,6 +49,21 @@ public class Book extends LibraryItem {
         return author;
     }
 
+    /**
+     * Retrieves the author in lower case for searches, computed once.
+     *
+     * @return The lower case author.
+     */
+
+    String getLowerCaseAuthor() {
+        String lowerCase = lowerCaseAuthor;
+        if (lowerCase == null) {
+            lowerCase = author.toLowerCase();
+            lowerCaseAuthor = lowerCase;
+        }
+        return lowerCase;
+    }
+
     /**
      * Retrieves the ISBN of the book.
      *
@@ -66,7 +84,7 @@ public class Book extends LibraryItem {
 
     @Override
     public List<String> getSearchableAttributes() {
-        return Arrays.asList(getTitle().toLowerCase(), getAuthor().toLowerCase(), getISBN());
+        return Arrays.asList(getLowerCaseTitle(), getLowerCaseAuthor(), getISBN());
     }
 
     /**
@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The `BrowseCursor` class remembers a position in a `BrowseOrder` of the catalog, so that the
+ * catalog can be paged through with `Library.browse`. A cursor starts at a lower bound such as
+ * "m", may stop before an upper bound such as "n", and moves past each page it returns.
+ *
+ * The position is kept as a sort key rather than an index, so a cursor stays valid while items
+ * are added and can be used with any kind of library.
+ */
+
+public final class BrowseCursor {
+    private final BrowseOrder order;
+    private String key;
+    private int skip; // items with exactly this key already returned
+    private String upper;
+    private boolean exhausted;
+
+    /**
+     * Creates a cursor.
+     */
+
+    private BrowseCursor(BrowseOrder order, String key, int skip, String upper, boolean exhausted) {
+        this.order = order;
+        this.key = key;
+        this.skip = skip;
+        this.upper = upper;
+        this.exhausted = exhausted;
+    }
+
+    /**
+     * Creates a cursor positioned at the first item whose attribute is not before a value.
+     *
+     * @param order The order to browse in.
+     * @param from  The lower bound, compared ignoring case; null or empty starts at the beginning.
+     * @return The new cursor.
+     * @throws IllegalArgumentException if the order is null.
+     */
+
+    public static BrowseCursor seek(BrowseOrder order, String from) {
+        if (order == null) {
+            throw new IllegalArgumentException("Browse order cannot be null");
+        }
+        return new BrowseCursor(order, BrowseOrder.normalize(from), 0, null, false);
+    }
+
+    /**
+     * Limits the cursor to items whose attribute sorts before a value. `seek(TITLE, "m").until("n")`
+     * browses the titles starting with "m".
+     *
+     * @param to The upper bound, compared ignoring case.
+     * @return This cursor.
+     * @throws IllegalArgumentException if the bound is null.
+     */
+
+    public BrowseCursor until(String to) {
+        if (to == null) {
+            throw new IllegalArgumentException("Upper bound cannot be null");
+        }
+        upper = BrowseOrder.normalize(to);
+        return this;
+    }
+
+    /**
+     * Retrieves the order of this cursor.
+     *
+     * @return The order.
+     */
+
+    public BrowseOrder getOrder() {
+        return order;
+    }
+
+    /**
+     * Checks whether the last page returned for this cursor was the final one.
+     *
+     * @return true if there are no more items to browse.
+     */
+
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Retrieves the sort key the next page starts at.
+     */
+
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Retrieves the number of items with exactly the start key that were already returned.
+     */
+
+    int getSkip() {
+        return skip;
+    }
+
+    /**
+     * Retrieves the exclusive upper bound, or null if there is none.
+     */
+
+    String getUpper() {
+        return upper;
+    }
+
+    /**
+     * Creates an independent copy of this cursor.
+     */
+
+    BrowseCursor copy() {
+        return new BrowseCursor(order, key, skip, upper, exhausted);
+    }
+
+    /**
+     * Checks whether a sort key lies between the position of this cursor and its upper bound.
+     */
+
+    boolean accepts(String sortKey) {
+        return sortKey.compareTo(key) >= 0 && (upper == null || sortKey.compareTo(upper) < 0);
+    }
+
+    /**
+     * Moves the cursor past a page that was returned for it.
+     *
+     * @param page  The items of the page in browse order.
+     * @param limit The page size that was requested.
+     */
+
+    void advance(List<LibraryItem> page, int limit) {
+        if (page.size() < limit) {
+            exhausted = true;
+        }
+        if (page.isEmpty()) {
+            return;
+        }
+        String last = order.keyOf(page.get(page.size() - 1));
+        int count = 0;
+        for (int i = page.size() - 1; i >= 0 && order.keyOf(page.get(i)).equals(last); i--) {
+            count++;
+        }
+        skip = count == page.size() && last.equals(key) ? skip + count : count;
+        key = last;
+    }
+
+    /**
+     * Retrieves the next page for this cursor by sorting a collection of items, for catalogs
+     * without an ordered index. The cursor is not moved.
+     *
+     * @param cursor The cursor.
+     * @param items  All items of the catalog.
+     * @param limit  The maximum number of items to return.
+     * @return The items of the page in browse order.
+     */
+
+    static List<LibraryItem> page(BrowseCursor cursor, Collection<LibraryItem> items, int limit) {
+        List<LibraryItem> candidates = new ArrayList<>();
+        for (LibraryItem item : items) {
+            if (cursor.accepts(cursor.order.keyOf(item))) {
+                candidates.add(item);
+            }
+        }
+        candidates.sort(Comparator.comparing(cursor.order::keyOf));
+        List<LibraryItem> page = new ArrayList<>(Math.min(limit, candidates.size()));
+        int skip = cursor.skip;
+        for (LibraryItem item : candidates) {
+            if (skip > 0 && cursor.order.keyOf(item).equals(cursor.key)) {
+                skip--;
+            } else if (page.size() < limit) {
+                page.add(item);
+            } else {
+                break;
+            }
+        }
+        return page;
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.Locale;
+
+/**
+ * The `BrowseOrder` enum lists the orders in which the catalog can be browsed. Items are sorted
+ * by the lower case value of the attribute and then by their unique identifier, so the order is
+ * total and the same in every kind of library.
+ */
+
+public enum BrowseOrder {
+    TITLE,
+    CREATOR;
+
+    /**
+     * Retrieves the value of the attribute this order sorts by.
+     *
+     * @param item The item.
+     * @return The title, or the author, artist or director of the item.
+     */
+
+    public String valueOf(LibraryItem item) {
+        return this == TITLE ? item.getTitle() : LibraryQuery.creatorOf(item);
+    }
+
+    /**
+     * Builds the sort key of an item: the normalized attribute followed by the identifier.
+     *
+     * @param item The item.
+     * @return The sort key.
+     */
+
+    String keyOf(LibraryItem item) {
+        return normalize(valueOf(item)) + '\u0000' + item.getUniqueIdentifier();
+    }
+
+    /**
+     * Normalizes a value or a bound so that it can be compared with sort keys.
+     *
+     * @param value The value, which may be null.
+     * @return The trimmed lower case value, or an empty string for null.
+     */
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
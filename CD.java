@@ -6,9 +6,13 @@ import java.util.List;
  * It includes properties specific to this class such as artist and genre.
 */
 
-public class CD extends LibraryItem {
+public final class CD extends LibraryItem {
+    private static final long serialVersionUID = 2774599791378937070L;
+
     private String artist;
     private String genre;
+    private transient String lowerCaseArtist; // computed by the first search
+    private transient String lowerCaseGenre;
 
     /**
      * Initializes a new instance of the `CD` class with the title, artist, and genre.
@@ -54,6 +58,36 @@ public class CD extends LibraryItem {
         return genre;
     }
 
+    /**
+     * Retrieves the artist in lower case for searches, computed once.
+     *
+     * @return The lower case artist.
+     */
+
+    String getLowerCaseArtist() {
+        String lowerCase = lowerCaseArtist;
+        if (lowerCase == null) {
+            lowerCase = artist.toLowerCase();
+            lowerCaseArtist = lowerCase;
+        }
+        return lowerCase;
+    }
+
+    /**
+     * Retrieves the genre in lower case for searches, computed once.
+     *
+     * @return The lower case genre.
+     */
+
+    String getLowerCaseGenre() {
+        String lowerCase = lowerCaseGenre;
+        if (lowerCase == null) {
+            lowerCase = genre.toLowerCase();
+            lowerCaseGenre = lowerCase;
+        }
+        return lowerCase;
+    }
+
     /**
      * Gets a list of attributes of the CD that should be used in search.
      * Includes the title, artist, and genre.
@@ -63,7 +97,7 @@ public class CD extends LibraryItem {
 
     @Override
     public List<String> getSearchableAttributes() {
-        return Arrays.asList(getTitle().toLowerCase(), getArtist().toLowerCase(), getGenre().toLowerCase());
+        return Arrays.asList(getLowerCaseTitle(), getLowerCaseArtist(), getLowerCaseGenre());
     }
 
     /**
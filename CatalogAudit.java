@@ -0,0 +1,384 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The `CatalogAudit` class checks the invariants of a catalog and reports every item that breaks
+ * one, for example after a crash or an import of a damaged file:
+ *
+ * - a borrowed item must name its borrower and an available item must not,
+ * - the status must be "available" or "borrowed",
+ * - unique identifiers must be unique; books are compared by their canonical ISBN, so the
+ *   ISBN-10 and ISBN-13 of one book count as the same identifier,
+ * - a CD and a DVD must not share an identifier, which happens when a title and artist equal
+ *   another title and director,
+ * - the indexes of the library must agree with the items.
+ *
+ * Every pass over the items runs as a parallel stream, so a catalog of millions of items is audited
+ * in a few seconds. `Library.audit` runs an audit and can repair what it found.
+ */
+
+public final class CatalogAudit {
+
+    /**
+     * The invariants an item can break.
+     */
+    public enum Problem {
+        /**
+         * The item is borrowed but its borrower name or contact is missing.
+         */
+        BORROWED_WITHOUT_BORROWER,
+
+        /**
+         * The item is available but still names a borrower.
+         */
+        AVAILABLE_WITH_BORROWER,
+
+        /**
+         * The status is neither "available" nor "borrowed".
+         */
+        UNKNOWN_STATUS,
+
+        /**
+         * An earlier item of the same type has the same identifier, so this one cannot be looked up.
+         */
+        DUPLICATE_IDENTIFIER,
+
+        /**
+         * An earlier item of another type has the same identifier, so this one cannot be looked up.
+         */
+        IDENTIFIER_COLLISION,
+
+        /**
+         * The indexes of the library do not list the item where it is.
+         */
+        INDEX_MISMATCH
+    }
+
+    /**
+     * Checks the index entries of one item, supplied by the audited library.
+     */
+    interface IndexCheck {
+
+        /**
+         * Checks whether the indexes agree with an item.
+         *
+         * @param item          The item.
+         * @param position      The position of the item.
+         * @param firstPosition The position of the first item with the same identifier, which
+         *                      is what identifier lookups should find.
+         * @return true if the indexes agree with the item.
+         */
+        boolean agrees(LibraryItem item, int position, int firstPosition);
+    }
+
+    /**
+     * The `Violation` class describes one broken invariant.
+     */
+
+    public static final class Violation {
+        private final Problem problem;
+        private final int position;
+        private final String identifier;
+
+        /**
+         * Creates a violation.
+         */
+
+        Violation(Problem problem, int position, String identifier) {
+            this.problem = problem;
+            this.position = position;
+            this.identifier = identifier;
+        }
+
+        /**
+         * Retrieves the broken invariant.
+         *
+         * @return The problem.
+         */
+
+        public Problem getProblem() {
+            return problem;
+        }
+
+        /**
+         * Retrieves the position of the item in the audited catalog.
+         *
+         * @return The position.
+         */
+
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * Retrieves the unique identifier of the item.
+         *
+         * @return The identifier.
+         */
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        /**
+         * Creates a string representation of the violation.
+         *
+         * @return The problem, position and identifier.
+         */
+
+        @Override
+        public String toString() {
+            return problem + " at " + position + " (" + identifier + ")";
+        }
+    }
+
+    private final int itemCount;
+    private final List<Violation> violations;
+    private final Map<Problem, Integer> counts = new EnumMap<>(Problem.class);
+    private int repairedCount;
+
+    /**
+     * Creates the report of an audit.
+     */
+
+    private CatalogAudit(int itemCount, List<Violation> violations) {
+        this.itemCount = itemCount;
+        this.violations = Collections.unmodifiableList(violations);
+        for (Violation violation : violations) {
+            counts.merge(violation.getProblem(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Audits a list of items.
+     *
+     * @param items   The items in catalog order; the list is not modified.
+     * @param indexes The check of the library's indexes, or null to skip it.
+     * @return The report, with violations ordered by position.
+     */
+
+    static CatalogAudit check(List<LibraryItem> items, IndexCheck indexes) {
+        LibraryItem[] catalog = items.toArray(new LibraryItem[0]);
+        Object[] keys = new Object[catalog.length];
+        Map<Object, Integer> first = new ConcurrentHashMap<>(catalog.length * 2 + 16);
+        IntStream.range(0, catalog.length).parallel().forEach(i -> {
+            keys[i] = keyOf(catalog[i]);
+            first.merge(keys[i], i, Math::min);
+        });
+        List<Violation> violations = IntStream.range(0, catalog.length).parallel()
+                .boxed()
+                .flatMap(i -> violationsOf(catalog, i, first.get(keys[i]), indexes))
+                .toList();
+        return new CatalogAudit(catalog.length, new ArrayList<>(violations));
+    }
+
+    /**
+     * Repairs the items of a catalog according to an audit of them. Borrowed items without a
+     * borrower, available items with one and items with an unknown status become available
+     * with no borrower. Duplicates are removed, keeping the first item, which is the one lookups
+     * already find. Items whose identifier collides with an item of another type are kept,
+     * since they hold different titles; renaming one of them is left to a librarian. Index
+     * mismatches are repaired by the caller rebuilding its indexes from the returned items.
+     *
+     * @param items The audited items; neither the list nor the items are modified.
+     * @param audit The audit of the items.
+     * @return The repaired items, with changed items replaced by repaired copies.
+     */
+
+    static List<LibraryItem> repair(List<LibraryItem> items, CatalogAudit audit) {
+        LibraryItem[] repaired = items.toArray(new LibraryItem[0]);
+        for (Violation violation : audit.violations) {
+            int position = violation.getPosition();
+            switch (violation.getProblem()) {
+            case BORROWED_WITHOUT_BORROWER:
+            case AVAILABLE_WITH_BORROWER:
+            case UNKNOWN_STATUS:
+                if (repaired[position] != null) {
+                    LibraryItem copy = repaired[position].copy();
+                    copy.returnItem(violation.getIdentifier());
+                    repaired[position] = copy;
+                    audit.repairedCount++;
+                }
+                break;
+            case DUPLICATE_IDENTIFIER:
+                if (repaired[position] != null) {
+                    repaired[position] = null;
+                    audit.repairedCount++;
+                }
+                break;
+            case INDEX_MISMATCH:
+                audit.repairedCount++;
+                break;
+            default:
+                break;
+            }
+        }
+        List<LibraryItem> kept = new ArrayList<>(repaired.length);
+        for (LibraryItem item : repaired) {
+            if (item != null) {
+                kept.add(item);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Combines the audits of consecutive parts of a catalog, such as the shards of a library, into
+     * the audit of the whole catalog.
+     *
+     * @param parts The audits in catalog order.
+     * @return The combined audit, with positions counted from the start of the first part.
+     */
+
+    static CatalogAudit combine(List<CatalogAudit> parts) {
+        List<Violation> violations = new ArrayList<>();
+        int offset = 0;
+        int repaired = 0;
+        for (CatalogAudit part : parts) {
+            for (Violation violation : part.violations) {
+                violations.add(new Violation(violation.getProblem(), offset + violation.getPosition(),
+                        violation.getIdentifier()));
+            }
+            offset += part.itemCount;
+            repaired += part.repairedCount;
+        }
+        CatalogAudit audit = new CatalogAudit(offset, violations);
+        audit.repairedCount = repaired;
+        return audit;
+    }
+
+    /**
+     * Checks whether a repair would change the catalog, which is the case unless every violation
+     * is an identifier collision.
+     *
+     * @return true if `repair` has something to repair.
+     */
+
+    boolean needsRepair() {
+        return violations.size() > count(Problem.IDENTIFIER_COLLISION);
+    }
+
+    /**
+     * Retrieves the number of audited items.
+     *
+     * @return The number of items.
+     */
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Retrieves the violations found.
+     *
+     * @return The violations ordered by position.
+     */
+
+    public List<Violation> getViolations() {
+        return violations;
+    }
+
+    /**
+     * Retrieves the number of violations of one invariant.
+     *
+     * @param problem The invariant.
+     * @return The number of violations.
+     */
+
+    public int count(Problem problem) {
+        return counts.getOrDefault(problem, 0);
+    }
+
+    /**
+     * Checks whether the audit found no violations.
+     *
+     * @return true if every invariant holds.
+     */
+
+    public boolean isConsistent() {
+        return violations.isEmpty();
+    }
+
+    /**
+     * Retrieves the number of violations that were repaired after the audit.
+     *
+     * @return The number of repaired violations, or 0 if no repair was requested.
+     */
+
+    public int getRepairedCount() {
+        return repairedCount;
+    }
+
+    /**
+     * Creates a summary of the audit.
+     *
+     * @return The number of items and the number of violations of each invariant.
+     */
+
+    @Override
+    public String toString() {
+        return "Audited " + itemCount + " items: " + (counts.isEmpty() ? "consistent" : counts.toString())
+                + (repairedCount > 0 ? ", repaired " + repairedCount : "");
+    }
+
+    /**
+     * Computes the key under which identifiers are compared: the canonical ISBN of a book, or the
+     * identifier of any other item.
+     */
+
+    private static Object keyOf(LibraryItem item) {
+        String identifier = item.getUniqueIdentifier();
+        if (item instanceof Book) {
+            long isbn = IsbnIndex.normalize(identifier);
+            if (isbn > 0) {
+                return isbn;
+            }
+        }
+        return identifier;
+    }
+
+    /**
+     * Checks every invariant of the item at a position.
+     */
+
+    private static Stream<Violation> violationsOf(LibraryItem[] catalog, int position, int firstPosition,
+            IndexCheck indexes) {
+        LibraryItem item = catalog[position];
+        String identifier = item.getUniqueIdentifier();
+        List<Violation> found = new ArrayList<>(1);
+        String status = item.getStatus();
+        boolean hasBorrower = !isBlank(item.getBorrowerName()) || !isBlank(item.getBorrowerContact());
+        if ("borrowed".equals(status)) {
+            if (isBlank(item.getBorrowerName()) || isBlank(item.getBorrowerContact())) {
+                found.add(new Violation(Problem.BORROWED_WITHOUT_BORROWER, position, identifier));
+            }
+        } else if (!"available".equals(status)) {
+            found.add(new Violation(Problem.UNKNOWN_STATUS, position, identifier));
+        } else if (hasBorrower) {
+            found.add(new Violation(Problem.AVAILABLE_WITH_BORROWER, position, identifier));
+        }
+        if (firstPosition != position) {
+            boolean sameType = LibraryQuery.typeOf(catalog[firstPosition]).equals(LibraryQuery.typeOf(item));
+            found.add(new Violation(sameType ? Problem.DUPLICATE_IDENTIFIER : Problem.IDENTIFIER_COLLISION,
+                    position, identifier));
+        }
+        if (indexes != null && !indexes.agrees(item, position, firstPosition)) {
+            found.add(new Violation(Problem.INDEX_MISMATCH, position, identifier));
+        }
+        return found.stream();
+    }
+
+    /**
+     * Checks whether a borrower field is missing.
+     */
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isEmpty();
+    }
+}
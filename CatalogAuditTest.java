@@ -0,0 +1,157 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.List;
+
+/**
+ * The CatalogAuditTest class contains unit tests for the CatalogAudit class and the audit and
+ * repair of libraries.
+ */
+
+public class CatalogAuditTest {
+    private Library library;
+
+    /**
+     * Sets up a library with a book, a CD and a DVD before each test.
+     */
+
+    @Before
+    public void setUp() {
+        library = new Library();
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        library.addItem(new CD("Thriller", "Michael Jackson", "Pop"));
+        library.addItem(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+        library.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu");
+    }
+
+    /**
+     * Tests that a library changed only through its methods is consistent.
+     */
+
+    @Test
+    public void testConsistentLibrary() {
+        CatalogAudit audit = library.audit(true);
+        Assert.assertTrue(audit.toString(), audit.isConsistent());
+        Assert.assertEquals(3, audit.getItemCount());
+        Assert.assertEquals(0, audit.getRepairedCount());
+    }
+
+    /**
+     * Tests that duplicates are found by canonical ISBN and removed, keeping the first item.
+     */
+
+    @Test
+    public void testDuplicateIdentifiers() {
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "978-0-316-76917-4"));
+        library.addItem(new CD("Thriller", "Michael Jackson", "Pop"));
+
+        CatalogAudit audit = library.audit(true);
+        Assert.assertEquals(2, audit.count(CatalogAudit.Problem.DUPLICATE_IDENTIFIER));
+        Assert.assertEquals(3, audit.getViolations().get(0).getPosition());
+        Assert.assertEquals(2, audit.getRepairedCount());
+        Assert.assertEquals(3, library.getAllItems().size());
+        Assert.assertEquals("borrowed", library.getItemByIdentifier("978-0-316-76917-4").getStatus());
+        Assert.assertTrue(library.audit(false).isConsistent());
+    }
+
+    /**
+     * Tests that a CD and a DVD with the same identifier are reported but both kept.
+     */
+
+    @Test
+    public void testIdentifierCollision() {
+        library.addItem(new CD("Heat", "Michael Mann", "Score"));
+        library.addItem(new DVD("Heat", "Crime", "Michael Mann"));
+
+        CatalogAudit audit = library.audit(true);
+        Assert.assertEquals(1, audit.count(CatalogAudit.Problem.IDENTIFIER_COLLISION));
+        Assert.assertEquals("Heat_Michael Mann", audit.getViolations().get(0).getIdentifier());
+        Assert.assertEquals(0, audit.getRepairedCount());
+        Assert.assertEquals(5, library.getAllItems().size());
+    }
+
+    /**
+     * Tests that a borrowed item without a borrower is made available, and that an item changed
+     * behind the library's back is reported as an index mismatch until the indexes are rebuilt.
+     */
+
+    @Test
+    public void testStatusAndIndexRepair() {
+        library.getItemByIdentifier("Thriller_Michael Jackson").borrowItem("", "");
+        library.getItemByIdentifier("Inception_Christopher Nolan").borrowItem("Jane Doe", "janedoe@students.csu.edu");
+
+        CatalogAudit audit = library.audit(false);
+        Assert.assertEquals(1, audit.count(CatalogAudit.Problem.BORROWED_WITHOUT_BORROWER));
+        Assert.assertEquals(2, audit.count(CatalogAudit.Problem.INDEX_MISMATCH));
+        Assert.assertEquals(0, library.query("status:borrowed AND type:dvd").size());
+
+        library.audit(true);
+        Assert.assertEquals("available", library.getItemByIdentifier("Thriller_Michael Jackson").getStatus());
+        Assert.assertEquals(1, library.query("status:borrowed AND type:dvd").size());
+        Assert.assertTrue(library.audit(false).isConsistent());
+    }
+
+    /**
+     * Tests that a sharded library combines the audits of its shards and repairs each shard.
+     */
+
+    @Test
+    public void testShardedLibrary() {
+        ShardedLibrary sharded = new ShardedLibrary(4);
+        for (int i = 0; i < 1000; i++) {
+            sharded.addItem(new Book("Book " + i, "Author", LibraryWorkload.isbn(i)));
+        }
+        sharded.addItem(new Book("Book 7", "Author", LibraryWorkload.isbn(7)));
+        sharded.getItemByIdentifier(LibraryWorkload.isbn(9)).borrowItem("", "");
+
+        CatalogAudit audit = sharded.audit(true);
+        Assert.assertEquals(1001, audit.getItemCount());
+        Assert.assertEquals(1, audit.count(CatalogAudit.Problem.DUPLICATE_IDENTIFIER));
+        Assert.assertEquals(1, audit.count(CatalogAudit.Problem.BORROWED_WITHOUT_BORROWER));
+        Assert.assertEquals(1000, sharded.getAllItems().size());
+        Assert.assertTrue(sharded.audit(false).isConsistent());
+    }
+
+    /**
+     * Tests that a versioned library publishes the repaired items as a new version.
+     */
+
+    @Test
+    public void testVersionedLibrary() {
+        VersionedLibrary versioned = new VersionedLibrary();
+        versioned.addItem(new Book("Emma", "Jane Austen", "0141439580"));
+        versioned.addItem(new Book("Emma", "Jane Austen", "0141439580"));
+        CatalogSnapshot before = versioned.snapshot();
+
+        CatalogAudit audit = versioned.audit(true);
+        Assert.assertEquals(1, audit.count(CatalogAudit.Problem.DUPLICATE_IDENTIFIER));
+        Assert.assertEquals(2, before.size());
+        Assert.assertEquals(1, versioned.getAllItems().size());
+        Assert.assertTrue(versioned.audit(false).isConsistent());
+    }
+
+    /**
+     * Tests that a large catalog with scattered damage is audited and repaired completely.
+     */
+
+    @Test
+    public void testLargeCatalog() {
+        Library large = new Library();
+        for (int i = 0; i < 200000; i++) {
+            Book book = new Book("Book " + i, "Author " + (i % 100), LibraryWorkload.isbn(i % 199000));
+            if (i % 1000 == 0) {
+                book.borrowItem("", "");
+            }
+            large.addItem(book);
+        }
+        CatalogAudit audit = large.audit(true);
+        Assert.assertEquals(1000, audit.count(CatalogAudit.Problem.DUPLICATE_IDENTIFIER));
+        Assert.assertEquals(200, audit.count(CatalogAudit.Problem.BORROWED_WITHOUT_BORROWER));
+        List<CatalogAudit.Violation> violations = audit.getViolations();
+        for (int i = 1; i < violations.size(); i++) {
+            Assert.assertTrue(violations.get(i - 1).getPosition() <= violations.get(i).getPosition());
+        }
+        Assert.assertEquals(199000, large.getAllItems().size());
+        Assert.assertTrue(large.audit(false).isConsistent());
+    }
+}
@@ -0,0 +1,633 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The `CatalogDiff` class compares two saved catalogs and reports which items were added, removed
+ * or changed between them, for example to reconcile the catalogs of two branches.
+ *
+ * Neither catalog is held in memory as a whole. Each one is sorted by unique identifier with an
+ * external merge sort: items are read in runs of a fixed size, each run is sorted and spilled to a
+ * temporary file, and the runs are merged back into one sorted stream. The two sorted streams are
+ * then compared in a single merge pass, so memory is bounded by the run size however large the
+ * catalogs are. Files written by `saveCompressedToFile` are read one block at a time; files
+ * written by `saveToFile` hold a single serialized list, which has to be read whole before it is
+ * split into runs.
+ *
+ * Items are matched by their unique identifier, with ISBNs compared in their canonical form so
+ * that both forms of a book's ISBN match, and when a catalog holds several items with the same
+ * identifier only the first one counts, as for lookups. A matched item has changed when its
+ * type, title, creator, genre, status, borrower or copies differ.
+ *
+ * The differences can be written as a patch file, which `Library.applyPatch` applies to any
+ * library. A patch records the new state of every added or changed item and the identifier of
+ * every removed one, so applying it twice has the same effect as applying it once.
+ */
+
+public final class CatalogDiff {
+    private static final int PATCH_MAGIC = 0x4C504154; // "LPAT"
+    private static final int PATCH_VERSION = 1;
+    private static final int DEFAULT_RUN_SIZE = 50_000;
+    private static final Comparator<LibraryItem> IDENTIFIER_ORDER = Comparator.comparing(CatalogDiff::keyOf);
+    private static final int RESET_INTERVAL = 1024;
+    private static final byte END = 0;
+
+    /**
+     * The kinds of difference.
+     */
+    public enum Change {
+        /**
+         * The item is only in the newer catalog.
+         */
+        ADDED,
+
+        /**
+         * The item is only in the older catalog.
+         */
+        REMOVED,
+
+        /**
+         * The item is in both catalogs with a different state.
+         */
+        CHANGED
+    }
+
+    /**
+     * The `Entry` class describes the difference of one item.
+     */
+
+    public static final class Entry {
+        private final Change change;
+        private final String identifier;
+        private final LibraryItem before;
+        private final LibraryItem after;
+
+        /**
+         * Creates an entry.
+         */
+
+        Entry(Change change, String identifier, LibraryItem before, LibraryItem after) {
+            this.change = change;
+            this.identifier = identifier;
+            this.before = before;
+            this.after = after;
+        }
+
+        /**
+         * Retrieves the kind of difference.
+         *
+         * @return The change.
+         */
+
+        public Change getChange() {
+            return change;
+        }
+
+        /**
+         * Retrieves the unique identifier of the item.
+         *
+         * @return The identifier.
+         */
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        /**
+         * Retrieves the item as it is in the older catalog.
+         *
+         * @return The item, or null if it was added or the entry was read from a patch.
+         */
+
+        public LibraryItem getBefore() {
+            return before;
+        }
+
+        /**
+         * Retrieves the item as it is in the newer catalog.
+         *
+         * @return The item, or null if it was removed.
+         */
+
+        public LibraryItem getAfter() {
+            return after;
+        }
+
+        /**
+         * Creates a string representation of the entry.
+         *
+         * @return The change and identifier.
+         */
+
+        @Override
+        public String toString() {
+            return change + " " + identifier;
+        }
+    }
+
+    private final int[] counts = new int[Change.values().length];
+
+    /**
+     * Creates an empty summary.
+     */
+
+    private CatalogDiff() {
+    }
+
+    /**
+     * Compares two saved catalogs and writes their differences to a patch file. The patch is
+     * written to a temporary file that replaces the patch file only once it is complete, so a
+     * failed comparison never leaves a truncated patch that looks complete.
+     *
+     * @param beforeFile The older catalog, written by `saveToFile` or `saveCompressedToFile`.
+     * @param afterFile  The newer catalog.
+     * @param patchFile  The patch file to write.
+     * @return The number of differences of each kind.
+     * @throws IllegalArgumentException if a filename is null or empty.
+     * @throws IOException if a file cannot be read or written.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    public static CatalogDiff compare(String beforeFile, String afterFile, String patchFile)
+            throws IOException, ClassNotFoundException {
+        requireFilename(beforeFile);
+        requireFilename(afterFile);
+        requireFilename(patchFile);
+        Path temporary = Path.of(patchFile + ".tmp");
+        boolean complete = false;
+        try {
+            CatalogDiff diff;
+            try (PatchWriter patch = new PatchWriter(temporary.toString())) {
+                diff = compare(beforeFile, afterFile, patch::write);
+                patch.finish();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(temporary, Path.of(patchFile), StandardCopyOption.ATOMIC_MOVE);
+            complete = true;
+            return diff;
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * Compares two saved catalogs and passes their differences to a consumer in identifier order.
+     *
+     * @param beforeFile The older catalog, written by `saveToFile` or `saveCompressedToFile`.
+     * @param afterFile  The newer catalog.
+     * @param consumer   The consumer of the differences.
+     * @return The number of differences of each kind.
+     * @throws IllegalArgumentException if a filename is null or empty or the consumer is null.
+     * @throws IOException if a file cannot be read.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    public static CatalogDiff compare(String beforeFile, String afterFile, Consumer<Entry> consumer)
+            throws IOException, ClassNotFoundException {
+        return compare(beforeFile, afterFile, consumer, DEFAULT_RUN_SIZE);
+    }
+
+    /**
+     * Compares two saved catalogs, sorting them in runs of the given size.
+     */
+
+    static CatalogDiff compare(String beforeFile, String afterFile, Consumer<Entry> consumer, int runSize)
+            throws IOException, ClassNotFoundException {
+        requireFilename(beforeFile);
+        requireFilename(afterFile);
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer cannot be null");
+        }
+        CatalogDiff diff = new CatalogDiff();
+        try (SortedItems before = SortedItems.sort(beforeFile, runSize);
+                SortedItems after = SortedItems.sort(afterFile, runSize)) {
+            LibraryItem left = before.next();
+            LibraryItem right = after.next();
+            while (left != null || right != null) {
+                int order = left == null ? 1
+                        : right == null ? -1
+                        : IDENTIFIER_ORDER.compare(left, right);
+                if (order < 0) {
+                    diff.report(consumer, new Entry(Change.REMOVED, left.getUniqueIdentifier(), left, null));
+                    left = before.next();
+                } else if (order > 0) {
+                    diff.report(consumer, new Entry(Change.ADDED, right.getUniqueIdentifier(), null, right));
+                    right = after.next();
+                } else {
+                    if (!sameState(left, right)) {
+                        diff.report(consumer, new Entry(Change.CHANGED, left.getUniqueIdentifier(), left, right));
+                    }
+                    left = before.next();
+                    right = after.next();
+                }
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Reads the entries of a patch file.
+     *
+     * @param patchFile The patch file written by `compare`.
+     * @return The entries in identifier order, without the older state of the items.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if the file cannot be read or is not a patch.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    public static List<Entry> readPatch(String patchFile) throws IOException, ClassNotFoundException {
+        requireFilename(patchFile);
+        List<Entry> entries = new ArrayList<>();
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(patchFile)))) {
+            if (in.readInt() != PATCH_MAGIC || in.readInt() != PATCH_VERSION) {
+                throw new IOException("Not a catalog patch file: " + patchFile);
+            }
+            for (byte kind = in.readByte(); kind != END; kind = in.readByte()) {
+                if (kind < 1 || kind > Change.values().length) {
+                    throw new IOException("Corrupt catalog patch file: " + patchFile);
+                }
+                Change change = Change.values()[kind - 1];
+                String identifier = in.readUTF();
+                LibraryItem after = change == Change.REMOVED ? null : (LibraryItem) in.readObject();
+                entries.add(new Entry(change, identifier, null, after));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated catalog patch file: " + patchFile, e);
+        }
+        return entries;
+    }
+
+    /**
+     * Applies patch entries to the items of a catalog. Removed identifiers are dropped, the first
+     * item with the identifier of an added or changed entry is replaced by the new state, and
+     * entries whose identifier is not in the catalog are appended in patch order.
+     *
+     * @param items The items of the catalog; the list is not modified.
+     * @param patch The entries to apply.
+     * @return The patched items.
+     */
+
+    static List<LibraryItem> apply(List<LibraryItem> items, List<Entry> patch) {
+        Map<String, Entry> pending = new LinkedHashMap<>(patch.size() * 2);
+        for (Entry entry : patch) {
+            pending.put(Library.canonicalIdentifier(entry.getIdentifier()), entry);
+        }
+        Set<String> removed = new HashSet<>();
+        List<LibraryItem> patched = new ArrayList<>(items.size() + patch.size());
+        for (LibraryItem item : items) {
+            String identifier = keyOf(item);
+            Entry entry = pending.remove(identifier);
+            if (entry == null) {
+                if (!removed.contains(identifier)) {
+                    patched.add(item);
+                }
+            } else if (entry.getChange() == Change.REMOVED) {
+                removed.add(identifier);
+            } else {
+                patched.add(entry.getAfter());
+            }
+        }
+        for (Entry entry : pending.values()) {
+            if (entry.getChange() != Change.REMOVED) {
+                patched.add(entry.getAfter());
+            }
+        }
+        return patched;
+    }
+
+    /**
+     * Retrieves the number of differences of one kind.
+     *
+     * @param change The kind of difference.
+     * @return The number of items with that difference.
+     */
+
+    public int count(Change change) {
+        return counts[change.ordinal()];
+    }
+
+    /**
+     * Checks whether the catalogs hold the same items in the same state.
+     *
+     * @return true if no difference was found.
+     */
+
+    public boolean isEmpty() {
+        return count(Change.ADDED) + count(Change.REMOVED) + count(Change.CHANGED) == 0;
+    }
+
+    /**
+     * Creates a summary of the differences.
+     *
+     * @return The number of added, removed and changed items.
+     */
+
+    @Override
+    public String toString() {
+        return count(Change.ADDED) + " added, " + count(Change.REMOVED) + " removed, "
+                + count(Change.CHANGED) + " changed";
+    }
+
+    /**
+     * Counts a difference and passes it on.
+     */
+
+    private void report(Consumer<Entry> consumer, Entry entry) {
+        counts[entry.getChange().ordinal()]++;
+        consumer.accept(entry);
+    }
+
+    /**
+     * Retrieves the identifier an item is matched by.
+     */
+
+    private static String keyOf(LibraryItem item) {
+        return Library.canonicalIdentifier(item.getUniqueIdentifier());
+    }
+
+    /**
+     * Checks whether two items with the same identifier are in the same state.
+     */
+
+    private static boolean sameState(LibraryItem a, LibraryItem b) {
+        return a.getClass() == b.getClass()
+                && a.getTitle().equals(b.getTitle())
+                && Objects.equals(LibraryQuery.creatorOf(a), LibraryQuery.creatorOf(b))
+                && Objects.equals(LibraryQuery.genreOf(a), LibraryQuery.genreOf(b))
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && Objects.equals(a.getBorrowerName(), b.getBorrowerName())
+                && Objects.equals(a.getBorrowerContact(), b.getBorrowerContact())
+                && a.getCopyCount() == b.getCopyCount()
+                && a.getAvailableCopies() == b.getAvailableCopies();
+    }
+
+    /**
+     * Rejects a missing filename.
+     */
+
+    private static void requireFilename(String filename) {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+    }
+
+    /**
+     * Writes patch entries as they are found.
+     */
+
+    private static final class PatchWriter implements Closeable {
+        private final ObjectOutputStream out;
+        private int written;
+
+        /**
+         * Creates the patch file and writes its header.
+         */
+
+        PatchWriter(String patchFile) throws IOException {
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(patchFile)));
+            out.writeInt(PATCH_MAGIC);
+            out.writeInt(PATCH_VERSION);
+        }
+
+        /**
+         * Appends one entry.
+         */
+
+        void write(Entry entry) {
+            try {
+                out.writeByte(entry.getChange().ordinal() + 1);
+                out.writeUTF(entry.getIdentifier());
+                if (entry.getChange() != Change.REMOVED) {
+                    out.writeObject(entry.getAfter());
+                }
+                if (++written % RESET_INTERVAL == 0) {
+                    out.reset(); // keeps the stream from remembering every item written
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Marks the end of the entries. A patch that is closed without it is incomplete.
+         */
+
+        void finish() throws IOException {
+            out.writeByte(END);
+        }
+
+        /**
+         * Closes the file.
+         */
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * The items of a saved catalog in identifier order, with only the first item of every
+     * identifier. The catalog is sorted into runs, each spilled to a temporary file unless it is
+     * the only one, and the runs are merged on the fly.
+     */
+
+    private static final class SortedItems implements Closeable {
+        private static final Comparator<Run> ORDER = Comparator
+                .comparing((Run run) -> run.head, IDENTIFIER_ORDER)
+                .thenComparingInt(run -> run.number);
+
+        private final List<Run> runs = new ArrayList<>();
+        private final PriorityQueue<Run> heads = new PriorityQueue<>(ORDER);
+        private String last;
+
+        /**
+         * Sorts the items of a catalog file.
+         */
+
+        static SortedItems sort(String filename, int runSize) throws IOException, ClassNotFoundException {
+            SortedItems sorted = new SortedItems();
+            try {
+                List<LibraryItem> run = new ArrayList<>();
+                if (new File(filename).isFile() && CompressedCatalogFile.isCompressed(filename)) {
+                    CompressedCatalogFile.forEachBlock(filename, block -> {
+                        for (LibraryItem item : block) {
+                            run.add(item);
+                            if (run.size() == runSize) {
+                                sorted.spill(run);
+                            }
+                        }
+                    });
+                } else {
+                    for (LibraryItem item : Library.readItems(filename)) {
+                        run.add(item);
+                        if (run.size() == runSize) {
+                            sorted.spill(run);
+                        }
+                    }
+                }
+                if (sorted.runs.isEmpty()) {
+                    run.sort(IDENTIFIER_ORDER);
+                    sorted.runs.add(new Run(0, run, null));
+                } else if (!run.isEmpty()) {
+                    sorted.spill(run);
+                }
+                for (Run r : sorted.runs) {
+                    if (r.advance()) {
+                        sorted.heads.add(r);
+                    }
+                }
+                return sorted;
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                sorted.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Sorts a full run, writes it to a temporary file and empties it.
+         */
+
+        private void spill(List<LibraryItem> run) throws IOException {
+            run.sort(IDENTIFIER_ORDER);
+            File file = File.createTempFile("catalog-diff", ".run");
+            file.deleteOnExit();
+            Run spilled = new Run(runs.size(), null, file);
+            runs.add(spilled);
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                for (int i = 0; i < run.size(); i++) {
+                    out.writeObject(run.get(i));
+                    if ((i + 1) % RESET_INTERVAL == 0) {
+                        out.reset();
+                    }
+                }
+            }
+            run.clear();
+            spilled.open();
+        }
+
+        /**
+         * Retrieves the next item, skipping later items with an identifier already returned.
+         *
+         * @return The item, or null at the end.
+         */
+
+        LibraryItem next() throws IOException, ClassNotFoundException {
+            while (!heads.isEmpty()) {
+                Run run = heads.poll();
+                LibraryItem item = run.head;
+                if (run.advance()) {
+                    heads.add(run);
+                }
+                String key = keyOf(item);
+                if (!key.equals(last)) {
+                    last = key;
+                    return item;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Closes and deletes the run files.
+         */
+
+        @Override
+        public void close() throws IOException {
+            for (Run run : runs) {
+                run.close();
+            }
+        }
+    }
+
+    /**
+     * One sorted run, either kept in memory or read back from its temporary file.
+     */
+
+    private static final class Run implements Closeable {
+        private final int number;
+        private final List<LibraryItem> items;
+        private final File file;
+        private ObjectInputStream in;
+        private int position;
+        private LibraryItem head;
+
+        /**
+         * Creates a run over sorted items in memory or in a file.
+         */
+
+        Run(int number, List<LibraryItem> items, File file) {
+            this.number = number;
+            this.items = items;
+            this.file = file;
+        }
+
+        /**
+         * Opens the file of a spilled run for reading.
+         */
+
+        void open() throws IOException {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+
+        /**
+         * Moves to the next item of the run.
+         *
+         * @return false at the end of the run.
+         */
+
+        boolean advance() throws IOException, ClassNotFoundException {
+            if (items != null) {
+                head = position < items.size() ? items.get(position++) : null;
+            } else {
+                try {
+                    head = (LibraryItem) in.readObject();
+                } catch (EOFException e) {
+                    head = null;
+                }
+            }
+            return head != null;
+        }
+
+        /**
+         * Closes and deletes the file of a spilled run.
+         */
+
+        @Override
+        public void close() throws IOException {
+            if (file != null) {
+                try {
+                    if (in != null) {
+                        in.close();
+                    }
+                } finally {
+                    file.delete();
+                }
+            }
+        }
+    }
+}
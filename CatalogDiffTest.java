@@ -0,0 +1,216 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CatalogDiffTest class contains unit tests for the CatalogDiff class.
+ * It tests that two saved catalogs are compared in identifier order across several sorted runs,
+ * and that the resulting patch brings other libraries to the newer state.
+ */
+
+public class CatalogDiffTest {
+    private static final String BEFORE_FILENAME = "test_diff_before.libtest";
+    private static final String AFTER_FILENAME = "test_diff_after.libtest";
+    private static final String PATCH_FILENAME = "test_diff.libpatch";
+    private Library before;
+    private Library after;
+
+    /**
+     * Sets up two versions of a catalog: the newer one removes ten books, adds five, borrows one
+     * item, returns another and adds copies of a third.
+     */
+
+    @Before
+    public void setUp() {
+        before = new Library();
+        after = new Library();
+        for (int i = 0; i < 3000; i++) {
+            LibraryItem item = i % 2 == 0
+                    ? new Book("Title " + i, "Author " + i, "BOOK-" + i)
+                    : new CD("Album " + i, "Artist " + i, "Rock");
+            before.addItem(item);
+            if (i >= 20 || i % 2 != 0) {
+                after.addItem(item.copy());
+            }
+        }
+        before.borrowItem("BOOK-100", "Jane Doe", "jane@example.com");
+        after.borrowItem("BOOK-100", "Jane Doe", "jane@example.com");
+        after.returnItem("BOOK-100");
+        after.borrowItem("BOOK-200", "John Doe", "john@example.com");
+        after.addCopies("Album 301_Artist 301", 3);
+        for (int i = 0; i < 5; i++) {
+            after.addItem(new DVD("New Movie " + i, "Drama", "Director " + i));
+        }
+    }
+
+    /**
+     * Removes the test files after each test.
+     */
+
+    @After
+    public void tearDown() {
+        for (String filename : new String[] {BEFORE_FILENAME, AFTER_FILENAME, PATCH_FILENAME}) {
+            new File(filename).delete();
+        }
+    }
+
+    /**
+     * Tests that the differences are found and reported in identifier order, whatever the number
+     * of sorted runs and whether the files are plain or compressed.
+     */
+
+    @Test
+    public void testCompare() throws Exception {
+        before.saveToFile(BEFORE_FILENAME);
+        after.saveCompressedToFile(AFTER_FILENAME, false);
+        for (int runSize : new int[] {100000, 250, 7}) {
+            List<CatalogDiff.Entry> entries = new ArrayList<>();
+            CatalogDiff diff = CatalogDiff.compare(BEFORE_FILENAME, AFTER_FILENAME, entries::add, runSize);
+
+            Assert.assertEquals(5, diff.count(CatalogDiff.Change.ADDED));
+            Assert.assertEquals(10, diff.count(CatalogDiff.Change.REMOVED));
+            Assert.assertEquals(3, diff.count(CatalogDiff.Change.CHANGED));
+            Assert.assertEquals("5 added, 10 removed, 3 changed", diff.toString());
+            Assert.assertEquals(18, entries.size());
+            for (int i = 1; i < entries.size(); i++) {
+                Assert.assertTrue(entries.get(i - 1).getIdentifier().compareTo(entries.get(i).getIdentifier()) < 0);
+            }
+            CatalogDiff.Entry borrowed = entries.stream()
+                    .filter(entry -> entry.getIdentifier().equals("BOOK-200")).findFirst().get();
+            Assert.assertEquals(CatalogDiff.Change.CHANGED, borrowed.getChange());
+            Assert.assertEquals("available", borrowed.getBefore().getStatus());
+            Assert.assertEquals("borrowed", borrowed.getAfter().getStatus());
+        }
+    }
+
+    /**
+     * Tests that only the first item with an identifier counts, as for lookups.
+     */
+
+    @Test
+    public void testDuplicateIdentifiers() throws Exception {
+        Library duplicated = new Library();
+        for (LibraryItem item : before.getAllItems()) {
+            duplicated.addItem(item);
+        }
+        duplicated.addItem(new Book("Another Title", "Another Author", "BOOK-0"));
+        duplicated.saveToFile(AFTER_FILENAME);
+        before.saveToFile(BEFORE_FILENAME);
+
+        CatalogDiff diff = CatalogDiff.compare(BEFORE_FILENAME, AFTER_FILENAME, entry -> { }, 64);
+        Assert.assertTrue(diff.isEmpty());
+    }
+
+    /**
+     * Tests that a book listed under its ISBN-10 in one catalog and its ISBN-13 in the other is
+     * compared as one item, and that a patch naming either form replaces it.
+     */
+
+    @Test
+    public void testIsbnForms() throws Exception {
+        before.addItem(new Book("1984", "George Orwell", "0451524934"));
+        before.addItem(new Book("Dune", "Frank Herbert", "0441013597"));
+        after.addItem(new Book("1984", "George Orwell", "978-0-451-52493-5"));
+        after.addItem(new Book("Dune", "Frank Herbert", "9780441013593"));
+        after.borrowItem("9780441013593", "Jane Doe", "jane@example.com");
+        before.saveToFile(BEFORE_FILENAME);
+        after.saveCompressedToFile(AFTER_FILENAME, false);
+
+        for (int runSize : new int[] {100000, 7}) {
+            List<CatalogDiff.Entry> entries = new ArrayList<>();
+            CatalogDiff diff = CatalogDiff.compare(BEFORE_FILENAME, AFTER_FILENAME, entries::add, runSize);
+            Assert.assertEquals(4, diff.count(CatalogDiff.Change.CHANGED));
+            Assert.assertTrue(entries.stream().anyMatch(entry -> entry.getIdentifier().equals("0441013597")));
+            Assert.assertTrue(entries.stream().noneMatch(entry -> entry.getIdentifier().contains("0451524934")));
+        }
+
+        CatalogDiff.compare(BEFORE_FILENAME, AFTER_FILENAME, PATCH_FILENAME);
+        before.applyPatch(PATCH_FILENAME);
+        Assert.assertEquals(after.getAllItems().size(), before.getAllItems().size());
+        Assert.assertEquals("Jane Doe", before.getItemByIdentifier("0441013597").getBorrowerName());
+
+        Library branch = new Library();
+        branch.addItem(new Book("Dune", "Frank Herbert", "978-0-441-01359-3"));
+        branch.applyPatch(PATCH_FILENAME);
+        Assert.assertEquals(1, branch.query("author:herbert").size());
+        Assert.assertEquals("borrowed", branch.getItemByIdentifier("0441013597").getStatus());
+    }
+
+    /**
+     * Tests that applying the patch to the older catalog yields the newer one, that applying it
+     * twice changes nothing more, and that items the patch does not list are kept.
+     */
+
+    @Test
+    public void testApplyPatch() throws Exception {
+        before.saveToFile(BEFORE_FILENAME);
+        after.saveToFile(AFTER_FILENAME);
+        CatalogDiff.compare(BEFORE_FILENAME, AFTER_FILENAME, PATCH_FILENAME);
+
+        before.addItem(new Book("Branch Only", "Branch Author", "BRANCH-1"));
+        before.applyPatch(PATCH_FILENAME);
+        before.applyPatch(PATCH_FILENAME);
+
+        Assert.assertEquals(after.getAllItems().size() + 1, before.getAllItems().size());
+        Assert.assertNotNull(before.getItemByIdentifier("BRANCH-1"));
+        Assert.assertNull(before.getItemByIdentifier("BOOK-0"));
+        Assert.assertEquals("available", before.getItemByIdentifier("BOOK-100").getStatus());
+        Assert.assertEquals("John Doe", before.getItemByIdentifier("BOOK-200").getBorrowerName());
+        Assert.assertEquals(4, before.getItemByIdentifier("Album 301_Artist 301").getCopyCount());
+        Assert.assertEquals(5, before.searchItems("new movie").size());
+        Assert.assertEquals(1, before.query("status:borrowed").size());
+    }
+
+    /**
+     * Tests that versioned and sharded libraries apply a patch like a plain library.
+     */
+
+    @Test
+    public void testApplyPatchToOtherLibraries() throws Exception {
+        before.saveToFile(BEFORE_FILENAME);
+        after.saveToFile(AFTER_FILENAME);
+        CatalogDiff.compare(BEFORE_FILENAME, AFTER_FILENAME, PATCH_FILENAME);
+
+        Library[] libraries = {new VersionedLibrary(), new ShardedLibrary(4)};
+        for (Library library : libraries) {
+            library.loadFromFile(BEFORE_FILENAME);
+            library.applyPatch(PATCH_FILENAME);
+            library.saveToFile(BEFORE_FILENAME);
+            CatalogDiff diff = CatalogDiff.compare(BEFORE_FILENAME, AFTER_FILENAME, entry -> { });
+            Assert.assertTrue(library.getClass().getName() + ": " + diff, diff.isEmpty());
+            before.saveToFile(BEFORE_FILENAME);
+        }
+    }
+
+    /**
+     * Tests that a failed comparison leaves an existing patch file untouched and no partial
+     * patch behind.
+     */
+
+    @Test
+    public void testFailedCompareKeepsPatch() throws Exception {
+        before.saveToFile(BEFORE_FILENAME);
+        after.saveToFile(AFTER_FILENAME);
+        CatalogDiff.compare(BEFORE_FILENAME, AFTER_FILENAME, PATCH_FILENAME);
+        long length = new File(PATCH_FILENAME).length();
+
+        Files.write(Path.of(AFTER_FILENAME), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        try {
+            CatalogDiff.compare(BEFORE_FILENAME, AFTER_FILENAME, PATCH_FILENAME);
+            Assert.fail("A corrupt catalog should not be compared");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertEquals(length, new File(PATCH_FILENAME).length());
+        Assert.assertFalse(new File(PATCH_FILENAME + ".tmp").exists());
+        before.applyPatch(PATCH_FILENAME);
+        Assert.assertEquals(after.getAllItems().size(), before.getAllItems().size());
+    }
+}
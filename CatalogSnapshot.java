@@ -0,0 +1,279 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The `CatalogSnapshot` class is an immutable, consistent version of a catalog: the items and
+ * their statuses as they were when the version was published. Snapshots never change, so any
+ * number of threads can search one while writers publish newer versions.
+ *
+ * Item positions only ever grow within a series of versions, so the identifier lookup tables and
+ * the ordered index are shared by all versions of a series and only extended by writers. A lookup in an older version
+ * ignores positions at or beyond its own size, which belong to items added after it.
+ */
+
+public final class CatalogSnapshot {
+    private final long version;
+    private final long series;
+    private final PersistentVector<LibraryItem> items;
+    private final Map<String, Integer> identifiers;
+    private final Map<Long, Integer> isbns;
+    private final AtomicInteger duplicateIsbns; // books whose ISBN an earlier book already has
+    private final OrderedIndex ordered;
+
+    /**
+     * Creates a snapshot from its parts.
+     */
+
+    private CatalogSnapshot(long version, long series, PersistentVector<LibraryItem> items,
+            Map<String, Integer> identifiers, Map<Long, Integer> isbns, AtomicInteger duplicateIsbns,
+            OrderedIndex ordered) {
+        this.version = version;
+        this.series = series;
+        this.items = items;
+        this.identifiers = identifiers;
+        this.isbns = isbns;
+        this.duplicateIsbns = duplicateIsbns;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Creates the first version of a new series holding the given items.
+     *
+     * @param version The version number of the snapshot.
+     * @param items   The items of the catalog in order.
+     * @return The new snapshot.
+     */
+
+    static CatalogSnapshot of(long version, List<LibraryItem> items) {
+        Map<String, Integer> identifiers = new ConcurrentHashMap<>(Math.max(16, items.size() * 2));
+        Map<Long, Integer> isbns = new ConcurrentHashMap<>();
+        AtomicInteger duplicateIsbns = new AtomicInteger();
+        OrderedIndex ordered = new OrderedIndex();
+        for (int i = 0; i < items.size(); i++) {
+            index(identifiers, isbns, duplicateIsbns, items.get(i), i);
+            ordered.add(items.get(i), i);
+        }
+        return new CatalogSnapshot(version, version, PersistentVector.of(items), identifiers, isbns, duplicateIsbns, ordered);
+    }
+
+    /**
+     * Creates the next version with an item appended.
+     *
+     * @param item The item to append.
+     * @return The new snapshot.
+     */
+
+    CatalogSnapshot withAdded(LibraryItem item) {
+        // The lookup tables must be extended before the new version is published.
+        index(identifiers, isbns, duplicateIsbns, item, items.size());
+        ordered.add(item, items.size());
+        return new CatalogSnapshot(version + 1, series, items.append(item), identifiers, isbns, duplicateIsbns, ordered);
+    }
+
+    /**
+     * Creates the next version with the item at a position replaced by a new copy.
+     *
+     * @param position The position of the item.
+     * @param item     The new copy, which must have the same identifier.
+     * @return The new snapshot.
+     */
+
+    CatalogSnapshot withReplaced(int position, LibraryItem item) {
+        return new CatalogSnapshot(version + 1, series, items.set(position, item), identifiers, isbns, duplicateIsbns, ordered);
+    }
+
+    /**
+     * Relabels a snapshot that was built ahead of time as the first version of a new series. The
+     * snapshot shares every table with this one, so relabeling takes constant time.
+     *
+     * @param version The version number of the new series.
+     * @return The relabeled snapshot.
+     */
+
+    CatalogSnapshot asSeries(long version) {
+        return new CatalogSnapshot(version, version, items, identifiers, isbns, duplicateIsbns, ordered);
+    }
+
+    /**
+     * Adds an item at a position to the lookup tables unless its identifier is already present,
+     * counting books whose ISBN is already present.
+     */
+
+    private static void index(Map<String, Integer> identifiers, Map<Long, Integer> isbns,
+            AtomicInteger duplicateIsbns, LibraryItem item, int position) {
+        identifiers.putIfAbsent(item.getUniqueIdentifier(), position);
+        if (item instanceof Book) {
+            long isbn = IsbnIndex.normalize(item.getUniqueIdentifier());
+            if (isbn > 0 && isbns.putIfAbsent(isbn, position) != null) {
+                duplicateIsbns.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the version number of this snapshot.
+     *
+     * @return The version number, which grows with every published change.
+     */
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Retrieves the version that started the series of this snapshot. Positions keep their
+     * meaning between snapshots of the same series.
+     *
+     * @return The first version of the series.
+     */
+
+    long getSeries() {
+        return series;
+    }
+
+    /**
+     * Retrieves the number of items in this snapshot.
+     *
+     * @return The number of items.
+     */
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Retrieves the item at a position of this snapshot.
+     *
+     * @param position The position of the item.
+     * @return The item.
+     * @throws IndexOutOfBoundsException if the position is outside the snapshot.
+     */
+
+    LibraryItem get(int position) {
+        return items.get(position);
+    }
+
+    /**
+     * Searches this snapshot for items matching the search term, with the same results as
+     * `Library.searchItems`. The leaves of the item vector are scanned in parallel.
+     *
+     * @param searchTerm The search term to match against item titles or specific attributes.
+     * @return A list of items that match the search term, in catalog order.
+     */
+
+    public List<LibraryItem> searchItems(String searchTerm) {
+        String lowerCaseSearchTerm = searchTerm.toLowerCase();
+        int size = items.size();
+        int leaves = (size + PersistentVector.WIDTH - 1) / PersistentVector.WIDTH;
+        return IntStream.range(0, leaves)
+                .parallel()
+                .mapToObj(leaf -> {
+                    int start = leaf * PersistentVector.WIDTH;
+                    Object[] array = items.arrayFor(start);
+                    List<LibraryItem> matches = new ArrayList<>();
+                    for (int i = 0; i < PersistentVector.WIDTH && start + i < size; i++) {
+                        LibraryItem item = (LibraryItem) array[i];
+                        if (ItemMatcher.matches(item, lowerCaseSearchTerm)) {
+                            matches.add(item);
+                        }
+                    }
+                    return matches;
+                })
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Retrieves all items of this snapshot.
+     *
+     * @return A new list containing every item in catalog order.
+     */
+
+    public List<LibraryItem> getAllItems() {
+        return items.toList();
+    }
+
+    /**
+     * Retrieves an item of this snapshot based on its unique identifier.
+     * Books can be found by either their ISBN-10 or ISBN-13.
+     *
+     * @param identifier The unique identifier of the item to be retrieved.
+     * @return The item with the specified identifier or null if not found.
+     */
+
+    public LibraryItem getItemByIdentifier(String identifier) {
+        int position = positionOf(identifier);
+        return position < 0 ? null : items.get(position);
+    }
+
+    /**
+     * Retrieves the next page of this snapshot in title or creator order and moves the cursor
+     * past it.
+     *
+     * @param cursor The cursor to continue from.
+     * @param limit  The maximum number of items to return.
+     * @return The items of the page in browse order.
+     * @throws IllegalArgumentException if the cursor is null or the limit is not positive.
+     */
+
+    public List<LibraryItem> browse(BrowseCursor cursor, int limit) {
+        Library.checkBrowse(cursor, limit);
+        List<LibraryItem> page = new ArrayList<>();
+        for (int position : ordered.scan(cursor, limit, items.size())) {
+            page.add(items.get(position));
+        }
+        cursor.advance(page, limit);
+        return page;
+    }
+
+    /**
+     * Finds the position of the first book with an ISBN in this snapshot.
+     *
+     * @param isbn The canonical ISBN.
+     * @return The position, or -1 if this snapshot has no such book.
+     */
+
+    int positionOfIsbn(long isbn) {
+        Integer position = isbns.get(isbn);
+        return position != null && position < items.size() ? position : -1;
+    }
+
+    /**
+     * Checks whether the ISBN lookup table finds every book with a given ISBN. It does not once
+     * two books of the series share an ISBN; the count is shared with later versions, so older
+     * snapshots may answer false too early, but never true wrongly.
+     *
+     * @return true if no two books share an ISBN.
+     */
+
+    boolean hasUniqueIsbns() {
+        return duplicateIsbns.get() == 0;
+    }
+
+    /**
+     * Finds the position of the first item with an identifier in this snapshot.
+     *
+     * @param identifier The unique identifier of the item.
+     * @return The position, or -1 if this snapshot has no such item.
+     */
+
+    int positionOf(String identifier) {
+        if (identifier == null) {
+            return -1;
+        }
+        long isbn = IsbnIndex.normalize(identifier);
+        if (isbn > 0) {
+            Integer position = isbns.get(isbn);
+            if (position != null && position < items.size()) {
+                return position;
+            }
+        }
+        Integer position = identifiers.get(identifier);
+        return position != null && position < items.size() ? position : -1;
+    }
+}
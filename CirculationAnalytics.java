@@ -0,0 +1,223 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The `CirculationAnalytics` class keeps live circulation statistics from the events of a library,
+ * for dashboards of the most borrowed titles, the busiest genres and the borrow rate per item type.
+ * It is a `LibraryEventListener`, so it is attached with
+ * `library.subscribe(analytics)` and updated incrementally on the subscription's thread; no
+ * query ever scans the catalog.
+ *
+ * Memory stays bounded whatever the number of events: borrow counts per title are estimated by a
+ * `CountMinSketch`, the most borrowed titles are tracked by a `SpaceSaving` summary, the borrow
+ * rate is kept in a ring of one-second buckets, and exact counters are only kept per item type and
+ * per genre, which come from a small vocabulary. Counts cover the events seen since subscribing;
+ * loading a catalog does not reset them.
+ *
+ * All methods are synchronized, so statistics can be read from any thread while events arrive.
+ */
+
+public class CirculationAnalytics implements LibraryEventListener {
+    private static final int DEFAULT_TOP_TITLES = 100;
+    private static final int SKETCH_WIDTH = 2048;
+    private static final int SKETCH_DEPTH = 5;
+    private static final int RATE_WINDOW_SECONDS = 60;
+
+    /**
+     * Borrows per second of one item type over the last minute.
+     */
+
+    private static final class RateWindow {
+        private final long[] seconds = new long[RATE_WINDOW_SECONDS];
+        private final long[] counts = new long[RATE_WINDOW_SECONDS];
+
+        /**
+         * Counts one borrow at a time.
+         */
+
+        void record(long timeMillis) {
+            long second = timeMillis / 1000;
+            int slot = (int) Math.floorMod(second, (long) RATE_WINDOW_SECONDS);
+            if (seconds[slot] != second) {
+                seconds[slot] = second;
+                counts[slot] = 0;
+            }
+            counts[slot]++;
+        }
+
+        /**
+         * Sums the borrows of the last minute before a time.
+         */
+
+        long lastMinute(long nowMillis) {
+            long now = nowMillis / 1000;
+            long sum = 0;
+            for (int i = 0; i < RATE_WINDOW_SECONDS; i++) {
+                if (seconds[i] > now - RATE_WINDOW_SECONDS && seconds[i] <= now) {
+                    sum += counts[i];
+                }
+            }
+            return sum;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final CountMinSketch titleBorrows = new CountMinSketch(SKETCH_WIDTH, SKETCH_DEPTH);
+    private final SpaceSaving topTitles;
+    private final Map<String, Long> borrowsByType = new HashMap<>();
+    private final Map<String, Long> onLoanByType = new HashMap<>();
+    private final Map<String, Long> borrowsByGenre = new HashMap<>();
+    private final Map<String, RateWindow> rates = new HashMap<>();
+    private long borrows;
+    private long returns;
+
+    /**
+     * Initializes analytics that track the 100 most borrowed titles.
+     */
+
+    public CirculationAnalytics() {
+        this(DEFAULT_TOP_TITLES);
+    }
+
+    /**
+     * Initializes analytics that track the given number of most borrowed titles.
+     *
+     * @param topTitles The number of titles to track exactly enough to rank them.
+     * @throws IllegalArgumentException if the number is not positive.
+     */
+
+    public CirculationAnalytics(int topTitles) {
+        this(topTitles, System::currentTimeMillis);
+    }
+
+    /**
+     * Initializes analytics with a clock for the borrow rate, for tests.
+     */
+
+    CirculationAnalytics(int topTitles, LongSupplier clock) {
+        this.topTitles = new SpaceSaving(topTitles);
+        this.clock = clock;
+    }
+
+    /**
+     * Updates the statistics with a borrow or return. Other events are ignored.
+     *
+     * @param event      The event, which is only valid during this call.
+     * @param sequence   The sequence number of the event.
+     * @param endOfBatch Whether this is the last event currently available.
+     */
+
+    @Override
+    public synchronized void onEvent(LibraryEvent event, long sequence, boolean endOfBatch) {
+        LibraryItem item = event.getItem();
+        if (item == null) {
+            return;
+        }
+        String type = LibraryQuery.typeOf(item);
+        if (event.getType() == LibraryEvent.Type.BORROW) {
+            borrows++;
+            String title = item.getTitle();
+            titleBorrows.add(title, 1);
+            topTitles.offer(title);
+            borrowsByType.merge(type, 1L, Long::sum);
+            onLoanByType.merge(type, 1L, Long::sum);
+            String genre = LibraryQuery.genreOf(item);
+            if (genre != null) {
+                borrowsByGenre.merge(genre.toLowerCase(), 1L, Long::sum);
+            }
+            rates.computeIfAbsent(type, t -> new RateWindow()).record(clock.getAsLong());
+        } else if (event.getType() == LibraryEvent.Type.RETURN) {
+            returns++;
+            onLoanByType.merge(type, -1L, Long::sum);
+        }
+    }
+
+    /**
+     * Retrieves the number of borrows seen.
+     *
+     * @return The number of borrows.
+     */
+
+    public synchronized long getBorrowCount() {
+        return borrows;
+    }
+
+    /**
+     * Retrieves the number of returns seen.
+     *
+     * @return The number of returns.
+     */
+
+    public synchronized long getReturnCount() {
+        return returns;
+    }
+
+    /**
+     * Estimates how often a title was borrowed.
+     *
+     * @param title The title.
+     * @return The estimate, which is never lower than the true count.
+     */
+
+    public synchronized long estimateBorrows(String title) {
+        return title == null ? 0 : titleBorrows.estimate(title);
+    }
+
+    /**
+     * Retrieves the most borrowed titles.
+     *
+     * @param n The maximum number of titles to return.
+     * @return The titles and their counts in descending order.
+     */
+
+    public synchronized List<SpaceSaving.Counter> getMostBorrowedTitles(int n) {
+        return topTitles.top(n);
+    }
+
+    /**
+     * Retrieves the number of borrows per genre of CDs and DVDs.
+     *
+     * @return The counts by lower case genre, sorted by genre.
+     */
+
+    public synchronized Map<String, Long> getBorrowsByGenre() {
+        return new TreeMap<>(borrowsByGenre);
+    }
+
+    /**
+     * Retrieves the number of borrows per item type.
+     *
+     * @return The counts by type ("book", "cd", "dvd"), sorted by type.
+     */
+
+    public synchronized Map<String, Long> getBorrowsByType() {
+        return new TreeMap<>(borrowsByType);
+    }
+
+    /**
+     * Retrieves the number of items of a type that were borrowed and not yet returned since the
+     * analytics were attached.
+     *
+     * @param type The item type, such as "book".
+     * @return The net number of borrows.
+     */
+
+    public synchronized long getOnLoan(String type) {
+        return onLoanByType.getOrDefault(type, 0L);
+    }
+
+    /**
+     * Retrieves the number of borrows of an item type during the last minute.
+     *
+     * @param type The item type, such as "book".
+     * @return The borrows per minute.
+     */
+
+    public synchronized long getBorrowRate(String type) {
+        RateWindow rate = rates.get(type);
+        return rate == null ? 0 : rate.lastMinute(clock.getAsLong());
+    }
+}
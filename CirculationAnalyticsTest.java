@@ -0,0 +1,157 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The CirculationAnalyticsTest class contains unit tests for the CirculationAnalytics class and the
+ * CountMinSketch and SpaceSaving summaries behind it.
+ */
+
+public class CirculationAnalyticsTest {
+    private long now;
+    private CirculationAnalytics analytics;
+    private LibraryEvent event;
+
+    /**
+     * Sets up analytics with a fixed clock before each test.
+     */
+
+    @Before
+    public void setUp() {
+        now = 1_000_000L;
+        analytics = new CirculationAnalytics(10, () -> now);
+        event = new LibraryEvent();
+    }
+
+    /**
+     * Tests that borrows and returns of a subscribed library are counted per title, type and genre.
+     */
+
+    @Test
+    public void testSubscribedLibrary() {
+        Library library = new Library();
+        LibraryEventRing.Subscription subscription = library.subscribe(analytics);
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        library.addItem(new CD("Thriller", "Michael Jackson", "Pop"));
+        library.addItem(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+        library.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu");
+        library.borrowItem("Thriller_Michael Jackson", "Jane Doe", "janedoe@students.csu.edu");
+        library.returnItem("0316769177");
+        library.borrowItem("0316769177", "Jane Doe", "janedoe@students.csu.edu");
+        library.borrowItem("Inception_Christopher Nolan", "John Doe", "johndoe@students.csu.edu");
+
+        Assert.assertTrue(subscription.awaitSequence(7, 5000));
+        subscription.close();
+        Assert.assertEquals(4, analytics.getBorrowCount());
+        Assert.assertEquals(1, analytics.getReturnCount());
+        Assert.assertEquals(2, analytics.estimateBorrows("The Catcher in the Rye"));
+        Assert.assertEquals("The Catcher in the Rye", analytics.getMostBorrowedTitles(1).get(0).getKey());
+        Assert.assertEquals(Map.of("book", 2L, "cd", 1L, "dvd", 1L), analytics.getBorrowsByType());
+        Assert.assertEquals(Map.of("pop", 1L, "sci-fi", 1L), analytics.getBorrowsByGenre());
+        Assert.assertEquals(1, analytics.getOnLoan("book"));
+        Assert.assertEquals(0, analytics.getOnLoan("magazine"));
+    }
+
+    /**
+     * Tests that the borrow rate only counts the last minute.
+     */
+
+    @Test
+    public void testBorrowRate() {
+        Book book = new Book("Emma", "Jane Austen", "0141439580");
+        for (int i = 0; i < 5; i++) {
+            borrow(book);
+            now += 20_000L;
+        }
+        Assert.assertEquals(2, analytics.getBorrowRate("book"));
+        now += 50_000L;
+        Assert.assertEquals(0, analytics.getBorrowRate("book"));
+        Assert.assertEquals(0, analytics.getBorrowRate("cd"));
+    }
+
+    /**
+     * Tests that the most borrowed titles of a skewed stream are found with few counters.
+     */
+
+    @Test
+    public void testHeavyHitters() {
+        analytics = new CirculationAnalytics(100, () -> now);
+        LibraryWorkload.Zipf zipf = new LibraryWorkload.Zipf(10000, 1.2);
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int rank = zipf.next(random);
+            borrow(new Book("Book " + rank, "Author", LibraryWorkload.isbn(rank)));
+        }
+        List<SpaceSaving.Counter> top = analytics.getMostBorrowedTitles(3);
+        Assert.assertEquals(3, top.size());
+        Assert.assertEquals("Book 0", top.get(0).getKey());
+        Assert.assertEquals("Book 1", top.get(1).getKey());
+        Assert.assertEquals("Book 2", top.get(2).getKey());
+        Assert.assertTrue(top.get(0).getCount() >= top.get(1).getCount());
+        Assert.assertTrue(analytics.estimateBorrows("Book 0") >= top.get(0).getCount() - top.get(0).getError());
+    }
+
+    /**
+     * Tests that SpaceSaving replaces the smallest counter and records its overestimate.
+     */
+
+    @Test
+    public void testSpaceSaving() {
+        SpaceSaving summary = new SpaceSaving(2);
+        summary.offer("a");
+        summary.offer("a");
+        summary.offer("a");
+        summary.offer("b");
+        summary.offer("c");
+        Assert.assertEquals(2, summary.size());
+        List<SpaceSaving.Counter> top = summary.top(5);
+        Assert.assertEquals("a", top.get(0).getKey());
+        Assert.assertEquals(3, top.get(0).getCount());
+        Assert.assertEquals("c", top.get(1).getKey());
+        Assert.assertEquals(2, top.get(1).getCount());
+        Assert.assertEquals(1, top.get(1).getError());
+    }
+
+    /**
+     * Tests that CountMinSketch estimates are never too low.
+     */
+
+    @Test
+    public void testCountMinSketch() {
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("key " + (i % 200), i % 3 + 1);
+        }
+        Assert.assertEquals(1999, sketch.getTotal());
+        for (int k = 0; k < 200; k++) {
+            long exact = 0;
+            for (int i = k; i < 1000; i += 200) {
+                exact += i % 3 + 1;
+            }
+            Assert.assertTrue(sketch.estimate("key " + k) >= exact);
+        }
+        Assert.assertEquals(0, new CountMinSketch(16, 2).estimate("missing"));
+    }
+
+    /**
+     * Tests that invalid arguments are rejected.
+     */
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new CirculationAnalytics(0);
+    }
+
+    /**
+     * Delivers a borrow event at the current time of the test clock.
+     */
+
+    private void borrow(LibraryItem item) {
+        event.set(LibraryEvent.Type.BORROW, item, item.getUniqueIdentifier(), "John Doe",
+                "johndoe@students.csu.edu", 0);
+        analytics.onEvent(event, 0, true);
+    }
+}
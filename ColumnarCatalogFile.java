@@ -0,0 +1,728 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * The `ColumnarCatalogFile` class exports library items for reporting in a columnar format, so a
+ * report that needs only the genre and status reads those two columns and nothing else. Rows are
+ * split into row groups of a fixed number of items, and every row group stores one chunk per
+ * `Column`. A chunk is encoded either as a dictionary of its distinct values followed by
+ * run-length encoded codes, which suits columns with few values such as type and status, or as
+ * plain values, whichever is smaller. The footer records for every chunk its position, encoding,
+ * null count and smallest and largest value, so a reader can skip row groups that cannot match a
+ * filter without reading them. The file is laid out as:
+ *
+ * <pre>
+ * int  magic "LCOL"   int  format version   int  row count   int  row group count   int  column count
+ * chunk data ...
+ * footer: for every row group a row count, then for every column a long offset, a length, a
+ *         byte encoding, a null count and the minimum and maximum values
+ * long offset of the footer
+ * </pre>
+ *
+ * Counts and lengths in chunks and the footer are variable-length integers, and strings are
+ * stored as UTF-8 with a variable-length length prefix; a missing value, such as the
+ * genre of a book or the borrower of an available item, is stored as null. The format is an
+ * export and is not read back into a `Library`.
+ */
+
+public final class ColumnarCatalogFile {
+    static final int MAGIC = 0x4C434F4C;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 20;
+    private static final int DEFAULT_ROW_GROUP_SIZE = 65536;
+
+    /**
+     * The columns of the format.
+     */
+    public enum Column {
+        /**
+         * The item type: "book", "cd" or "dvd".
+         */
+        TYPE,
+
+        /**
+         * The unique identifier.
+         */
+        IDENTIFIER,
+
+        /**
+         * The title.
+         */
+        TITLE,
+
+        /**
+         * The author of a book, the artist of a CD or the director of a DVD.
+         */
+        CREATOR,
+
+        /**
+         * The genre of a CD or DVD; null for books.
+         */
+        GENRE,
+
+        /**
+         * The status: "available" or "borrowed".
+         */
+        STATUS,
+
+        /**
+         * The name of the borrower of a borrowed item; null otherwise.
+         */
+        BORROWER;
+
+        /**
+         * Retrieves the value of this column for an item.
+         *
+         * @param item The item.
+         * @return The value, or null if the item has none.
+         */
+
+        public String valueOf(LibraryItem item) {
+            switch (this) {
+            case TYPE:
+                return LibraryQuery.typeOf(item);
+            case IDENTIFIER:
+                return item.getUniqueIdentifier();
+            case TITLE:
+                return item.getTitle();
+            case CREATOR:
+                return LibraryQuery.creatorOf(item);
+            case GENRE:
+                return LibraryQuery.genreOf(item);
+            case STATUS:
+                return item.getStatus();
+            default:
+                String borrower = item.getBorrowerName();
+                return borrower == null || borrower.isEmpty() ? null : borrower;
+            }
+        }
+    }
+
+    /**
+     * The encodings of a column chunk.
+     */
+    public enum Encoding {
+        /**
+         * Every value in row order.
+         */
+        PLAIN,
+
+        /**
+         * The distinct values, followed by runs of equal dictionary codes in row order.
+         */
+        DICTIONARY
+    }
+
+    /**
+     * The `ChunkStatistics` class describes one column chunk as recorded in the footer.
+     */
+
+    public static final class ChunkStatistics {
+        private final long offset;
+        private final int length;
+        private final Encoding encoding;
+        private final int nullCount;
+        private final String min;
+        private final String max;
+
+        /**
+         * Creates the statistics of a chunk.
+         */
+
+        ChunkStatistics(long offset, int length, Encoding encoding, int nullCount, String min, String max) {
+            this.offset = offset;
+            this.length = length;
+            this.encoding = encoding;
+            this.nullCount = nullCount;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * Retrieves the encoding of the chunk.
+         *
+         * @return The encoding.
+         */
+
+        public Encoding getEncoding() {
+            return encoding;
+        }
+
+        /**
+         * Retrieves the number of rows without a value.
+         *
+         * @return The null count.
+         */
+
+        public int getNullCount() {
+            return nullCount;
+        }
+
+        /**
+         * Retrieves the smallest value of the chunk.
+         *
+         * @return The smallest value, or null if every value is null.
+         */
+
+        public String getMin() {
+            return min;
+        }
+
+        /**
+         * Retrieves the largest value of the chunk.
+         *
+         * @return The largest value, or null if every value is null.
+         */
+
+        public String getMax() {
+            return max;
+        }
+
+        /**
+         * Retrieves the size of the encoded chunk.
+         *
+         * @return The length in bytes.
+         */
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Checks whether the chunk may contain a value, judging by its minimum and maximum.
+         */
+
+        boolean mightContain(String value) {
+            if (value == null) {
+                return nullCount > 0;
+            }
+            return min != null && min.compareTo(value) <= 0 && max.compareTo(value) >= 0;
+        }
+    }
+
+    private ColumnarCatalogFile() {
+    }
+
+    /**
+     * Writes items to a file using the default row group size.
+     *
+     * @param items    The items to write.
+     * @param filename The name of the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+
+    public static void write(List<LibraryItem> items, String filename) throws IOException {
+        write(items, filename, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    /**
+     * Writes items to a file, encoding the row groups in parallel.
+     *
+     * @param items        The items to write.
+     * @param filename     The name of the file to write.
+     * @param rowGroupSize The number of rows per row group.
+     * @throws IllegalArgumentException if the row group size is not positive.
+     * @throws IOException if the file cannot be written.
+     */
+
+    public static void write(List<LibraryItem> items, String filename, int rowGroupSize) throws IOException {
+        if (rowGroupSize <= 0) {
+            throw new IllegalArgumentException("Row group size must be positive");
+        }
+        Column[] columns = Column.values();
+        int groupCount = (items.size() + rowGroupSize - 1) / rowGroupSize;
+        List<EncodedChunk[]> groups = IntStream.range(0, groupCount)
+                .parallel()
+                .mapToObj(g -> {
+                    List<LibraryItem> rows = items.subList(g * rowGroupSize,
+                            Math.min(items.size(), (g + 1) * rowGroupSize));
+                    EncodedChunk[] chunks = new EncodedChunk[columns.length];
+                    for (Column column : columns) {
+                        chunks[column.ordinal()] = encode(column, rows);
+                    }
+                    return chunks;
+                })
+                .toList();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(items.size());
+            out.writeInt(groupCount);
+            out.writeInt(columns.length);
+            long offset = HEADER_LENGTH;
+            long[][] offsets = new long[groupCount][columns.length];
+            for (int g = 0; g < groupCount; g++) {
+                for (int c = 0; c < columns.length; c++) {
+                    offsets[g][c] = offset;
+                    out.write(groups.get(g)[c].data);
+                    offset += groups.get(g)[c].data.length;
+                }
+            }
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            for (int g = 0; g < groupCount; g++) {
+                writeVarInt(footer, Math.min(rowGroupSize, items.size() - g * rowGroupSize));
+                for (int c = 0; c < columns.length; c++) {
+                    EncodedChunk chunk = groups.get(g)[c];
+                    ByteBuffer position = ByteBuffer.allocate(Long.BYTES).putLong(offsets[g][c]);
+                    footer.writeBytes(position.array());
+                    writeVarInt(footer, chunk.data.length);
+                    footer.write(chunk.encoding.ordinal());
+                    writeVarInt(footer, chunk.nullCount);
+                    writeString(footer, chunk.min);
+                    writeString(footer, chunk.max);
+                }
+            }
+            footer.writeTo(out);
+            out.writeLong(offset);
+        }
+    }
+
+    /**
+     * Opens a file for reading. Only the header and footer are read.
+     *
+     * @param filename The name of the file to read.
+     * @return A reader, which must be closed.
+     * @throws IOException if the file cannot be read or is not a columnar catalog file.
+     */
+
+    public static Reader open(String filename) throws IOException {
+        FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ);
+        try {
+            return new Reader(channel, filename);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The `Reader` class reads single columns of a columnar catalog file. Every read only touches
+     * the chunks it needs; `getChunksRead` reports how many that was.
+     */
+
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final int rowCount;
+        private final int[] groupRows;
+        private final ChunkStatistics[][] statistics;
+        private long chunksRead;
+
+        /**
+         * Reads the header and footer of a file.
+         */
+
+        private Reader(FileChannel channel, String filename) throws IOException {
+            this.channel = channel;
+            ByteBuffer header = readFully(channel, 0, HEADER_LENGTH);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a columnar catalog file: " + filename);
+            }
+            rowCount = header.getInt();
+            int groupCount = header.getInt();
+            int columnCount = header.getInt();
+            long footerOffset = readFully(channel, channel.size() - Long.BYTES, Long.BYTES).getLong();
+            long footerLength = channel.size() - Long.BYTES - footerOffset;
+            // Every chunk takes at least a long offset and four more bytes in the footer.
+            if (rowCount < 0 || columnCount != Column.values().length || groupCount < 0
+                    || footerOffset < HEADER_LENGTH || footerLength < 0
+                    || (long) groupCount * columnCount * (Long.BYTES + 4) > footerLength
+                    || footerLength > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt columnar catalog file: " + filename);
+            }
+            ByteBuffer footer = readFully(channel, footerOffset, (int) footerLength);
+            groupRows = new int[groupCount];
+            statistics = new ChunkStatistics[groupCount][columnCount];
+            long rows = 0;
+            for (int g = 0; g < groupCount; g++) {
+                groupRows[g] = readVarInt(footer);
+                if (groupRows[g] < 0) {
+                    throw new IOException("Corrupt columnar catalog file: " + filename);
+                }
+                rows += groupRows[g];
+                for (int c = 0; c < columnCount; c++) {
+                    if (footer.remaining() < Long.BYTES) {
+                        throw new IOException("Corrupt columnar catalog file: " + filename);
+                    }
+                    long offset = footer.getLong();
+                    int length = readVarInt(footer);
+                    int encoding = footer.hasRemaining() ? footer.get() : -1;
+                    int nullCount = readVarInt(footer);
+                    if (offset < HEADER_LENGTH || length < 0 || offset > footerOffset - length
+                            || encoding < 0 || encoding >= Encoding.values().length
+                            || nullCount < 0 || nullCount > groupRows[g]) {
+                        throw new IOException("Corrupt columnar catalog file: " + filename);
+                    }
+                    statistics[g][c] = new ChunkStatistics(offset, length, Encoding.values()[encoding], nullCount,
+                            readString(footer), readString(footer));
+                }
+            }
+            if (rows != rowCount) {
+                throw new IOException("Corrupt columnar catalog file: " + filename);
+            }
+        }
+
+        /**
+         * Retrieves the number of rows.
+         *
+         * @return The row count.
+         */
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Retrieves the number of row groups.
+         *
+         * @return The row group count.
+         */
+
+        public int getRowGroupCount() {
+            return groupRows.length;
+        }
+
+        /**
+         * Retrieves the footer statistics of a chunk.
+         *
+         * @param rowGroup The index of the row group.
+         * @param column   The column.
+         * @return The statistics of the chunk.
+         */
+
+        public ChunkStatistics getStatistics(int rowGroup, Column column) {
+            return statistics[rowGroup][column.ordinal()];
+        }
+
+        /**
+         * Retrieves the number of chunks read from the file so far.
+         *
+         * @return The number of chunks read.
+         */
+
+        public long getChunksRead() {
+            return chunksRead;
+        }
+
+        /**
+         * Reads every value of one column.
+         *
+         * @param column The column.
+         * @return The values in row order, with null for missing values.
+         * @throws IOException if the file cannot be read or is corrupt.
+         */
+
+        public List<String> readColumn(Column column) throws IOException {
+            List<String> values = new ArrayList<>(rowCount);
+            for (int g = 0; g < groupRows.length; g++) {
+                values.addAll(decode(g, column));
+            }
+            return values;
+        }
+
+        /**
+         * Reads the values of one column in the rows where another column has a given value.
+         * Row groups whose statistics rule out the value are skipped without reading them.
+         *
+         * @param column The column to read.
+         * @param filter The column to filter on.
+         * @param value  The value the filter column must have, or null for rows without one.
+         * @return The values of the matching rows in row order.
+         * @throws IOException if the file cannot be read or is corrupt.
+         */
+
+        public List<String> readColumn(Column column, Column filter, String value) throws IOException {
+            List<String> values = new ArrayList<>();
+            for (int g = 0; g < groupRows.length; g++) {
+                if (!statistics[g][filter.ordinal()].mightContain(value)) {
+                    continue;
+                }
+                List<String> keys = decode(g, filter);
+                List<String> selected = column == filter ? keys : null;
+                for (int row = 0; row < keys.size(); row++) {
+                    if (Objects.equals(keys.get(row), value)) {
+                        if (selected == null) {
+                            selected = decode(g, column);
+                        }
+                        values.add(selected.get(row));
+                    }
+                }
+            }
+            return values;
+        }
+
+        /**
+         * Counts the rows per value of a column. Dictionary chunks are counted from their runs
+         * without expanding them into rows.
+         *
+         * @param column The column.
+         * @return The number of rows per value, sorted by value; rows without a value are
+         *         counted under null, which sorts first.
+         * @throws IOException if the file cannot be read or is corrupt.
+         */
+
+        public Map<String, Long> countBy(Column column) throws IOException {
+            Map<String, Long> counts = new TreeMap<>(Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+            for (int g = 0; g < groupRows.length; g++) {
+                ChunkStatistics chunk = statistics[g][column.ordinal()];
+                ByteBuffer data = readChunk(chunk);
+                if (chunk.encoding == Encoding.DICTIONARY) {
+                    String[] dictionary = readDictionary(data);
+                    long rows = 0;
+                    while (data.hasRemaining()) {
+                        int length = readVarInt(data);
+                        int code = readVarInt(data);
+                        rows += length;
+                        if (length < 0 || rows > groupRows[g] || code < 0 || code > dictionary.length) {
+                            throw new IOException("Corrupt column chunk at offset " + chunk.offset);
+                        }
+                        counts.merge(code == 0 ? null : dictionary[code - 1], (long) length, Long::sum);
+                    }
+                } else {
+                    for (int row = 0; row < groupRows[g]; row++) {
+                        counts.merge(readString(data), 1L, Long::sum);
+                    }
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * Closes the file.
+         *
+         * @throws IOException if the file cannot be closed.
+         */
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        /**
+         * Reads and decodes one chunk.
+         */
+
+        private List<String> decode(int rowGroup, Column column) throws IOException {
+            ChunkStatistics chunk = statistics[rowGroup][column.ordinal()];
+            ByteBuffer data = readChunk(chunk);
+            int rows = groupRows[rowGroup];
+            List<String> values = new ArrayList<>(rows);
+            if (chunk.encoding == Encoding.DICTIONARY) {
+                String[] dictionary = readDictionary(data);
+                while (data.hasRemaining()) {
+                    int length = readVarInt(data);
+                    int code = readVarInt(data);
+                    if (length < 0 || length > rows - values.size() || code < 0 || code > dictionary.length) {
+                        throw new IOException("Corrupt column chunk at offset " + chunk.offset);
+                    }
+                    String value = code == 0 ? null : dictionary[code - 1];
+                    for (int i = 0; i < length; i++) {
+                        values.add(value);
+                    }
+                }
+            } else {
+                for (int row = 0; row < rows; row++) {
+                    values.add(readString(data));
+                }
+            }
+            if (values.size() != rows) {
+                throw new IOException("Corrupt column chunk at offset " + chunk.offset);
+            }
+            return values;
+        }
+
+        /**
+         * Reads the bytes of one chunk.
+         */
+
+        private ByteBuffer readChunk(ChunkStatistics chunk) throws IOException {
+            chunksRead++;
+            return readFully(channel, chunk.offset, chunk.length);
+        }
+
+        /**
+         * Reads the dictionary at the start of a dictionary chunk.
+         */
+
+        private static String[] readDictionary(ByteBuffer data) throws IOException {
+            int size = readVarInt(data);
+            if (size < 0 || size > data.remaining()) {
+                throw new IOException("Corrupt columnar catalog file");
+            }
+            String[] dictionary = new String[size];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(data);
+            }
+            return dictionary;
+        }
+    }
+
+    /**
+     * An encoded column chunk and its statistics.
+     */
+
+    private static final class EncodedChunk {
+        private byte[] data;
+        private Encoding encoding;
+        private int nullCount;
+        private String min;
+        private String max;
+    }
+
+    /**
+     * Encodes the values of one column of a row group in whichever encoding is smaller.
+     */
+
+    private static EncodedChunk encode(Column column, List<LibraryItem> rows) {
+        EncodedChunk chunk = new EncodedChunk();
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        ByteArrayOutputStream runs = new ByteArrayOutputStream();
+        int runCode = -1;
+        int runLength = 0;
+        for (LibraryItem item : rows) {
+            String value = column.valueOf(item);
+            writeString(plain, value);
+            int code;
+            if (value == null) {
+                chunk.nullCount++;
+                code = 0;
+            } else {
+                code = codes.computeIfAbsent(value, v -> codes.size() + 1);
+                if (chunk.min == null || value.compareTo(chunk.min) < 0) {
+                    chunk.min = value;
+                }
+                if (chunk.max == null || value.compareTo(chunk.max) > 0) {
+                    chunk.max = value;
+                }
+            }
+            if (code != runCode && runLength > 0) {
+                writeVarInt(runs, runLength);
+                writeVarInt(runs, runCode);
+                runLength = 0;
+            }
+            runCode = code;
+            runLength++;
+        }
+        if (runLength > 0) {
+            writeVarInt(runs, runLength);
+            writeVarInt(runs, runCode);
+        }
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+        writeVarInt(dictionary, codes.size());
+        for (String value : codes.keySet()) {
+            writeString(dictionary, value);
+        }
+        if (dictionary.size() + runs.size() < plain.size()) {
+            dictionary.writeBytes(runs.toByteArray());
+            chunk.data = dictionary.toByteArray();
+            chunk.encoding = Encoding.DICTIONARY;
+        } else {
+            chunk.data = plain.toByteArray();
+            chunk.encoding = Encoding.PLAIN;
+        }
+        return chunk;
+    }
+
+    /**
+     * Writes a non-negative integer in seven-bit groups, least significant first.
+     */
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads an integer written by `writeVarInt`.
+     *
+     * @throws IOException if the buffer ends inside the integer or it has more than five bytes.
+     */
+
+    private static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new IOException("Truncated variable-length integer");
+            }
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Writes a string as its UTF-8 length plus one followed by its bytes, or a single zero for null.
+     */
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads a string written by `writeString`.
+     *
+     * @throws IOException if the length is invalid or the buffer ends inside the string.
+     */
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int prefix = readVarInt(in);
+        if (prefix == 0) {
+            return null;
+        }
+        int length = prefix - 1;
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Corrupt string of length " + length);
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Reads exactly the given number of bytes at a position of the channel.
+     */
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        if (position < 0 || length < 0 || position + length > channel.size()) {
+            throw new IOException("Corrupt columnar catalog file");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of columnar catalog file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,186 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The ColumnarCatalogFileTest class contains unit tests for the ColumnarCatalogFile class.
+ * It tests that exported columns read back unchanged, that each chunk picks a suitable
+ * encoding and that filtered reads skip row groups using the chunk statistics.
+ */
+
+public class ColumnarCatalogFileTest {
+    private static final String FILENAME = "test_columnar_library.libtest";
+    private Library library;
+
+    /**
+     * Sets up a library with books, CDs and DVDs in title order before each test.
+     */
+
+    @Before
+    public void setUp() {
+        library = new Library();
+        for (int i = 0; i < 10000; i++) {
+            String number = String.format("%05d", i);
+            if (i % 3 == 0) {
+                library.addItem(new Book("Title " + number, "Author " + (i % 50), "BOOK-" + i));
+            } else if (i % 3 == 1) {
+                library.addItem(new CD("Title " + number, "Artist " + (i % 50), i < 5000 ? "Rock" : "Jazz"));
+            } else {
+                library.addItem(new DVD("Title " + number, "Drama", "Director " + (i % 50)));
+            }
+        }
+        library.borrowItem("BOOK-3", "Jane Doe", "jane@example.com");
+    }
+
+    /**
+     * Removes the test file after each test.
+     */
+
+    @After
+    public void tearDown() {
+        new File(FILENAME).delete();
+    }
+
+    /**
+     * Tests that every column reads back the values of the items in order.
+     */
+
+    @Test
+    public void testColumnsRoundTrip() throws IOException {
+        ColumnarCatalogFile.write(library.getAllItems(), FILENAME, 1000);
+        List<LibraryItem> items = library.getAllItems();
+        try (ColumnarCatalogFile.Reader reader = ColumnarCatalogFile.open(FILENAME)) {
+            Assert.assertEquals(10000, reader.getRowCount());
+            Assert.assertEquals(10, reader.getRowGroupCount());
+            for (ColumnarCatalogFile.Column column : ColumnarCatalogFile.Column.values()) {
+                List<String> values = reader.readColumn(column);
+                for (int i = 0; i < items.size(); i++) {
+                    Assert.assertEquals(column.valueOf(items.get(i)), values.get(i));
+                }
+            }
+            Assert.assertEquals("Jane Doe", reader.readColumn(ColumnarCatalogFile.Column.BORROWER).get(3));
+            Assert.assertNull(reader.readColumn(ColumnarCatalogFile.Column.GENRE).get(0));
+        }
+    }
+
+    /**
+     * Tests that columns with few values are dictionary encoded and unique columns are plain.
+     */
+
+    @Test
+    public void testEncodingsAndStatistics() throws IOException {
+        library.exportColumnar(FILENAME);
+        try (ColumnarCatalogFile.Reader reader = ColumnarCatalogFile.open(FILENAME)) {
+            ColumnarCatalogFile.ChunkStatistics status = reader.getStatistics(0, ColumnarCatalogFile.Column.STATUS);
+            Assert.assertEquals(ColumnarCatalogFile.Encoding.DICTIONARY, status.getEncoding());
+            Assert.assertEquals("available", status.getMin());
+            Assert.assertEquals("borrowed", status.getMax());
+            Assert.assertTrue(status.getLength() < 100);
+            Assert.assertEquals(ColumnarCatalogFile.Encoding.PLAIN,
+                    reader.getStatistics(0, ColumnarCatalogFile.Column.TITLE).getEncoding());
+
+            ColumnarCatalogFile.ChunkStatistics genre = reader.getStatistics(0, ColumnarCatalogFile.Column.GENRE);
+            Assert.assertEquals(3334, genre.getNullCount());
+            Assert.assertEquals("Drama", genre.getMin());
+            Assert.assertEquals("Rock", genre.getMax());
+        }
+    }
+
+    /**
+     * Tests that counting by a column reads only that column.
+     */
+
+    @Test
+    public void testCountBy() throws IOException {
+        ColumnarCatalogFile.write(library.getAllItems(), FILENAME, 1000);
+        try (ColumnarCatalogFile.Reader reader = ColumnarCatalogFile.open(FILENAME)) {
+            Map<String, Long> statuses = reader.countBy(ColumnarCatalogFile.Column.STATUS);
+            Assert.assertEquals(Long.valueOf(9999), statuses.get("available"));
+            Assert.assertEquals(Long.valueOf(1), statuses.get("borrowed"));
+            Map<String, Long> genres = reader.countBy(ColumnarCatalogFile.Column.GENRE);
+            Assert.assertEquals(Long.valueOf(3334), genres.get(null));
+            Assert.assertEquals(Long.valueOf(1667), genres.get("Rock"));
+            Assert.assertEquals(Long.valueOf(3333), genres.get("Drama"));
+            Assert.assertEquals(20, reader.getChunksRead());
+        }
+    }
+
+    /**
+     * Tests that a filtered read skips the row groups whose statistics rule out the value.
+     */
+
+    @Test
+    public void testRowGroupSkipping() throws IOException {
+        ColumnarCatalogFile.write(library.getAllItems(), FILENAME, 1000);
+        try (ColumnarCatalogFile.Reader reader = ColumnarCatalogFile.open(FILENAME)) {
+            List<String> creators = reader.readColumn(ColumnarCatalogFile.Column.CREATOR,
+                    ColumnarCatalogFile.Column.TITLE, "Title 04321");
+            Assert.assertEquals(List.of("Artist 21"), creators);
+            Assert.assertEquals(2, reader.getChunksRead());
+
+            List<String> titles = reader.readColumn(ColumnarCatalogFile.Column.TITLE,
+                    ColumnarCatalogFile.Column.GENRE, "Jazz");
+            Assert.assertEquals(1666, titles.size());
+            Assert.assertEquals("Title 05002", titles.get(0));
+            Assert.assertEquals(17, reader.getChunksRead());
+        }
+    }
+
+    /**
+     * Tests that files of other formats are rejected.
+     */
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFormats() throws IOException {
+        library.saveToFile(FILENAME);
+        ColumnarCatalogFile.open(FILENAME).close();
+    }
+
+    /**
+     * Tests that a footer offset inside the header is rejected.
+     */
+
+    @Test(expected = IOException.class)
+    public void testFooterOffsetInsideHeader() throws IOException {
+        ColumnarCatalogFile.write(library.getAllItems(), FILENAME, 1000);
+        byte[] bytes = Files.readAllBytes(Path.of(FILENAME));
+        ByteBuffer.wrap(bytes).putLong(bytes.length - Long.BYTES, 4);
+        Files.write(Path.of(FILENAME), bytes);
+        ColumnarCatalogFile.open(FILENAME).close();
+    }
+
+    /**
+     * Tests that corrupting any byte of a file makes reads fail with an IOException, if they
+     * fail at all, rather than with a runtime exception from decoding garbage.
+     */
+
+    @Test
+    public void testCorruptBytes() throws IOException {
+        ColumnarCatalogFile.write(library.getAllItems().subList(0, 300), FILENAME, 100);
+        byte[] original = Files.readAllBytes(Path.of(FILENAME));
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            byte[] bytes = original.clone();
+            int position = i < 100 ? bytes.length - 1 - i : random.nextInt(bytes.length);
+            bytes[position] = (byte) random.nextInt(256);
+            Files.write(Path.of(FILENAME), bytes);
+            try (ColumnarCatalogFile.Reader reader = ColumnarCatalogFile.open(FILENAME)) {
+                for (ColumnarCatalogFile.Column column : ColumnarCatalogFile.Column.values()) {
+                    reader.readColumn(column);
+                    reader.countBy(column);
+                }
+            } catch (IOException e) {
+                // expected for most positions
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The `CompressedCatalogFile` class reads and writes library items in a block-compressed format.
+ * Items are split into blocks of a fixed number of items; each block is Java-serialized and
+ * compressed with `Deflater` independently, so blocks can be compressed and decoded in parallel.
+ * The file is laid out as:
+ *
+ * <pre>
+ * int  magic "LBLK"   int  format version   int  item count   int  block count
+ * block data ...
+ * block index: for every block a long offset, an int compressed length and an int item count
+ * long offset of the block index
+ * </pre>
+ */
+
+public final class CompressedCatalogFile {
+    static final int MAGIC = 0x4C424C4B;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 16;
+    private static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private CompressedCatalogFile() {
+    }
+
+    /**
+     * Checks whether a file starts with the magic number of this format.
+     *
+     * @param filename The name of the file to check.
+     * @return true if the file is a block-compressed catalog.
+     * @throws IOException if the file cannot be read.
+     */
+
+    public static boolean isCompressed(String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            return in.available() >= 4 && in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Writes items to a file using the default block size.
+     *
+     * @param items    The items to write.
+     * @param filename The name of the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+
+    public static void write(List<LibraryItem> items, String filename) throws IOException {
+        write(items, filename, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Writes items to a file, compressing the blocks in parallel.
+     *
+     * @param items     The items to write.
+     * @param filename  The name of the file to write.
+     * @param blockSize The number of items per block.
+     * @throws IllegalArgumentException if the block size is not positive.
+     * @throws IOException if the file cannot be written.
+     */
+
+    public static void write(List<LibraryItem> items, String filename, int blockSize) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        int blockCount = (items.size() + blockSize - 1) / blockSize;
+        List<byte[]> blocks;
+        try {
+            blocks = IntStream.range(0, blockCount)
+                    .parallel()
+                    .mapToObj(b -> compress(items.subList(b * blockSize, Math.min(items.size(), (b + 1) * blockSize))))
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(items.size());
+            out.writeInt(blockCount);
+            long offset = HEADER_LENGTH;
+            long[] offsets = new long[blockCount];
+            for (int b = 0; b < blockCount; b++) {
+                offsets[b] = offset;
+                out.write(blocks.get(b));
+                offset += blocks.get(b).length;
+            }
+            for (int b = 0; b < blockCount; b++) {
+                out.writeLong(offsets[b]);
+                out.writeInt(blocks.get(b).length);
+                out.writeInt(Math.min(blockSize, items.size() - b * blockSize));
+            }
+            out.writeLong(offset);
+        }
+    }
+
+    /**
+     * Reads all items of a file, decompressing and decoding the blocks in parallel.
+     *
+     * @param filename The name of the file to read.
+     * @return The items in the order they were written.
+     * @throws IOException if the file cannot be read or is corrupt.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    public static List<LibraryItem> read(String filename) throws IOException, ClassNotFoundException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            BlockIndex index = BlockIndex.read(channel, filename);
+            List<List<LibraryItem>> decoded;
+            try {
+                decoded = IntStream.range(0, index.counts.length)
+                        .parallel()
+                        .mapToObj(b -> decompress(channel, index.offsets[b], index.lengths[b], index.counts[b]))
+                        .toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (IllegalStateException e) {
+                if (e.getCause() instanceof ClassNotFoundException) {
+                    throw (ClassNotFoundException) e.getCause();
+                }
+                throw e;
+            }
+
+            List<LibraryItem> items = new ArrayList<>(index.itemCount);
+            for (List<LibraryItem> block : decoded) {
+                items.addAll(block);
+            }
+            if (items.size() != index.itemCount) {
+                throw new IOException("Corrupt compressed catalog file: " + filename);
+            }
+            return items;
+        }
+    }
+
+    /**
+     * Reads the items of a file one block at a time and in order, so only one block is in memory
+     * at once however large the file is.
+     *
+     * @param filename The name of the file to read.
+     * @param consumer The consumer of the blocks.
+     * @throws IOException if the file cannot be read or is corrupt, or the consumer fails.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    static void forEachBlock(String filename, BlockConsumer consumer) throws IOException, ClassNotFoundException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            BlockIndex index = BlockIndex.read(channel, filename);
+            for (int b = 0; b < index.counts.length; b++) {
+                List<LibraryItem> block;
+                try {
+                    block = decompress(channel, index.offsets[b], index.lengths[b], index.counts[b]);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } catch (IllegalStateException e) {
+                    if (e.getCause() instanceof ClassNotFoundException) {
+                        throw (ClassNotFoundException) e.getCause();
+                    }
+                    throw e;
+                }
+                consumer.accept(block);
+            }
+        }
+    }
+
+    /**
+     * Receives the blocks of a file in order.
+     */
+    interface BlockConsumer {
+
+        /**
+         * Processes one block.
+         *
+         * @param block The items of the block.
+         * @throws IOException if processing fails.
+         */
+        void accept(List<LibraryItem> block) throws IOException;
+    }
+
+    /**
+     * The header and block index of a file.
+     */
+
+    private static final class BlockIndex {
+        private int itemCount;
+        private long[] offsets;
+        private int[] lengths;
+        private int[] counts;
+
+        /**
+         * Reads the header and block index of an open file.
+         */
+
+        static BlockIndex read(FileChannel channel, String filename) throws IOException {
+            ByteBuffer header = readFully(channel, 0, HEADER_LENGTH);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a compressed catalog file: " + filename);
+            }
+            BlockIndex index = new BlockIndex();
+            index.itemCount = header.getInt();
+            int blockCount = header.getInt();
+            long indexLength = blockCount * 16L;
+            if (index.itemCount < 0 || blockCount < 0
+                    || indexLength > channel.size() - HEADER_LENGTH - Long.BYTES) {
+                throw new IOException("Corrupt compressed catalog file: " + filename);
+            }
+            long indexOffset = readFully(channel, channel.size() - Long.BYTES, Long.BYTES).getLong();
+            ByteBuffer entries = readFully(channel, indexOffset, (int) indexLength);
+            index.offsets = new long[blockCount];
+            index.lengths = new int[blockCount];
+            index.counts = new int[blockCount];
+            for (int b = 0; b < blockCount; b++) {
+                index.offsets[b] = entries.getLong();
+                index.lengths[b] = entries.getInt();
+                index.counts[b] = entries.getInt();
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Serializes and compresses one block of items.
+     */
+
+    private static byte[] compress(List<LibraryItem> block) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (ObjectOutputStream out = new ObjectOutputStream(new DeflaterOutputStream(bytes, deflater, 64 * 1024))) {
+            out.writeObject(new ArrayList<>(block));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads, decompresses and deserializes one block using a positional read, so blocks
+     * can be decoded concurrently from the same channel.
+     */
+
+    private static List<LibraryItem> decompress(FileChannel channel, long offset, int length, int count) {
+        Inflater inflater = new Inflater();
+        try {
+            byte[] compressed = readFully(channel, offset, length).array();
+            try (ObjectInputStream in = new ObjectInputStream(new InflaterInputStream(
+                    new ByteArrayInputStream(compressed), inflater, 64 * 1024))) {
+                Object content = in.readObject();
+                if (!(content instanceof List) || ((List<?>) content).size() != count) {
+                    throw new IOException("Corrupt block at offset " + offset);
+                }
+                List<LibraryItem> block = new ArrayList<>(count);
+                for (Object item : (List<?>) content) {
+                    if (!(item instanceof LibraryItem)) {
+                        throw new IOException("Corrupt block at offset " + offset);
+                    }
+                    block.add((LibraryItem) item);
+                }
+                return block;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Reads exactly the given number of bytes at a position of the channel.
+     */
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        if (position < 0 || length < 0 || position + length > channel.size()) {
+            throw new IOException("Corrupt compressed catalog file");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of compressed catalog file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,156 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * The CompressedCatalogFileTest class contains unit tests for the CompressedCatalogFile class.
+ * It tests that block-compressed save files round-trip through a library, that they are
+ * smaller than plain save files and that loading detects the format automatically.
+ */
+
+public class CompressedCatalogFileTest {
+    private static final String COMPRESSED_FILENAME = "test_compressed_library.libtest";
+    private static final String PLAIN_FILENAME = "test_plain_library.libtest";
+    private Library library;
+
+    /**
+     * Sets up a library with enough items to span several blocks before each test.
+     */
+
+    @Before
+    public void setUp() {
+        library = new Library();
+        for (int i = 0; i < 10000; i++) {
+            if (i % 3 == 0) {
+                library.addItem(new Book("Title " + i, "Author " + (i % 50), "BOOK-" + i));
+            } else if (i % 3 == 1) {
+                library.addItem(new CD("Album " + i, "Artist " + (i % 50), "Rock"));
+            } else {
+                library.addItem(new DVD("Movie " + i, "Drama", "Director " + (i % 50)));
+            }
+        }
+        library.borrowItem("BOOK-3", "Jane Doe", "jane@example.com");
+    }
+
+    /**
+     * Removes the test files after each test.
+     */
+
+    @After
+    public void tearDown() {
+        for (String filename : new String[] {COMPRESSED_FILENAME, PLAIN_FILENAME}) {
+            new File(filename).delete();
+            new File(IndexSegments.segmentFilename(filename)).delete();
+        }
+    }
+
+    /**
+     * Tests that every item and its status survive a compressed save and load in order.
+     */
+
+    @Test
+    public void testRoundTripPreservesItemsAndOrder() throws IOException, ClassNotFoundException {
+        library.saveCompressedToFile(COMPRESSED_FILENAME, false);
+        Assert.assertTrue(CompressedCatalogFile.isCompressed(COMPRESSED_FILENAME));
+
+        Library loaded = new Library();
+        loaded.loadFromFile(COMPRESSED_FILENAME);
+        List<LibraryItem> expected = library.getAllItems();
+        List<LibraryItem> actual = loaded.getAllItems();
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getUniqueIdentifier(), actual.get(i).getUniqueIdentifier());
+        }
+        LibraryItem borrowed = loaded.getItemByIdentifier("BOOK-3");
+        Assert.assertEquals("borrowed", borrowed.getStatus());
+        Assert.assertEquals("Jane Doe", borrowed.getBorrowerName());
+    }
+
+    /**
+     * Tests that a compressed save file is smaller than a plain one of the same items.
+     */
+
+    @Test
+    public void testCompressedFileIsSmaller() throws IOException {
+        library.saveToFile(PLAIN_FILENAME);
+        library.saveCompressedToFile(COMPRESSED_FILENAME, false);
+        Assert.assertTrue(new File(COMPRESSED_FILENAME).length() < new File(PLAIN_FILENAME).length());
+        Assert.assertFalse(CompressedCatalogFile.isCompressed(PLAIN_FILENAME));
+    }
+
+    /**
+     * Tests that an index segment written with a compressed file is mapped on load.
+     */
+
+    @Test
+    public void testCompressedFileWithIndexSegment() throws IOException, ClassNotFoundException {
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        library.saveCompressedToFile(COMPRESSED_FILENAME, true);
+
+        Library loaded = new Library();
+        loaded.loadFromFile(COMPRESSED_FILENAME);
+        Assert.assertTrue(loaded.usesIndexSegments());
+        Assert.assertEquals("The Catcher in the Rye", loaded.getItemByIdentifier("9780316769174").getTitle());
+    }
+
+    /**
+     * Tests that small block sizes and empty catalogs are written and read correctly.
+     */
+
+    @Test
+    public void testBlockSizes() throws IOException, ClassNotFoundException {
+        List<LibraryItem> items = library.getAllItems().subList(0, 10);
+        CompressedCatalogFile.write(items, COMPRESSED_FILENAME, 3);
+        Assert.assertEquals(10, CompressedCatalogFile.read(COMPRESSED_FILENAME).size());
+
+        CompressedCatalogFile.write(List.of(), COMPRESSED_FILENAME);
+        Assert.assertTrue(CompressedCatalogFile.read(COMPRESSED_FILENAME).isEmpty());
+    }
+
+    /**
+     * Tests that a block size that is not positive is rejected.
+     */
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBlockSize() throws IOException {
+        CompressedCatalogFile.write(library.getAllItems(), COMPRESSED_FILENAME, 0);
+    }
+
+    /**
+     * Tests that a block count that does not fit the file is reported as a corrupt file rather
+     * than overflowing the size of the block index.
+     */
+
+    @Test
+    public void testCorruptBlockCount() throws IOException, ClassNotFoundException {
+        for (int blockCount : new int[] {-1, 0x10000001, Integer.MAX_VALUE}) {
+            CompressedCatalogFile.write(library.getAllItems(), COMPRESSED_FILENAME);
+            try (RandomAccessFile file = new RandomAccessFile(COMPRESSED_FILENAME, "rw")) {
+                file.seek(12);
+                file.writeInt(blockCount);
+            }
+            try {
+                CompressedCatalogFile.read(COMPRESSED_FILENAME);
+                Assert.fail("Block count " + blockCount + " should be rejected");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Tests that a block holding objects other than library items is reported as a corrupt file.
+     */
+
+    @Test(expected = IOException.class)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void testBlockOfForeignObjects() throws IOException, ClassNotFoundException {
+        CompressedCatalogFile.write((List) List.of("not an item", "nor this"), COMPRESSED_FILENAME);
+        CompressedCatalogFile.read(COMPRESSED_FILENAME);
+    }
+}
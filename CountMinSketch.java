@@ -0,0 +1,84 @@
+/**
+ * The `CountMinSketch` class estimates how often each key occurred in a stream, in a fixed amount
+ * of memory however many distinct keys there are. Every key adds its count to one counter in each
+ * of several rows, and its estimate is the smallest of those counters. Estimates are never too
+ * low, and are too high by at most `2 / width` of the total count with a probability of at least
+ * `1 - 2^-depth`.
+ */
+
+public final class CountMinSketch {
+    private final long[][] rows;
+    private final long[] seeds;
+    private long total;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param width The number of counters per row.
+     * @param depth The number of rows.
+     * @throws IllegalArgumentException if the width or depth is not positive.
+     */
+
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Width and depth must be positive");
+        }
+        rows = new long[depth][width];
+        seeds = new long[depth];
+        long seed = 0x9e3779b97f4a7c15L;
+        for (int i = 0; i < depth; i++) {
+            seed = seed * 0x5851f42d4c957f2dL + 0x14057b7ef767814fL;
+            seeds[i] = seed | 1;
+        }
+    }
+
+    /**
+     * Adds occurrences of a key.
+     *
+     * @param key   The key.
+     * @param count The number of occurrences.
+     */
+
+    public void add(String key, long count) {
+        int hash = key.hashCode();
+        for (int i = 0; i < rows.length; i++) {
+            rows[i][column(hash, i)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Estimates the number of occurrences of a key.
+     *
+     * @param key The key.
+     * @return The estimate, which is never lower than the true count.
+     */
+
+    public long estimate(String key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < rows.length; i++) {
+            estimate = Math.min(estimate, rows[i][column(hash, i)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Retrieves the sum of all counts added.
+     *
+     * @return The total count.
+     */
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Selects the counter of a hash in a row.
+     */
+
+    private int column(int hash, int row) {
+        long h = (hash + 0x632be59bd9b4e019L) * seeds[row];
+        return (int) Long.remainderUnsigned(h ^ (h >>> 31), rows[row].length);
+    }
+}
@@ -5,9 +5,13 @@ import java.util.List;
  * The `DVD` class represents a DVD in the library and extends the `LibraryItem` class.
  * It includes properties specific to this class such as genre and director.
  */
-public class DVD extends LibraryItem {
+public final class DVD extends LibraryItem {
+    private static final long serialVersionUID = 2827076359011554924L;
+
     private String genre;
     private String director;
+    private transient String lowerCaseGenre; // computed by the first search
+    private transient String lowerCaseDirector;
 
     /**
      * Initializes a new instance of the `DVD` class with the title, genre, and director.
@@ -51,6 +55,36 @@ public class DVD extends LibraryItem {
         return director;
     }
 
+    /**
+     * Retrieves the genre in lower case for searches, computed once.
+     *
+     * @return The lower case genre.
+     */
+
+    String getLowerCaseGenre() {
+        String lowerCase = lowerCaseGenre;
+        if (lowerCase == null) {
+            lowerCase = genre.toLowerCase();
+            lowerCaseGenre = lowerCase;
+        }
+        return lowerCase;
+    }
+
+    /**
+     * Retrieves the director in lower case for searches, computed once.
+     *
+     * @return The lower case director.
+     */
+
+    String getLowerCaseDirector() {
+        String lowerCase = lowerCaseDirector;
+        if (lowerCase == null) {
+            lowerCase = director.toLowerCase();
+            lowerCaseDirector = lowerCase;
+        }
+        return lowerCase;
+    }
+
     /**
      * Gets a list of attributes of the DVD that should be used in the search function.
      * Includes the title, genre, and director.
@@ -59,7 +93,7 @@ public class DVD extends LibraryItem {
      */
     @Override
     public List<String> getSearchableAttributes() {
-        return Arrays.asList(getTitle().toLowerCase(), getGenre().toLowerCase(), getDirector().toLowerCase());
+        return Arrays.asList(getLowerCaseTitle(), getLowerCaseGenre(), getLowerCaseDirector());
     }
 
     /**
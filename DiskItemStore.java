@@ -0,0 +1,531 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * The `DiskItemStore` class is a log-structured merge tree of `ItemCodec` records keyed by unique
+ * identifier, so a `StoredLibrary` can hold catalogs many times larger than the heap.
+ *
+ * New and updated records go to a write-ahead log and a sorted in-memory table. When the memory
+ * table outgrows its limit it is written to disk as an immutable `SortedTable`, and once there are
+ * more than a few tables they are merged into one, dropping the versions that newer tables replace.
+ * A point lookup checks the memory table and then the tables from newest to oldest; each table's
+ * Bloom filter rules most of them out without touching the disk, and the one block that may hold
+ * the key is read through a bounded `BlockCache`. Heap use is therefore bounded by the memory
+ * table, the cache and roughly one index entry per 4 KB block, whatever the size of the catalog.
+ *
+ * Items are kept in identifier order, which is the storage order of this engine. A second item
+ * with an identifier that is already stored is kept under a suffixed key right after the first,
+ * and lookups and updates see only the first, like `Library.getItemByIdentifier`.
+ */
+
+public class DiskItemStore implements ItemStore {
+    private static final int DEFAULT_MEMTABLE_BYTES = 4 * 1024 * 1024;
+    private static final int DEFAULT_CACHE_BLOCKS = 1024;
+    private static final int MAX_TABLES = 4;
+    private static final int ENTRY_OVERHEAD = 64; // approximate heap cost of a memory table entry
+    private static final String LOG_FILE = "wal.log";
+    private static final String TABLE_PREFIX = "table-";
+    private static final String TABLE_SUFFIX = ".sst";
+
+    private final Path directory;
+    private final int memtableLimit;
+    private final BlockCache cache;
+    private final TreeMap<String, byte[]> memtable = new TreeMap<>();
+    private final List<SortedTable> tables = new ArrayList<>(); // newest first
+    private DataOutputStream log;
+    private long memtableBytes;
+    private long nextTableId;
+    private int size;
+    private long filteredLookups;
+
+    /**
+     * Opens the store in a directory with a 4 MB memory table and a cache of 1024 blocks.
+     *
+     * @param directory The directory holding the files of the store; created if it does not exist.
+     * @throws IOException if the directory or its files cannot be read.
+     */
+
+    public DiskItemStore(Path directory) throws IOException {
+        this(directory, DEFAULT_MEMTABLE_BYTES, DEFAULT_CACHE_BLOCKS);
+    }
+
+    /**
+     * Opens the store in a directory, recovering the tables and the write-ahead log left by a
+     * previous run.
+     *
+     * @param directory     The directory holding the files of the store; created if it does not exist.
+     * @param memtableBytes The approximate size of the memory table before it is written to disk.
+     * @param cacheBlocks   The number of 4 KB blocks the cache may hold.
+     * @throws IllegalArgumentException if the directory is null, the memory table is smaller than
+     *                                  1 KB, or the cache size is negative.
+     * @throws IOException if the directory or its files cannot be read.
+     */
+
+    public DiskItemStore(Path directory, int memtableBytes, int cacheBlocks) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory cannot be null");
+        }
+        if (memtableBytes < 1024) {
+            throw new IllegalArgumentException("Memory table must be at least 1024 bytes");
+        }
+        this.directory = directory;
+        this.memtableLimit = memtableBytes;
+        this.cache = new BlockCache(cacheBlocks);
+        Files.createDirectories(directory);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file); // left by an interrupted flush or compaction
+                } else if (name.startsWith(TABLE_PREFIX) && name.endsWith(TABLE_SUFFIX)) {
+                    long id = Long.parseLong(name.substring(TABLE_PREFIX.length(), name.length() - TABLE_SUFFIX.length()));
+                    tables.add(SortedTable.open(file, id));
+                    nextTableId = Math.max(nextTableId, id + 1);
+                }
+            }
+        }
+        tables.sort((a, b) -> Long.compare(b.getId(), a.getId()));
+        replayLog();
+        log = openLog(StandardOpenOption.APPEND);
+        SortedTable.Cursor cursor = scan();
+        while (cursor.next()) {
+            size++;
+        }
+    }
+
+    /**
+     * Appends an item to the store.
+     *
+     * @param item The item to store.
+     * @throws IllegalArgumentException if the item is null or not a Book, CD or DVD.
+     * @throws IOException if the log or a table cannot be written.
+     */
+
+    @Override
+    public void add(LibraryItem item) throws IOException {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        byte[] record = ItemCodec.encode(item);
+        String identifier = item.getUniqueIdentifier();
+        String key = identifier;
+        for (int copy = 1; lookup(key) != null; copy++) {
+            key = identifier + '\u0000' + copy;
+        }
+        put(key, record);
+        size++;
+    }
+
+    /**
+     * Looks up an item by its unique identifier.
+     *
+     * @param identifier The unique identifier of the item.
+     * @return A copy of the stored item, or null if not found.
+     * @throws IOException if a table cannot be read.
+     */
+
+    @Override
+    public LibraryItem get(String identifier) throws IOException {
+        if (identifier == null) {
+            return null;
+        }
+        ByteBuffer record = lookup(identifier);
+        return record == null ? null : ItemCodec.decode(record, 0);
+    }
+
+    /**
+     * Stores a new version of an item.
+     *
+     * @param item The item whose state should be stored.
+     * @return true if an item with that identifier was stored, false otherwise.
+     * @throws IOException if the log or a table cannot be written.
+     */
+
+    @Override
+    public boolean update(LibraryItem item) throws IOException {
+        String key = item.getUniqueIdentifier();
+        if (lookup(key) == null) {
+            return false;
+        }
+        put(key, ItemCodec.encode(item));
+        return true;
+    }
+
+    /**
+     * Scans all records for the term without decoding the ones that do not match.
+     *
+     * @param lowerCaseTerm The search term, already converted to lower case.
+     * @return Copies of the matching items in identifier order.
+     * @throws IOException if a table cannot be read.
+     */
+
+    @Override
+    public List<LibraryItem> search(String lowerCaseTerm) throws IOException {
+        byte[] termBytes = lowerCaseTerm.getBytes(StandardCharsets.UTF_8);
+        List<LibraryItem> matchingItems = new ArrayList<>();
+        SortedTable.Cursor cursor = scan();
+        while (cursor.next()) {
+            if (ItemCodec.matches(cursor.buffer(), cursor.offset(), lowerCaseTerm, termBytes)) {
+                matchingItems.add(ItemCodec.decode(cursor.buffer(), cursor.offset()));
+            }
+        }
+        return matchingItems;
+    }
+
+    /**
+     * Decodes every stored item.
+     *
+     * @return Copies of all items in identifier order.
+     * @throws IOException if a table cannot be read.
+     */
+
+    @Override
+    public List<LibraryItem> getAll() throws IOException {
+        List<LibraryItem> items = new ArrayList<>(size);
+        SortedTable.Cursor cursor = scan();
+        while (cursor.next()) {
+            items.add(ItemCodec.decode(cursor.buffer(), cursor.offset()));
+        }
+        return items;
+    }
+
+    /**
+     * Deletes all tables and the log and stores the given items instead.
+     *
+     * @param items The items the store should contain from now on.
+     * @throws IllegalArgumentException if an item is null or not a Book, CD or DVD.
+     * @throws IOException if the files cannot be replaced.
+     */
+
+    @Override
+    public void replaceAll(List<LibraryItem> items) throws IOException {
+        for (SortedTable table : tables) {
+            table.delete();
+            cache.invalidate(table.getId());
+        }
+        tables.clear();
+        memtable.clear();
+        memtableBytes = 0;
+        size = 0;
+        log.close();
+        log = openLog(StandardOpenOption.TRUNCATE_EXISTING);
+        for (LibraryItem item : items) {
+            add(item);
+        }
+    }
+
+    /**
+     * Retrieves the number of stored items.
+     *
+     * @return The number of items.
+     */
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of tables on disk.
+     *
+     * @return The number of tables.
+     */
+
+    public int getTableCount() {
+        return tables.size();
+    }
+
+    /**
+     * Retrieves the number of times a Bloom filter spared a table read during a lookup.
+     *
+     * @return The number of filtered table lookups.
+     */
+
+    public long getFilteredLookups() {
+        return filteredLookups;
+    }
+
+    /**
+     * Retrieves the block cache, for its hit and miss counts.
+     *
+     * @return The block cache.
+     */
+
+    public BlockCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Writes the memory table to disk and closes all files.
+     *
+     * @throws IOException if the memory table cannot be written.
+     */
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!memtable.isEmpty()) {
+                flush();
+            }
+        } finally {
+            log.close();
+            for (SortedTable table : tables) {
+                table.close();
+            }
+        }
+    }
+
+    /**
+     * Finds the newest record stored under a key.
+     */
+
+    private ByteBuffer lookup(String key) throws IOException {
+        byte[] record = memtable.get(key);
+        if (record != null) {
+            return ByteBuffer.wrap(record);
+        }
+        for (SortedTable table : tables) {
+            if (!table.mightContain(key)) {
+                filteredLookups++;
+                continue;
+            }
+            ByteBuffer found = table.get(key, cache);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Logs a record and adds it to the memory table, flushing and compacting when needed.
+     */
+
+    private void put(String key, byte[] record) throws IOException {
+        log.writeUTF(key);
+        log.writeInt(record.length);
+        log.write(record);
+        log.flush();
+        byte[] previous = memtable.put(key, record);
+        memtableBytes += previous == null ? record.length + 2L * key.length() + ENTRY_OVERHEAD : record.length - previous.length;
+        if (memtableBytes >= memtableLimit) {
+            flush();
+            if (tables.size() > MAX_TABLES) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Writes the memory table to a new table and empties the log.
+     */
+
+    private void flush() throws IOException {
+        tables.add(0, writeTable(memtableCursor(), memtable.size()));
+        memtable.clear();
+        memtableBytes = 0;
+        log.close();
+        log = openLog(StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Merges all tables into one, keeping only the newest record of each key.
+     */
+
+    private void compact() throws IOException {
+        List<SortedTable.Cursor> sources = new ArrayList<>();
+        int expectedEntries = 0;
+        for (SortedTable table : tables) {
+            sources.add(table.cursor());
+            expectedEntries += table.getEntryCount();
+        }
+        SortedTable merged = writeTable(new MergeCursor(sources), expectedEntries);
+        for (SortedTable table : tables) {
+            table.delete();
+            cache.invalidate(table.getId());
+        }
+        tables.clear();
+        tables.add(merged);
+    }
+
+    /**
+     * Writes a table under a temporary name and renames it once it is complete, so a crash never
+     * leaves a partial table behind.
+     */
+
+    private SortedTable writeTable(SortedTable.Cursor entries, int expectedEntries) throws IOException {
+        long id = nextTableId++;
+        String name = String.format("%s%06d%s", TABLE_PREFIX, id, TABLE_SUFFIX);
+        Path temporary = directory.resolve(name + ".tmp");
+        SortedTable.write(temporary, id, entries, expectedEntries).close();
+        Path file = Files.move(temporary, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        return SortedTable.open(file, id);
+    }
+
+    /**
+     * Opens a cursor over the newest record of every key in the memory table and all tables.
+     */
+
+    private SortedTable.Cursor scan() throws IOException {
+        List<SortedTable.Cursor> sources = new ArrayList<>();
+        sources.add(memtableCursor());
+        for (SortedTable table : tables) {
+            sources.add(table.cursor());
+        }
+        return new MergeCursor(sources);
+    }
+
+    /**
+     * Opens a cursor over the memory table.
+     */
+
+    private SortedTable.Cursor memtableCursor() {
+        Iterator<Map.Entry<String, byte[]>> entries = memtable.entrySet().iterator();
+        return new SortedTable.Cursor() {
+            private String key;
+            private ByteBuffer buffer;
+
+            @Override
+            public boolean next() {
+                if (!entries.hasNext()) {
+                    return false;
+                }
+                Map.Entry<String, byte[]> entry = entries.next();
+                key = entry.getKey();
+                buffer = ByteBuffer.wrap(entry.getValue());
+                return true;
+            }
+
+            @Override
+            public String key() {
+                return key;
+            }
+
+            @Override
+            public ByteBuffer buffer() {
+                return buffer;
+            }
+
+            @Override
+            public int offset() {
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Replays the records of the log left by the previous run into the memory table.
+     * A record cut short by a crash ends the replay.
+     */
+
+    private void replayLog() throws IOException {
+        Path file = directory.resolve(LOG_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (InputStream stream = Files.newInputStream(file);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            while (true) {
+                String key = in.readUTF();
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                byte[] previous = memtable.put(key, record);
+                memtableBytes += previous == null ? record.length + 2L * key.length() + ENTRY_OVERHEAD : record.length - previous.length;
+            }
+        } catch (EOFException e) {
+            // end of the log
+        }
+    }
+
+    /**
+     * Opens the log for writing.
+     */
+
+    private DataOutputStream openLog(StandardOpenOption mode) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)));
+    }
+
+    /**
+     * The `MergeCursor` class merges several sorted sources into one. Sources are given from
+     * newest to oldest; when several hold the same key, only the entry of the newest is returned.
+     */
+
+    private static final class MergeCursor implements SortedTable.Cursor {
+        private final List<SortedTable.Cursor> sources;
+        private final PriorityQueue<Integer> heap;
+        private int current = -1;
+
+        /**
+         * Creates a cursor over the given sources.
+         */
+
+        MergeCursor(List<SortedTable.Cursor> sources) throws IOException {
+            this.sources = sources;
+            this.heap = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+                int comparison = sources.get(a).key().compareTo(sources.get(b).key());
+                return comparison != 0 ? comparison : Integer.compare(a, b);
+            });
+            for (int i = 0; i < sources.size(); i++) {
+                if (sources.get(i).next()) {
+                    heap.add(i);
+                }
+            }
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            if (current >= 0 && sources.get(current).next()) {
+                heap.add(current);
+            }
+            current = -1;
+            if (heap.isEmpty()) {
+                return false;
+            }
+            current = heap.poll();
+            String key = sources.get(current).key();
+            // Skip the older versions of the same key.
+            while (!heap.isEmpty() && sources.get(heap.peek()).key().equals(key)) {
+                int older = heap.poll();
+                if (sources.get(older).next()) {
+                    heap.add(older);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String key() {
+            return sources.get(current).key();
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            return sources.get(current).buffer();
+        }
+
+        @Override
+        public int offset() {
+            return sources.get(current).offset();
+        }
+    }
+}
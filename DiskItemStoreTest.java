@@ -0,0 +1,250 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The DiskItemStoreTest class contains unit tests for the DiskItemStore class. The stores use a
+ * small memory table, so every test writes several tables and exercises compaction.
+ */
+
+public class DiskItemStoreTest {
+    private Path directory;
+    private DiskItemStore store;
+
+    /**
+     * Opens a store with a 4 KB memory table in a new temporary directory before each test.
+     */
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("disk-item-store");
+        store = new DiskItemStore(directory, 4096, 16);
+    }
+
+    /**
+     * Closes the store and deletes its directory after each test.
+     */
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Adds a mix of books, CDs and DVDs to the store.
+     */
+
+    private List<LibraryItem> fill(int count) throws IOException {
+        List<LibraryItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LibraryItem item;
+            if (i % 3 == 0) {
+                item = new Book("Book " + i, "Author " + (i % 7), LibraryWorkload.isbn(i));
+            } else if (i % 3 == 1) {
+                item = new CD("Album " + i, "Artist " + (i % 11), "Pop");
+            } else {
+                item = new DVD("Film " + i, "Drama", "Director " + (i % 5));
+            }
+            items.add(item);
+            store.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Tests that every item can be found after the memory table was flushed and tables were
+     * compacted, and that lookups of absent identifiers are mostly answered by the Bloom filters.
+     */
+
+    @Test
+    public void testPointLookups() throws IOException {
+        List<LibraryItem> items = fill(2000);
+        Assert.assertEquals(2000, store.size());
+        Assert.assertTrue(store.getTableCount() >= 1);
+        Assert.assertTrue(store.getTableCount() <= 5);
+        for (LibraryItem item : items) {
+            LibraryItem stored = store.get(item.getUniqueIdentifier());
+            Assert.assertNotNull(item.getUniqueIdentifier(), stored);
+            Assert.assertEquals(item.getTitle(), stored.getTitle());
+        }
+
+        long filtered = store.getFilteredLookups();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertNull(store.get("missing-" + i));
+        }
+        Assert.assertTrue(store.getFilteredLookups() - filtered > 900);
+    }
+
+    /**
+     * Tests that repeated lookups of the same items are served from the block cache.
+     */
+
+    @Test
+    public void testBlockCache() throws IOException {
+        fill(2000);
+        store.get(LibraryWorkload.isbn(3));
+        long misses = store.getCache().getMisses();
+        for (int i = 0; i < 10; i++) {
+            store.get(LibraryWorkload.isbn(3));
+        }
+        Assert.assertEquals(misses, store.getCache().getMisses());
+        Assert.assertTrue(store.getCache().getHits() >= 10);
+        Assert.assertTrue(store.getCache().size() <= 16);
+    }
+
+    /**
+     * Tests that an update replaces the older version in every later lookup and scan.
+     */
+
+    @Test
+    public void testUpdate() throws IOException {
+        fill(500);
+        LibraryItem item = store.get(LibraryWorkload.isbn(0));
+        item.borrowItem("John Doe", "johndoe@students.csu.edu");
+        Assert.assertTrue(store.update(item));
+        for (int i = 500; i < 1500; i++) {
+            store.add(new CD("Album " + i, "Artist", "Rock"));
+        }
+        Assert.assertEquals("borrowed", store.get(LibraryWorkload.isbn(0)).getStatus());
+        Assert.assertFalse(store.update(new Book("Missing", "Nobody", "0316769177")));
+
+        int borrowed = 0;
+        for (LibraryItem stored : store.getAll()) {
+            if ("borrowed".equals(stored.getStatus())) {
+                borrowed++;
+            }
+        }
+        Assert.assertEquals(1, borrowed);
+        Assert.assertEquals(1500, store.getAll().size());
+    }
+
+    /**
+     * Tests that scans return items in identifier order and searches match Library.searchItems.
+     */
+
+    @Test
+    public void testScans() throws IOException {
+        List<LibraryItem> items = fill(1200);
+        List<LibraryItem> all = store.getAll();
+        for (int i = 1; i < all.size(); i++) {
+            Assert.assertTrue(all.get(i - 1).getUniqueIdentifier().compareTo(all.get(i).getUniqueIdentifier()) < 0);
+        }
+
+        Library library = new Library();
+        for (LibraryItem item : items) {
+            library.addItem(item);
+        }
+        for (String term : new String[] {"artist 3", "film 11", "979", "director 4"}) {
+            List<String> expected = new ArrayList<>();
+            for (LibraryItem item : library.searchItems(term)) {
+                expected.add(item.getUniqueIdentifier());
+            }
+            expected.sort(null);
+            List<String> actual = new ArrayList<>();
+            for (LibraryItem item : store.search(term)) {
+                actual.add(item.getUniqueIdentifier());
+            }
+            Assert.assertEquals(term, expected, actual);
+        }
+    }
+
+    /**
+     * Tests that a second item with the same identifier is stored but hidden from lookups.
+     */
+
+    @Test
+    public void testDuplicateIdentifiers() throws IOException {
+        store.add(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+        store.add(new DVD("Inception", "Thriller", "Christopher Nolan"));
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals("Sci-Fi", ((DVD) store.get("Inception_Christopher Nolan")).getGenre());
+        Assert.assertEquals(2, store.getAll().size());
+    }
+
+    /**
+     * Tests that the tables and the log are recovered when the store is reopened, including
+     * records that were only in the log.
+     */
+
+    @Test
+    public void testReopen() throws IOException {
+        fill(1000);
+        store.close();
+        store = new DiskItemStore(directory, 4096, 16);
+        Assert.assertEquals(1000, store.size());
+        store.add(new Book("Emma", "Jane Austen", "0141439580"));
+
+        // Simulate a crash by abandoning the store: its memory table is lost, only the log survives.
+        store = new DiskItemStore(directory, 4096, 16);
+        Assert.assertEquals(1001, store.size());
+        Assert.assertEquals("Emma", store.get("0141439580").getTitle());
+    }
+
+    /**
+     * Tests that replaceAll drops all tables.
+     */
+
+    @Test
+    public void testReplaceAll() throws IOException {
+        fill(1000);
+        store.replaceAll(List.of(new Book("Emma", "Jane Austen", "0141439580")));
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals(0, store.getTableCount());
+        Assert.assertEquals(1, store.getAll().size());
+        Assert.assertNull(store.get(LibraryWorkload.isbn(0)));
+    }
+
+    /**
+     * Tests the store behind a StoredLibrary.
+     */
+
+    @Test
+    public void testStoredLibrary() throws IOException {
+        StoredLibrary library = new StoredLibrary(store);
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        Assert.assertTrue(library.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu"));
+        Assert.assertFalse(library.borrowItem("0316769177", "Jane Doe", "janedoe@students.csu.edu"));
+        Assert.assertEquals("John Doe", library.getItemByIdentifier("0316769177").getBorrowerName());
+        Assert.assertTrue(library.returnItem("0316769177"));
+        Assert.assertEquals(1, library.searchItems("salinger").size());
+    }
+
+    /**
+     * Tests that a StoredLibrary saving over a file removes the index segment of an older save,
+     * which would no longer match the file.
+     */
+
+    @Test
+    public void testStoredLibraryRemovesStaleSegment() throws Exception {
+        String filename = directory.resolve("catalog.libtest").toString();
+        Library plain = new Library();
+        plain.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        plain.saveToFile(filename, true);
+        Assert.assertTrue(Files.exists(Path.of(IndexSegments.segmentFilename(filename))));
+
+        StoredLibrary library = new StoredLibrary(store);
+        fill(30);
+        library.saveToFile(filename);
+        Assert.assertFalse(Files.exists(Path.of(IndexSegments.segmentFilename(filename))));
+        library.saveToFile(filename, true);
+        Assert.assertFalse(Files.exists(Path.of(IndexSegments.segmentFilename(filename))));
+
+        Library loaded = new Library();
+        loaded.loadFromFile(filename);
+        Assert.assertEquals(30, loaded.getAllItems().size());
+        Assert.assertFalse(loaded.usesIndexSegments());
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * The `FrequencySketch` class estimates how often each key was seen recently, in four bits per
+ * counter and a fixed amount of memory. It is a count-min sketch of four rows: a key increments
+ * one counter in each row and its estimate is the smallest of them. Once the number of increments
+ * reaches ten times the capacity, every counter is halved, so the estimates follow the recent
+ * popularity of a key instead of its total history.
+ *
+ * `TieredItemStore` uses it as the TinyLFU admission filter of its hot cache.
+ */
+
+public final class FrequencySketch {
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Creates a sketch for a cache of the given capacity.
+     *
+     * @param capacity The number of entries of the cache.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+
+    public FrequencySketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        int length = Integer.highestOneBit(Math.max(16, Math.min(capacity, 1 << 26)) - 1) << 1;
+        table = new long[length];
+        sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * capacity);
+    }
+
+    /**
+     * Records one occurrence of a key.
+     *
+     * @param key The key.
+     */
+
+    public void increment(String key) {
+        long hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = index(hash, row);
+            int offset = offset(hash, row);
+            if (((table[index] >>> offset) & 0xF) < 0xF) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Estimates the number of recent occurrences of a key.
+     *
+     * @param key The key.
+     * @return The estimate, at most 15.
+     */
+
+    public int frequency(String key) {
+        long hash = spread(key.hashCode());
+        int frequency = 0xF;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, (int) ((table[index(hash, row)] >>> offset(hash, row)) & 0xF));
+        }
+        return frequency;
+    }
+
+    /**
+     * Halves every counter.
+     */
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    /**
+     * Selects the word of a row that holds the counter of a hash.
+     */
+
+    private int index(long hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return (int) (h >>> 32) & (table.length - 1);
+    }
+
+    /**
+     * Selects the four bits within the word that hold the counter of a hash in a row.
+     */
+
+    private static int offset(long hash, int row) {
+        return (int) ((hash >>> (row << 3)) & 0xF) << 2;
+    }
+
+    /**
+     * Mixes the bits of a hash code.
+     */
+
+    private static long spread(int hashCode) {
+        long h = hashCode * 0x9e3779b97f4a7c15L;
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The `Holdings` class tracks the copies of a title that the library holds several copies of.
+ * The title, creator and other metadata stay on the one `LibraryItem`; each copy only costs a slot
+ * in an array of loans, which is empty while the copy is on the shelf.
+ *
+ * Checking out a copy first reserves it by decrementing the number of available copies with a
+ * compare-and-set, so deciding whether a copy is left never takes a lock or searches the copies.
+ * The reservation guarantees that a loan slot is free, and the slot is then claimed with another
+ * compare-and-set, starting at the slot the reservation count points to, so copies are lent
+ * in order and that slot is free unless copies were returned out of order. Returns clear a slot
+ * before releasing the reservation, so the number of filled slots never exceeds the number of
+ * reserved copies.
+ */
+
+final class Holdings implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final AtomicInteger available;
+    private final AtomicReferenceArray<Loan> loans;
+
+    /**
+     * Creates holdings with every copy available.
+     *
+     * @param copies The number of copies.
+     */
+
+    Holdings(int copies) {
+        this.available = new AtomicInteger(copies);
+        this.loans = new AtomicReferenceArray<>(copies);
+    }
+
+    /**
+     * Creates holdings with the given number of copies and the loans of other holdings, which
+     * must have no more copies.
+     */
+
+    private Holdings(int copies, Holdings other) {
+        this(copies);
+        int borrowed = 0;
+        for (int i = 0; i < other.loans.length(); i++) {
+            Loan loan = other.loans.get(i);
+            if (loan != null) {
+                loans.set(i, loan);
+                borrowed++;
+            }
+        }
+        available.set(copies - borrowed);
+    }
+
+    /**
+     * Creates holdings with one more copy than a single item, carrying over its loan if it is
+     * borrowed.
+     *
+     * @param copies The number of copies, at least 2.
+     * @param loan   The loan of the single copy, or null if it is available.
+     * @return The new holdings.
+     */
+
+    static Holdings of(int copies, Loan loan) {
+        Holdings holdings = new Holdings(copies);
+        if (loan != null) {
+            holdings.loans.set(0, loan);
+            holdings.available.decrementAndGet();
+        }
+        return holdings;
+    }
+
+    /**
+     * Retrieves the number of copies.
+     *
+     * @return The number of copies.
+     */
+
+    int getCopyCount() {
+        return loans.length();
+    }
+
+    /**
+     * Retrieves the number of copies that are not on loan.
+     *
+     * @return The number of available copies.
+     */
+
+    int getAvailableCopies() {
+        return available.get();
+    }
+
+    /**
+     * Checks out one copy if any is available.
+     *
+     * @param borrowerName    The name of the borrower.
+     * @param borrowerContact The contact information of the borrower.
+     * @param time            The time of the loan.
+     * @return The number of the borrowed copy, or -1 if every copy is on loan.
+     */
+
+    int checkOut(String borrowerName, String borrowerContact, long time) {
+        int left;
+        do {
+            left = available.get();
+            if (left == 0) {
+                return -1;
+            }
+        } while (!available.compareAndSet(left, left - 1));
+
+        int copies = loans.length();
+        for (int copy = copies - left; ; copy = copy + 1 == copies ? 0 : copy + 1) {
+            if (loans.get(copy) == null && loans.compareAndSet(copy, null,
+                    new Loan(copy, borrowerName, borrowerContact, time))) {
+                return copy;
+            }
+        }
+    }
+
+    /**
+     * Returns the lowest numbered copy that is on loan.
+     *
+     * @return The number of the returned copy, or -1 if no copy is on loan.
+     */
+
+    int checkIn() {
+        return checkIn((String) null);
+    }
+
+    /**
+     * Returns the lowest numbered copy that a borrower has on loan.
+     *
+     * @param borrowerName The name of the borrower, or null for any borrower.
+     * @return The number of the returned copy, or -1 if the borrower has no copy on loan.
+     */
+
+    int checkIn(String borrowerName) {
+        for (int copy = 0; copy < loans.length(); copy++) {
+            Loan loan = loans.get(copy);
+            if (loan != null && (borrowerName == null || borrowerName.equals(loan.getBorrowerName()))
+                    && loans.compareAndSet(copy, loan, null)) {
+                available.incrementAndGet();
+                return copy;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a particular copy.
+     *
+     * @param copy The number of the copy.
+     * @return true if the copy was on loan and is now returned, false otherwise.
+     */
+
+    boolean checkIn(int copy) {
+        if (copy < 0 || copy >= loans.length()) {
+            return false;
+        }
+        Loan loan = loans.get(copy);
+        if (loan != null && loans.compareAndSet(copy, loan, null)) {
+            available.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the lowest numbered loan.
+     *
+     * @return The loan, or null if no copy is on loan.
+     */
+
+    Loan firstLoan() {
+        for (int copy = 0; copy < loans.length(); copy++) {
+            Loan loan = loans.get(copy);
+            if (loan != null) {
+                return loan;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the current loans.
+     *
+     * @return The loans ordered by copy number.
+     */
+
+    List<Loan> getLoans() {
+        List<Loan> current = new ArrayList<>();
+        for (int copy = 0; copy < loans.length(); copy++) {
+            Loan loan = loans.get(copy);
+            if (loan != null) {
+                current.add(loan);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Creates holdings with more copies and the same loans. Checkouts of these holdings must not
+     * run at the same time.
+     *
+     * @param additional The number of copies to add.
+     * @return The new holdings.
+     */
+
+    Holdings withCopies(int additional) {
+        return new Holdings(loans.length() + additional, this);
+    }
+
+    /**
+     * Creates independent holdings with the same copies and loans.
+     *
+     * @return The copy.
+     */
+
+    Holdings copy() {
+        return new Holdings(loans.length(), this);
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The `IndexSegments` class writes the ISBN index of a `Library` to a segment file next to its
+ * save file and opens it again by memory-mapping that file, so a load does not have to rebuild it
+ * from the items. The attribute and ordered indexes and the packed attributes are not part of the
+ * segment; they are built from the loaded items. The segment file is named after the save file with an
+ * ".idx" suffix and has this layout:
+ *
+ * <pre>
+ * int  magic "LIDX"             int  format version
+ * long length of the save file  long last modification time of the save file
+ * int  item count               int  items other than books with an ISBN-like identifier
+ * int  books with the ISBN of an earlier book
+ * int  ISBN table capacity      int  ISBN table size
+ * long[capacity] ISBN keys      int[capacity] item positions
+ * </pre>
+ *
+ * A segment is only used if the recorded length, modification time and item count still match
+ * the save file and the loaded items; otherwise the caller rebuilds the indexes.
+ */
+
+public final class IndexSegments {
+    private static final int MAGIC = 0x4C494458;
+    private static final int VERSION = 2;
+    private static final int HEADER_LENGTH = 44;
+
+    private final IsbnIndex isbnIndex;
+    private final int unindexedIsbnLikeItems;
+    private final int duplicateIsbnBooks;
+
+    /**
+     * Holds the indexes read from a segment file.
+     */
+
+    private IndexSegments(IsbnIndex isbnIndex, int unindexedIsbnLikeItems, int duplicateIsbnBooks) {
+        this.isbnIndex = isbnIndex;
+        this.unindexedIsbnLikeItems = unindexedIsbnLikeItems;
+        this.duplicateIsbnBooks = duplicateIsbnBooks;
+    }
+
+    /**
+     * Retrieves the ISBN index of the segment, backed by the mapped file.
+     *
+     * @return The mapped ISBN index.
+     */
+
+    public IsbnIndex getIsbnIndex() {
+        return isbnIndex;
+    }
+
+    /**
+     * Retrieves the number of items other than books whose identifier looks like an ISBN.
+     *
+     * @return The recorded count.
+     */
+
+    public int getUnindexedIsbnLikeItems() {
+        return unindexedIsbnLikeItems;
+    }
+
+    /**
+     * Retrieves the number of books whose ISBN an earlier book already has.
+     *
+     * @return The recorded count.
+     */
+
+    public int getDuplicateIsbnBooks() {
+        return duplicateIsbnBooks;
+    }
+
+    /**
+     * Retrieves the name of the segment file belonging to a save file.
+     *
+     * @param filename The name of the save file.
+     * @return The name of its index segment file.
+     */
+
+    public static String segmentFilename(String filename) {
+        return filename + ".idx";
+    }
+
+    /**
+     * Writes the index segment of a save file that has just been written. The segment is written
+     * to a temporary file that then replaces the old segment, because the old one may still be
+     * memory-mapped by a library that loaded it, even by the library being saved; truncating a
+     * mapped file would fail its readers.
+     *
+     * @param filename               The name of the save file the indexes belong to.
+     * @param itemCount              The number of items in the save file.
+     * @param isbnIndex              The ISBN index of those items.
+     * @param unindexedIsbnLikeItems The number of items other than books with an ISBN-like identifier.
+     * @param duplicateIsbnBooks     The number of books whose ISBN an earlier book already has.
+     * @throws IOException if the segment cannot be written.
+     */
+
+    public static void write(String filename, int itemCount, IsbnIndex isbnIndex, int unindexedIsbnLikeItems,
+            int duplicateIsbnBooks) throws IOException {
+        File data = new File(filename);
+        Path temporary = Path.of(segmentFilename(filename) + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temporary.toFile()), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(data.length());
+            out.writeLong(data.lastModified());
+            out.writeInt(itemCount);
+            out.writeInt(unindexedIsbnLikeItems);
+            out.writeInt(duplicateIsbnBooks);
+            out.writeInt(isbnIndex.capacity());
+            out.writeInt(isbnIndex.size());
+            isbnIndex.writeTo(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, Path.of(segmentFilename(filename)), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Opens the index segment of a save file if it exists and still matches it.
+     *
+     * @param filename  The name of the save file.
+     * @param itemCount The number of items that were loaded from the save file.
+     * @return The mapped indexes, or null if there is no usable segment.
+     * @throws IOException if an existing segment cannot be read.
+     */
+
+    public static IndexSegments open(String filename, int itemCount) throws IOException {
+        File data = new File(filename);
+        File segment = new File(segmentFilename(filename));
+        if (!segment.isFile() || segment.length() < HEADER_LENGTH) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getLong(8) != data.length() || buffer.getLong(16) != data.lastModified()
+                    || buffer.getInt(24) != itemCount) {
+                return null;
+            }
+            int unindexed = buffer.getInt(28);
+            int duplicates = buffer.getInt(32);
+            int capacity = buffer.getInt(36);
+            int size = buffer.getInt(40);
+            if (Integer.bitCount(capacity) != 1
+                    || channel.size() != HEADER_LENGTH + (long) capacity * (Long.BYTES + Integer.BYTES)) {
+                return null;
+            }
+            // The mapping stays valid after the channel is closed.
+            buffer.position(HEADER_LENGTH);
+            return new IndexSegments(IsbnIndex.map(buffer, capacity, size), unindexed, duplicates);
+        }
+    }
+
+    /**
+     * Deletes the index segment of a save file, so a stale segment is never opened for it.
+     *
+     * @param filename The name of the save file.
+     * @throws IOException if an existing segment cannot be deleted.
+     */
+
+    public static void delete(String filename) throws IOException {
+        Files.deleteIfExists(Path.of(segmentFilename(filename)));
+    }
+}
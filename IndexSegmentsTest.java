@@ -0,0 +1,145 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The IndexSegmentsTest class contains unit tests for the IndexSegments class.
+ * It tests that index segments saved next to a library file are mapped on load
+ * and that stale or missing segments fall back to rebuilding the indexes.
+ */
+
+public class IndexSegmentsTest {
+    private static final String TEST_FILENAME = "test_segments_library.libtest";
+    private Library library;
+
+    /**
+     * Sets up a library with some sample items before each test.
+     */
+
+    @Before
+    public void setUp() {
+        library = new Library();
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        library.addItem(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+        for (int i = 0; i < 100; i++) {
+            library.addItem(new Book("Title " + i, "Author " + i, "978000000" + String.format("%03d", i) + "0"));
+        }
+    }
+
+    /**
+     * Removes the test files after each test.
+     */
+
+    @After
+    public void tearDown() {
+        new File(TEST_FILENAME).delete();
+        new File(IndexSegments.segmentFilename(TEST_FILENAME)).delete();
+    }
+
+    /**
+     * Tests that a library loaded with its index segment uses the mapped index for lookups.
+     */
+
+    @Test
+    public void testLoadMapsIndexSegment() throws IOException, ClassNotFoundException {
+        library.saveToFile(TEST_FILENAME, true);
+        Assert.assertTrue(new File(IndexSegments.segmentFilename(TEST_FILENAME)).isFile());
+
+        Library loaded = new Library();
+        loaded.loadFromFile(TEST_FILENAME);
+        Assert.assertTrue("The index should be mapped, not rebuilt", loaded.usesIndexSegments());
+        Assert.assertEquals("The Catcher in the Rye", loaded.getItemByIdentifier("978-0-316-76917-4").getTitle());
+        Assert.assertEquals("Inception", loaded.getItemByIdentifier("Inception_Christopher Nolan").getTitle());
+    }
+
+    /**
+     * Tests that adding items after a mapped load copies the index to the heap and keeps it correct.
+     */
+
+    @Test
+    public void testAddAfterMappedLoad() throws IOException, ClassNotFoundException {
+        library.saveToFile(TEST_FILENAME, true);
+        Library loaded = new Library();
+        loaded.loadFromFile(TEST_FILENAME);
+        loaded.addItem(new Book("1984", "George Orwell", "0451524934"));
+
+        Assert.assertFalse(loaded.usesIndexSegments());
+        Assert.assertEquals("1984", loaded.getItemByIdentifier("0451524934").getTitle());
+        Assert.assertEquals("The Catcher in the Rye", loaded.getItemByIdentifier("0316769177").getTitle());
+    }
+
+    /**
+     * Tests that saving without index segments removes an older segment, so it is not used.
+     */
+
+    @Test
+    public void testSaveWithoutSegmentsRemovesStaleSegment() throws IOException, ClassNotFoundException {
+        library.saveToFile(TEST_FILENAME, true);
+        library.addItem(new Book("1984", "George Orwell", "0451524934"));
+        library.saveToFile(TEST_FILENAME);
+        Assert.assertFalse(new File(IndexSegments.segmentFilename(TEST_FILENAME)).exists());
+
+        Library loaded = new Library();
+        loaded.loadFromFile(TEST_FILENAME);
+        Assert.assertFalse(loaded.usesIndexSegments());
+        Assert.assertEquals("1984", loaded.getItemByIdentifier("0451524934").getTitle());
+    }
+
+    /**
+     * Tests that a sharded library writes a segment covering the items of every shard, and
+     * removes it again when it saves without one.
+     */
+
+    @Test
+    public void testShardedLibrarySegments() throws IOException, ClassNotFoundException {
+        ShardedLibrary sharded = new ShardedLibrary(4);
+        for (LibraryItem item : library.getAllItems()) {
+            sharded.addItem(item);
+        }
+        sharded.saveToFile(TEST_FILENAME, true);
+
+        Library loaded = new Library();
+        loaded.loadFromFile(TEST_FILENAME);
+        Assert.assertTrue(loaded.usesIndexSegments());
+        Assert.assertEquals(102, loaded.getAllItems().size());
+        Assert.assertEquals("The Catcher in the Rye", loaded.getItemByIdentifier("0316769177").getTitle());
+        Assert.assertEquals("Title 42", loaded.getItemByIdentifier("9780000000420").getTitle());
+
+        sharded.saveCompressedToFile(TEST_FILENAME, false);
+        Assert.assertFalse(new File(IndexSegments.segmentFilename(TEST_FILENAME)).exists());
+        sharded.saveCompressedToFile(TEST_FILENAME, true);
+        sharded.saveToFile(TEST_FILENAME);
+        Assert.assertFalse(new File(IndexSegments.segmentFilename(TEST_FILENAME)).exists());
+    }
+
+    /**
+     * Tests that a library whose index is mapped from a segment can save over that segment.
+     */
+
+    @Test
+    public void testSaveOverMappedSegment() throws IOException, ClassNotFoundException {
+        library.saveCompressedToFile(TEST_FILENAME, true);
+        Library loaded = new Library();
+        loaded.loadFromFile(TEST_FILENAME);
+        Assert.assertTrue(loaded.usesIndexSegments());
+
+        library.addItem(new Book("1984", "George Orwell", "0451524934"));
+        library.saveCompressedToFile(TEST_FILENAME, true);
+        loaded.saveCompressedToFile(TEST_FILENAME + ".copy", true);
+        Assert.assertEquals("The Catcher in the Rye", loaded.getItemByIdentifier("0316769177").getTitle());
+        new File(TEST_FILENAME + ".copy").delete();
+        new File(IndexSegments.segmentFilename(TEST_FILENAME + ".copy")).delete();
+
+        loaded.saveCompressedToFile(TEST_FILENAME, true);
+        Assert.assertEquals("The Catcher in the Rye", loaded.getItemByIdentifier("0316769177").getTitle());
+        Library reloaded = new Library();
+        reloaded.loadFromFile(TEST_FILENAME);
+        Assert.assertTrue(reloaded.usesIndexSegments());
+        Assert.assertEquals(102, reloaded.getAllItems().size());
+        Assert.assertNull(reloaded.getItemByIdentifier("0451524934"));
+        Assert.assertFalse(new File(IndexSegments.segmentFilename(TEST_FILENAME) + ".tmp").exists());
+    }
+}
@@ -0,0 +1,316 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * The `IsbnIndex` class maps ISBNs to item positions with an open-addressing hash table of
+ * primitive `long` keys and `int` values, so lookups neither box nor compare Strings.
+ * ISBN-10 and ISBN-13 are normalized to the same canonical ISBN-13 number, which means a book
+ * can be found by either form of its ISBN, with or without hyphens and spaces.
+ *
+ * The table can also be written to an index segment file and used straight from a memory-mapped
+ * view of that file; it is copied to the heap only when it is modified afterwards.
+ */
+
+public class IsbnIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private transient LongBuffer keys = LongBuffer.allocate(INITIAL_CAPACITY);
+    private transient IntBuffer positions = IntBuffer.allocate(INITIAL_CAPACITY);
+    private int size;
+    private transient boolean mapped;
+
+    /**
+     * Converts an ISBN-10 or ISBN-13 into its canonical ISBN-13 number.
+     * Hyphens and spaces are ignored, and the check digit must be valid.
+     *
+     * @param isbn The ISBN to normalize.
+     * @return The ISBN-13 as a positive number, or -1 if the text is not a valid ISBN.
+     */
+
+    public static long normalize(String isbn) {
+        if (isbn == null) {
+            return -1;
+        }
+        int length = isbn.length();
+        if (length < 10 || length > 17) {
+            return -1;
+        }
+        int[] digits = new int[13];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (count == 13) {
+                return -1;
+            }
+            if (c >= '0' && c <= '9') {
+                digits[count++] = c - '0';
+            } else if ((c == 'X' || c == 'x') && count == 9) {
+                // Only the check digit of an ISBN-10 may be X; it is verified below.
+                digits[count++] = 10;
+            } else {
+                return -1;
+            }
+        }
+
+        if (count == 10) {
+            int sum = 0;
+            for (int i = 0; i < 10; i++) {
+                sum += digits[i] * (10 - i);
+            }
+            if (sum % 11 != 0) {
+                return -1;
+            }
+            // Re-prefix the first nine digits with 978 and recompute the ISBN-13 check digit.
+            System.arraycopy(digits, 0, digits, 3, 9);
+            digits[0] = 9;
+            digits[1] = 7;
+            digits[2] = 8;
+            digits[12] = isbn13CheckDigit(digits);
+        } else if (count != 13 || digits[9] == 10 || digits[12] != isbn13CheckDigit(digits)) {
+            return -1;
+        }
+
+        long value = 0;
+        for (int digit : digits) {
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Computes the check digit of the first twelve ISBN-13 digits.
+     */
+
+    private static int isbn13CheckDigit(int[] digits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += digits[i] * (i % 2 == 0 ? 1 : 3);
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Maps a canonical ISBN to a position unless the ISBN is already mapped.
+     * Keeping the first position matches the first-match behavior of `Library.getItemByIdentifier`.
+     *
+     * @param isbn     The canonical ISBN as returned by `normalize`.
+     * @param position The position of the item.
+     * @throws IllegalArgumentException if the ISBN is not positive.
+     */
+
+    public void putIfAbsent(long isbn, int position) {
+        if (isbn <= 0) {
+            throw new IllegalArgumentException("ISBN must be normalized");
+        }
+        if ((size + 1) * 2 > keys.capacity()) {
+            resize(keys.capacity() * 2);
+        } else if (mapped) {
+            resize(keys.capacity());
+        }
+        int mask = keys.capacity() - 1;
+        int slot = slot(isbn, mask);
+        while (keys.get(slot) != 0) {
+            if (keys.get(slot) == isbn) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys.put(slot, isbn);
+        positions.put(slot, position);
+        size++;
+    }
+
+    /**
+     * Retrieves the position mapped to a canonical ISBN.
+     *
+     * @param isbn The canonical ISBN as returned by `normalize`.
+     * @return The position, or -1 if the ISBN is not indexed.
+     */
+
+    public int get(long isbn) {
+        if (isbn <= 0) {
+            return -1;
+        }
+        int mask = keys.capacity() - 1;
+        for (int slot = slot(isbn, mask); ; slot = (slot + 1) & mask) {
+            long key = keys.get(slot);
+            if (key == isbn) {
+                return positions.get(slot);
+            }
+            if (key == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of indexed ISBNs.
+     *
+     * @return The number of entries.
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all entries.
+     */
+
+    public void clear() {
+        keys = LongBuffer.allocate(INITIAL_CAPACITY);
+        positions = IntBuffer.allocate(INITIAL_CAPACITY);
+        size = 0;
+        mapped = false;
+    }
+
+    /**
+     * Retrieves the number of slots of the table.
+     *
+     * @return The capacity, always a power of two.
+     */
+
+    public int capacity() {
+        return keys.capacity();
+    }
+
+    /**
+     * Checks whether the table is currently read from a memory-mapped index segment.
+     *
+     * @return true if the table has not been copied to the heap.
+     */
+
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Writes the table slots to an index segment: all keys followed by all positions.
+     *
+     * @param out The output to write to.
+     * @throws IOException if writing fails.
+     */
+
+    void writeTo(DataOutput out) throws IOException {
+        for (int i = 0; i < keys.capacity(); i++) {
+            out.writeLong(keys.get(i));
+        }
+        for (int i = 0; i < positions.capacity(); i++) {
+            out.writeInt(positions.get(i));
+        }
+    }
+
+    /**
+     * Creates an index that reads its table directly from a region of an index segment
+     * written by `writeTo`, without copying or rehashing it.
+     *
+     * @param region   The bytes of the table, starting with the first key.
+     * @param capacity The number of slots of the table.
+     * @param size     The number of entries of the table.
+     * @return An index backed by the region.
+     */
+
+    static IsbnIndex map(ByteBuffer region, int capacity, int size) {
+        IsbnIndex index = new IsbnIndex();
+        ByteBuffer keyBytes = region.duplicate();
+        keyBytes.limit(keyBytes.position() + capacity * Long.BYTES);
+        ByteBuffer positionBytes = region.duplicate();
+        positionBytes.position(keyBytes.limit());
+        positionBytes.limit(positionBytes.position() + capacity * Integer.BYTES);
+        index.keys = keyBytes.slice().asLongBuffer();
+        index.positions = positionBytes.slice().asIntBuffer();
+        index.size = size;
+        index.mapped = true;
+        return index;
+    }
+
+    /**
+     * Rehashes all entries into heap tables of the given capacity.
+     */
+
+    private void resize(int capacity) {
+        LongBuffer oldKeys = keys;
+        IntBuffer oldPositions = positions;
+        keys = LongBuffer.allocate(capacity);
+        positions = IntBuffer.allocate(capacity);
+        mapped = false;
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.capacity(); i++) {
+            long key = oldKeys.get(i);
+            if (key != 0) {
+                int slot = slot(key, mask);
+                while (keys.get(slot) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys.put(slot, key);
+                positions.put(slot, oldPositions.get(i));
+            }
+        }
+    }
+
+    /**
+     * Computes the home slot of a key by mixing all of its bits.
+     */
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Verifies that every stored key can still be found, for use in tests and audits.
+     *
+     * @return true if all keys are reachable from their home slot.
+     */
+
+    boolean isConsistent() {
+        int stored = 0;
+        for (int i = 0; i < keys.capacity(); i++) {
+            long key = keys.get(i);
+            if (key != 0) {
+                stored++;
+                if (get(key) < 0) {
+                    return false;
+                }
+            }
+        }
+        return stored == size;
+    }
+
+    /**
+     * Writes the table when the index is serialized, since buffers are not serializable.
+     */
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(keys.capacity());
+        writeTo(out);
+    }
+
+    /**
+     * Reads the table written by `writeObject` into heap buffers.
+     */
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int capacity = in.readInt();
+        keys = LongBuffer.allocate(capacity);
+        positions = IntBuffer.allocate(capacity);
+        for (int i = 0; i < capacity; i++) {
+            keys.put(i, in.readLong());
+        }
+        for (int i = 0; i < capacity; i++) {
+            positions.put(i, in.readInt());
+        }
+    }
+}
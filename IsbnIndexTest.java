@@ -0,0 +1,69 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The IsbnIndexTest class contains unit tests for the IsbnIndex class.
+ * It tests ISBN normalization and the primitive hash table, and lookups of books
+ * by either form of their ISBN through the Library.
+ */
+
+public class IsbnIndexTest {
+
+    /**
+     * Tests that ISBN-10 and ISBN-13 forms of the same book normalize to the same number.
+     */
+
+    @Test
+    public void testNormalize() {
+        Assert.assertEquals(9780316769174L, IsbnIndex.normalize("0316769177"));
+        Assert.assertEquals(9780316769174L, IsbnIndex.normalize("978-0-316-76917-4"));
+        Assert.assertEquals(9780804429573L, IsbnIndex.normalize("080442957X"));
+        Assert.assertEquals(9780804429573L, IsbnIndex.normalize("0 8044 2957 x"));
+    }
+
+    /**
+     * Tests that text that is not a valid ISBN is rejected.
+     */
+
+    @Test
+    public void testNormalizeInvalid() {
+        Assert.assertEquals("Wrong check digit", -1, IsbnIndex.normalize("0316769178"));
+        Assert.assertEquals("Wrong length", -1, IsbnIndex.normalize("031676917"));
+        Assert.assertEquals("Letters", -1, IsbnIndex.normalize("isbn-42"));
+        Assert.assertEquals("X in an ISBN-13", -1, IsbnIndex.normalize("978031676X174"));
+        Assert.assertEquals(-1, IsbnIndex.normalize(null));
+    }
+
+    /**
+     * Tests storing and retrieving positions while the table grows.
+     */
+
+    @Test
+    public void testPutIfAbsentAndGet() {
+        IsbnIndex index = new IsbnIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.putIfAbsent(9780000000000L + i, i);
+        }
+        index.putIfAbsent(9780000000005L, 99);
+        Assert.assertEquals(1000, index.size());
+        Assert.assertEquals("The first position should be kept", 5, index.get(9780000000005L));
+        Assert.assertEquals(-1, index.get(9790000000000L));
+        Assert.assertTrue(index.isConsistent());
+    }
+
+    /**
+     * Tests that the library finds a book by either form of its ISBN and still finds
+     * books whose ISBN is not valid.
+     */
+
+    @Test
+    public void testLibraryLookup() {
+        Library library = new Library();
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        library.addItem(new Book("Unnumbered", "Anonymous", "not-an-isbn"));
+        Assert.assertEquals("The Catcher in the Rye", library.getItemByIdentifier("9780316769174").getTitle());
+        Assert.assertEquals("The Catcher in the Rye", library.getItemByIdentifier("0316769177").getTitle());
+        Assert.assertEquals("Unnumbered", library.getItemByIdentifier("not-an-isbn").getTitle());
+        Assert.assertNull(library.getItemByIdentifier("0451524934"));
+    }
+}
@@ -0,0 +1,259 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The `ItemCodec` class encodes `Book`, `CD` and `DVD` items into a compact binary record and
+ * reads them back. A record is laid out as:
+ *
+ * <pre>
+ * u8  type      1 = Book, 2 = CD, 3 = DVD
+ * u8  flags     bit 0 = borrowed, bit 1 = contains non-ASCII characters
+ * then five fields, each an u16 byte length followed by UTF-8 bytes (length 0xFFFF = null):
+ *     title, second attribute, third attribute, borrower name, borrower contact
+ * i64 time of the last status change
+ * </pre>
+ *
+ * The second and third attributes follow the constructor order of each type, so a Book stores
+ * author and ISBN, a CD artist and genre, and a DVD genre and director. Records can be searched
+ * and identified directly in their encoded form without creating any objects.
+ */
+
+public final class ItemCodec {
+    static final byte BOOK = 1;
+    static final byte CD = 2;
+    static final byte DVD = 3;
+
+    private static final int BORROWED = 1;
+    private static final int NON_ASCII = 2;
+    private static final int NULL_LENGTH = 0xFFFF;
+    private static final int FIELDS = 5;
+
+    private ItemCodec() {
+    }
+
+    /**
+     * Encodes an item into a new record.
+     *
+     * @param item The item to encode.
+     * @return The encoded record.
+     * @throws IllegalArgumentException if the item is not a Book, CD or DVD, has several copies,
+     *         or a field is too long.
+     */
+
+    public static byte[] encode(LibraryItem item) {
+        byte type;
+        String second;
+        String third;
+        if (item instanceof Book) {
+            type = BOOK;
+            second = ((Book) item).getAuthor();
+            third = ((Book) item).getISBN();
+        } else if (item instanceof CD) {
+            type = CD;
+            second = ((CD) item).getArtist();
+            third = ((CD) item).getGenre();
+        } else if (item instanceof DVD) {
+            type = DVD;
+            second = ((DVD) item).getGenre();
+            third = ((DVD) item).getDirector();
+        } else {
+            throw new IllegalArgumentException("Unsupported item type: " + item.getClass().getName());
+        }
+
+        if (item.getCopyCount() > 1) {
+            throw new IllegalArgumentException("Items with several copies cannot be stored");
+        }
+
+        String[] fields = {item.getTitle(), second, third, item.getBorrowerName(), item.getBorrowerContact()};
+        byte[][] encoded = new byte[FIELDS][];
+        int length = 2;
+        boolean ascii = true;
+        for (int i = 0; i < FIELDS; i++) {
+            if (fields[i] != null) {
+                encoded[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+                if (encoded[i].length >= NULL_LENGTH) {
+                    throw new IllegalArgumentException("Field is too long to be stored");
+                }
+                ascii &= encoded[i].length == fields[i].length();
+                length += encoded[i].length;
+            }
+            length += 2;
+        }
+        length += Long.BYTES;
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.put(type);
+        record.put((byte) (("borrowed".equals(item.getStatus()) ? BORROWED : 0) | (ascii ? 0 : NON_ASCII)));
+        for (byte[] field : encoded) {
+            if (field == null) {
+                record.putShort((short) NULL_LENGTH);
+            } else {
+                record.putShort((short) field.length);
+                record.put(field);
+            }
+        }
+        record.putLong(item.getStatusChangedAt());
+        return record.array();
+    }
+
+    /**
+     * Decodes the record starting at the given position of a buffer.
+     *
+     * @param buffer The buffer holding the record.
+     * @param offset The position of the first byte of the record.
+     * @return A new item with the state stored in the record.
+     */
+
+    public static LibraryItem decode(ByteBuffer buffer, int offset) {
+        byte type = buffer.get(offset);
+        int flags = buffer.get(offset + 1);
+        String[] fields = new String[FIELDS];
+        int position = offset + 2;
+        for (int i = 0; i < FIELDS; i++) {
+            fields[i] = readString(buffer, position);
+            position += 2 + fieldLength(buffer, position);
+        }
+
+        LibraryItem item;
+        switch (type) {
+        case BOOK:
+            item = new Book(fields[0], fields[1], fields[2]);
+            break;
+        case CD:
+            item = new CD(fields[0], fields[1], fields[2]);
+            break;
+        case DVD:
+            item = new DVD(fields[0], fields[1], fields[2]);
+            break;
+        default:
+            throw new IllegalStateException("Corrupt record type: " + type);
+        }
+        if ((flags & BORROWED) != 0) {
+            item.borrowItem(fields[3], fields[4]);
+        } else if (fields[3] != null) {
+            item.returnItem(null);
+        }
+        item.setStatusChangedAt(buffer.getLong(position));
+        return item;
+    }
+
+    /**
+     * Computes the total length of the record starting at the given position.
+     *
+     * @param buffer The buffer holding the record.
+     * @param offset The position of the first byte of the record.
+     * @return The length of the record in bytes.
+     */
+
+    public static int recordLength(ByteBuffer buffer, int offset) {
+        int position = offset + 2;
+        for (int i = 0; i < FIELDS; i++) {
+            position += 2 + fieldLength(buffer, position);
+        }
+        return position + Long.BYTES - offset;
+    }
+
+    /**
+     * Reads the unique identifier of the record starting at the given position,
+     * following the same rules as `getUniqueIdentifier` of each item type.
+     *
+     * @param buffer The buffer holding the record.
+     * @param offset The position of the first byte of the record.
+     * @return The unique identifier of the stored item.
+     */
+
+    public static String decodeIdentifier(ByteBuffer buffer, int offset) {
+        byte type = buffer.get(offset);
+        int title = offset + 2;
+        int second = title + 2 + fieldLength(buffer, title);
+        int third = second + 2 + fieldLength(buffer, second);
+        switch (type) {
+        case BOOK:
+            return readString(buffer, third);
+        case CD:
+            return readString(buffer, title) + "_" + readString(buffer, second);
+        default:
+            return readString(buffer, title) + "_" + readString(buffer, third);
+        }
+    }
+
+    /**
+     * Checks whether any searchable attribute of the record contains the term, with the same
+     * result as `Library.searchItems` on the decoded item. ASCII records are matched byte by byte
+     * with case folding; records with other characters are decoded field by field.
+     *
+     * @param buffer        The buffer holding the record.
+     * @param offset        The position of the first byte of the record.
+     * @param lowerCaseTerm The search term, already converted to lower case.
+     * @param termBytes     The UTF-8 bytes of the lower case search term.
+     * @return true if the record matches the term.
+     */
+
+    public static boolean matches(ByteBuffer buffer, int offset, String lowerCaseTerm, byte[] termBytes) {
+        byte type = buffer.get(offset);
+        boolean ascii = (buffer.get(offset + 1) & NON_ASCII) == 0;
+        int position = offset + 2;
+        for (int i = 0; i < 3; i++) {
+            int length = fieldLength(buffer, position);
+            // A Book's ISBN is searched as stored; every other attribute is searched in lower case.
+            boolean fold = !(type == BOOK && i == 2);
+            if (ascii) {
+                if (containsAscii(buffer, position + 2, length, termBytes, fold)) {
+                    return true;
+                }
+            } else {
+                String field = readString(buffer, position);
+                if ((fold ? field.toLowerCase() : field).contains(lowerCaseTerm)) {
+                    return true;
+                }
+            }
+            position += 2 + length;
+        }
+        return false;
+    }
+
+    /**
+     * Searches for the term in an ASCII field, optionally folding upper case field bytes.
+     */
+
+    private static boolean containsAscii(ByteBuffer buffer, int start, int length, byte[] term, boolean fold) {
+        int last = length - term.length;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < term.length; j++) {
+                byte b = buffer.get(start + i + j);
+                if (fold && b >= 'A' && b <= 'Z') {
+                    b += 'a' - 'A';
+                }
+                if (b != term[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the byte length of the field at the given position, treating null as empty.
+     */
+
+    private static int fieldLength(ByteBuffer buffer, int position) {
+        int length = buffer.getShort(position) & 0xFFFF;
+        return length == NULL_LENGTH ? 0 : length;
+    }
+
+    /**
+     * Reads the field at the given position as a String.
+     */
+
+    private static String readString(ByteBuffer buffer, int position) {
+        int length = buffer.getShort(position) & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
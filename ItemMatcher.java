@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The `ItemMatcher` class holds the search kernels behind `Library.searchItems` and the other
+ * full-text scans. Calling `getSearchableAttributes` on a mix of books, CDs and DVDs is a
+ * call site with several receiver types that the JIT cannot inline, and every call builds a new
+ * list. Instead, each final item class gets its own kernel that reads the cached lower case fields
+ * directly, selected by a class check. Other `LibraryItem` subclasses fall back to their
+ * searchable attributes, so every scan returns exactly what it returned before.
+ */
+
+final class ItemMatcher {
+
+    private ItemMatcher() {
+    }
+
+    /**
+     * Checks whether any searchable attribute of an item contains a lower case term.
+     *
+     * @param item          The item.
+     * @param lowerCaseTerm The search term, already converted to lower case.
+     * @return true if the item matches.
+     */
+
+    static boolean matches(LibraryItem item, String lowerCaseTerm) {
+        if (item instanceof Book) {
+            return matchesBook((Book) item, lowerCaseTerm);
+        } else if (item instanceof CD) {
+            return matchesCD((CD) item, lowerCaseTerm);
+        } else if (item instanceof DVD) {
+            return matchesDVD((DVD) item, lowerCaseTerm);
+        }
+        return matchesAttributes(item, lowerCaseTerm);
+    }
+
+    /**
+     * Collects the items that contain a lower case term.
+     *
+     * @param items         The items to scan.
+     * @param lowerCaseTerm The search term, already converted to lower case.
+     * @return The matching items in the order of the list.
+     */
+
+    static List<LibraryItem> search(List<LibraryItem> items, String lowerCaseTerm) {
+        List<LibraryItem> matchingItems = new ArrayList<>();
+        for (int i = 0, size = items.size(); i < size; i++) {
+            LibraryItem item = items.get(i);
+            if (matches(item, lowerCaseTerm)) {
+                matchingItems.add(item);
+            }
+        }
+        return matchingItems;
+    }
+
+    /**
+     * Matches the title, author and ISBN of a book.
+     */
+
+    private static boolean matchesBook(Book book, String term) {
+        return book.getLowerCaseTitle().contains(term) || book.getLowerCaseAuthor().contains(term)
+                || book.getISBN().contains(term);
+    }
+
+    /**
+     * Matches the title, artist and genre of a CD.
+     */
+
+    private static boolean matchesCD(CD cd, String term) {
+        return cd.getLowerCaseTitle().contains(term) || cd.getLowerCaseArtist().contains(term)
+                || cd.getLowerCaseGenre().contains(term);
+    }
+
+    /**
+     * Matches the title, genre and director of a DVD.
+     */
+
+    private static boolean matchesDVD(DVD dvd, String term) {
+        return dvd.getLowerCaseTitle().contains(term) || dvd.getLowerCaseGenre().contains(term)
+                || dvd.getLowerCaseDirector().contains(term);
+    }
+
+    /**
+     * Matches the searchable attributes of any other kind of item.
+     */
+
+    private static boolean matchesAttributes(LibraryItem item, String term) {
+        for (String attribute : item.getSearchableAttributes()) {
+            if (attribute.contains(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
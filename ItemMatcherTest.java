@@ -0,0 +1,75 @@
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ItemMatcherTest class contains unit tests for the ItemMatcher class. It tests that the
+ * type-specific search kernels agree with the searchable attributes of every item type.
+ */
+
+public class ItemMatcherTest {
+
+    /**
+     * Tests that each kernel matches exactly the attributes the item declares as searchable.
+     */
+
+    @Test
+    public void testKernelsAgreeWithSearchableAttributes() {
+        List<LibraryItem> items = List.of(
+                new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"),
+                new CD("Thriller", "Michael Jackson", "Pop"),
+                new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+        String[] terms = {"catcher", "salinger", "0316", "thriller", "jackson", "pop", "inception",
+                "sci-fi", "nolan", "e", "missing", "Thriller", ""};
+        for (LibraryItem item : items) {
+            for (String term : terms) {
+                boolean expected = item.getSearchableAttributes().stream().anyMatch(a -> a.contains(term));
+                Assert.assertEquals(item + " / " + term, expected, ItemMatcher.matches(item, term));
+            }
+        }
+    }
+
+    /**
+     * Tests that items of other LibraryItem subclasses are matched through their searchable attributes.
+     */
+
+    @Test
+    public void testOtherItemTypes() {
+        LibraryItem custom = new LibraryItem("Custom") {
+            @Override
+            public List<String> getSearchableAttributes() {
+                return List.of("custom", "magazine");
+            }
+
+            @Override
+            public String getUniqueIdentifier() {
+                return "CUSTOM-1";
+            }
+        };
+        Assert.assertTrue(ItemMatcher.matches(custom, "magazine"));
+        Assert.assertFalse(ItemMatcher.matches(custom, "book"));
+    }
+
+    /**
+     * Tests that a search keeps the order of the scanned list.
+     */
+
+    @Test
+    public void testSearchKeepsOrder() {
+        List<LibraryItem> items = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            if (i % 3 == 0) {
+                items.add(new Book("Title " + i, "Author", LibraryWorkload.isbn(i)));
+            } else if (i % 3 == 1) {
+                items.add(new CD("Title " + i, "Artist", "Rock"));
+            } else {
+                items.add(new DVD("Title " + i, "Drama", "Director"));
+            }
+        }
+        List<LibraryItem> matches = ItemMatcher.search(items, "title 1");
+        Assert.assertEquals(11, matches.size());
+        Assert.assertSame(items.get(1), matches.get(0));
+        Assert.assertSame(items.get(19), matches.get(10));
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The `ItemStore` interface is a storage engine for the items of a `StoredLibrary`.
+ * Implementations decide where and how items are kept; items handed out by a store are
+ * detached copies, so changes to them only take effect once they are passed to `update`.
+ * Stores are not thread-safe; `StoredLibrary` serializes all access to them.
+ */
+
+public interface ItemStore extends Closeable {
+
+    /**
+     * Appends an item to the store.
+     *
+     * @param item The item to store.
+     * @throws IllegalArgumentException if the item cannot be stored by this engine.
+     * @throws IOException if the storage medium fails.
+     */
+    void add(LibraryItem item) throws IOException;
+
+    /**
+     * Retrieves the first item stored under the given unique identifier.
+     *
+     * @param identifier The unique identifier of the item.
+     * @return A copy of the stored item, or null if not found.
+     * @throws IOException if the storage medium fails.
+     */
+    LibraryItem get(String identifier) throws IOException;
+
+    /**
+     * Replaces the stored state of the first item with the same unique identifier.
+     *
+     * @param item The item whose state should be stored.
+     * @return true if an item with that identifier was stored, false otherwise.
+     * @throws IOException if the storage medium fails.
+     */
+    boolean update(LibraryItem item) throws IOException;
+
+    /**
+     * Retrieves every item whose searchable attributes contain the given term.
+     *
+     * @param lowerCaseTerm The search term, already converted to lower case.
+     * @return Copies of the matching items in storage order.
+     * @throws IOException if the storage medium fails.
+     */
+    List<LibraryItem> search(String lowerCaseTerm) throws IOException;
+
+    /**
+     * Retrieves every stored item.
+     *
+     * @return Copies of all items in storage order.
+     * @throws IOException if the storage medium fails.
+     */
+    List<LibraryItem> getAll() throws IOException;
+
+    /**
+     * Replaces the whole content of the store.
+     *
+     * @param items The items the store should contain from now on.
+     * @throws IOException if the storage medium fails.
+     */
+    void replaceAll(List<LibraryItem> items) throws IOException;
+
+    /**
+     * Retrieves the number of stored items.
+     *
+     * @return The number of items.
+     */
+    int size();
+}
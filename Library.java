@@ -1,13 +1,30 @@
 import java.io.*;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * The `Library` class represents a collection of library items 
  * and provides methods for managing and interacting with them.
  */
 public class Library implements Serializable {
+    private static final int EVENT_RING_CAPACITY = 1 << 16;
+
     private List<LibraryItem> items;
+    private IsbnIndex isbnIndex = new IsbnIndex();
+    private int unindexedIsbnLikeItems; // items other than books whose identifier looks like an ISBN
+    private int duplicateIsbnBooks; // books whose ISBN an earlier book already has
+    private AttributeIndex attributes = new AttributeIndex();
+    private transient OrderedIndex ordered = new OrderedIndex(); // rebuilt by readObject
+    private transient PackedAttributes packed = new PackedAttributes(); // rebuilt by readObject
+    private long generation; // incremented whenever the items are replaced
+    private transient volatile LibraryEventRing events; // created by the first subscription
 
     /**
      * Initializes a new instance of the `Library` class with an empty list of items.
@@ -29,45 +46,258 @@ public class Library implements Serializable {
             throw new IllegalArgumentException();
         }
         items.add(item);
+        index(item, items.size() - 1);
+        publish(LibraryEvent.Type.ADD, item, null, null, 0);
+    }
+
+    /**
+     * Adds an item at the given position to the packed attributes and the attribute, ordered and
+     * ISBN indexes. Books are
+     * indexed by the canonical form of their ISBN; other items whose identifier happens to look
+     * like an ISBN are counted, because lookups then have to fall back to comparing identifiers.
+     * The ISBN index keeps the first book with an ISBN, so later books with the same ISBN are
+     * counted too, because queries then have to find every one of them.
+     */
+
+    private void index(LibraryItem item, int position) {
+        indexAttributes(item, position);
+        long isbn = IsbnIndex.normalize(item.getUniqueIdentifier());
+        if (isbn < 0) {
+            return;
+        }
+        if (item instanceof Book) {
+            if (isbnIndex.get(isbn) >= 0) {
+                duplicateIsbnBooks++;
+            } else {
+                isbnIndex.putIfAbsent(isbn, position);
+            }
+        } else {
+            unindexedIsbnLikeItems++;
+        }
+    }
+
+    /**
+     * Adds an item at the given position to the packed attributes and the attribute and ordered
+     * indexes, which are never read from an index segment.
+     */
+
+    private void indexAttributes(LibraryItem item, int position) {
+        attributes.add(item, position);
+        ordered.add(item, position);
+        packed.add(item);
     }
 
     /**
      * Searches for items in the library based on a search term that can match 
-     * title or specific properties of items.
+     * title or specific properties of items. The searchable attributes are scanned in their
+     * packed form, eight bytes at a time.
      *
      * @param searchTerm The search term to match against item titles or specific attributes.
      * @return A list of items that match the search term.
      */
 
     public List<LibraryItem> searchItems(String searchTerm) {
-        List<LibraryItem> matchingItems = new ArrayList<>();
         String lowerCaseSearchTerm = searchTerm.toLowerCase();
-    
-        for (LibraryItem item : items) {
-            for (String attribute : item.getSearchableAttributes()) {
-                if (attribute.contains(lowerCaseSearchTerm)) {
-                    matchingItems.add(item);
-                    break; // Break to avoid adding the same item multiple times
-                }
-            }
+        BitSet positions = packed.search(lowerCaseSearchTerm, items);
+        if (positions == null) {
+            return ItemMatcher.search(items, lowerCaseSearchTerm);
+        }
+        List<LibraryItem> matchingItems = new ArrayList<>(positions.cardinality());
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            matchingItems.add(items.get(i));
         }
         return matchingItems;
     }
 
+    /**
+     * Opens a session for searching as the user types. Each search of the session returns the
+     * same items as `searchItems`, but a search for a term that extends the previous one only
+     * checks the previous matches and the items added since.
+     *
+     * @return A new search session.
+     */
+
+    public SearchSession openSearchSession() {
+        return new SearchSession(this);
+    }
+
+    /**
+     * Runs a search of a session against this library.
+     *
+     * @param session    The session.
+     * @param searchTerm The search term.
+     * @return A list of items that match the search term.
+     */
+
+    List<LibraryItem> search(SearchSession session, String searchTerm) {
+        return session.run(searchTerm, items.size(), items::get, generation);
+    }
+
+    /**
+     * Finds the items matching a query such as `author:salinger AND type:book NOT status:borrowed`.
+     * See `LibraryQuery` for the syntax. The query is evaluated by the `QueryPlanner`, which starts
+     * from the most selective index it can use and only checks the remaining predicates on the
+     * items that index returns.
+     *
+     * @param queryText The query.
+     * @return A list of the matching items, in the order they were added.
+     * @throws IllegalArgumentException if the query is null, empty or invalid.
+     */
+
+    public List<LibraryItem> query(String queryText) {
+        return QueryPlanner.execute(LibraryQuery.parse(queryText), querySource());
+    }
+
+    /**
+     * Retrieves the next page of items in title or creator order and moves the cursor past it.
+     * For example, `browse(BrowseCursor.seek(BrowseOrder.TITLE, "m").until("n"), 20)` returns the
+     * first 20 titles starting with "m", and calling it again with the same cursor the next 20.
+     *
+     * @param cursor The cursor to continue from.
+     * @param limit  The maximum number of items to return.
+     * @return The items of the page in browse order; fewer than `limit` if the cursor is exhausted.
+     * @throws IllegalArgumentException if the cursor is null or the limit is not positive.
+     */
+
+    public List<LibraryItem> browse(BrowseCursor cursor, int limit) {
+        checkBrowse(cursor, limit);
+        List<LibraryItem> page = new ArrayList<>();
+        for (int position : ordered.scan(cursor, limit, items.size())) {
+            page.add(items.get(position));
+        }
+        cursor.advance(page, limit);
+        return page;
+    }
+
+    /**
+     * Validates the arguments of `browse`.
+     *
+     * @param cursor The cursor to continue from.
+     * @param limit  The maximum number of items to return.
+     * @throws IllegalArgumentException if the cursor is null or the limit is not positive.
+     */
+
+    static void checkBrowse(BrowseCursor cursor, int limit) {
+        if (cursor == null) {
+            throw new IllegalArgumentException("Cursor cannot be null");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+    }
+
+    /**
+     * Describes how a query would be evaluated against this library.
+     *
+     * @param queryText The query.
+     * @return A one-line description of the plan.
+     * @throws IllegalArgumentException if the query is null, empty or invalid.
+     */
+
+    String explainQuery(String queryText) {
+        return QueryPlanner.explain(LibraryQuery.parse(queryText), querySource());
+    }
+
+    /**
+     * Exposes the items and indexes of this library to the query planner.
+     */
+
+    private QueryPlanner.Source querySource() {
+        return new QueryPlanner.Source() {
+            @Override
+            public int size() {
+                return items.size();
+            }
+
+            @Override
+            public LibraryItem get(int position) {
+                return items.get(position);
+            }
+
+            @Override
+            public long estimate(LibraryQuery.Term term) {
+                if (usesIsbnIndex(term)) {
+                    return 1;
+                }
+                return attributes.estimate(term, items.size());
+            }
+
+            @Override
+            public int[] lookup(LibraryQuery.Term term) {
+                if (usesIsbnIndex(term)) {
+                    int position = isbnIndex.get(term.getIsbn());
+                    return position < 0 ? new int[0] : new int[] {position};
+                }
+                return attributes.lookup(term, items.size());
+            }
+
+            /**
+             * Checks whether the ISBN index finds every match of a term, which it does unless
+             * an ISBN is shared by several items.
+             */
+
+            private boolean usesIsbnIndex(LibraryQuery.Term term) {
+                boolean identifierField = term.getField() == LibraryQuery.Field.ISBN
+                        || term.getField() == LibraryQuery.Field.ID;
+                return identifierField && term.getIsbn() > 0 && unindexedIsbnLikeItems == 0
+                        && duplicateIsbnBooks == 0;
+            }
+        };
+    }
+
+    /**
+     * Retrieves all items in the library in the order they were added.
+     *
+     * @return A new list containing every item in the library.
+     */
+
+    public List<LibraryItem> getAllItems() {
+        return new ArrayList<>(items);
+    }
+
     /**
      * Retrieves an item from the library based on its unique identifier.
+     * Books can be found by either their ISBN-10 or ISBN-13, which is answered from
+     * the ISBN index without comparing identifiers.
      *
      * @param identifier The unique identifier of the item to be retrieved.
      * @return The item with the specified identifier or null if not found.
      */
 
     public LibraryItem getItemByIdentifier(String identifier) {
-        for (LibraryItem item : items) {
-            if (item.getUniqueIdentifier().equals(identifier)) {
-                return item;
+        int position = positionOf(identifier);
+        return position < 0 ? null : items.get(position);
+    }
+
+    /**
+     * Finds the position of the first item with the given identifier.
+     */
+
+    private int positionOf(String identifier) {
+        long isbn = IsbnIndex.normalize(identifier);
+        if (isbn > 0 && unindexedIsbnLikeItems == 0) {
+            return isbnIndex.get(isbn);
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getUniqueIdentifier().equals(identifier)) {
+                return i;
             }
         }
-        return null;
+        return -1;
+    }
+
+    /**
+     * Converts a unique identifier into the key items are matched by when catalogs are merged or
+     * compared. An ISBN becomes its canonical ISBN-13, as in lookups and shard routing, so both
+     * forms of a book's ISBN match; any other identifier is kept as it is.
+     *
+     * @param identifier The unique identifier.
+     * @return The canonical identifier.
+     */
+
+    static String canonicalIdentifier(String identifier) {
+        long isbn = IsbnIndex.normalize(identifier);
+        return isbn > 0 ? Long.toString(isbn) : identifier;
     }
 
     /**
@@ -93,16 +323,20 @@ public class Library implements Serializable {
             throw new IllegalArgumentException("Identifier cannot be null or empty");
         }
 
-        LibraryItem item = getItemByIdentifier(identifier);
-        if (item != null && "available".equals(item.getStatus())) {
-            item.borrowItem(borrowerName, borrowerContact); // Assuming LibraryItem and its subclasses have a method borrowItem
+        int position = positionOf(identifier);
+        LibraryItem item = position < 0 ? null : items.get(position);
+        if (item != null && item.checkOut(borrowerName, borrowerContact)) {
+            attributes.setBorrowed(position, "borrowed".equals(item.getStatus()));
+            publish(LibraryEvent.Type.BORROW, item, borrowerName, borrowerContact, 0);
             return true;
         }
         return false;
     }
 
     /**
-     * Returns a library item based on its unique identifier.
+     * Returns a library item based on its unique identifier. For an item with several copies,
+     * the lowest numbered copy on loan is returned; `returnItem(identifier, borrowerName)`
+     * returns the copy of a particular borrower.
      *
      * @param identifier The unique identifier of the item to be returned.
      * @return true if the item was successfully returned, false otherwise.
@@ -111,19 +345,103 @@ public class Library implements Serializable {
      */
 
     public boolean returnItem(String identifier) {
+        return returnItem(identifier, null);
+    }
+
+    /**
+     * Returns the copy of a library item that a borrower has, so the loans of the other borrowers
+     * of the same title are kept.
+     *
+     * @param identifier   The unique identifier of the item to be returned.
+     * @param borrowerName The name of the borrower returning a copy, or null to return the
+     *                     lowest numbered copy on loan.
+     * @return true if the item was successfully returned, false if it was not found or the
+     *         borrower has no copy of it.
+     * @throws IllegalArgumentException if identifier is null or empty, or the borrower name is empty.
+     */
+
+    public boolean returnItem(String identifier, String borrowerName) {
         if (identifier == null || identifier.isEmpty()) {
             throw new IllegalArgumentException("Identifier cannot be null or empty");
         }
+        if (borrowerName != null && borrowerName.isEmpty()) {
+            throw new IllegalArgumentException("Borrower name cannot be empty");
+        }
 
-        LibraryItem item = getItemByIdentifier(identifier);
-        if (item != null && "borrowed".equals(item.getStatus())) {
-            item.returnItem(identifier); // Assuming LibraryItem and its subclasses have a method returnItem
+        int position = positionOf(identifier);
+        LibraryItem item = position < 0 ? null : items.get(position);
+        if (item != null && item.checkIn(borrowerName)) {
+            attributes.setBorrowed(position, false);
+            publish(LibraryEvent.Type.RETURN, item, null, null, 0);
             return true;
         }
         return false;
     }
 
 
+    /**
+     * Adds copies of an item, so several borrowers can have the title at once while the catalog
+     * keeps one item for it. Borrowing and returning then lends and takes back one copy at a time,
+     * and the item is "borrowed" only while every copy is on loan.
+     *
+     * @param identifier The unique identifier of the item.
+     * @param count      The number of copies to add.
+     * @return true if the item was found and the copies were added, false otherwise.
+     * @throws IllegalArgumentException if identifier is null or empty, or the count is not positive.
+     */
+
+    public boolean addCopies(String identifier, int count) {
+        if (identifier == null || identifier.isEmpty()) {
+            throw new IllegalArgumentException("Identifier cannot be null or empty");
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException("Copy count must be positive");
+        }
+
+        int position = positionOf(identifier);
+        if (position < 0) {
+            return false;
+        }
+        LibraryItem item = items.get(position);
+        item.addCopies(count);
+        attributes.setBorrowed(position, false);
+        publish(LibraryEvent.Type.COPIES, item, null, null, count);
+        return true;
+    }
+
+    /**
+     * Audits the catalog in parallel: status and borrower fields must agree, identifiers must be
+     * unique and the ISBN, attribute and ordered indexes must list every item where it is.
+     * When asked to repair, items with an inconsistent status are made available, duplicates are
+     * removed and the indexes are rebuilt; identifiers shared by items of different types are
+     * only reported.
+     *
+     * @param repair Whether to repair the violations found.
+     * @return The report of the audit, taken before any repair.
+     */
+
+    public CatalogAudit audit(boolean repair) {
+        CatalogAudit audit = CatalogAudit.check(items, this::indexesAgree);
+        if (repair && audit.needsRepair()) {
+            replaceItems(CatalogAudit.repair(items, audit));
+            publish(LibraryEvent.Type.LOAD, null, null, null, items.size());
+        }
+        return audit;
+    }
+
+    /**
+     * Checks the index entries of the item at a position. Books must be found by their ISBN at
+     * the position of the first book with that ISBN.
+     */
+
+    private boolean indexesAgree(LibraryItem item, int position, int firstPosition) {
+        if (!attributes.agrees(item, position) || !ordered.contains(item, position)) {
+            return false;
+        }
+        long isbn = IsbnIndex.normalize(item.getUniqueIdentifier());
+        return !(item instanceof Book) || isbn < 0 || isbnIndex.get(isbn) == firstPosition;
+    }
+
     /**
      * Saves the list of library items to a file specified by the provided filename.
      * Throws IllegalArgumentException if the filename is null or empty.
@@ -139,17 +457,73 @@ public class Library implements Serializable {
             throw new IllegalArgumentException("Filename cannot be null or empty");
         }
 
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename))) {
-            out.writeObject(items);
-            System.out.println("Library items saved to file.");
-        } catch (IOException e) {
-            System.err.println("An error occurred while saving the library items to file: " + e.getMessage());
-            throw e; // Rethrowing the exception to handle it at a higher level 
+        writeItems(items, filename);
+        IndexSegments.delete(filename); // an index segment of an older save would no longer match
+    }
+
+    /**
+     * Saves the list of library items to a file and optionally writes the ISBN index to an index
+     * segment next to it, so that `loadFromFile` can map it instead of rebuilding it. The other
+     * indexes are always rebuilt from the items.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Whether to write the index segment as well.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to either file.
+     */
+
+    public void saveToFile(String filename, boolean writeIndexSegments) throws IOException {
+        saveToFile(filename);
+        if (writeIndexSegments) {
+            IndexSegments.write(filename, items.size(), isbnIndex, unindexedIsbnLikeItems, duplicateIsbnBooks);
+        }
+    }
+
+    /**
+     * Saves the library items to a block-compressed file that `loadFromFile` decodes in parallel,
+     * and optionally writes the ISBN index to an index segment next to it.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Whether to write the index segment as well.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to either file.
+     */
+
+    public void saveCompressedToFile(String filename, boolean writeIndexSegments) throws IOException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
         }
+
+        CompressedCatalogFile.write(getAllItems(), filename);
+        if (writeIndexSegments) {
+            IndexSegments.write(filename, items.size(), isbnIndex, unindexedIsbnLikeItems, duplicateIsbnBooks);
+        } else {
+            IndexSegments.delete(filename);
+        }
+    }
+
+    /**
+     * Exports the library items to a columnar file for reporting tools, with one column per
+     * field so a report reads only the fields it needs. See `ColumnarCatalogFile` for the format.
+     * The file cannot be loaded back into a library.
+     *
+     * @param filename The name of the file to export the items to.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    public void exportColumnar(String filename) throws IOException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        ColumnarCatalogFile.write(getAllItems(), filename);
     }
 
     /**
      * Loads the list of library items from a file specified by the provided filename.
+     * Both plain and block-compressed save files are accepted. If a matching index segment was
+     * saved with the file, the ISBN index is memory-mapped from it instead of being rebuilt; the
+     * attribute and ordered indexes and the packed attributes are rebuilt from the items.
      * Throws IllegalArgumentException if the filename is null or empty. 
      * IOException or ClassNotFoundException may be thrown during the file reading process.
      * 
@@ -165,15 +539,239 @@ public class Library implements Serializable {
             throw new IllegalArgumentException("Filename cannot be null or empty");
         }
 
+        List<LibraryItem> loaded = readItems(filename);
+        replaceItems(loaded, IndexSegments.open(filename, loaded.size()));
+        publish(LibraryEvent.Type.LOAD, null, null, null, items.size());
+    }
+
+    /**
+     * Merges the items of a saved library into this library instead of replacing them.
+     * Items are matched by their unique identifier, with ISBNs compared in their canonical form;
+     * when both sides hold an item with the same identifier, the policy decides which one is kept. Items that are new to the library are
+     * appended in the order they appear in the file.
+     *
+     * @param filename The name of the file to merge the items from.
+     * @param policy   The policy that resolves items present on both sides.
+     * @throws IllegalArgumentException if the filename is null or empty or the policy is null.
+     * @throws FileNotFoundException if the file does not exist.
+     * @throws IOException if there is an error reading from the file.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    public void mergeFromFile(String filename, MergePolicy policy) throws IOException, ClassNotFoundException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Merge policy cannot be null");
+        }
+
+        replaceItems(merge(items, readItems(filename), policy));
+        publish(LibraryEvent.Type.LOAD, null, null, null, items.size());
+    }
+
+    /**
+     * Applies a patch written by `CatalogDiff.compare`, bringing the items it lists to the state
+     * they had in the newer catalog: removed items are dropped, changed items are replaced and
+     * added items are appended. Items the patch does not list are kept as they are, so a patch
+     * between two snapshots of one branch can be applied to the catalog of another.
+     *
+     * @param patchFile The name of the patch file.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error reading the patch.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    public void applyPatch(String patchFile) throws IOException, ClassNotFoundException {
+        replaceItems(CatalogDiff.apply(items, CatalogDiff.readPatch(patchFile)));
+        publish(LibraryEvent.Type.LOAD, null, null, null, items.size());
+    }
+
+    /**
+     * Merges incoming items into a list of existing items. Duplicates within the incoming items
+     * are resolved with the same policy, in file order. Identifiers are computed and conflicts
+     * are resolved in parallel chunks; only the final placement of the items is sequential.
+     *
+     * @param existing The items that are already in the library; the list is not modified.
+     * @param incoming The items being merged.
+     * @param policy   The policy that resolves items present on both sides.
+     * @return The merged items, with existing items in their original positions.
+     */
+
+    static List<LibraryItem> merge(List<LibraryItem> existing, List<LibraryItem> incoming, MergePolicy policy) {
+        // An ordered parallel collect combines the chunk maps in encounter order.
+        Map<String, LibraryItem> deduplicated = incoming.parallelStream()
+                .collect(Collectors.toMap(item -> canonicalIdentifier(item.getUniqueIdentifier()), Function.identity(),
+                        policy::resolve, LinkedHashMap::new));
+
+        String[] existingIds = existing.parallelStream()
+                .map(item -> canonicalIdentifier(item.getUniqueIdentifier()))
+                .toArray(String[]::new);
+        Map<String, Integer> positions = new HashMap<>(existingIds.length * 2);
+        for (int i = 0; i < existingIds.length; i++) {
+            positions.putIfAbsent(existingIds[i], i); // lookups return the first match
+        }
+
+        String[] ids = deduplicated.keySet().toArray(new String[0]);
+        LibraryItem[] candidates = deduplicated.values().toArray(new LibraryItem[0]);
+        int[] targets = new int[ids.length];
+        IntStream.range(0, ids.length).parallel().forEach(i -> {
+            Integer position = positions.get(ids[i]);
+            targets[i] = position == null ? -1 : position;
+            if (position != null) {
+                candidates[i] = policy.resolve(existing.get(position), candidates[i]);
+            }
+        });
+
+        List<LibraryItem> merged = new ArrayList<>(existing.size() + ids.length);
+        merged.addAll(existing);
+        for (int i = 0; i < ids.length; i++) {
+            if (targets[i] < 0) {
+                merged.add(candidates[i]);
+            } else {
+                merged.set(targets[i], candidates[i]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Subscribes a listener to the changes made to this library from now on. Adds, borrows,
+     * returns, loads and merges are published through a pre-allocated ring buffer and delivered
+     * in order on a thread of the subscription, so the listener does not slow down the thread
+     * making the change unless it falls a whole ring behind.
+     *
+     * @param listener The listener to deliver the events to.
+     * @return The subscription, which stops the delivery when closed.
+     * @throws IllegalArgumentException if the listener is null.
+     */
+
+    public synchronized LibraryEventRing.Subscription subscribe(LibraryEventListener listener) {
+        if (events == null) {
+            events = new LibraryEventRing(EVENT_RING_CAPACITY);
+        }
+        return events.subscribe(listener);
+    }
+
+    /**
+     * Publishes a change to the subscribers, if there are any.
+     *
+     * @param type            The kind of change.
+     * @param item            The changed item, or null for a load.
+     * @param borrowerName    The borrower name of a borrow, otherwise null.
+     * @param borrowerContact The borrower contact of a borrow, otherwise null.
+     * @param itemCount       The number of items after a load, otherwise 0.
+     */
+
+    void publish(LibraryEvent.Type type, LibraryItem item, String borrowerName, String borrowerContact,
+            int itemCount) {
+        LibraryEventRing ring = events;
+        if (ring != null) {
+            ring.publish(type, item, item == null ? null : item.getUniqueIdentifier(), borrowerName,
+                    borrowerContact, itemCount);
+        }
+    }
+
+    /**
+     * Checks whether the ISBN index is currently read from a memory-mapped index segment.
+     *
+     * @return true if the last load opened an index segment that has not been modified since.
+     */
+
+    boolean usesIndexSegments() {
+        return isbnIndex.isMapped();
+    }
+
+    /**
+     * Replaces every item of the library with the given items.
+     *
+     * @param newItems The items the library should contain from now on.
+     */
+
+    void replaceItems(List<LibraryItem> newItems) {
+        replaceItems(newItems, null);
+    }
+
+    /**
+     * Replaces every item of the library, taking the ISBN index from an index segment of the
+     * items if there is one. The other indexes are rebuilt from the items either way.
+     */
+
+    private void replaceItems(List<LibraryItem> newItems, IndexSegments segments) {
+        items = new ArrayList<>(newItems);
+        generation++;
+        if (segments == null) {
+            isbnIndex.clear();
+            unindexedIsbnLikeItems = 0;
+            duplicateIsbnBooks = 0;
+        } else {
+            isbnIndex = segments.getIsbnIndex();
+            unindexedIsbnLikeItems = segments.getUnindexedIsbnLikeItems();
+            duplicateIsbnBooks = segments.getDuplicateIsbnBooks();
+        }
+        attributes.clear();
+        ordered.clear();
+        packed.clear();
+        for (int i = 0; i < items.size(); i++) {
+            if (segments == null) {
+                index(items.get(i), i);
+            } else {
+                indexAttributes(items.get(i), i);
+            }
+        }
+    }
+
+    /**
+     * Restores a serialized library. The ordered index and the packed attributes are not
+     * serializable and are rebuilt from the items.
+     */
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ordered = new OrderedIndex();
+        packed = new PackedAttributes();
+        for (int i = 0; i < items.size(); i++) {
+            ordered.add(items.get(i), i);
+            packed.add(items.get(i));
+        }
+    }
+
+    /**
+     * Writes a list of library items to a file in the format used by `saveToFile`.
+     *
+     * @param items    The items to write.
+     * @param filename The name of the file to save the items to.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    static void writeItems(List<LibraryItem> items, String filename) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename))) {
+            out.writeObject(items);
+        }
+    }
+
+    /**
+     * Reads a list of library items from a file written by `saveToFile` or `saveCompressedToFile`.
+     *
+     * @param filename The name of the file to load the items from.
+     * @return The items stored in the file.
+     * @throws FileNotFoundException if the file does not exist.
+     * @throws IOException if there is an error reading from the file, or it does not hold a
+     *         list of library items.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @SuppressWarnings("unchecked")
+    static List<LibraryItem> readItems(String filename) throws IOException, ClassNotFoundException {
+        if (new File(filename).isFile() && CompressedCatalogFile.isCompressed(filename)) {
+            return CompressedCatalogFile.read(filename);
+        }
         try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename))) {
-            items = (List<LibraryItem>) in.readObject();
-            System.out.println("Library items loaded from file.");
-        } catch (FileNotFoundException e) {
-            System.err.println("File not found: " + e.getMessage());
-            throw e;
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("An error occurred while loading the library items from file: " + e.getMessage());
-            throw e;
+            Object content = in.readObject();
+            if (!(content instanceof List) || !((List<?>) content).stream().allMatch(LibraryItem.class::isInstance)) {
+                throw new IOException("Not a catalog file: " + filename);
+            }
+            return (List<LibraryItem>) content;
         }
     }
 }
@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The `LibraryCommandProcessor` class executes single-line text commands against a `Library`.
+ * It is shared by the network server and any other front end that drives the library without
+ * the interactive menus. Fields of a command are separated by the '|' character:
+ *
+ * <pre>
+ * ADD BOOK|title|author|isbn
+ * ADD DVD|title|genre|director
+ * ADD CD|title|artist|genre
+ * SEARCH term
+ * QUERY author:salinger AND type:book NOT status:borrowed
+ * BORROW identifier|borrower name|borrower contact
+ * RETURN identifier[|borrower name]
+ * SAVE filename
+ * LOAD filename
+ * </pre>
+ *
+ * Every command produces exactly one status line starting with "OK", "FAIL" or "ERR".
+ * A successful SEARCH or QUERY reports the number of matches on its status line and is
+ * followed by one line per matching item.
+ *
+ * A processor serving remote clients is given a data directory: SAVE and LOAD then resolve
+ * their filename against it and refuse any path that leads outside of it.
+ */
+
+public class LibraryCommandProcessor {
+    private final Library library;
+    private final Path dataDirectory; // null when filenames are used as given
+
+    /**
+     * Constructs a new LibraryCommandProcessor for the given library.
+     *
+     * @param library The library the commands are executed against.
+     * @throws IllegalArgumentException if the library is null.
+     */
+
+    public LibraryCommandProcessor(Library library) {
+        this(library, null);
+    }
+
+    /**
+     * Constructs a new LibraryCommandProcessor that only saves and loads files inside a directory.
+     *
+     * @param library       The library the commands are executed against.
+     * @param dataDirectory The directory SAVE and LOAD filenames are resolved against, or null
+     *                      to use filenames as given.
+     * @throws IllegalArgumentException if the library is null.
+     */
+
+    public LibraryCommandProcessor(Library library, Path dataDirectory) {
+        if (library == null) {
+            throw new IllegalArgumentException("Library cannot be null");
+        }
+        this.library = library;
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * Executes one command line and appends the response lines to the output.
+     * Invalid commands and commands the library fails to execute, for example because it is
+     * read-only, are reported as "ERR" responses rather than thrown.
+     *
+     * @param line The command line to execute, without the line terminator.
+     * @param out  The destination for the response lines.
+     * @throws IOException if appending to the output fails.
+     */
+
+    public void execute(String line, Appendable out) throws IOException {
+        for (LibraryItem item : executeDeferred(line, out)) {
+            appendItem(item, out);
+        }
+    }
+
+    /**
+     * Executes one command line like `execute`, but leaves the item lines of a successful SEARCH
+     * or QUERY to the caller: only the status line is appended and the matching items are
+     * returned, so that a large result can be written a part at a time with `appendItem`.
+     *
+     * @param line The command line to execute, without the line terminator.
+     * @param out  The destination for the response lines.
+     * @return The items whose lines still have to be appended, empty for other commands.
+     * @throws IOException if appending to the output fails.
+     */
+
+    public List<LibraryItem> executeDeferred(String line, Appendable out) throws IOException {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty()) {
+            out.append("ERR Empty command\n");
+            return List.of();
+        }
+        int space = trimmed.indexOf(' ');
+        String command = (space < 0 ? trimmed : trimmed.substring(0, space)).toUpperCase();
+        String argument = space < 0 ? "" : trimmed.substring(space + 1).trim();
+
+        try {
+            switch (command) {
+            case "ADD":
+                addItem(argument, out);
+                break;
+            case "SEARCH":
+                return searchItems(argument, out);
+            case "QUERY":
+                return queryItems(argument, out);
+            case "BORROW":
+                borrowItem(argument, out);
+                break;
+            case "RETURN":
+                returnItem(argument, out);
+                break;
+            case "SAVE":
+                saveToFile(argument, out);
+                break;
+            case "LOAD":
+                loadFromFile(argument, out);
+                break;
+            default:
+                out.append("ERR Unknown command: ").append(command).append('\n');
+                break;
+            }
+        } catch (IllegalArgumentException e) {
+            out.append("ERR ").append(String.valueOf(e.getMessage())).append('\n');
+        } catch (RuntimeException e) {
+            out.append("ERR Command failed: ").append(e.getClass().getSimpleName());
+            if (e.getMessage() != null) {
+                out.append(": ").append(e.getMessage());
+            }
+            out.append('\n');
+        }
+        return List.of();
+    }
+
+    /**
+     * Appends the response line of one item of a SEARCH or QUERY result.
+     *
+     * @param item The item to describe.
+     * @param out  The destination for the line.
+     * @throws IOException if appending to the output fails.
+     */
+
+    public static void appendItem(LibraryItem item, Appendable out) throws IOException {
+        out.append(item.toString()).append('\n');
+    }
+
+    /**
+     * Handles the ADD command. The first field names the item type and is followed by
+     * the constructor arguments of that type.
+     */
+
+    private void addItem(String argument, Appendable out) throws IOException {
+        String[] fields = splitFields(argument, 4);
+        if (fields == null) {
+            out.append("ERR Usage: ADD BOOK|DVD|CD followed by 3 fields separated by '|'\n");
+            return;
+        }
+        String type = fields[0].toUpperCase();
+
+        LibraryItem item;
+        switch (type) {
+        case "BOOK":
+            item = new Book(fields[1], fields[2], fields[3]);
+            break;
+        case "DVD":
+            item = new DVD(fields[1], fields[2], fields[3]);
+            break;
+        case "CD":
+            item = new CD(fields[1], fields[2], fields[3]);
+            break;
+        default:
+            out.append("ERR Unknown item type: ").append(type).append('\n');
+            return;
+        }
+        library.addItem(item);
+        out.append("OK ").append(item.getUniqueIdentifier()).append('\n');
+    }
+
+    /**
+     * Handles the SEARCH command. An empty term matches every item.
+     */
+
+    private List<LibraryItem> searchItems(String argument, Appendable out) throws IOException {
+        List<LibraryItem> matchingItems = library.searchItems(argument);
+        out.append("OK ").append(Integer.toString(matchingItems.size())).append('\n');
+        return matchingItems;
+    }
+
+    /**
+     * Handles the QUERY command. The argument is parsed by `LibraryQuery`.
+     */
+
+    private List<LibraryItem> queryItems(String argument, Appendable out) throws IOException {
+        List<LibraryItem> matchingItems = library.query(argument);
+        out.append("OK ").append(Integer.toString(matchingItems.size())).append('\n');
+        return matchingItems;
+    }
+
+    /**
+     * Handles the BORROW command.
+     */
+
+    private void borrowItem(String argument, Appendable out) throws IOException {
+        String[] fields = splitFields(argument, 3);
+        if (fields == null) {
+            out.append("ERR Usage: BORROW identifier|name|contact\n");
+            return;
+        }
+        if (library.borrowItem(fields[0], fields[1], fields[2])) {
+            out.append("OK\n");
+        } else {
+            out.append("FAIL Item is unavailable or not found\n");
+        }
+    }
+
+    /**
+     * Handles the RETURN command. A borrower name after the identifier returns that borrower's
+     * copy of an item with several copies.
+     */
+
+    private void returnItem(String argument, Appendable out) throws IOException {
+        String[] fields = argument.indexOf('|') < 0 ? new String[] {argument} : splitFields(argument, 2);
+        if (fields == null || fields[0].isEmpty() || fields.length == 2 && fields[1].isEmpty()) {
+            out.append("ERR Usage: RETURN identifier[|name]\n");
+            return;
+        }
+        if (library.returnItem(fields[0], fields.length == 2 ? fields[1] : null)) {
+            out.append("OK\n");
+        } else {
+            out.append("FAIL Item is not borrowed or not found\n");
+        }
+    }
+
+    /**
+     * Handles the SAVE command. Failures of the library's file operation are reported
+     * as an "ERR" response; only failures of the output itself are thrown.
+     */
+
+    private void saveToFile(String argument, Appendable out) throws IOException {
+        try {
+            library.saveToFile(resolve(argument));
+        } catch (IOException e) {
+            out.append("ERR ").append(String.valueOf(e.getMessage())).append('\n');
+            return;
+        }
+        out.append("OK\n");
+    }
+
+    /**
+     * Handles the LOAD command. Failures of the library's file operation are reported
+     * as an "ERR" response; only failures of the output itself are thrown.
+     */
+
+    private void loadFromFile(String argument, Appendable out) throws IOException {
+        try {
+            library.loadFromFile(resolve(argument));
+        } catch (IOException | ClassNotFoundException e) {
+            out.append("ERR ").append(String.valueOf(e.getMessage())).append('\n');
+            return;
+        }
+        out.append("OK\n");
+    }
+
+    /**
+     * Resolves the filename of a SAVE or LOAD command against the data directory. The directory
+     * that will hold the file must exist, and neither `..` nor a symbolic link may lead out of
+     * the data directory.
+     *
+     * @return The path to use.
+     * @throws IllegalArgumentException if the filename leads outside of the data directory.
+     * @throws IOException if the directories cannot be resolved.
+     */
+
+    private String resolve(String filename) throws IOException {
+        if (dataDirectory == null || filename.isEmpty()) {
+            return filename;
+        }
+        Path base = dataDirectory.toRealPath();
+        Path resolved = base.resolve(filename).normalize();
+        if (!resolved.startsWith(base) || resolved.equals(base)
+                || !resolved.getParent().toRealPath().startsWith(base)
+                || resolved.toFile().exists() && !resolved.toRealPath().startsWith(base)) {
+            throw new IllegalArgumentException("File is outside the data directory: " + filename);
+        }
+        return resolved.toString();
+    }
+
+    /**
+     * Splits a '|' separated argument into exactly the expected number of trimmed fields.
+     *
+     * @return The fields, or null if the number of fields does not match.
+     */
+
+    private static String[] splitFields(String argument, int expected) {
+        String[] fields = argument.split("\\|", -1);
+        if (fields.length != expected) {
+            return null;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].trim();
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * The `LibraryEvent` class describes one change made to a `Library`. Events are pre-allocated
+ * slots of a `LibraryEventRing` and are reused once every subscriber has processed them, so a
+ * listener must copy any value it wants to keep after `onEvent` returns.
+ */
+
+public final class LibraryEvent {
+    /**
+     * The kinds of changes that are published.
+     */
+    public enum Type {
+        ADD, BORROW, RETURN, LOAD, COPIES
+    }
+
+    private Type type;
+    private long timestamp;
+    private String identifier;
+    private LibraryItem item;
+    private String borrowerName;
+    private String borrowerContact;
+    private int itemCount;
+
+    /**
+     * Fills the slot with a new change; only called by the ring while it owns the slot.
+     */
+
+    void set(Type type, LibraryItem item, String identifier, String borrowerName, String borrowerContact,
+            int itemCount) {
+        this.type = type;
+        this.timestamp = System.currentTimeMillis();
+        this.item = item;
+        this.identifier = identifier;
+        this.borrowerName = borrowerName;
+        this.borrowerContact = borrowerContact;
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * Retrieves the kind of change.
+     *
+     * @return The event type.
+     */
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the time the change was published.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Retrieves the unique identifier of the changed item.
+     *
+     * @return The identifier, or null for a load.
+     */
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * Retrieves the added, borrowed or returned item, or the item that copies were added to.
+     *
+     * @return The item, or null for a load.
+     */
+
+    public LibraryItem getItem() {
+        return item;
+    }
+
+    /**
+     * Retrieves the name of the borrower of a borrow event.
+     *
+     * @return The borrower name, or null for other events.
+     */
+
+    public String getBorrowerName() {
+        return borrowerName;
+    }
+
+    /**
+     * Retrieves the contact information of the borrower of a borrow event.
+     *
+     * @return The borrower contact, or null for other events.
+     */
+
+    public String getBorrowerContact() {
+        return borrowerContact;
+    }
+
+    /**
+     * Retrieves the number of items in the library after a load, or the number of copies added
+     * by a copies event.
+     *
+     * @return The item or copy count, or 0 for other events.
+     */
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Creates a string representation of the event.
+     *
+     * @return A string representation of the event.
+     */
+
+    @Override
+    public String toString() {
+        if (type == Type.COPIES) {
+            return "COPIES " + identifier + " +" + itemCount;
+        }
+        return type == Type.LOAD ? "LOAD " + itemCount + " items" : type + " " + identifier;
+    }
+}
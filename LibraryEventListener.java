@@ -0,0 +1,18 @@
+/**
+ * The `LibraryEventListener` interface receives the changes published by a `Library`
+ * it has subscribed to.
+ */
+
+@FunctionalInterface
+public interface LibraryEventListener {
+
+    /**
+     * Processes one event. Events arrive in publication order on the subscription's own thread.
+     *
+     * @param event      The event; it is reused after this method returns.
+     * @param sequence   The sequence number of the event.
+     * @param endOfBatch Whether this is the last event currently available, which is a good
+     *                   moment to flush any work batched by the listener.
+     */
+    void onEvent(LibraryEvent event, long sequence, boolean endOfBatch);
+}
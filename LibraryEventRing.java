@@ -0,0 +1,252 @@
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The `LibraryEventRing` class delivers `LibraryEvent`s from any number of publishing threads to
+ * any number of subscribers through a ring of pre-allocated event slots, in the style of the LMAX
+ * Disruptor. A publisher claims the next sequence number with a single compare-and-set, fills the
+ * slot and marks it available; no objects are allocated and no locks are taken. Each subscription
+ * runs its listener on its own thread and processes every event that is available at once as a
+ * batch. A publisher only waits when the slowest subscription is a whole ring behind, which keeps
+ * memory bounded and pushes back on producers that outrun their consumers.
+ */
+
+public final class LibraryEventRing {
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private final LibraryEvent[] entries;
+    private final int mask;
+    private final int indexShift;
+    private final AtomicIntegerArray available;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Initializes a new ring with the given number of pre-allocated slots.
+     *
+     * @param capacity The number of slots, which must be a power of two.
+     * @throws IllegalArgumentException if the capacity is not a positive power of two.
+     */
+
+    public LibraryEventRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two");
+        }
+        entries = new LibraryEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new LibraryEvent();
+        }
+        mask = capacity - 1;
+        indexShift = Integer.numberOfTrailingZeros(capacity);
+        available = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            available.set(i, -1);
+        }
+    }
+
+    /**
+     * Starts delivering every event published from now on to a listener on a new thread.
+     *
+     * @param listener The listener to deliver the events to.
+     * @return The subscription, which stops the delivery when closed.
+     * @throws IllegalArgumentException if the listener is null.
+     */
+
+    public synchronized Subscription subscribe(LibraryEventListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        Subscription subscription = new Subscription(listener, cursor.get());
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Retrieves the sequence number of the latest claimed event.
+     *
+     * @return The sequence number, or -1 if nothing was published yet.
+     */
+
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Retrieves the number of active subscriptions.
+     *
+     * @return The number of subscriptions.
+     */
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Publishes an event to every subscription. Returns at once if there are no subscriptions.
+     *
+     * @param type            The kind of change.
+     * @param item            The changed item, or null for a load.
+     * @param identifier      The identifier of the changed item, or null for a load.
+     * @param borrowerName    The borrower name of a borrow, otherwise null.
+     * @param borrowerContact The borrower contact of a borrow, otherwise null.
+     * @param itemCount       The number of items after a load, otherwise 0.
+     * @return The sequence number of the event, or -1 if it was not published.
+     */
+
+    public long publish(LibraryEvent.Type type, LibraryItem item, String identifier, String borrowerName,
+            String borrowerContact, int itemCount) {
+        if (subscriptions.isEmpty()) {
+            return -1;
+        }
+        long sequence = claim();
+        entries[(int) sequence & mask].set(type, item, identifier, borrowerName, borrowerContact, itemCount);
+        // The volatile write makes the filled slot visible to the subscriptions.
+        available.set((int) sequence & mask, (int) (sequence >>> indexShift));
+        return sequence;
+    }
+
+    /**
+     * Claims the next sequence number, waiting while its slot is still needed by a subscription.
+     */
+
+    private long claim() {
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - entries.length;
+            if (wrapPoint > minimumSequence(current)) {
+                LockSupport.parkNanos(1);
+            } else if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Finds the sequence number of the slowest subscription.
+     */
+
+    private long minimumSequence(long fallback) {
+        long minimum = fallback;
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Finds the highest sequence number up to which every slot has been published.
+     */
+
+    private long highestPublished(long from, long upTo) {
+        for (long sequence = from; sequence <= upTo; sequence++) {
+            if (available.get((int) sequence & mask) != (int) (sequence >>> indexShift)) {
+                return sequence - 1;
+            }
+        }
+        return upTo;
+    }
+
+    /**
+     * The `Subscription` class delivers the events of a ring to one listener on its own thread.
+     * Its sequence number tells publishers which slots it has finished with.
+     */
+
+    public final class Subscription implements Closeable {
+        private final LibraryEventListener listener;
+        private final AtomicLong sequence;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        /**
+         * Creates a subscription that starts after the given sequence number.
+         */
+
+        private Subscription(LibraryEventListener listener, long start) {
+            this.listener = listener;
+            this.sequence = new AtomicLong(start);
+            this.thread = new Thread(this::run, "library-events");
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Retrieves the sequence number of the latest event processed by the listener.
+         *
+         * @return The sequence number.
+         */
+
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * Waits until the listener has processed the given sequence number.
+         *
+         * @param target        The sequence number to wait for.
+         * @param timeoutMillis The maximum time to wait.
+         * @return true if the sequence was processed in time, false otherwise.
+         */
+
+        public boolean awaitSequence(long target, long timeoutMillis) {
+            long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+            while (sequence.get() < target) {
+                if (System.nanoTime() - deadline > 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            return true;
+        }
+
+        /**
+         * Stops the delivery and releases the slots held by this subscription.
+         * Events that were published but not processed yet are dropped.
+         */
+
+        @Override
+        public void close() {
+            running = false;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Processes all available events in batches until the subscription is closed.
+         */
+
+        private void run() {
+            int idle = 0;
+            while (running) {
+                long next = sequence.get() + 1;
+                long published = highestPublished(next, cursor.get());
+                if (published < next) {
+                    if (idle < SPIN_TRIES) {
+                        Thread.onSpinWait();
+                    } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(PARK_NANOS);
+                    }
+                    idle++;
+                    continue;
+                }
+                idle = 0;
+                for (long s = next; s <= published; s++) {
+                    try {
+                        listener.onEvent(entries[(int) s & mask], s, s == published);
+                    } catch (RuntimeException e) {
+                        System.err.println("Library event listener failed: " + e.getMessage());
+                    }
+                }
+                sequence.set(published);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The LibraryEventRingTest class contains unit tests for the LibraryEventRing class and the
+ * event subscriptions of `Library`. It tests delivery order, multiple producers and consumers,
+ * batching and backpressure.
+ */
+
+public class LibraryEventRingTest {
+
+    /**
+     * Tests that library mutations are delivered to a subscriber as events in order.
+     */
+
+    @Test
+    public void testLibraryPublishesMutations() throws IOException, ClassNotFoundException {
+        Library library = new Library();
+        List<String> received = new ArrayList<>();
+        LibraryEventRing.Subscription subscription = library.subscribe((event, sequence, endOfBatch) -> {
+            synchronized (received) {
+                received.add(event.getType() + " " + (event.getType() == LibraryEvent.Type.LOAD
+                        ? String.valueOf(event.getItemCount()) : event.getIdentifier()));
+            }
+        });
+
+        String testFilename = "test_events_library.libtest";
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        library.addItem(new CD("Thriller", "Michael Jackson", "Pop"));
+        library.borrowItem("978-0-316-76917-4", "John Doe", "johndoe@students.csu.edu");
+        library.borrowItem("0316769177", "Jane Doe", "janedoe@students.csu.edu");
+        library.returnItem("0316769177");
+        library.saveToFile(testFilename);
+        library.loadFromFile(testFilename);
+        new File(testFilename).delete();
+
+        Assert.assertTrue(subscription.awaitSequence(4, 5000));
+        subscription.close();
+        Assert.assertEquals(List.of("ADD 0316769177", "ADD Thriller_Michael Jackson", "BORROW 0316769177",
+                "RETURN 0316769177", "LOAD 2"), received);
+    }
+
+    /**
+     * Tests that every event of several producers reaches every consumer exactly once,
+     * with each producer's events in the order they were published.
+     */
+
+    @Test
+    public void testMultipleProducersAndConsumers() throws InterruptedException {
+        LibraryEventRing ring = new LibraryEventRing(1024);
+        int producers = 4;
+        int perProducer = 50000;
+        List<LibraryItem> items = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            items.add(new CD("Album " + p, "Artist", "Rock"));
+        }
+
+        AtomicInteger batches = new AtomicInteger();
+        long[][] lastCount = new long[2][producers];
+        AtomicLong[] totals = {new AtomicLong(), new AtomicLong()};
+        boolean[] ordered = {true, true};
+        List<LibraryEventRing.Subscription> subscriptions = new ArrayList<>();
+        for (int c = 0; c < 2; c++) {
+            int consumer = c;
+            subscriptions.add(ring.subscribe((event, sequence, endOfBatch) -> {
+                int producer = items.indexOf(event.getItem());
+                if (event.getItemCount() != lastCount[consumer][producer] + 1) {
+                    ordered[consumer] = false;
+                }
+                lastCount[consumer][producer] = event.getItemCount();
+                totals[consumer].incrementAndGet();
+                if (endOfBatch) {
+                    batches.incrementAndGet();
+                }
+            }));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            LibraryItem item = items.get(p);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 1; i <= perProducer; i++) {
+                    ring.publish(LibraryEvent.Type.ADD, item, item.getUniqueIdentifier(), null, null, i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long last = ring.getCursor();
+        Assert.assertEquals(producers * perProducer - 1, last);
+        for (int c = 0; c < 2; c++) {
+            Assert.assertTrue(subscriptions.get(c).awaitSequence(last, 10000));
+            Assert.assertEquals(producers * perProducer, totals[c].get());
+            Assert.assertTrue("Events of a producer arrived out of order", ordered[c]);
+            subscriptions.get(c).close();
+        }
+        Assert.assertTrue(batches.get() > 0);
+    }
+
+    /**
+     * Tests that a publisher waits for a slow subscriber instead of overwriting events it has
+     * not processed yet.
+     */
+
+    @Test
+    public void testBackpressure() throws InterruptedException {
+        LibraryEventRing ring = new LibraryEventRing(8);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger processed = new AtomicInteger();
+        LibraryEventRing.Subscription subscription = ring.subscribe((event, sequence, endOfBatch) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (event.getItemCount() == processed.get()) {
+                processed.incrementAndGet();
+            }
+        });
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                ring.publish(LibraryEvent.Type.LOAD, null, null, null, null, i);
+            }
+        });
+        producer.start();
+        Thread.sleep(200);
+        Assert.assertTrue("The publisher should be held back by the ring", ring.getCursor() < 10);
+        release.countDown();
+        producer.join(10000);
+        Assert.assertTrue(subscription.awaitSequence(99, 10000));
+        Assert.assertEquals(100, processed.get());
+        subscription.close();
+    }
+
+    /**
+     * Tests that nothing is published without subscribers and that a ring capacity
+     * that is not a power of two is rejected.
+     */
+
+    @Test
+    public void testPublishWithoutSubscribers() {
+        LibraryEventRing ring = new LibraryEventRing(4);
+        Assert.assertEquals(-1, ring.publish(LibraryEvent.Type.LOAD, null, null, null, null, 0));
+        Assert.assertThrows(IllegalArgumentException.class, () -> new LibraryEventRing(6));
+    }
+
+    /**
+     * Tests that adding copies is published by plain, sharded and versioned libraries.
+     */
+
+    @Test
+    public void testAddCopiesIsPublished() throws InterruptedException {
+        Library[] libraries = {new Library(), new ShardedLibrary(4), new VersionedLibrary()};
+        for (Library library : libraries) {
+            List<String> received = new ArrayList<>();
+            LibraryEventRing.Subscription subscription = library.subscribe((event, sequence, endOfBatch) -> {
+                if (event.getType() == LibraryEvent.Type.COPIES) {
+                    synchronized (received) {
+                        received.add(event + " of " + event.getItem().getCopyCount());
+                    }
+                }
+            });
+            library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+            Assert.assertTrue(library.addCopies("0316769177", 2));
+            Assert.assertFalse(library.addCopies("unknown", 2));
+
+            Assert.assertTrue(subscription.awaitSequence(1, 5000));
+            subscription.close();
+            Assert.assertEquals(library.getClass().getName(), List.of("COPIES 0316769177 +2 of 3"), received);
+        }
+    }
+}
@@ -1,15 +1,28 @@
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * The `LibraryItem` class serves as a parent class for items in the library such as books, DVDs, and CDs.
+ *
+ * An item is a single copy until copies are added with `addCopies`. From then on it keeps one
+ * loan record per borrowed copy in its `Holdings`, and is "available" while at least one copy is
+ * on the shelf. `checkOut` and `checkIn` borrow and return one copy, and are safe to call from
+ * several threads at once: a single copy is lent and returned while holding the item's monitor,
+ * and several copies go through the compare-and-set operations of their holdings. The other
+ * mutators, such as `borrowItem` and `addCopies`, are not synchronized.
  */
 
-public abstract class LibraryItem implements Serializable {
+public abstract class LibraryItem implements Serializable, Cloneable {
+    private static final long serialVersionUID = -1412700853007456535L;
+
     private String title;
     private String status;
     private String borrowerName;
     private String borrowerContact;
+    private long statusChangedAt; // 0 for items saved before status times were recorded
+    private transient String lowerCaseTitle; // computed by the first search
+    private volatile Holdings holdings; // null while the item is a single copy
 
     /**
      * Initializes a new instance of the `LibraryItem` class with the provided title.
@@ -26,6 +39,7 @@ public abstract class LibraryItem implements Serializable {
         }
         this.title = title;
         this.status = "available";
+        this.statusChangedAt = System.currentTimeMillis();
     }
 
     /**
@@ -45,6 +59,29 @@ public abstract class LibraryItem implements Serializable {
         return title;
     }
 
+    /**
+     * Retrieves the title in lower case for searches. It is computed once and kept, since the
+     * title never changes.
+     *
+     * @return The lower case title.
+     */
+    String getLowerCaseTitle() {
+        String lowerCase = lowerCaseTitle;
+        if (lowerCase == null) {
+            lowerCase = title.toLowerCase();
+            lowerCaseTitle = lowerCase;
+        }
+        return lowerCase;
+    }
+
+    /**
+     * Computes the lower case attributes that searches keep on the item, so the first search
+     * after a load does not have to.
+     */
+    void warmSearchCaches() {
+        getSearchableAttributes();
+    }
+
     /**
      * Gets the unique identifier of the library item.
      * 
@@ -59,52 +96,267 @@ public abstract class LibraryItem implements Serializable {
      * @return The status of the item.
      */
     public String getStatus() {
+        Holdings holdings = this.holdings;
+        if (holdings != null) {
+            return holdings.getAvailableCopies() > 0 ? "available" : "borrowed";
+        }
         return status;
     }
 
     /**
-     * Borrows the item and sets borrower information.
+     * Borrows the item and sets borrower information. An item with several copies lends one
+     * copy if any is available.
      *
      * @param borrowerName    The name of the borrower.
      * @param borrowerContact The contact information of the borrower.
      */
     public void borrowItem(String borrowerName, String borrowerContact) {
+        if (holdings != null) {
+            checkOut(borrowerName, borrowerContact);
+            return;
+        }
         this.borrowerName = borrowerName;
         this.borrowerContact = borrowerContact;
         this.status = "borrowed";
+        this.statusChangedAt = System.currentTimeMillis();
     }
 
     /**
      * Returns the item, marking it as available. Clears the borrower's name and contact 
-     * after item has been returned.
+     * after item has been returned. An item with several copies gets back its lowest numbered
+     * copy on loan.
      *
      * @param borrowerName    The name of the borrower returning the item.
      * @param borrowerContact The contact information of the borrower returning the item.
      */
     public void returnItem(String identifier) {
+        if (holdings != null) {
+            checkIn();
+            return;
+        }
+        this.status = "available";
+        this.borrowerName = "";
+        this.borrowerContact = "";
+        this.statusChangedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Borrows one copy of the item if a copy is available. For an item with several copies this
+     * is a compare-and-set on the number of available copies, so concurrent borrowers of the
+     * same title never wait for each other.
+     *
+     * @param borrowerName    The name of the borrower.
+     * @param borrowerContact The contact information of the borrower.
+     * @return true if a copy was borrowed, false if every copy is on loan.
+     */
+    public boolean checkOut(String borrowerName, String borrowerContact) {
+        Holdings holdings = this.holdings;
+        if (holdings == null) {
+            synchronized (this) {
+                if (!"available".equals(status)) {
+                    return false;
+                }
+                borrowItem(borrowerName, borrowerContact);
+                return true;
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (holdings.checkOut(borrowerName, borrowerContact, now) < 0) {
+            return false;
+        }
+        this.statusChangedAt = now;
+        return true;
+    }
+
+    /**
+     * Returns one borrowed copy of the item, the lowest numbered one if several are on loan.
+     *
+     * @return true if a copy was returned, false if no copy is on loan.
+     */
+    public boolean checkIn() {
+        return checkIn((String) null);
+    }
+
+    /**
+     * Returns the copy a borrower has, the lowest numbered one if the borrower has several.
+     * The other borrowers of the item keep their copies.
+     *
+     * @param borrowerName The name of the borrower, or null to return any borrowed copy.
+     * @return true if a copy was returned, false if the borrower has no copy on loan.
+     */
+    public boolean checkIn(String borrowerName) {
+        Holdings holdings = this.holdings;
+        if (holdings == null) {
+            synchronized (this) {
+                if (!"borrowed".equals(status)
+                        || borrowerName != null && !borrowerName.equals(this.borrowerName)) {
+                    return false;
+                }
+                returnItem(getUniqueIdentifier());
+                return true;
+            }
+        }
+        if (holdings.checkIn(borrowerName) < 0) {
+            return false;
+        }
+        this.statusChangedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Returns a particular copy of the item, as numbered by `Loan.getCopy`.
+     *
+     * @param copy The number of the copy.
+     * @return true if the copy was on loan and is now returned, false otherwise.
+     */
+    public boolean checkIn(int copy) {
+        Holdings holdings = this.holdings;
+        if (holdings == null) {
+            return copy == 0 && checkIn();
+        }
+        if (!holdings.checkIn(copy)) {
+            return false;
+        }
+        this.statusChangedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Adds copies of the item. The metadata is shared by all copies; each copy only adds a slot
+     * for its loan. Copies must not be added while other threads borrow or return the item.
+     *
+     * @param count The number of copies to add.
+     * @throws IllegalArgumentException if the count is not positive.
+     */
+    public void addCopies(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Copy count must be positive");
+        }
+        if (holdings != null) {
+            holdings = holdings.withCopies(count);
+            return;
+        }
+        Loan loan = "borrowed".equals(status)
+                ? new Loan(0, borrowerName, borrowerContact, statusChangedAt)
+                : null;
+        holdings = Holdings.of(1 + count, loan);
         this.status = "available";
         this.borrowerName = "";
         this.borrowerContact = "";
     }
 
     /**
-     * Retrieves the name of the borrower who has borrowed the item.
+     * Retrieves the number of copies of the item.
+     *
+     * @return The number of copies, 1 unless copies were added.
+     */
+    public int getCopyCount() {
+        Holdings holdings = this.holdings;
+        return holdings == null ? 1 : holdings.getCopyCount();
+    }
+
+    /**
+     * Retrieves the number of copies that are not on loan.
+     *
+     * @return The number of available copies.
+     */
+    public int getAvailableCopies() {
+        Holdings holdings = this.holdings;
+        if (holdings == null) {
+            return "available".equals(status) ? 1 : 0;
+        }
+        return holdings.getAvailableCopies();
+    }
+
+    /**
+     * Retrieves the loans of the copies currently borrowed.
+     *
+     * @return The loans ordered by copy number, empty if no copy is on loan.
+     */
+    public List<Loan> getLoans() {
+        Holdings holdings = this.holdings;
+        if (holdings == null) {
+            return "borrowed".equals(status)
+                    ? List.of(new Loan(0, borrowerName, borrowerContact, statusChangedAt))
+                    : Collections.emptyList();
+        }
+        return holdings.getLoans();
+    }
+
+    /**
+     * Retrieves the time of the last status change, which is when the item was created,
+     * borrowed or returned.
+     *
+     * @return The time in milliseconds since the epoch, or 0 if it is unknown.
+     */
+    public long getStatusChangedAt() {
+        return statusChangedAt;
+    }
+
+    /**
+     * Restores the time of the last status change of an item decoded from storage.
+     *
+     * @param statusChangedAt The time in milliseconds since the epoch.
+     */
+    void setStatusChangedAt(long statusChangedAt) {
+        this.statusChangedAt = statusChangedAt;
+    }
+
+    /**
+     * Retrieves the name of the borrower who has borrowed the item. While every copy of an item
+     * with several copies is on loan, this is the borrower of the lowest numbered copy, and
+     * otherwise it is empty; `getLoans` lists every borrower.
      *
      * @return The name of the borrower.
      */
     public String getBorrowerName() {
+        if (holdings != null) {
+            Loan loan = lastCopyLoan();
+            return loan == null ? "" : loan.getBorrowerName();
+        }
         return this.borrowerName;
     }
 
     /**
-     * Retrieves the contact information of the borrower who has borrowed the item.
+     * Retrieves the contact information of the borrower who has borrowed the item, chosen like
+     * the name for an item with several copies.
      *
      * @return The contact information of the borrower.
      */
     public String getBorrowerContact() {
+        if (holdings != null) {
+            Loan loan = lastCopyLoan();
+            return loan == null ? "" : loan.getBorrowerContact();
+        }
         return this.borrowerContact;
     }
+
+    /**
+     * Retrieves the loan that stands for the whole item while every copy is on loan.
+     */
+    private Loan lastCopyLoan() {
+        Holdings holdings = this.holdings;
+        return holdings == null || holdings.getAvailableCopies() > 0 ? null : holdings.firstLoan();
+    }
     
+    /**
+     * Creates a copy of the item with the same state, so the copy can be changed
+     * while the original is still being read by other threads.
+     *
+     * @return A new item equal in state to this one.
+     */
+    LibraryItem copy() {
+        try {
+            LibraryItem copy = (LibraryItem) super.clone();
+            if (holdings != null) {
+                copy.holdings = holdings.copy();
+            }
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     /**
      * Creates a string representation of the item.
      * 
@@ -112,6 +364,11 @@ public abstract class LibraryItem implements Serializable {
      */
     @Override
     public String toString() {
+        Holdings holdings = this.holdings;
+        if (holdings != null) {
+            return "Title: " + title + ", Status: " + getStatus() + ", Copies: "
+                    + holdings.getAvailableCopies() + " of " + holdings.getCopyCount() + " available";
+        }
         return "Title: " + title + ", Status: " + status;
     }
 }
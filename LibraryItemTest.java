@@ -2,7 +2,14 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The LibraryItemTest class contains unit tests for the LibraryItem class.
@@ -85,4 +92,114 @@ public class LibraryItemTest {
         Assert.assertEquals(expectedString, item.toString());
     }
 
+    /**
+     * Tests that an item with added copies lends one copy per borrower, stays available until
+     * every copy is on loan and keeps one loan record per borrowed copy.
+     */
+
+    @Test
+    public void testCopies() {
+        item.borrowItem("John Doe", "johndoe@students.csu.edu");
+        item.addCopies(2);
+        Assert.assertEquals(3, item.getCopyCount());
+        Assert.assertEquals(2, item.getAvailableCopies());
+        Assert.assertEquals("available", item.getStatus());
+        Assert.assertEquals("John Doe", item.getLoans().get(0).getBorrowerName());
+
+        Assert.assertTrue(item.checkOut("Jane Roe", "jane@example.com"));
+        Assert.assertTrue(item.checkOut("Max Mustermann", "max@example.com"));
+        Assert.assertFalse(item.checkOut("Late Reader", "late@example.com"));
+        Assert.assertEquals("borrowed", item.getStatus());
+        Assert.assertEquals("John Doe", item.getBorrowerName());
+        Assert.assertEquals(3, item.getLoans().size());
+        Assert.assertEquals("Title: Test Title, Status: borrowed, Copies: 0 of 3 available", item.toString());
+
+        Assert.assertTrue(item.checkIn());
+        Assert.assertEquals("available", item.getStatus());
+        Assert.assertEquals("", item.getBorrowerName());
+        Assert.assertEquals(2, item.getLoans().size());
+        Assert.assertEquals(1, item.getAvailableCopies());
+    }
+
+    /**
+     * Tests that a copy of an item with several copies does not share its loans with the original.
+     */
+
+    @Test
+    public void testCopyKeepsLoansApart() {
+        item.addCopies(1);
+        item.checkOut("John Doe", "johndoe@students.csu.edu");
+        LibraryItem copy = item.copy();
+        copy.checkOut("Jane Roe", "jane@example.com");
+        Assert.assertEquals(1, item.getAvailableCopies());
+        Assert.assertEquals(0, copy.getAvailableCopies());
+        Assert.assertEquals(1, item.getLoans().size());
+    }
+
+    /**
+     * Tests that concurrent borrowers of 50 copies get exactly 50 different copies.
+     */
+
+    @Test
+    public void testConcurrentCheckOut() throws Exception {
+        item.addCopies(49);
+        AtomicInteger borrowed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                readers.add(pool.submit(() -> {
+                    for (int i = 0; i < 20; i++) {
+                        if (item.checkOut("Reader " + thread, "reader" + thread + "@example.com")) {
+                            borrowed.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertEquals(50, borrowed.get());
+        Assert.assertEquals(0, item.getAvailableCopies());
+        Set<Integer> copies = new HashSet<>();
+        for (Loan loan : item.getLoans()) {
+            copies.add(loan.getCopy());
+        }
+        Assert.assertEquals(50, copies.size());
+        Assert.assertEquals(49, Collections.max(copies).intValue());
+    }
+
+    /**
+     * Tests that exactly one of several concurrent borrowers gets an item with a single copy.
+     */
+
+    @Test
+    public void testConcurrentCheckOutOfSingleCopy() throws Exception {
+        AtomicInteger borrowed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                readers.add(pool.submit(() -> {
+                    if (item.checkOut("Reader " + thread, "reader" + thread + "@example.com")) {
+                        borrowed.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertEquals(1, borrowed.get());
+        Assert.assertEquals(1, item.getLoans().size());
+        Assert.assertEquals(item.getBorrowerName(), item.getLoans().get(0).getBorrowerName());
+    }
+
 }
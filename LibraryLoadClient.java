@@ -0,0 +1,217 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The `LibraryLoadClient` class is a local load test client for `LibraryServer`.
+ * It opens many concurrent connections, seeds the catalog and then issues search and
+ * borrow/return requests over every connection, reporting throughput and latency percentiles.
+ */
+
+public class LibraryLoadClient {
+    private static final String[] SEARCH_TERMS = {"catcher", "nolan", "thriller", "sci-fi", "pop", "title 1"};
+
+    /**
+     * Runs the load test.
+     *
+     * @param args Command-line arguments: host, port, connections, requests per connection, threads.
+     * @throws Exception if the server cannot be reached or a worker fails.
+     */
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+
+        long[] latencies = run(host, port, connections, requests, threads);
+        System.out.println(report(latencies));
+    }
+
+    /**
+     * Seeds the server with a small catalog, opens all connections and then drives them
+     * from the given number of worker threads.
+     *
+     * @param host        The server host.
+     * @param port        The server port.
+     * @param connections The number of concurrently open connections.
+     * @param requests    The number of requests sent over each connection.
+     * @param threads     The number of worker threads sharing the connections.
+     * @return The latency of every request in nanoseconds, with the total elapsed time as the last element.
+     * @throws Exception if the server cannot be reached or a worker fails.
+     */
+
+    public static long[] run(String host, int port, int connections, int requests, int threads) throws Exception {
+        try (Channel seed = new Channel(host, port)) {
+            for (int i = 0; i < 100; i++) {
+                seed.request("ADD BOOK|Title " + i + "|Author " + i + "|isbn-" + i);
+                seed.request("ADD DVD|Movie " + i + "|Sci-Fi|Director " + i);
+            }
+        }
+
+        List<Channel> channels = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < connections; i++) {
+                channels.add(new Channel(host, port));
+            }
+
+            long started = System.nanoTime();
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int worker = t;
+                futures.add(executor.submit(() -> drive(channels, worker, threads, requests)));
+            }
+            List<long[]> results = new ArrayList<>();
+            int total = 0;
+            for (Future<long[]> future : futures) {
+                long[] result = future.get();
+                results.add(result);
+                total += result.length;
+            }
+            long elapsed = System.nanoTime() - started;
+
+            long[] latencies = new long[total + 1];
+            int offset = 0;
+            for (long[] result : results) {
+                System.arraycopy(result, 0, latencies, offset, result.length);
+                offset += result.length;
+            }
+            latencies[total] = elapsed;
+            return latencies;
+        } finally {
+            executor.shutdownNow();
+            for (Channel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Sends requests round-robin over the connections owned by one worker.
+     */
+
+    private static long[] drive(List<Channel> channels, int worker, int workers, int requests) throws IOException {
+        List<Channel> owned = new ArrayList<>();
+        for (int i = worker; i < channels.size(); i += workers) {
+            owned.add(channels.get(i));
+        }
+        long[] latencies = new long[owned.size() * requests];
+        int n = 0;
+        for (int r = 0; r < requests; r++) {
+            for (int c = 0; c < owned.size(); c++) {
+                String command;
+                int id = (worker + c + r) % 100;
+                switch (r % 4) {
+                case 1:
+                    command = "BORROW isbn-" + id + "|Load Client|load@example.com";
+                    break;
+                case 3:
+                    command = "RETURN isbn-" + id;
+                    break;
+                default:
+                    command = "SEARCH " + SEARCH_TERMS[(c + r) % SEARCH_TERMS.length];
+                    break;
+                }
+                long start = System.nanoTime();
+                owned.get(c).request(command);
+                latencies[n++] = System.nanoTime() - start;
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Formats throughput and latency percentiles of a run.
+     *
+     * @param latencies The result of `run`.
+     * @return A one-line summary.
+     */
+
+    public static String report(long[] latencies) {
+        int count = latencies.length - 1;
+        long elapsed = latencies[count];
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double seconds = elapsed / 1e9;
+        return String.format("%d requests in %.2f s (%.0f req/s), latency p50=%.2f ms p99=%.2f ms max=%.2f ms",
+                count, seconds, count / seconds,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6,
+                (count == 0 ? 0 : sorted[count - 1]) / 1e6);
+    }
+
+    /**
+     * Returns the given percentile of sorted values.
+     */
+
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))];
+    }
+
+    /**
+     * A blocking client connection that reads one complete response per request.
+     */
+
+    static class Channel implements AutoCloseable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final BufferedReader in;
+
+        /**
+         * Opens a connection to the server.
+         */
+
+        Channel(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Sends one command and reads its full response.
+         *
+         * @return The response lines, starting with the status line.
+         */
+
+        List<String> request(String command) throws IOException {
+            out.write((command + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            List<String> lines = new ArrayList<>();
+            String status = in.readLine();
+            if (status == null) {
+                throw new IOException("Connection closed by server");
+            }
+            lines.add(status);
+            if (command.startsWith("SEARCH") && status.startsWith("OK ")) {
+                int count = Integer.parseInt(status.substring(3).trim());
+                for (int i = 0; i < count; i++) {
+                    lines.add(in.readLine());
+                }
+            }
+            return lines;
+        }
+
+        /**
+         * Closes the connection.
+         */
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
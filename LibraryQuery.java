@@ -0,0 +1,620 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The `LibraryQuery` class is a node of a parsed boolean query over library items. Queries are
+ * written as terms combined with AND, OR, NOT and parentheses, where AND binds tighter than OR
+ * and adjacent terms are implicitly combined with AND, for example:
+ *
+ * <pre>
+ * author:salinger AND type:book NOT status:borrowed
+ * type:dvd genre:sci-fi NOT director:nolan
+ * (artist:"michael jackson" OR artist:prince) status:available
+ * </pre>
+ *
+ * A term without a field matches like `Library.searchItems`. Text fields match when they contain
+ * the value, ignoring case; `type`, `status`, `id` and `isbn` must match exactly, and ISBNs match
+ * in either their ISBN-10 or ISBN-13 form.
+ */
+
+public abstract class LibraryQuery {
+    /**
+     * The fields a term can be qualified with.
+     */
+    public enum Field {
+        ANY, TITLE, AUTHOR, ARTIST, DIRECTOR, CREATOR, GENRE, ISBN, ID, TYPE, STATUS, BORROWER
+    }
+
+    /**
+     * Checks whether an item satisfies this query.
+     *
+     * @param item The item to check.
+     * @return true if the item matches.
+     */
+
+    public abstract boolean matches(LibraryItem item);
+
+    /**
+     * Estimates the relative cost of evaluating this query on one item, so cheap predicates
+     * can be checked before expensive ones.
+     *
+     * @return The estimated cost.
+     */
+
+    abstract int cost();
+
+    /**
+     * Parses a query.
+     *
+     * @param text The query text.
+     * @return The root of the query tree.
+     * @throws IllegalArgumentException if the text is null, empty or not a valid query.
+     */
+
+    public static LibraryQuery parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("Query cannot be null or empty");
+        }
+        Parser parser = new Parser(tokenize(text));
+        LibraryQuery query = parser.parseOr();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position) + "' in query");
+        }
+        return query;
+    }
+
+    /**
+     * Splits query text into parentheses, keywords and terms. A term may contain a field prefix
+     * and a value in double quotes, which may contain spaces and parentheses.
+     */
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else {
+                StringBuilder token = new StringBuilder();
+                boolean quoted = false;
+                while (i < text.length()) {
+                    c = text.charAt(i);
+                    if (c == '"') {
+                        quoted = !quoted;
+                    } else if (!quoted && (Character.isWhitespace(c) || c == '(' || c == ')')) {
+                        break;
+                    }
+                    token.append(c);
+                    i++;
+                }
+                if (quoted) {
+                    throw new IllegalArgumentException("Unterminated quote in query");
+                }
+                tokens.add(token.toString());
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * A recursive descent parser over the tokens of a query.
+     */
+
+    private static final class Parser {
+        private final List<String> tokens;
+        private int position;
+
+        /**
+         * Creates a parser for the given tokens.
+         */
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        /**
+         * Parses terms joined by OR.
+         */
+
+        LibraryQuery parseOr() {
+            List<LibraryQuery> children = new ArrayList<>();
+            children.add(parseAnd());
+            while (accept("OR")) {
+                children.add(parseAnd());
+            }
+            return children.size() == 1 ? children.get(0) : new Or(children);
+        }
+
+        /**
+         * Parses terms joined by AND or by juxtaposition.
+         */
+
+        LibraryQuery parseAnd() {
+            List<LibraryQuery> children = new ArrayList<>();
+            children.add(parseUnary());
+            while (position < tokens.size() && !peek("OR") && !peek(")")) {
+                accept("AND");
+                children.add(parseUnary());
+            }
+            return children.size() == 1 ? children.get(0) : new And(children);
+        }
+
+        /**
+         * Parses a negation, a parenthesized query or a term.
+         */
+
+        LibraryQuery parseUnary() {
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Query ends unexpectedly");
+            }
+            if (accept("NOT")) {
+                return new Not(parseUnary());
+            }
+            if (accept("(")) {
+                LibraryQuery inner = parseOr();
+                if (!accept(")")) {
+                    throw new IllegalArgumentException("Missing ')' in query");
+                }
+                return inner;
+            }
+            String token = tokens.get(position++);
+            if (token.equals(")") || token.equals("AND") || token.equals("OR")) {
+                throw new IllegalArgumentException("Unexpected '" + token + "' in query");
+            }
+            return Term.of(token);
+        }
+
+        /**
+         * Checks whether the next token is the given keyword.
+         */
+
+        boolean peek(String keyword) {
+            return position < tokens.size() && tokens.get(position).equals(keyword);
+        }
+
+        /**
+         * Consumes the next token if it is the given keyword.
+         */
+
+        boolean accept(String keyword) {
+            if (peek(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The `Term` class matches one field of an item against a value.
+     */
+
+    public static final class Term extends LibraryQuery {
+        private final Field field;
+        private final String value;
+        private final long isbn;
+
+        /**
+         * Creates a term for a field and a value, which is compared in lower case.
+         *
+         * @param field The field to match.
+         * @param value The value to match.
+         * @throws IllegalArgumentException if the field is null or the value is null or empty.
+         */
+
+        public Term(Field field, String value) {
+            if (field == null) {
+                throw new IllegalArgumentException("Field cannot be null");
+            }
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("Query value cannot be null or empty");
+            }
+            this.field = field;
+            this.value = value.toLowerCase(Locale.ROOT);
+            this.isbn = IsbnIndex.normalize(value);
+        }
+
+        /**
+         * Parses a term token of the form `value`, `field:value` or `field:"quoted value"`.
+         */
+
+        static Term of(String token) {
+            Field field = Field.ANY;
+            String value = token;
+            int colon = token.indexOf(':');
+            if (colon > 0 && token.charAt(0) != '"') {
+                String name = token.substring(0, colon).toUpperCase(Locale.ROOT);
+                try {
+                    field = Field.valueOf(name);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown query field: " + token.substring(0, colon));
+                }
+                value = token.substring(colon + 1);
+            }
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            return new Term(field, value);
+        }
+
+        /**
+         * Retrieves the field of this term.
+         *
+         * @return The field.
+         */
+
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * Retrieves the value of this term in lower case.
+         *
+         * @return The value.
+         */
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Retrieves the canonical ISBN of the value.
+         *
+         * @return The ISBN-13 as a number, or -1 if the value is not an ISBN.
+         */
+
+        long getIsbn() {
+            return isbn;
+        }
+
+        /**
+         * Checks whether the field of an item matches the value of this term.
+         *
+         * @param item The item to check.
+         * @return true if the item matches.
+         */
+
+        @Override
+        public boolean matches(LibraryItem item) {
+            switch (field) {
+            case TITLE:
+                return contains(item.getTitle());
+            case AUTHOR:
+                return item instanceof Book && contains(((Book) item).getAuthor());
+            case ARTIST:
+                return item instanceof CD && contains(((CD) item).getArtist());
+            case DIRECTOR:
+                return item instanceof DVD && contains(((DVD) item).getDirector());
+            case CREATOR:
+                return contains(creatorOf(item));
+            case GENRE:
+                return (item instanceof CD && contains(((CD) item).getGenre()))
+                        || (item instanceof DVD && contains(((DVD) item).getGenre()));
+            case ISBN:
+                return item instanceof Book && matchesIdentifier(item);
+            case ID:
+                return matchesIdentifier(item);
+            case TYPE:
+                return value.equals(typeOf(item));
+            case STATUS:
+                return value.equals(item.getStatus());
+            case BORROWER:
+                return "borrowed".equals(item.getStatus()) && contains(item.getBorrowerName());
+            default:
+                return ItemMatcher.matches(item, value);
+            }
+        }
+
+        /**
+         * Checks whether the identifier of an item equals the value, comparing ISBNs of books
+         * in their canonical form.
+         */
+
+        private boolean matchesIdentifier(LibraryItem item) {
+            String identifier = item.getUniqueIdentifier();
+            if (isbn > 0 && item instanceof Book) {
+                return IsbnIndex.normalize(identifier) == isbn;
+            }
+            return identifier.equalsIgnoreCase(value);
+        }
+
+        /**
+         * Checks whether a text contains the value, ignoring case.
+         */
+
+        private boolean contains(String text) {
+            return text != null && text.toLowerCase(Locale.ROOT).contains(value);
+        }
+
+        /**
+         * Estimates the cost of this term: exact fields are cheap, text fields need a case
+         * conversion, and unqualified terms check every searchable attribute.
+         */
+
+        @Override
+        int cost() {
+            switch (field) {
+            case TYPE:
+            case STATUS:
+                return 1;
+            case ID:
+            case ISBN:
+                return 2;
+            case ANY:
+                return 8;
+            default:
+                return 4;
+            }
+        }
+
+        /**
+         * Creates the query text of this term.
+         *
+         * @return The term as `field:value`.
+         */
+
+        @Override
+        public String toString() {
+            String text = value.indexOf(' ') >= 0 ? "\"" + value + "\"" : value;
+            return field == Field.ANY ? text : field.name().toLowerCase(Locale.ROOT) + ":" + text;
+        }
+    }
+
+    /**
+     * Retrieves the type name of an item as used by the `type` field.
+     *
+     * @param item The item.
+     * @return "book", "cd", "dvd" or the lower case class name of other items.
+     */
+
+    static String typeOf(LibraryItem item) {
+        return item.getClass().getSimpleName().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Retrieves the creator of an item: the author of a book, the artist of a CD
+     * or the director of a DVD.
+     *
+     * @param item The item.
+     * @return The creator, or null for other items.
+     */
+
+    static String creatorOf(LibraryItem item) {
+        if (item instanceof Book) {
+            return ((Book) item).getAuthor();
+        } else if (item instanceof CD) {
+            return ((CD) item).getArtist();
+        } else if (item instanceof DVD) {
+            return ((DVD) item).getDirector();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the genre of an item.
+     *
+     * @param item The item.
+     * @return The genre of a CD or DVD, or null for other items.
+     */
+
+    static String genreOf(LibraryItem item) {
+        if (item instanceof CD) {
+            return ((CD) item).getGenre();
+        } else if (item instanceof DVD) {
+            return ((DVD) item).getGenre();
+        }
+        return null;
+    }
+
+    /**
+     * The `And` class matches items that satisfy all of its children. Children are evaluated
+     * cheapest first, so an item is usually rejected before the expensive predicates run.
+     */
+
+    public static final class And extends LibraryQuery {
+        private final List<LibraryQuery> children;
+
+        /**
+         * Creates a conjunction, ordering the children by cost.
+         *
+         * @param children The queries that must all match.
+         */
+
+        public And(List<LibraryQuery> children) {
+            this.children = new ArrayList<>(children);
+            this.children.sort((a, b) -> Integer.compare(a.cost(), b.cost()));
+        }
+
+        /**
+         * Retrieves the children, cheapest first.
+         *
+         * @return The children.
+         */
+
+        public List<LibraryQuery> getChildren() {
+            return children;
+        }
+
+        /**
+         * Checks whether an item satisfies every child.
+         *
+         * @param item The item to check.
+         * @return true if the item matches.
+         */
+
+        @Override
+        public boolean matches(LibraryItem item) {
+            for (LibraryQuery child : children) {
+                if (!child.matches(item)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Estimates the cost as the sum of the children's costs.
+         */
+
+        @Override
+        int cost() {
+            return children.stream().mapToInt(LibraryQuery::cost).sum();
+        }
+
+        /**
+         * Creates the query text of this conjunction.
+         *
+         * @return The children joined by AND.
+         */
+
+        @Override
+        public String toString() {
+            return join(children, " AND ");
+        }
+    }
+
+    /**
+     * The `Or` class matches items that satisfy at least one of its children.
+     */
+
+    public static final class Or extends LibraryQuery {
+        private final List<LibraryQuery> children;
+
+        /**
+         * Creates a disjunction.
+         *
+         * @param children The queries of which at least one must match.
+         */
+
+        public Or(List<LibraryQuery> children) {
+            this.children = new ArrayList<>(children);
+        }
+
+        /**
+         * Retrieves the children.
+         *
+         * @return The children.
+         */
+
+        public List<LibraryQuery> getChildren() {
+            return children;
+        }
+
+        /**
+         * Checks whether an item satisfies any child.
+         *
+         * @param item The item to check.
+         * @return true if the item matches.
+         */
+
+        @Override
+        public boolean matches(LibraryItem item) {
+            for (LibraryQuery child : children) {
+                if (child.matches(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Estimates the cost as the sum of the children's costs.
+         */
+
+        @Override
+        int cost() {
+            return children.stream().mapToInt(LibraryQuery::cost).sum();
+        }
+
+        /**
+         * Creates the query text of this disjunction.
+         *
+         * @return The children joined by OR, in parentheses.
+         */
+
+        @Override
+        public String toString() {
+            return "(" + join(children, " OR ") + ")";
+        }
+    }
+
+    /**
+     * The `Not` class matches items that do not satisfy its child.
+     */
+
+    public static final class Not extends LibraryQuery {
+        private final LibraryQuery child;
+
+        /**
+         * Creates a negation.
+         *
+         * @param child The query that must not match.
+         */
+
+        public Not(LibraryQuery child) {
+            this.child = child;
+        }
+
+        /**
+         * Retrieves the negated query.
+         *
+         * @return The child.
+         */
+
+        public LibraryQuery getChild() {
+            return child;
+        }
+
+        /**
+         * Checks whether an item does not satisfy the child.
+         *
+         * @param item The item to check.
+         * @return true if the item matches.
+         */
+
+        @Override
+        public boolean matches(LibraryItem item) {
+            return !child.matches(item);
+        }
+
+        /**
+         * Estimates the cost as the cost of the child.
+         */
+
+        @Override
+        int cost() {
+            return child.cost();
+        }
+
+        /**
+         * Creates the query text of this negation.
+         *
+         * @return NOT followed by the child.
+         */
+
+        @Override
+        public String toString() {
+            return "NOT " + child;
+        }
+    }
+
+    /**
+     * Joins the query texts of several queries.
+     */
+
+    private static String join(List<LibraryQuery> queries, String separator) {
+        StringBuilder text = new StringBuilder();
+        for (LibraryQuery query : queries) {
+            if (text.length() > 0) {
+                text.append(separator);
+            }
+            text.append(query);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,230 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The LibraryQueryTest class contains unit tests for the LibraryQuery parser and for evaluating
+ * queries with the QueryPlanner through Library.query.
+ */
+
+public class LibraryQueryTest {
+    private Library library;
+
+    /**
+     * Sets up a library with a few books, DVDs and CDs before each test.
+     */
+
+    @Before
+    public void setUp() {
+        library = new Library();
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        library.addItem(new Book("Franny and Zooey", "J.D. Salinger", "0316769495"));
+        library.addItem(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+        library.addItem(new DVD("Arrival", "Sci-Fi", "Denis Villeneuve"));
+        library.addItem(new DVD("Dunkirk", "War", "Christopher Nolan"));
+        library.addItem(new CD("Thriller", "Michael Jackson", "Pop"));
+    }
+
+    /**
+     * Tests that AND binds tighter than OR and that adjacent terms are joined with AND.
+     */
+
+    @Test
+    public void testParsePrecedence() {
+        LibraryQuery query = LibraryQuery.parse("type:book author:salinger OR director:nolan");
+        Assert.assertTrue(query instanceof LibraryQuery.Or);
+        Assert.assertEquals("(type:book AND author:salinger OR director:nolan)", query.toString());
+
+        LibraryQuery grouped = LibraryQuery.parse("type:dvd AND (genre:war OR NOT director:nolan)");
+        Assert.assertTrue(grouped instanceof LibraryQuery.And);
+        Assert.assertEquals("type:dvd AND (genre:war OR NOT director:nolan)", grouped.toString());
+    }
+
+    /**
+     * Tests that quoted values may contain spaces.
+     */
+
+    @Test
+    public void testParseQuotedValue() {
+        LibraryQuery query = LibraryQuery.parse("title:\"catcher in the rye\"");
+        Assert.assertTrue(query instanceof LibraryQuery.Term);
+        Assert.assertEquals(LibraryQuery.Field.TITLE, ((LibraryQuery.Term) query).getField());
+        Assert.assertEquals("catcher in the rye", ((LibraryQuery.Term) query).getValue());
+        Assert.assertEquals(1, library.query("title:\"catcher in the rye\"").size());
+    }
+
+    /**
+     * Tests that invalid queries are rejected.
+     */
+
+    @Test
+    public void testParseErrors() {
+        String[] invalid = {"", "   ", "colour:red", "(type:book", "type:book)", "type:book AND", "NOT"};
+        for (String text : invalid) {
+            try {
+                LibraryQuery.parse(text);
+                Assert.fail("Expected an IllegalArgumentException for '" + text + "'");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Tests a conjunction with a negated status term.
+     */
+
+    @Test
+    public void testQueryWithNegatedStatus() {
+        library.borrowItem("0316769495", "John Doe", "johndoe@students.csu.edu");
+        List<LibraryItem> results = library.query("author:salinger AND type:book NOT status:borrowed");
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("The Catcher in the Rye", results.get(0).getTitle());
+
+        library.returnItem("0316769495");
+        Assert.assertEquals(2, library.query("author:salinger AND type:book NOT status:borrowed").size());
+    }
+
+    /**
+     * Tests a query combining type, genre and a negated director.
+     */
+
+    @Test
+    public void testQueryTypeGenreAndDirector() {
+        List<LibraryItem> results = library.query("type:dvd genre:sci-fi NOT director:nolan");
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("Arrival", results.get(0).getTitle());
+    }
+
+    /**
+     * Tests that a disjunction returns each match once, in the order the items were added.
+     */
+
+    @Test
+    public void testQueryUnion() {
+        List<LibraryItem> results = library.query("director:nolan OR artist:jackson OR title:inception");
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals("Inception", results.get(0).getTitle());
+        Assert.assertEquals("Dunkirk", results.get(1).getTitle());
+        Assert.assertEquals("Thriller", results.get(2).getTitle());
+    }
+
+    /**
+     * Tests that identifier and ISBN terms match either form of an ISBN.
+     */
+
+    @Test
+    public void testQueryByIsbn() {
+        Assert.assertEquals(1, library.query("isbn:978-0-316-76917-4").size());
+        Assert.assertEquals(1, library.query("id:0316769177").size());
+        Assert.assertTrue(library.query("isbn:0316769177 type:cd").isEmpty());
+    }
+
+    /**
+     * Tests that the planner uses an index for selective terms and scans otherwise.
+     */
+
+    @Test
+    public void testExplain() {
+        library.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu");
+        Assert.assertTrue(library.explainQuery("status:borrowed title:catcher").startsWith("INDEX status:borrowed ~1"));
+        Assert.assertTrue(library.explainQuery("type:cd OR isbn:0316769495").startsWith("INDEX UNION("));
+        Assert.assertTrue(library.explainQuery("title:catcher").startsWith("SCAN 6"));
+        Assert.assertTrue(library.explainQuery("status:available").startsWith("INDEX status:available ~5"));
+        Assert.assertTrue(library.explainQuery("type:book OR title:thriller").startsWith("SCAN"));
+    }
+
+    /**
+     * Tests that indexed queries return the same items as checking every item, including after
+     * the library was reloaded with different items.
+     */
+
+    @Test
+    public void testQueryMatchesBruteForce() {
+        Random random = new Random(7);
+        String[] genres = {"Pop", "Rock", "Jazz", "Sci-Fi", "War"};
+        Library large = new Library();
+        for (int i = 0; i < 500; i++) {
+            switch (i % 3) {
+            case 0:
+                large.addItem(new Book("Book " + i, "Author " + (i % 7), LibraryWorkload.isbn(i)));
+                break;
+            case 1:
+                large.addItem(new DVD("Film " + i, genres[i % genres.length], "Director " + (i % 5)));
+                break;
+            default:
+                large.addItem(new CD("Album " + i, "Artist " + (i % 11), genres[i % genres.length]));
+                break;
+            }
+        }
+        for (LibraryItem item : large.getAllItems()) {
+            if (random.nextInt(4) == 0) {
+                large.borrowItem(item.getUniqueIdentifier(), "Reader " + random.nextInt(10), "reader@example.com");
+            }
+        }
+        String[] queries = {
+            "type:book status:borrowed",
+            "status:borrowed OR type:cd",
+            "type:dvd NOT genre:war",
+            "creator:\"author 3\" OR artist:\"artist 4\"",
+            "borrower:\"reader 1\" type:cd",
+            "NOT (type:book OR status:available)",
+            "isbn:" + LibraryWorkload.isbn(42) + " OR type:dvd genre:pop",
+        };
+        for (String text : queries) {
+            LibraryQuery query = LibraryQuery.parse(text);
+            List<LibraryItem> expected = new ArrayList<>();
+            for (LibraryItem item : large.getAllItems()) {
+                if (query.matches(item)) {
+                    expected.add(item);
+                }
+            }
+            Assert.assertEquals(text, expected, large.query(text));
+        }
+
+        large.replaceItems(large.query("type:cd"));
+        Assert.assertEquals(large.getAllItems(), large.query("type:cd"));
+        Assert.assertTrue(large.query("type:book").isEmpty());
+    }
+
+    /**
+     * Tests that every book sharing an ISBN is found, whether the plan starts from the ISBN
+     * index or scans, in a plain, a reloaded and a versioned library.
+     */
+
+    @Test
+    public void testDuplicateIsbns() throws Exception {
+        library.addItem(new Book("Nineteen Eighty-Four", "George Orwell", "0451524934"));
+        Assert.assertTrue(library.explainQuery("isbn:0451524934").startsWith("INDEX isbn:"));
+        library.addItem(new Book("1984", "George Orwell", "978-0-451-52493-5"));
+
+        Assert.assertEquals(2, library.query("isbn:0451524934").size());
+        Assert.assertEquals(2, library.query("id:9780451524935").size());
+        Assert.assertEquals(2, library.query("isbn:0451524934 OR title:zzz").size());
+        Assert.assertTrue(library.explainQuery("isbn:0451524934 OR title:zzz").startsWith("SCAN"));
+        Assert.assertEquals(1, library.query("isbn:0316769177").size());
+
+        String filename = "test_duplicate_isbns.libtest";
+        try {
+            library.saveToFile(filename, true);
+            Library loaded = new Library();
+            loaded.loadFromFile(filename);
+            Assert.assertTrue(loaded.usesIndexSegments());
+            Assert.assertEquals(2, loaded.query("isbn:0451524934").size());
+        } finally {
+            new File(filename).delete();
+            new File(IndexSegments.segmentFilename(filename)).delete();
+        }
+
+        VersionedLibrary versioned = new VersionedLibrary();
+        for (LibraryItem item : library.getAllItems()) {
+            versioned.addItem(item);
+        }
+        Assert.assertEquals(2, versioned.query("isbn:0451524934").size());
+        Assert.assertEquals(2, versioned.query("isbn:0451524934 OR title:zzz").size());
+    }
+}
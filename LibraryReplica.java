@@ -0,0 +1,496 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The `LibraryReplica` class is a read-only follower of a `ReplicatedLibrary`. A receiver thread
+ * reads the leader's mutation log into a bounded queue and an applier thread applies it in order,
+ * asynchronously to the readers. Searches and lookups are served from the local copy under a read
+ * lock, so read throughput scales by adding replicas. The replication lag is exposed as the age of
+ * the oldest entry that has been received but not yet applied.
+ *
+ * If the connection to the leader is lost, for example because the leader disconnected a replica
+ * that fell too far behind, the receiver reconnects and the leader starts over with a snapshot
+ * of its current items.
+ */
+
+public class LibraryReplica extends Library implements Closeable {
+    private static final long serialVersionUID = 1L;
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final long RECONNECT_DELAY_MILLIS = 500;
+
+    private final String host;
+    private final int port;
+    private volatile Socket socket;
+    private final BlockingQueue<ReplicatedLibrary.LogEntry> pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Thread receiver;
+    private final Thread applier;
+    private volatile long receivedSequence;
+    private volatile long appliedSequence;
+    private volatile long applyingTimestamp;
+    private volatile boolean running = true;
+
+    /**
+     * Connects a new replica to a leader and starts replicating.
+     *
+     * @param host The host of the leader.
+     * @param port The replication port of the leader.
+     * @throws IOException if the leader cannot be reached.
+     */
+
+    public LibraryReplica(String host, int port) throws IOException {
+        this.host = host;
+        this.port = port;
+        socket = new Socket(host, port);
+        receiver = new Thread(this::receive, "replica-receiver-" + port);
+        applier = new Thread(this::apply, "replica-applier-" + port);
+        receiver.setDaemon(true);
+        applier.setDaemon(true);
+        receiver.start();
+        applier.start();
+    }
+
+    /**
+     * Retrieves the sequence number of the latest entry applied to this replica.
+     *
+     * @return The applied sequence number.
+     */
+
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Retrieves the current replication lag, measured from the time the leader made the oldest
+     * change that is not yet visible on this replica.
+     *
+     * @return The lag in milliseconds, or 0 if the replica has applied everything it received.
+     */
+
+    public long getReplicationLagMillis() {
+        if (appliedSequence >= receivedSequence) {
+            return 0;
+        }
+        ReplicatedLibrary.LogEntry next = pending.peek();
+        long oldest = applyingTimestamp != 0 ? applyingTimestamp : (next != null ? next.timestamp : 0);
+        return oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+    }
+
+    /**
+     * Waits until this replica has applied the given sequence number.
+     *
+     * @param sequence      The sequence number to wait for, usually `ReplicatedLibrary.getSequence()`.
+     * @param timeoutMillis The maximum time to wait.
+     * @return true if the sequence was applied in time, false otherwise.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+
+    public boolean awaitSequence(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            while (appliedSequence < sequence) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Searches the local copy of the catalog.
+     *
+     * @param searchTerm The search term to match against item titles or specific attributes.
+     * @return A list of items that match the search term.
+     */
+
+    @Override
+    public List<LibraryItem> searchItems(String searchTerm) {
+        lock.readLock().lock();
+        try {
+            return super.searchItems(searchTerm);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Evaluates a query against the local copy of the catalog.
+     *
+     * @param queryText The query.
+     * @return A list of the matching items.
+     * @throws IllegalArgumentException if the query is null, empty or invalid.
+     */
+
+    @Override
+    public List<LibraryItem> query(String queryText) {
+        lock.readLock().lock();
+        try {
+            return super.query(queryText);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Audits the local copy of the catalog. Replicas are read-only, so violations can only be
+     * repaired through the leader.
+     *
+     * @param repair Whether to repair the violations found; must be false.
+     * @return The report of the audit.
+     * @throws UnsupportedOperationException if a repair is requested.
+     */
+
+    @Override
+    public CatalogAudit audit(boolean repair) {
+        if (repair) {
+            throw new UnsupportedOperationException("Replicas are read-only");
+        }
+        lock.readLock().lock();
+        try {
+            return super.audit(false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the next page of the local copy of the catalog in title or creator order.
+     *
+     * @param cursor The cursor to continue from.
+     * @param limit  The maximum number of items to return.
+     * @return The items of the page in browse order.
+     * @throws IllegalArgumentException if the cursor is null or the limit is not positive.
+     */
+
+    @Override
+    public List<LibraryItem> browse(BrowseCursor cursor, int limit) {
+        lock.readLock().lock();
+        try {
+            return super.browse(cursor, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a search of a session against the local copy of the catalog.
+     *
+     * @param session    The session.
+     * @param searchTerm The search term.
+     * @return A list of items that match the search term.
+     */
+
+    @Override
+    List<LibraryItem> search(SearchSession session, String searchTerm) {
+        lock.readLock().lock();
+        try {
+            return super.search(session, searchTerm);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves all items of the local copy of the catalog.
+     *
+     * @return A new list containing every item in the replica.
+     */
+
+    @Override
+    public List<LibraryItem> getAllItems() {
+        lock.readLock().lock();
+        try {
+            return super.getAllItems();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves an item from the local copy of the catalog.
+     *
+     * @param identifier The unique identifier of the item to be retrieved.
+     * @return The item with the specified identifier or null if not found.
+     */
+
+    @Override
+    public LibraryItem getItemByIdentifier(String identifier) {
+        lock.readLock().lock();
+        try {
+            return super.getItemByIdentifier(identifier);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves the local copy of the catalog.
+     *
+     * @param filename The name of the file to save the items to.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    @Override
+    public void saveToFile(String filename) throws IOException {
+        lock.readLock().lock();
+        try {
+            super.saveToFile(filename);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves the local copy of the catalog and optionally its index segment.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Whether to write the index segment as well.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to either file.
+     */
+
+    @Override
+    public void saveToFile(String filename, boolean writeIndexSegments) throws IOException {
+        lock.readLock().lock();
+        try {
+            super.saveToFile(filename, writeIndexSegments);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves the local copy of the catalog to a compressed file.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Whether to write the index segment as well.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to either file.
+     */
+
+    @Override
+    public void saveCompressedToFile(String filename, boolean writeIndexSegments) throws IOException {
+        lock.readLock().lock();
+        try {
+            super.saveCompressedToFile(filename, writeIndexSegments);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replicas are read-only; items can only be added through the leader.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+
+    @Override
+    public void addItem(LibraryItem item) {
+        throw new UnsupportedOperationException("Replicas are read-only");
+    }
+
+    /**
+     * Replicas are read-only; items can only be borrowed through the leader.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+
+    @Override
+    public boolean borrowItem(String identifier, String borrowerName, String borrowerContact) {
+        throw new UnsupportedOperationException("Replicas are read-only");
+    }
+
+    /**
+     * Replicas are read-only; items can only be returned through the leader.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+
+    @Override
+    public boolean returnItem(String identifier, String borrowerName) {
+        throw new UnsupportedOperationException("Replicas are read-only");
+    }
+
+    /**
+     * Replicas are read-only; copies can only be added through the leader.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+
+    @Override
+    public boolean addCopies(String identifier, int count) {
+        throw new UnsupportedOperationException("Replicas are read-only");
+    }
+
+    /**
+     * Replicas are read-only; files can only be loaded through the leader.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+
+    @Override
+    public void loadFromFile(String filename) {
+        throw new UnsupportedOperationException("Replicas are read-only");
+    }
+
+    /**
+     * Replicas are read-only; files can only be merged through the leader.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+
+    @Override
+    public void mergeFromFile(String filename, MergePolicy policy) {
+        throw new UnsupportedOperationException("Replicas are read-only");
+    }
+
+    /**
+     * Replicas are read-only; patches can only be applied through the leader.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+
+    @Override
+    public void applyPatch(String patchFile) {
+        throw new UnsupportedOperationException("Replicas are read-only");
+    }
+
+    /**
+     * Disconnects from the leader and stops replicating.
+     */
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Shutting down anyway.
+        }
+        receiver.interrupt();
+        applier.interrupt();
+    }
+
+    /**
+     * Receives the log of the leader until the replica is closed, reconnecting whenever the
+     * connection is lost.
+     */
+
+    private void receive() {
+        try {
+            while (running) {
+                try {
+                    receiveFrom(socket);
+                } catch (IOException | ClassNotFoundException e) {
+                    if (running) {
+                        System.err.println("Replica lost its connection to the leader: " + e.getMessage());
+                    }
+                }
+                reconnect();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads length-prefixed log entries from one connection into the pending queue. While the
+     * queue is full the receiver stops reading, so the leader's queue for this replica fills up
+     * and the leader eventually disconnects it.
+     */
+
+    private void receiveFrom(Socket connection) throws IOException, ClassNotFoundException, InterruptedException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()))) {
+            while (running) {
+                byte[] frame = new byte[in.readInt()];
+                in.readFully(frame);
+                ReplicatedLibrary.LogEntry entry;
+                try (ObjectInputStream entryIn = new ObjectInputStream(new ByteArrayInputStream(frame))) {
+                    entry = (ReplicatedLibrary.LogEntry) entryIn.readObject();
+                }
+                receivedSequence = Math.max(receivedSequence, entry.sequence);
+                pending.put(entry);
+            }
+        }
+    }
+
+    /**
+     * Connects to the leader again, retrying until it succeeds or the replica is closed. The
+     * leader sends a snapshot first, which replaces whatever the replica missed.
+     */
+
+    private void reconnect() throws InterruptedException {
+        while (running) {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+            try {
+                Socket connection = new Socket(host, port);
+                socket = connection;
+                if (!running) {
+                    connection.close();
+                }
+                return;
+            } catch (IOException e) {
+                // The leader is not reachable yet.
+            }
+        }
+    }
+
+    /**
+     * Applies queued entries in order until the replica is closed.
+     */
+
+    private void apply() {
+        try {
+            while (running) {
+                ReplicatedLibrary.LogEntry entry = pending.take();
+                applyingTimestamp = entry.timestamp;
+                lock.writeLock().lock();
+                try {
+                    switch (entry.operation) {
+                    case ReplicatedLibrary.LogEntry.ADD:
+                        super.addItem(entry.item);
+                        break;
+                    case ReplicatedLibrary.LogEntry.BORROW:
+                        super.borrowItem(entry.identifier, entry.borrowerName, entry.borrowerContact);
+                        break;
+                    case ReplicatedLibrary.LogEntry.RETURN:
+                        super.returnItem(entry.identifier, entry.borrowerName);
+                        break;
+                    case ReplicatedLibrary.LogEntry.COPIES:
+                        super.addCopies(entry.identifier, entry.count);
+                        break;
+                    case ReplicatedLibrary.LogEntry.LOAD:
+                        replaceItems(entry.items);
+                        publish(LibraryEvent.Type.LOAD, null, null, null, entry.items.size());
+                        break;
+                    default:
+                        break;
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                applyingTimestamp = 0;
+                synchronized (this) {
+                    appliedSequence = entry.sequence;
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,544 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The `LibraryServer` class exposes a `Library` over the network using the line based protocol
+ * of `LibraryCommandProcessor`. A single selector thread multiplexes all client connections with
+ * non-blocking I/O, so thousands of idle or slow connections cost only their buffers.
+ * Commands are executed one at a time, which keeps the shared library consistent without any
+ * additional locking. Short commands run on the selector thread. SEARCH, QUERY, SAVE and LOAD,
+ * whose cost grows with the catalog, run on a single worker thread and post their responses back
+ * to the selector, so a long command delays only the commands queued behind it, not the I/O of
+ * other connections. Each connection's responses are sent in the order of its commands.
+ *
+ * The items of a large SEARCH or QUERY result are formatted a chunk at a time, whenever the
+ * client has read most of the previous chunk, so a reply never buffers more than about
+ * `MAX_PENDING_OUTPUT` bytes and a client that stops reading holds up no one else.
+ *
+ * The protocol has no authentication, so the server listens on the loopback interface unless
+ * another host address is given explicitly, and SAVE and LOAD can only reach files inside the
+ * server's data directory.
+ */
+
+public class LibraryServer implements Closeable {
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int MAX_PENDING_OUTPUT = 1024 * 1024;
+    private static final int REPLY_CHUNK = 64 * 1024;
+    private static final Set<String> WORKER_COMMANDS = Set.of("SEARCH", "QUERY", "SAVE", "LOAD");
+
+    private final LibraryCommandProcessor processor;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService worker;
+    private final Queue<Completion> completions = new ConcurrentLinkedQueue<>(); // posted by the worker
+    private final StringBuilder response = new StringBuilder();
+    private int workerTasks; // submitted and not yet completed, used by the selector thread only
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Constructs a new LibraryServer bound to the given port on the loopback interface, with the
+     * working directory as its data directory.
+     * The server does not accept connections until it is started.
+     *
+     * @param library The library shared by all clients.
+     * @param port    The port to listen on, or 0 to pick a free port.
+     * @throws IllegalArgumentException if the library is null.
+     * @throws IOException if the port cannot be bound.
+     */
+
+    public LibraryServer(Library library, int port) throws IOException {
+        this(library, null, port, Path.of(""));
+    }
+
+    /**
+     * Constructs a new LibraryServer bound to the given host address and port.
+     * The server does not accept connections until it is started.
+     *
+     * @param library       The library shared by all clients.
+     * @param host          The host name or address to listen on, or null for the loopback
+     *                      interface. Other addresses expose the unauthenticated protocol to
+     *                      the network.
+     * @param port          The port to listen on, or 0 to pick a free port.
+     * @param dataDirectory The directory SAVE and LOAD filenames are resolved against.
+     * @throws IllegalArgumentException if the library is null or the data directory is null or
+     *         not a directory.
+     * @throws IOException if the address cannot be resolved or bound.
+     */
+
+    public LibraryServer(Library library, String host, int port, Path dataDirectory) throws IOException {
+        if (dataDirectory == null || !Files.isDirectory(dataDirectory.toAbsolutePath())) {
+            throw new IllegalArgumentException("Data directory must be an existing directory");
+        }
+        this.processor = new LibraryCommandProcessor(library, dataDirectory.toAbsolutePath());
+        InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(address, port), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.worker = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "library-worker-" + getPort());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Retrieves the port the server is listening on.
+     *
+     * @return The local port of the server socket.
+     */
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Starts the selector loop on a background thread.
+     */
+
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        running = true;
+        thread = new Thread(this::run, "library-server-" + getPort());
+        thread.start();
+    }
+
+    /**
+     * Runs the selector loop on the calling thread until the server is closed.
+     */
+
+    public void run() {
+        running = true;
+        try {
+            while (running) {
+                selector.select();
+                finishWorkerTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        closeConnection(key);
+                    } catch (RuntimeException e) {
+                        // A failing command must not take down the other connections.
+                        failConnection(key, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Library server stopped: " + e.getMessage());
+            }
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Stops the server and closes all client connections.
+     */
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        Thread current = thread;
+        if (current != null && current != Thread.currentThread()) {
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeQuietly();
+    }
+
+    /**
+     * Accepts all pending connections and registers them for reading.
+     */
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+
+    /**
+     * Reads available bytes from a client and executes or queues every complete command
+     * line. Reading is suspended while a command of the client is busy,
+     * so at most one buffer of command lines waits per connection.
+     */
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        int read = channel.read(connection.input);
+        if (read < 0) {
+            closeConnection(key);
+            return;
+        }
+
+        ByteBuffer input = connection.input;
+        input.flip();
+        int lineStart = input.position();
+        for (int i = input.position(); i < input.limit(); i++) {
+            if (input.get(i) == '\n') {
+                int end = i;
+                if (end > lineStart && input.get(end - 1) == '\r') {
+                    end--;
+                }
+                byte[] bytes = new byte[end - lineStart];
+                input.get(lineStart, bytes);
+                connection.waiting.add(new String(bytes, StandardCharsets.UTF_8));
+                lineStart = i + 1;
+            }
+        }
+        input.position(lineStart);
+        input.compact();
+        if (!input.hasRemaining()) {
+            if (input.capacity() >= MAX_LINE_LENGTH) {
+                throw new IOException("Command line too long");
+            }
+            ByteBuffer larger = ByteBuffer.allocate(input.capacity() * 2);
+            input.flip();
+            larger.put(input);
+            connection.input = larger;
+        }
+        write(key);
+    }
+
+    /**
+     * Executes a command line. Short commands run right away while the worker is idle; all
+     * other commands are handed to the worker, behind the commands it is already running.
+     */
+
+    private void execute(String line, SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (workerTasks == 0 && !WORKER_COMMANDS.contains(commandOf(line))) {
+            response.setLength(0);
+            processor.execute(line, response);
+            connection.queue(StandardCharsets.UTF_8.encode(CharBuffer.wrap(response)));
+            return;
+        }
+        submit(key, () -> {
+            StringBuilder text = new StringBuilder();
+            try {
+                List<LibraryItem> items = processor.executeDeferred(line, text);
+                post(new Completion(key, text, items, formatItems(items, 0, text)));
+            } catch (IOException | RuntimeException e) {
+                post(new Completion(key, e));
+            }
+        });
+    }
+
+    /**
+     * Hands the next chunk of a large SEARCH or QUERY reply to the worker.
+     */
+
+    private void continueReply(SelectionKey key, List<LibraryItem> items, int next) {
+        submit(key, () -> {
+            StringBuilder text = new StringBuilder();
+            try {
+                post(new Completion(key, text, items, formatItems(items, next, text)));
+            } catch (IOException | RuntimeException e) {
+                post(new Completion(key, e));
+            }
+        });
+    }
+
+    /**
+     * Queues a task for the worker on behalf of a connection.
+     */
+
+    private void submit(SelectionKey key, Runnable task) {
+        workerTasks++;
+        ((Connection) key.attachment()).working = true;
+        worker.execute(task);
+    }
+
+    /**
+     * Appends item lines from a position until about one chunk has been formatted. Runs on
+     * the worker, so items are never read while a command changes them.
+     *
+     * @return The position of the first item that was not appended.
+     */
+
+    private static int formatItems(List<LibraryItem> items, int next, StringBuilder text) throws IOException {
+        while (next < items.size() && text.length() < REPLY_CHUNK) {
+            LibraryCommandProcessor.appendItem(items.get(next++), text);
+        }
+        return next;
+    }
+
+    /**
+     * Posts the output of a worker task back to the selector thread.
+     */
+
+    private void post(Completion completion) {
+        completions.add(completion);
+        selector.wakeup();
+    }
+
+    /**
+     * Queues the output of every completed worker task on its connection, if the connection
+     * is still open.
+     */
+
+    private void finishWorkerTasks() {
+        Completion completion;
+        while ((completion = completions.poll()) != null) {
+            workerTasks--;
+            SelectionKey key = completion.key;
+            Connection connection = (Connection) key.attachment();
+            connection.working = false;
+            if (!key.isValid()) {
+                continue;
+            }
+            if (completion.failure != null) {
+                failConnection(key, completion.failure);
+                continue;
+            }
+            connection.queue(completion.output);
+            connection.items = completion.items;
+            connection.nextItem = completion.nextItem;
+            try {
+                write(key);
+            } catch (IOException e) {
+                closeConnection(key);
+            } catch (RuntimeException e) {
+                failConnection(key, e);
+            }
+        }
+    }
+
+    /**
+     * Writes as much queued output as the socket accepts, then continues the connection's
+     * reply or executes its waiting command lines. Reading is suspended while a client has
+     * too much unread output, so slow readers cannot exhaust server memory.
+     */
+
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer output = connection.output;
+        output.flip();
+        channel.write(output);
+        output.compact();
+
+        if (!connection.working) {
+            if (connection.nextItem < connection.items.size()) {
+                if (output.position() < MAX_PENDING_OUTPUT - REPLY_CHUNK) {
+                    continueReply(key, connection.items, connection.nextItem);
+                }
+            } else {
+                connection.items = List.of();
+                while (!connection.working && !connection.waiting.isEmpty()) {
+                    execute(connection.waiting.poll(), key);
+                }
+            }
+        }
+
+        int interest = 0;
+        if (output.position() > 0) {
+            interest |= SelectionKey.OP_WRITE;
+        }
+        if (!connection.working && connection.nextItem >= connection.items.size()
+                && output.position() < MAX_PENDING_OUTPUT) {
+            interest |= SelectionKey.OP_READ;
+        }
+        key.interestOps(interest);
+    }
+
+    /**
+     * Extracts the upper case command name from a command line.
+     */
+
+    private static String commandOf(String line) {
+        String trimmed = line.trim();
+        int space = trimmed.indexOf(' ');
+        return (space < 0 ? trimmed : trimmed.substring(0, space)).toUpperCase();
+    }
+
+    /**
+     * Cancels a key and closes its channel.
+     */
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // The connection is being discarded anyway.
+        }
+    }
+
+    /**
+     * Answers a connection whose command failed unexpectedly with an error line, as far as the
+     * socket accepts it without blocking, and closes it.
+     */
+
+    private void failConnection(SelectionKey key, Exception e) {
+        if (key.channel() instanceof SocketChannel) {
+            try {
+                ((SocketChannel) key.channel()).write(StandardCharsets.UTF_8.encode(
+                        "ERR Internal server error: " + e.getClass().getSimpleName() + "\n"));
+            } catch (IOException | RuntimeException ignored) {
+                // The connection is being discarded anyway.
+            }
+        }
+        closeConnection(key);
+    }
+
+    /**
+     * Closes every registered channel and the selector.
+     */
+
+    private void closeQuietly() {
+        worker.shutdownNow();
+        if (!selector.isOpen()) {
+            return;
+        }
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            // Nothing more can be done while shutting down.
+        }
+    }
+
+    /**
+     * Per-client buffers and command state, used by the selector thread only. The input buffer
+     * is kept in write mode between reads and the output buffer is kept in write mode between
+     * flushes.
+     */
+
+    private static class Connection {
+        private ByteBuffer input = ByteBuffer.allocate(1024);
+        private ByteBuffer output = ByteBuffer.allocate(1024);
+        private final Queue<String> waiting = new ArrayDeque<>(); // command lines not yet executed
+        private boolean working; // a worker task of this connection has not completed
+        private List<LibraryItem> items = List.of(); // the result of a reply still being sent
+        private int nextItem; // the first item of the result that has not been formatted
+
+        /**
+         * Appends encoded bytes to the output buffer, growing it as needed.
+         */
+
+        private void queue(ByteBuffer bytes) {
+            if (output.remaining() < bytes.remaining()) {
+                int capacity = output.capacity();
+                while (capacity - output.position() < bytes.remaining()) {
+                    capacity *= 2;
+                }
+                ByteBuffer larger = ByteBuffer.allocate(capacity);
+                output.flip();
+                larger.put(output);
+                output = larger;
+            }
+            output.put(bytes);
+        }
+    }
+
+    /**
+     * The output of a worker task, or the failure that ended it.
+     */
+
+    private static class Completion {
+        private final SelectionKey key;
+        private final ByteBuffer output;
+        private final List<LibraryItem> items;
+        private final int nextItem;
+        private final Exception failure;
+
+        private Completion(SelectionKey key, CharSequence text, List<LibraryItem> items, int nextItem) {
+            this.key = key;
+            this.output = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+            this.items = items;
+            this.nextItem = nextItem;
+            this.failure = null;
+        }
+
+        private Completion(SelectionKey key, Exception failure) {
+            this.key = key;
+            this.output = null;
+            this.items = List.of();
+            this.nextItem = 0;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Starts a server for an empty library on the port given as the first argument (default 7070),
+     * listening on the host given as the second argument (default loopback) and keeping files in
+     * the directory given as the third argument (default the working directory).
+     *
+     * @param args Command-line arguments: an optional port number, host and data directory.
+     * @throws IOException if the server cannot be started.
+     */
+
+    public static void main(String[] args) throws IOException {
+        start(new Library(), args, 0);
+    }
+
+    /**
+     * Starts a server for a library from the port, host and data directory arguments that
+     * follow the given position, and runs it on the calling thread.
+     *
+     * @param library The library to serve.
+     * @param args    The command-line arguments.
+     * @param first   The position of the port argument.
+     * @throws IOException if the server cannot be started.
+     */
+
+    static void start(Library library, String[] args, int first) throws IOException {
+        int port = args.length > first ? Integer.parseInt(args[first]) : 7070;
+        String host = args.length > first + 1 ? args[first + 1] : null;
+        Path dataDirectory = Path.of(args.length > first + 2 ? args[first + 2] : "");
+        LibraryServer server = new LibraryServer(library, host, port, dataDirectory);
+        System.out.println("Library server listening on " + server.serverChannel.socket().getInetAddress()
+                .getHostAddress() + " port " + server.getPort());
+        server.run();
+    }
+}
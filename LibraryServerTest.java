@@ -0,0 +1,202 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The LibraryServerTest class contains unit tests for the LibraryServer class.
+ * It tests the network protocol for adding, searching, borrowing and returning items
+ * over real socket connections.
+ */
+
+public class LibraryServerTest {
+    private LibraryServer server;
+
+    /**
+     * Starts a server on a free port before each test.
+     */
+
+    @Before
+    public void setUp() throws IOException {
+        Library library = new Library();
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        server = new LibraryServer(library, 0);
+        server.start();
+    }
+
+    /**
+     * Stops the server after each test.
+     */
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Tests adding and searching items over the network.
+     * Verifies that the search response lists every matching item.
+     */
+
+    @Test
+    public void testAddAndSearch() throws IOException {
+        try (LibraryLoadClient.Channel channel = new LibraryLoadClient.Channel("localhost", server.getPort())) {
+            Assert.assertEquals("OK Inception_Christopher Nolan",
+                    channel.request("ADD DVD|Inception|Sci-Fi|Christopher Nolan").get(0));
+            List<String> response = channel.request("SEARCH nolan");
+            Assert.assertEquals("OK 1", response.get(0));
+            Assert.assertEquals("Title: Inception, Status: available, Genre: Sci-Fi, Director: Christopher Nolan",
+                    response.get(1));
+        }
+    }
+
+    /**
+     * Tests borrowing and returning an item over the network.
+     * Verifies that a second borrow of the same item fails until it is returned.
+     */
+
+    @Test
+    public void testBorrowAndReturn() throws IOException {
+        try (LibraryLoadClient.Channel channel = new LibraryLoadClient.Channel("localhost", server.getPort())) {
+            Assert.assertEquals("OK", channel.request("BORROW 0316769177|John Doe|johndoe@students.csu.edu").get(0));
+            Assert.assertTrue(channel.request("BORROW 0316769177|Jane Doe|janedoe@students.csu.edu").get(0).startsWith("FAIL"));
+            Assert.assertEquals("OK", channel.request("RETURN 0316769177").get(0));
+        }
+    }
+
+    /**
+     * Tests that invalid commands are answered with an error instead of closing the connection.
+     */
+
+    @Test
+    public void testInvalidCommand() throws IOException {
+        try (LibraryLoadClient.Channel channel = new LibraryLoadClient.Channel("localhost", server.getPort())) {
+            Assert.assertTrue(channel.request("FETCH everything").get(0).startsWith("ERR"));
+            Assert.assertTrue(channel.request("ADD BOOK|1984|George Orwell").get(0).startsWith("ERR"));
+            Assert.assertEquals("OK 1", channel.request("SEARCH catcher").get(0));
+        }
+    }
+
+    /**
+     * Tests that loading a file that does not hold a catalog is answered with an error and leaves
+     * the server serving new connections.
+     */
+
+    @Test
+    public void testLoadOfForeignFile() throws IOException {
+        String filename = "test_server_foreign.libtest";
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename))) {
+            out.writeObject("not a catalog");
+        }
+        try (LibraryLoadClient.Channel channel = new LibraryLoadClient.Channel("localhost", server.getPort())) {
+            Assert.assertTrue(channel.request("LOAD " + filename).get(0).startsWith("ERR"));
+        } finally {
+            new File(filename).delete();
+        }
+        try (LibraryLoadClient.Channel channel = new LibraryLoadClient.Channel("localhost", server.getPort())) {
+            Assert.assertEquals("OK 1", channel.request("SEARCH catcher").get(0));
+        }
+    }
+
+    /**
+     * Tests that SAVE and LOAD only reach files inside the data directory.
+     */
+
+    @Test
+    public void testFilesOutsideDataDirectory() throws IOException {
+        String filename = "test_server_saved.libtest";
+        try (LibraryLoadClient.Channel channel = new LibraryLoadClient.Channel("localhost", server.getPort())) {
+            Assert.assertEquals("OK", channel.request("SAVE " + filename).get(0));
+            Assert.assertEquals("OK", channel.request("LOAD ./" + filename).get(0));
+            Assert.assertTrue(channel.request("SAVE ../" + filename).get(0).startsWith("ERR"));
+            Assert.assertTrue(channel.request("LOAD " + new File(filename).getAbsoluteFile().getParentFile()
+                    .getParent() + "/" + filename).get(0).startsWith("ERR"));
+            Assert.assertTrue(channel.request("SAVE missing_directory/" + filename).get(0).startsWith("ERR"));
+        } finally {
+            new File(filename).delete();
+        }
+        Assert.assertFalse(new File("../" + filename).exists());
+    }
+
+    /**
+     * Tests that many concurrent connections are served by the single selector thread.
+     */
+
+    @Test
+    public void testManyConnections() throws IOException {
+        List<LibraryLoadClient.Channel> channels = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                channels.add(new LibraryLoadClient.Channel("localhost", server.getPort()));
+            }
+            for (LibraryLoadClient.Channel channel : channels) {
+                Assert.assertEquals("OK 1", channel.request("SEARCH salinger").get(0));
+            }
+        } finally {
+            for (LibraryLoadClient.Channel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Tests that commands sent together on one connection are answered in order, although the
+     * searches run on the worker thread and the other commands on the selector thread.
+     */
+
+    @Test(timeout = 30000)
+    public void testPipelinedCommandsKeepTheirOrder() throws IOException {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            socket.getOutputStream().write(("SEARCH catcher\n"
+                    + "ADD DVD|Inception|Sci-Fi|Christopher Nolan\n"
+                    + "SEARCH nolan\n"
+                    + "BORROW 0316769177|John Doe|johndoe@students.csu.edu\n").getBytes(StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Assert.assertEquals("OK 1", in.readLine());
+            Assert.assertTrue(in.readLine().startsWith("Title: The Catcher in the Rye"));
+            Assert.assertEquals("OK Inception_Christopher Nolan", in.readLine());
+            Assert.assertEquals("OK 1", in.readLine());
+            Assert.assertTrue(in.readLine().startsWith("Title: Inception"));
+            Assert.assertEquals("OK", in.readLine());
+        }
+    }
+
+    /**
+     * Tests that a search reply larger than the output limit is sent completely, while a client
+     * that has not read it yet does not hold up the commands of another client.
+     */
+
+    @Test(timeout = 30000)
+    public void testLargeReply() throws IOException {
+        Library library = new Library();
+        for (int i = 0; i < 30000; i++) {
+            library.addItem(new Book("Title " + i, "Author " + i, "isbn-" + i));
+        }
+        try (LibraryServer large = new LibraryServer(library, 0)) {
+            large.start();
+            try (Socket socket = new Socket("localhost", large.getPort());
+                    LibraryLoadClient.Channel other = new LibraryLoadClient.Channel("localhost", large.getPort())) {
+                socket.getOutputStream().write("SEARCH title\n".getBytes(StandardCharsets.UTF_8));
+                Assert.assertEquals("OK", other.request("BORROW isbn-7|John Doe|johndoe@students.csu.edu").get(0));
+
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Assert.assertEquals("OK 30000", in.readLine());
+                for (int i = 0; i < 30000; i++) {
+                    Assert.assertTrue(in.readLine().startsWith("Title: Title " + i + ","));
+                }
+                socket.getOutputStream().write("SEARCH isbn-29999\n".getBytes(StandardCharsets.UTF_8));
+                Assert.assertEquals("OK 1", in.readLine());
+            }
+        }
+    }
+}
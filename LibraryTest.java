@@ -1,8 +1,12 @@
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.List;
 
 /**
@@ -200,4 +204,191 @@ public class LibraryTest {
         // Clean up the test file
         new File(testFilename).delete();
     }
+
+    /**
+     * Tests that merging a saved library appends new items and keeps existing items
+     * under the KEEP_EXISTING policy.
+     */
+
+    @Test
+    public void testMergeFromFileKeepExisting() throws IOException, ClassNotFoundException {
+        String testFilename = "test_merge_library.libtest";
+        Library branch = new Library();
+        Book borrowedCopy = new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177");
+        borrowedCopy.borrowItem("Jane Doe", "jane@example.com");
+        branch.addItem(borrowedCopy);
+        branch.addItem(new Book("Dune", "Frank Herbert", "0441013597"));
+        branch.saveToFile(testFilename);
+
+        library.mergeFromFile(testFilename, MergePolicy.KEEP_EXISTING);
+        List<LibraryItem> items = library.getAllItems();
+        Assert.assertEquals(4, items.size());
+        Assert.assertEquals("Dune", items.get(3).getTitle());
+        Assert.assertEquals("available", library.getItemByIdentifier("0316769177").getStatus());
+        Assert.assertEquals("Dune", library.getItemByIdentifier("9780441013593").getTitle());
+
+        new File(testFilename).delete();
+    }
+
+    /**
+     * Tests that the KEEP_NEWER_STATUS policy keeps whichever copy changed its status last.
+     */
+
+    @Test
+    public void testMergeFromFileKeepNewerStatus() throws IOException, ClassNotFoundException {
+        String testFilename = "test_merge_library.libtest";
+        Library branch = new Library();
+        Book newer = new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177");
+        newer.borrowItem("Jane Doe", "jane@example.com");
+        newer.setStatusChangedAt(Long.MAX_VALUE);
+        CD older = new CD("Thriller", "Michael Jackson", "Pop");
+        older.borrowItem("John Doe", "john@example.com");
+        older.setStatusChangedAt(1);
+        branch.addItem(newer);
+        branch.addItem(older);
+        branch.saveToFile(testFilename);
+
+        library.mergeFromFile(testFilename, MergePolicy.KEEP_NEWER_STATUS);
+        Assert.assertEquals(3, library.getAllItems().size());
+        Assert.assertEquals("borrowed", library.getItemByIdentifier("0316769177").getStatus());
+        Assert.assertEquals("Jane Doe", library.getItemByIdentifier("0316769177").getBorrowerName());
+        Assert.assertEquals("available", library.getItemByIdentifier("Thriller_Michael Jackson").getStatus());
+
+        new File(testFilename).delete();
+    }
+
+    /**
+     * Tests that duplicate identifiers within the merged file are collapsed and
+     * that the REPLACE policy takes the merged copy.
+     */
+
+    @Test
+    public void testMergeFromFileReplaceWithDuplicates() throws IOException, ClassNotFoundException {
+        String testFilename = "test_merge_library.libtest";
+        Library branch = new Library();
+        for (int i = 0; i < 1000; i++) {
+            branch.addItem(new DVD("Movie " + (i % 100), "Drama", "Director"));
+        }
+        DVD inception = new DVD("Inception", "Sci-Fi", "Christopher Nolan");
+        inception.borrowItem("Jane Doe", "jane@example.com");
+        branch.addItem(inception);
+        branch.saveCompressedToFile(testFilename, false);
+
+        library.mergeFromFile(testFilename, MergePolicy.REPLACE);
+        Assert.assertEquals(103, library.getAllItems().size());
+        Assert.assertEquals("borrowed", library.getItemByIdentifier("Inception_Christopher Nolan").getStatus());
+
+        new File(testFilename).delete();
+    }
+
+    /**
+     * Tests that a book saved under its ISBN-13 matches the same book added under its ISBN-10
+     * instead of being appended as a second item.
+     */
+
+    @Test
+    public void testMergeMatchesBothIsbnForms() throws IOException, ClassNotFoundException {
+        String testFilename = "test_merge_library.libtest";
+        Library branch = new Library();
+        Book borrowedCopy = new Book("The Catcher in the Rye", "J.D. Salinger", "978-0-316-76917-4");
+        borrowedCopy.borrowItem("Jane Doe", "jane@example.com");
+        branch.addItem(borrowedCopy);
+        branch.saveToFile(testFilename);
+
+        library.mergeFromFile(testFilename, MergePolicy.REPLACE);
+        Assert.assertEquals(3, library.getAllItems().size());
+        Assert.assertEquals("borrowed", library.getItemByIdentifier("0316769177").getStatus());
+
+        new File(testFilename).delete();
+    }
+
+    /**
+     * Tests that merging without a policy throws an IllegalArgumentException.
+     */
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeFromFileNullPolicy() throws IOException, ClassNotFoundException {
+        library.mergeFromFile("test_merge_library.libtest", null);
+    }
+
+    /**
+     * Tests that a title with several copies can be borrowed once per copy, only counts as
+     * borrowed while every copy is out, and keeps its copies and loans through a save and load.
+     */
+
+    @Test
+    public void testMultipleCopies() throws IOException, ClassNotFoundException {
+        Assert.assertTrue(library.addCopies("0316769177", 2));
+        Assert.assertFalse(library.addCopies("unknown", 2));
+        Assert.assertTrue(library.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu"));
+        Assert.assertTrue(library.borrowItem("0316769177", "Jane Roe", "jane@example.com"));
+        Assert.assertEquals(0, library.query("status:borrowed").size());
+        Assert.assertTrue(library.borrowItem("0316769177", "Max Mustermann", "max@example.com"));
+        Assert.assertFalse(library.borrowItem("0316769177", "Late Reader", "late@example.com"));
+        Assert.assertEquals(1, library.query("status:borrowed").size());
+        Assert.assertTrue(library.returnItem("0316769177"));
+        Assert.assertEquals(0, library.query("status:borrowed").size());
+        Assert.assertEquals(1, library.getItemByIdentifier("0316769177").getAvailableCopies());
+        Assert.assertTrue(library.audit(false).isConsistent());
+
+        String testFilename = "test_copies_library.libtest";
+        library.saveToFile(testFilename);
+        Library loadedLibrary = new Library();
+        loadedLibrary.loadFromFile(testFilename);
+        new File(testFilename).delete();
+        LibraryItem loaded = loadedLibrary.getItemByIdentifier("0316769177");
+        Assert.assertEquals(3, loaded.getCopyCount());
+        Assert.assertEquals(2, loaded.getLoans().size());
+        Assert.assertEquals("Max Mustermann", loaded.getLoans().get(1).getBorrowerName());
+    }
+
+    /**
+     * Tests that borrowers of an item with several copies can return their copies out of order,
+     * and that each return clears the loan of the borrower who returned.
+     */
+
+    @Test
+    public void testReturnCopiesOutOfOrder() {
+        Assert.assertTrue(library.addCopies("0316769177", 1));
+        Assert.assertTrue(library.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu"));
+        Assert.assertTrue(library.borrowItem("0316769177", "Jane Roe", "jane@example.com"));
+
+        Assert.assertFalse(library.returnItem("0316769177", "Max Mustermann"));
+        Assert.assertTrue(library.returnItem("0316769177", "Jane Roe"));
+        List<Loan> loans = library.getItemByIdentifier("0316769177").getLoans();
+        Assert.assertEquals(1, loans.size());
+        Assert.assertEquals("John Doe", loans.get(0).getBorrowerName());
+        Assert.assertEquals(0, loans.get(0).getCopy());
+
+        Assert.assertTrue(library.borrowItem("0316769177", "Jane Roe", "jane@example.com"));
+        Assert.assertTrue(library.getItemByIdentifier("0316769177").checkIn(0));
+        loans = library.getItemByIdentifier("0316769177").getLoans();
+        Assert.assertEquals(1, loans.size());
+        Assert.assertEquals("Jane Roe", loans.get(0).getBorrowerName());
+        Assert.assertFalse(library.returnItem("0316769177", "John Doe"));
+    }
+
+    /**
+     * Tests that a serialized library can be restored, browsed and searched like the original.
+     */
+
+    @Test
+    public void testSerializeLibrary() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(library);
+        }
+        Library restored;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            restored = (Library) in.readObject();
+        }
+
+        Assert.assertEquals(library.getAllItems().size(), restored.getAllItems().size());
+        Assert.assertEquals(library.browse(BrowseCursor.seek(BrowseOrder.TITLE, ""), 10).toString(),
+                restored.browse(BrowseCursor.seek(BrowseOrder.TITLE, ""), 10).toString());
+        Assert.assertEquals(1, restored.searchItems("catcher").size());
+        restored.addItem(new Book("A New Title", "New Author", "NEW-1"));
+        Assert.assertEquals("A New Title",
+                restored.browse(BrowseCursor.seek(BrowseOrder.TITLE, ""), 1).get(0).getTitle());
+    }
 }
@@ -1,4 +1,9 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.List;
 import java.util.Scanner;
 
@@ -8,8 +13,11 @@ import java.util.Scanner;
  */
 
 public class LibraryUI {
+    private static final int BATCH_BUFFER_SIZE = 64 * 1024;
+
     private Library library;
     private Scanner scanner;
+    private SearchSession searchSession; // lets a refined search only recheck the previous matches
 
     /**
      * Constructs a new LibraryUI object with the Library and Scanner instances.
@@ -77,6 +85,38 @@ public class LibraryUI {
         }
     }
 
+    /**
+     * Runs commands read from a file or pipe without printing any menus or prompts.
+     * Each line is one command in the format of `LibraryCommandProcessor`; blank lines and
+     * lines starting with '#' are skipped. All output goes through one large buffered writer
+     * that is flushed once at the end of each command rather than once per result line.
+     *
+     * @param library The library the commands are executed against.
+     * @param input   The source of the command lines.
+     * @param output  The destination for the command responses.
+     * @return The number of commands executed.
+     * @throws IOException if reading the commands or writing the responses fails.
+     */
+
+    public static int runBatch(Library library, Reader input, Writer output) throws IOException {
+        LibraryCommandProcessor processor = new LibraryCommandProcessor(library);
+        BufferedReader reader = new BufferedReader(input, BATCH_BUFFER_SIZE);
+        BufferedWriter writer = new BufferedWriter(output, BATCH_BUFFER_SIZE);
+        int commands = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            processor.execute(trimmed, writer);
+            writer.flush();
+            commands++;
+        }
+        writer.flush();
+        return commands;
+    }
+
     /**
      * Handles the addition of a new library item. Prompts the user to specify the type of 
      * item (Book, DVD, CD) and then calls the method.
@@ -209,14 +249,19 @@ public class LibraryUI {
     private void searchItems() {
         System.out.println("Enter the search term (ISBN, director, author, artist, etc.):");
         String searchTerm = scanner.nextLine();
-        List<LibraryItem> matchingItems = library.searchItems(searchTerm);
+        if (searchSession == null) {
+            searchSession = library.openSearchSession();
+        }
+        List<LibraryItem> matchingItems = searchSession.search(searchTerm);
         if (matchingItems.isEmpty()) {
             System.out.println("No items found.");
         } else {
-            System.out.println("Matching items:");
+            // Build the whole result first so large result sets are printed with one call
+            StringBuilder output = new StringBuilder("Matching items:");
             for (LibraryItem item : matchingItems) {
-                System.out.println(item);
+                output.append(System.lineSeparator()).append(item);
             }
+            System.out.println(output);
         }
     }
 
@@ -286,7 +331,13 @@ public class LibraryUI {
             System.out.println("Filename cannot be empty. Please enter the filename:");
             filename = scanner.nextLine();
         }
-        library.saveToFile(filename);
+        try {
+            library.saveToFile(filename);
+            System.out.println("Library items saved to file.");
+        } catch (IOException e) {
+            System.err.println("An error occurred while saving the library items to file: " + e.getMessage());
+            throw e; // Rethrowing the exception to handle it at a higher level
+        }
     }
 
     /**
@@ -303,6 +354,15 @@ public class LibraryUI {
             System.out.println("Filename cannot be empty. Please enter the filename:");
             filename = scanner.nextLine();
         }
-        library.loadFromFile(filename);
+        try {
+            library.loadFromFile(filename);
+            System.out.println("Library items loaded from file.");
+        } catch (FileNotFoundException e) {
+            System.err.println("File not found: " + e.getMessage());
+            throw e;
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("An error occurred while loading the library items from file: " + e.getMessage());
+            throw e;
+        }
     }
 }
@@ -0,0 +1,46 @@
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * The LibraryUITest class contains unit tests for the batch mode of the LibraryUI class.
+ * It tests that scripted commands run without menus and produce one response per command.
+ */
+
+public class LibraryUITest {
+
+    /**
+     * Tests running a script of commands in batch mode.
+     * Verifies that comments are skipped and that no menu is printed.
+     */
+
+    @Test
+    public void testRunBatch() throws IOException {
+        String script = "# seed the catalog\n"
+                + "ADD BOOK|1984|George Orwell|0451524934\n"
+                + "\n"
+                + "BORROW 0451524934|John Doe|johndoe@students.csu.edu\n"
+                + "SEARCH orwell\n";
+        StringWriter output = new StringWriter();
+        int commands = LibraryUI.runBatch(new Library(), new StringReader(script), output);
+
+        Assert.assertEquals("Three commands should be executed", 3, commands);
+        Assert.assertEquals("OK 0451524934\n"
+                + "OK\n"
+                + "OK 1\n"
+                + "Title: 1984, Status: borrowed, Author: George Orwell, ISBN: 0451524934\n", output.toString());
+    }
+
+    /**
+     * Tests that an invalid command in batch mode is reported and does not stop the script.
+     */
+
+    @Test
+    public void testRunBatchContinuesAfterError() throws IOException {
+        StringWriter output = new StringWriter();
+        LibraryUI.runBatch(new Library(), new StringReader("7\nSEARCH anything\n"), output);
+        Assert.assertEquals("ERR Unknown command: 7\nOK 0\n", output.toString());
+    }
+}
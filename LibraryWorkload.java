@@ -0,0 +1,611 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The `LibraryWorkload` class generates synthetic traffic against a `Library` for capacity testing.
+ * It builds a catalog of books, CDs and DVDs whose title words, creators and genres follow a
+ * Zipfian popularity distribution, and drives a configurable mix of searches, borrows, returns and
+ * adds from many threads, optionally at a fixed target rate. Each run reports its throughput and
+ * latency percentiles. Operations can be recorded to a trace in the command format of
+ * `LibraryCommandProcessor` and replayed later; a trace can also be run with `Main --batch`.
+ *
+ * A plain `Library` is not thread-safe, so runs with more than one thread need a concurrent
+ * library such as `VersionedLibrary` or `ShardedLibrary`.
+ */
+
+public class LibraryWorkload {
+    /**
+     * The operations a workload issues.
+     */
+    public enum Operation {
+        SEARCH, BORROW, RETURN, ADD
+    }
+
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ra", "ten", "su", "vel", "dor", "an", "ie", "bel", "tho",
+        "mar", "quin", "es", "ro", "lu", "nyx", "pa", "gor", "il", "sha", "ven", "ti"
+    };
+    private static final String[] GENRES = {
+        "Drama", "Sci-Fi", "Comedy", "Rock", "Pop", "Jazz", "Classical", "Thriller",
+        "Documentary", "Horror", "Folk", "Animation"
+    };
+    private static final int VOCABULARY_SIZE = 2000;
+    private static final int CREATOR_COUNT = 5000;
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    private final Library library;
+    private final List<LibraryItem> catalog;
+    private final String[] vocabulary;
+    private final String[] creators;
+    private final Zipf itemPopularity;
+    private final Zipf wordPopularity;
+    private final AtomicLong nextItem;
+    private final long seed;
+    private int[] mix = {70, 15, 10, 5};
+    private Writer trace;
+
+    /**
+     * Initializes a workload and adds a generated catalog of the given size to the library.
+     *
+     * @param library     The library to drive.
+     * @param catalogSize The number of items to generate.
+     * @param seed        The seed of the random generators, so runs can be repeated.
+     * @throws IllegalArgumentException if the library is null or the catalog size is not positive.
+     */
+
+    public LibraryWorkload(Library library, int catalogSize, long seed) {
+        if (library == null) {
+            throw new IllegalArgumentException("Library cannot be null");
+        }
+        if (catalogSize <= 0) {
+            throw new IllegalArgumentException("Catalog size must be positive");
+        }
+        this.library = library;
+        this.seed = seed;
+        Random random = new Random(seed);
+        vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = word(random, 2 + random.nextInt(2));
+        }
+        creators = new String[CREATOR_COUNT];
+        for (int i = 0; i < creators.length; i++) {
+            creators[i] = capitalize(word(random, 2)) + " " + capitalize(word(random, 3));
+        }
+        wordPopularity = new Zipf(vocabulary.length, ZIPF_EXPONENT);
+        itemPopularity = new Zipf(catalogSize, ZIPF_EXPONENT);
+
+        catalog = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            catalog.add(newItem(random, i));
+        }
+        nextItem = new AtomicLong(catalogSize);
+        for (LibraryItem item : catalog) {
+            library.addItem(item);
+        }
+    }
+
+    /**
+     * Retrieves the generated catalog, in the order it was added to the library.
+     *
+     * @return The generated items.
+     */
+
+    public List<LibraryItem> getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Sets the share of each operation in the workload.
+     *
+     * @param search The percentage of searches.
+     * @param borrow The percentage of borrows.
+     * @param ret    The percentage of returns.
+     * @param add    The percentage of adds.
+     * @throws IllegalArgumentException if a percentage is negative or they do not add up to 100.
+     */
+
+    public void setMix(int search, int borrow, int ret, int add) {
+        if (search < 0 || borrow < 0 || ret < 0 || add < 0 || search + borrow + ret + add != 100) {
+            throw new IllegalArgumentException("Operation mix must consist of percentages adding up to 100");
+        }
+        mix = new int[] {search, borrow, ret, add};
+    }
+
+    /**
+     * Records every operation of the following runs to a trace, one command per line.
+     * With several threads, operations are recorded in the order they complete.
+     *
+     * @param trace The destination of the trace, or null to stop recording.
+     */
+
+    public void setTrace(Writer trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Runs the workload.
+     *
+     * @param threads    The number of threads issuing operations.
+     * @param operations The total number of operations.
+     * @param targetRate The total number of operations per second, or 0 to run as fast as possible.
+     *                   With a target rate, latencies are measured from the time each operation was
+     *                   scheduled, so a stalled library is not hidden by the generator waiting for it.
+     * @return The throughput and latencies of the run.
+     * @throws IllegalArgumentException if the number of threads or operations is not positive or the
+     *                                  rate is negative.
+     * @throws IOException if the trace cannot be written.
+     */
+
+    public Result run(int threads, int operations, int targetRate) throws IOException {
+        if (threads <= 0 || operations <= 0) {
+            throw new IllegalArgumentException("Threads and operations must be positive");
+        }
+        if (targetRate < 0) {
+            throw new IllegalArgumentException("Target rate cannot be negative");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long started = System.nanoTime();
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int count = operations / threads + (t < operations % threads ? 1 : 0);
+                long interval = targetRate == 0 ? 0 : (long) (1e9 * threads / targetRate);
+                Random random = new Random(seed * 31 + t);
+                futures.add(executor.submit(() -> drive(random, count, started, interval)));
+            }
+            List<Result> parts = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                parts.add(future.get());
+            }
+            return Result.combine(parts, System.nanoTime() - started);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Workload was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            if (trace != null) {
+                trace.flush();
+            }
+        }
+    }
+
+    /**
+     * Replays a recorded trace against a library, in order, from one thread.
+     *
+     * @param library    The library to replay the trace against.
+     * @param trace      The trace, one command per line; blank lines and lines starting with '#' are skipped.
+     * @param targetRate The number of operations per second, or 0 to replay as fast as possible.
+     * @return The throughput and latencies of the replay.
+     * @throws IllegalArgumentException if the library is null or the rate is negative.
+     * @throws IOException if the trace cannot be read.
+     */
+
+    public static Result replay(Library library, Reader trace, int targetRate) throws IOException {
+        if (targetRate < 0) {
+            throw new IllegalArgumentException("Target rate cannot be negative");
+        }
+        LibraryCommandProcessor processor = new LibraryCommandProcessor(library);
+        BufferedReader reader = new BufferedReader(trace, 64 * 1024);
+        StringBuilder response = new StringBuilder();
+        Result result = new Result();
+        long interval = targetRate == 0 ? 0 : (long) (1e9 / targetRate);
+        long started = System.nanoTime();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String command = line.trim();
+            if (command.isEmpty() || command.startsWith("#")) {
+                continue;
+            }
+            long scheduled = pace(started, result.count, interval);
+            response.setLength(0);
+            processor.execute(command, response);
+            result.record(operationOf(command), System.nanoTime() - scheduled);
+        }
+        result.elapsedNanos = System.nanoTime() - started;
+        return result;
+    }
+
+    /**
+     * Runs a workload from the command line. Usage:
+     * <pre>
+     * java LibraryWorkload [catalogSize] [threads] [operations] [ratePerSecond] [traceFile]
+     * java LibraryWorkload --replay traceFile [catalogSize] [ratePerSecond]
+     * </pre>
+     * The library is a `VersionedLibrary`. A replay starts from the same generated catalog as the
+     * recording, using the default seed.
+     *
+     * @param args Command-line arguments as described above.
+     * @throws IOException if the trace cannot be read or written.
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 1 && "--replay".equals(args[0])) {
+            int catalogSize = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+            int rate = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+            Library library = new VersionedLibrary();
+            new LibraryWorkload(library, catalogSize, 42);
+            try (Reader in = new FileReader(args[1])) {
+                System.out.println(replay(library, in, rate));
+            }
+            return;
+        }
+        int catalogSize = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int operations = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        int rate = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        LibraryWorkload workload = new LibraryWorkload(new VersionedLibrary(), catalogSize, 42);
+        if (args.length > 4) {
+            try (Writer out = new FileWriter(args[4])) {
+                workload.setTrace(out);
+                System.out.println(workload.run(threads, operations, rate));
+            }
+        } else {
+            System.out.println(workload.run(threads, operations, rate));
+        }
+    }
+
+    /**
+     * Issues the operations of one thread.
+     */
+
+    private Result drive(Random random, int count, long started, long interval) throws IOException {
+        Result result = new Result();
+        Deque<String> borrowed = new ArrayDeque<>();
+        for (int i = 0; i < count; i++) {
+            long scheduled = pace(started, i, interval);
+            Operation operation = pick(random);
+            String command;
+            switch (operation) {
+            case SEARCH: {
+                String term = vocabulary[wordPopularity.next(random)];
+                command = "SEARCH " + term;
+                library.searchItems(term);
+                break;
+            }
+            case BORROW: {
+                String identifier = catalog.get(itemPopularity.next(random)).getUniqueIdentifier();
+                String reader = "Reader " + random.nextInt(1000);
+                command = "BORROW " + identifier + "|" + reader + "|reader@example.com";
+                if (library.borrowItem(identifier, reader, "reader@example.com")) {
+                    borrowed.addLast(identifier);
+                }
+                break;
+            }
+            case RETURN: {
+                // Return the oldest loan of this thread, or a popular item if it has none.
+                String identifier = borrowed.isEmpty()
+                        ? catalog.get(itemPopularity.next(random)).getUniqueIdentifier()
+                        : borrowed.removeFirst();
+                command = "RETURN " + identifier;
+                library.returnItem(identifier);
+                break;
+            }
+            default: {
+                LibraryItem item = newItem(random, nextItem.getAndIncrement());
+                command = addCommand(item);
+                library.addItem(item);
+                break;
+            }
+            }
+            result.record(operation, System.nanoTime() - scheduled);
+            if (trace != null) {
+                synchronized (trace) {
+                    trace.write(command);
+                    trace.write('\n');
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Waits until the scheduled start of an operation and returns the time it was scheduled for,
+     * or returns the current time if there is no target rate.
+     */
+
+    private static long pace(long started, long index, long interval) {
+        if (interval == 0) {
+            return System.nanoTime();
+        }
+        long scheduled = started + index * interval;
+        long wait;
+        while ((wait = scheduled - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+        return scheduled;
+    }
+
+    /**
+     * Picks the next operation according to the mix.
+     */
+
+    private Operation pick(Random random) {
+        int roll = random.nextInt(100);
+        for (int i = 0; i < mix.length; i++) {
+            roll -= mix[i];
+            if (roll < 0) {
+                return Operation.values()[i];
+            }
+        }
+        return Operation.SEARCH;
+    }
+
+    /**
+     * Determines the operation of a trace command.
+     */
+
+    private static Operation operationOf(String command) {
+        int space = command.indexOf(' ');
+        String name = (space < 0 ? command : command.substring(0, space)).toUpperCase();
+        try {
+            return Operation.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return Operation.SEARCH;
+        }
+    }
+
+    /**
+     * Generates the item with the given number: half books, a quarter CDs and a quarter DVDs.
+     * Books get a valid ISBN-13 derived from the number, so every generated identifier is unique.
+     */
+
+    private LibraryItem newItem(Random random, long number) {
+        String title = title(random);
+        String creator = creators[wordPopularityOf(random, creators.length)];
+        String genre = GENRES[wordPopularityOf(random, GENRES.length)];
+        switch ((int) (number % 4)) {
+        case 0:
+        case 1:
+            return new Book(title, creator, isbn(number));
+        case 2:
+            return new CD(title + " " + number, creator, genre);
+        default:
+            return new DVD(title + " " + number, genre, creator);
+        }
+    }
+
+    /**
+     * Builds a title of one to four words drawn by popularity.
+     */
+
+    private String title(Random random) {
+        int words = 1 + random.nextInt(4);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            title.append(capitalize(vocabulary[wordPopularity.next(random)]));
+        }
+        return title.toString();
+    }
+
+    /**
+     * Draws a skewed index below the given bound, favoring low indexes like the word popularity.
+     */
+
+    private int wordPopularityOf(Random random, int bound) {
+        return wordPopularity.next(random) % bound;
+    }
+
+    /**
+     * Formats the ADD command that recreates an item.
+     */
+
+    private static String addCommand(LibraryItem item) {
+        if (item instanceof Book) {
+            Book book = (Book) item;
+            return "ADD BOOK|" + book.getTitle() + "|" + book.getAuthor() + "|" + book.getISBN();
+        } else if (item instanceof CD) {
+            CD cd = (CD) item;
+            return "ADD CD|" + cd.getTitle() + "|" + cd.getArtist() + "|" + cd.getGenre();
+        }
+        DVD dvd = (DVD) item;
+        return "ADD DVD|" + dvd.getTitle() + "|" + dvd.getGenre() + "|" + dvd.getDirector();
+    }
+
+    /**
+     * Builds a valid ISBN-13 with the 979 prefix from a number below one billion.
+     */
+
+    static String isbn(long number) {
+        String digits = "979" + String.format("%09d", number % 1_000_000_000L);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Builds a pseudo-word from random syllables.
+     */
+
+    private static String word(Random random, int syllables) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    /**
+     * Capitalizes the first letter of a word.
+     */
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /**
+     * The `Zipf` class draws ranks from a Zipf distribution, where rank k is chosen with a
+     * probability proportional to 1 / k^s, by binary search over the cumulative distribution.
+     */
+
+    static final class Zipf {
+        private final double[] cumulative;
+
+        /**
+         * Precomputes the cumulative distribution of the given number of ranks.
+         */
+
+        Zipf(int ranks, double exponent) {
+            cumulative = new double[ranks];
+            double sum = 0;
+            for (int k = 0; k < ranks; k++) {
+                sum += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < ranks; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        /**
+         * Draws a rank, where 0 is the most popular one.
+         */
+
+        int next(Random random) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(cumulative.length - 1, rank < 0 ? -rank - 1 : rank);
+        }
+    }
+
+    /**
+     * The `Result` class holds the operation counts and latencies of a run or a replay.
+     */
+
+    public static final class Result {
+        private final Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+        private long[] latencies = new long[1024];
+        private int count;
+        private long elapsedNanos;
+
+        /**
+         * Records one finished operation.
+         */
+
+        private void record(Operation operation, long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            counts.merge(operation, 1, Integer::sum);
+        }
+
+        /**
+         * Combines the results of the threads of one run and sorts the latencies.
+         */
+
+        private static Result combine(List<Result> parts, long elapsedNanos) {
+            Result combined = new Result();
+            int total = 0;
+            for (Result part : parts) {
+                total += part.count;
+            }
+            combined.latencies = new long[Math.max(1, total)];
+            for (Result part : parts) {
+                System.arraycopy(part.latencies, 0, combined.latencies, combined.count, part.count);
+                combined.count += part.count;
+                part.counts.forEach((operation, n) -> combined.counts.merge(operation, n, Integer::sum));
+            }
+            combined.elapsedNanos = elapsedNanos;
+            return combined;
+        }
+
+        /**
+         * Retrieves the number of operations.
+         *
+         * @return The number of operations of the run.
+         */
+
+        public int getOperations() {
+            return count;
+        }
+
+        /**
+         * Retrieves the number of operations of one kind.
+         *
+         * @param operation The kind of operation.
+         * @return The number of such operations.
+         */
+
+        public int getCount(Operation operation) {
+            return counts.getOrDefault(operation, 0);
+        }
+
+        /**
+         * Retrieves the wall-clock duration of the run.
+         *
+         * @return The duration in nanoseconds.
+         */
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Retrieves the throughput of the run.
+         *
+         * @return The number of operations per second.
+         */
+
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : count / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * Retrieves a latency percentile.
+         *
+         * @param p The percentile as a fraction, for example 0.99.
+         * @return The latency in nanoseconds.
+         */
+
+        public long getPercentile(double p) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return LibraryLoadClient.percentile(sorted, p);
+        }
+
+        /**
+         * Formats throughput, operation counts and latency percentiles.
+         *
+         * @return A one-line summary.
+         */
+
+        @Override
+        public String toString() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return String.format("%d operations %s in %.2f s (%.0f ops/s), latency p50=%.3f ms p90=%.3f ms "
+                    + "p99=%.3f ms p99.9=%.3f ms max=%.3f ms",
+                    count, counts, elapsedNanos / 1e9, getThroughput(),
+                    LibraryLoadClient.percentile(sorted, 0.50) / 1e6, LibraryLoadClient.percentile(sorted, 0.90) / 1e6,
+                    LibraryLoadClient.percentile(sorted, 0.99) / 1e6, LibraryLoadClient.percentile(sorted, 0.999) / 1e6,
+                    (count == 0 ? 0 : sorted[count - 1]) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import org.junit.Assert;
+import org.junit.Test;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The LibraryWorkloadTest class contains unit tests for the LibraryWorkload class.
+ * It tests catalog generation, the operation mix, rate limiting and trace replay.
+ */
+
+public class LibraryWorkloadTest {
+
+    /**
+     * Tests that the generated catalog is repeatable, has unique identifiers and valid ISBNs.
+     */
+
+    @Test
+    public void testGeneratedCatalog() {
+        Library library = new Library();
+        List<LibraryItem> catalog = new LibraryWorkload(library, 2000, 7).getCatalog();
+        List<LibraryItem> again = new LibraryWorkload(new Library(), 2000, 7).getCatalog();
+
+        Assert.assertEquals(2000, library.getAllItems().size());
+        Set<String> identifiers = new HashSet<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            LibraryItem item = catalog.get(i);
+            Assert.assertTrue(identifiers.add(item.getUniqueIdentifier()));
+            Assert.assertEquals(item.getUniqueIdentifier(), again.get(i).getUniqueIdentifier());
+            if (item instanceof Book) {
+                Assert.assertTrue(IsbnIndex.normalize(item.getUniqueIdentifier()) > 0);
+            }
+        }
+    }
+
+    /**
+     * Tests that a run issues the requested number of operations in the configured mix
+     * and reports ordered percentiles.
+     */
+
+    @Test
+    public void testRunWithMix() throws IOException {
+        Library library = new VersionedLibrary();
+        LibraryWorkload workload = new LibraryWorkload(library, 1000, 1);
+        workload.setMix(0, 50, 25, 25);
+        LibraryWorkload.Result result = workload.run(4, 2000, 0);
+
+        Assert.assertEquals(2000, result.getOperations());
+        Assert.assertEquals(0, result.getCount(LibraryWorkload.Operation.SEARCH));
+        Assert.assertTrue(result.getCount(LibraryWorkload.Operation.BORROW) > 0);
+        Assert.assertEquals(1000 + result.getCount(LibraryWorkload.Operation.ADD), library.getAllItems().size());
+        Assert.assertTrue(result.getPercentile(0.5) <= result.getPercentile(0.99));
+        Assert.assertTrue(result.toString().contains("ops/s"));
+    }
+
+    /**
+     * Tests that a target rate limits the throughput of a run.
+     */
+
+    @Test
+    public void testTargetRate() throws IOException {
+        LibraryWorkload workload = new LibraryWorkload(new ShardedLibrary(4), 100, 1);
+        LibraryWorkload.Result result = workload.run(2, 100, 1000);
+        Assert.assertTrue("100 operations at 1000/s should take about 0.1 s",
+                result.getElapsedNanos() >= 90_000_000L);
+    }
+
+    /**
+     * Tests that replaying a recorded single-threaded trace on the same catalog
+     * reproduces the state of the recorded library.
+     */
+
+    @Test
+    public void testRecordAndReplay() throws IOException {
+        Library recorded = new Library();
+        LibraryWorkload workload = new LibraryWorkload(recorded, 500, 3);
+        workload.setMix(40, 30, 20, 10);
+        StringWriter trace = new StringWriter();
+        workload.setTrace(trace);
+        workload.run(1, 1000, 0);
+
+        Library replayed = new Library();
+        new LibraryWorkload(replayed, 500, 3);
+        LibraryWorkload.Result result = LibraryWorkload.replay(replayed, new StringReader(trace.toString()), 0);
+
+        Assert.assertEquals(1000, result.getOperations());
+        List<LibraryItem> expected = recorded.getAllItems();
+        List<LibraryItem> actual = replayed.getAllItems();
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getUniqueIdentifier(), actual.get(i).getUniqueIdentifier());
+            Assert.assertEquals(expected.get(i).getStatus(), actual.get(i).getStatus());
+            Assert.assertEquals(expected.get(i).getBorrowerName(), actual.get(i).getBorrowerName());
+        }
+    }
+
+    /**
+     * Tests that a mix that does not add up to 100 percent is rejected.
+     */
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMix() {
+        new LibraryWorkload(new Library(), 10, 1).setMix(50, 50, 50, 0);
+    }
+}
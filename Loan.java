@@ -0,0 +1,77 @@
+import java.io.Serializable;
+
+/**
+ * The `Loan` class records who borrowed one copy of a title that the library holds several
+ * copies of. Loans are immutable; returning the copy simply discards its loan.
+ */
+
+public final class Loan implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int copy;
+    private final String borrowerName;
+    private final String borrowerContact;
+    private final long borrowedAt;
+
+    /**
+     * Creates the loan of a copy.
+     */
+
+    Loan(int copy, String borrowerName, String borrowerContact, long borrowedAt) {
+        this.copy = copy;
+        this.borrowerName = borrowerName;
+        this.borrowerContact = borrowerContact;
+        this.borrowedAt = borrowedAt;
+    }
+
+    /**
+     * Retrieves the number of the borrowed copy.
+     *
+     * @return The copy number, from 0 to the copy count minus one.
+     */
+
+    public int getCopy() {
+        return copy;
+    }
+
+    /**
+     * Retrieves the name of the borrower.
+     *
+     * @return The name of the borrower.
+     */
+
+    public String getBorrowerName() {
+        return borrowerName;
+    }
+
+    /**
+     * Retrieves the contact information of the borrower.
+     *
+     * @return The contact information of the borrower.
+     */
+
+    public String getBorrowerContact() {
+        return borrowerContact;
+    }
+
+    /**
+     * Retrieves the time the copy was borrowed.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+
+    public long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    /**
+     * Creates a string representation of the loan.
+     *
+     * @return The copy number and borrower.
+     */
+
+    @Override
+    public String toString() {
+        return "Copy " + copy + " borrowed by " + borrowerName;
+    }
+}
@@ -1,3 +1,9 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 /**
  * The `Main` class serves as the entry point for the personal library management system.
@@ -6,12 +12,30 @@ import java.util.Scanner;
 public class Main {
     /**
      * The main method of the application, which creates a library and starts the library user interface.
+     * Passing "--server" with an optional port number, host and data directory serves the library
+     * over the network instead,
+     * and "--batch" with an optional filename runs commands from that file or from standard input.
      *
-     * @param args Command-line arguments (not used in this application).
+     * @param args Command-line arguments: none for the console interface,
+     *             "--server [port] [host] [dataDirectory]" or "--batch [file]".
+     * @throws IOException if the network server cannot be started or the batch input cannot be read.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // Create a new library instance
         Library library = new Library();
+        if (args.length > 0 && "--server".equals(args[0])) {
+            // Serve the library to many network clients instead of a single console user
+            LibraryServer.start(library, args, 1);
+            return;
+        }
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            // Run a script of commands without menus, reading from a file or a stdin pipe
+            try (InputStream in = args.length > 1 ? new FileInputStream(args[1]) : System.in) {
+                LibraryUI.runBatch(library, new InputStreamReader(in, StandardCharsets.UTF_8),
+                        new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            }
+            return;
+        }
         // Initialize a scanner to capture user input
         try (Scanner scanner = new Scanner(System.in)) {
             // Create a LibraryUI instance to manage user interactions with the library
@@ -0,0 +1,40 @@
+/**
+ * The `MergePolicy` enum decides which copy of an item is kept when a saved library is merged
+ * into a library that already holds an item with the same unique identifier.
+ */
+
+public enum MergePolicy {
+    /**
+     * Keeps the item that is already in the library.
+     */
+    KEEP_EXISTING,
+
+    /**
+     * Keeps whichever item changed its status most recently; the existing item wins a tie.
+     */
+    KEEP_NEWER_STATUS,
+
+    /**
+     * Replaces the existing item with the merged one.
+     */
+    REPLACE;
+
+    /**
+     * Chooses which of two items with the same unique identifier to keep.
+     *
+     * @param existing The item already in the library.
+     * @param incoming The item being merged into the library.
+     * @return The item to keep.
+     */
+
+    public LibraryItem resolve(LibraryItem existing, LibraryItem incoming) {
+        switch (this) {
+        case KEEP_EXISTING:
+            return existing;
+        case KEEP_NEWER_STATUS:
+            return incoming.getStatusChangedAt() > existing.getStatusChangedAt() ? incoming : existing;
+        default:
+            return incoming;
+        }
+    }
+}
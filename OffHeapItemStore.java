@@ -0,0 +1,333 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The `OffHeapItemStore` class keeps items encoded by `ItemCodec` in direct byte buffers outside
+ * the Java heap. The heap only holds a small index: one address per record and an open-addressing
+ * hash table of record numbers keyed by the hash of the unique identifier. Lookups and scans read
+ * the records straight from off-heap memory and only materialize the items they return, so heap
+ * size and garbage collection pauses no longer grow with the catalog.
+ *
+ * Updates append a new version of the record and repoint its address; the space of old versions
+ * is reclaimed by compacting the segments once it outweighs the live records.
+ */
+
+public class OffHeapItemStore implements ItemStore {
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final int segmentSize;
+    private List<ByteBuffer> segments = new ArrayList<>();
+    private long[] addresses = new long[1024];
+    private int size;
+    private int[] table = new int[2048];
+    private int[] tableHashes = new int[2048];
+    private long usedBytes;
+    private long garbageBytes;
+
+    /**
+     * Initializes a new, empty store with 64 MB segments.
+     */
+
+    public OffHeapItemStore() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Initializes a new, empty store that allocates off-heap memory in segments of the given size.
+     *
+     * @param segmentSize The size of each direct buffer in bytes.
+     * @throws IllegalArgumentException if the segment size is smaller than 1 KB.
+     */
+
+    public OffHeapItemStore(int segmentSize) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("Segment size must be at least 1024 bytes");
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Encodes an item into the current segment and indexes its identifier.
+     *
+     * @param item The item to store.
+     * @throws IllegalArgumentException if the item is null or not a Book, CD or DVD.
+     */
+
+    @Override
+    public void add(LibraryItem item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        long address = write(ItemCodec.encode(item));
+        if (size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, size * 2);
+        }
+        addresses[size] = address;
+        int record = size++;
+        String identifier = item.getUniqueIdentifier();
+        // Only the first item with an identifier is indexed, matching Library.getItemByIdentifier.
+        if (find(identifier) < 0) {
+            insert(identifier.hashCode(), record);
+        }
+    }
+
+    /**
+     * Probes the identifier index and decodes the matching record.
+     *
+     * @param identifier The unique identifier of the item.
+     * @return A copy of the stored item, or null if not found.
+     */
+
+    @Override
+    public LibraryItem get(String identifier) {
+        int record = find(identifier);
+        return record < 0 ? null : decode(record);
+    }
+
+    /**
+     * Appends the new state of an item and repoints its record to it.
+     *
+     * @param item The item whose state should be stored.
+     * @return true if an item with that identifier was stored, false otherwise.
+     */
+
+    @Override
+    public boolean update(LibraryItem item) {
+        int record = find(item.getUniqueIdentifier());
+        if (record < 0) {
+            return false;
+        }
+        long old = addresses[record];
+        int oldLength = ItemCodec.recordLength(segment(old), offset(old));
+        addresses[record] = write(ItemCodec.encode(item));
+        garbageBytes += oldLength;
+        if (garbageBytes > segmentSize && garbageBytes > usedBytes / 2) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Scans all records in their encoded form and decodes only the matches.
+     *
+     * @param lowerCaseTerm The search term, already converted to lower case.
+     * @return Copies of the matching items in storage order.
+     */
+
+    @Override
+    public List<LibraryItem> search(String lowerCaseTerm) {
+        byte[] termBytes = lowerCaseTerm.getBytes(StandardCharsets.UTF_8);
+        List<LibraryItem> matchingItems = new ArrayList<>();
+        for (int record = 0; record < size; record++) {
+            long address = addresses[record];
+            if (ItemCodec.matches(segment(address), offset(address), lowerCaseTerm, termBytes)) {
+                matchingItems.add(decode(record));
+            }
+        }
+        return matchingItems;
+    }
+
+    /**
+     * Decodes every record.
+     *
+     * @return Copies of all items in storage order.
+     */
+
+    @Override
+    public List<LibraryItem> getAll() {
+        List<LibraryItem> allItems = new ArrayList<>(size);
+        for (int record = 0; record < size; record++) {
+            allItems.add(decode(record));
+        }
+        return allItems;
+    }
+
+    /**
+     * Drops all segments and stores the given items instead.
+     *
+     * @param items The items the store should contain from now on.
+     */
+
+    @Override
+    public void replaceAll(List<LibraryItem> items) {
+        clear();
+        for (LibraryItem item : items) {
+            add(item);
+        }
+    }
+
+    /**
+     * Retrieves the number of stored items.
+     *
+     * @return The number of items.
+     */
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of off-heap bytes holding live or superseded records.
+     *
+     * @return The number of bytes written to the segments.
+     */
+
+    public long getOffHeapBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Releases all segments. The direct memory is returned once the buffers are collected.
+     */
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * Removes every record and resets the index.
+     */
+
+    private void clear() {
+        segments = new ArrayList<>();
+        addresses = new long[1024];
+        table = new int[2048];
+        tableHashes = new int[2048];
+        size = 0;
+        usedBytes = 0;
+        garbageBytes = 0;
+    }
+
+    /**
+     * Copies a record into the current segment, starting a new one when it does not fit.
+     *
+     * @return The address of the record: segment number in the high and offset in the low 32 bits.
+     */
+
+    private long write(byte[] record) {
+        if (record.length > segmentSize) {
+            throw new IllegalArgumentException("Item is too large for the segment size");
+        }
+        ByteBuffer current = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (current == null || current.remaining() < record.length) {
+            current = ByteBuffer.allocateDirect(segmentSize);
+            segments.add(current);
+        }
+        int offset = current.position();
+        current.put(record);
+        usedBytes += record.length;
+        return ((long) (segments.size() - 1) << 32) | offset;
+    }
+
+    /**
+     * Rewrites every live record into fresh segments, dropping superseded versions.
+     */
+
+    private void compact() {
+        List<ByteBuffer> old = segments;
+        segments = new ArrayList<>();
+        usedBytes = 0;
+        garbageBytes = 0;
+        for (int record = 0; record < size; record++) {
+            long address = addresses[record];
+            ByteBuffer segment = old.get((int) (address >>> 32));
+            int offset = offset(address);
+            byte[] bytes = new byte[ItemCodec.recordLength(segment, offset)];
+            segment.get(offset, bytes);
+            addresses[record] = write(bytes);
+        }
+    }
+
+    /**
+     * Decodes the current version of a record.
+     */
+
+    private LibraryItem decode(int record) {
+        long address = addresses[record];
+        return ItemCodec.decode(segment(address), offset(address));
+    }
+
+    /**
+     * Finds the record number of the first item with the given identifier.
+     *
+     * @return The record number, or -1 if not found.
+     */
+
+    private int find(String identifier) {
+        int hash = identifier.hashCode();
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (tableHashes[slot] == hash) {
+                int record = table[slot] - 1;
+                long address = addresses[record];
+                if (ItemCodec.decodeIdentifier(segment(address), offset(address)).equals(identifier)) {
+                    return record;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Inserts a record number into the hash table, growing it to keep the load factor below one half.
+     */
+
+    private void insert(int hash, int record) {
+        if ((size + 1) * 2 > table.length) {
+            int[] oldTable = table;
+            int[] oldHashes = tableHashes;
+            table = new int[oldTable.length * 2];
+            tableHashes = new int[oldTable.length * 2];
+            for (int i = 0; i < oldTable.length; i++) {
+                if (oldTable[i] != 0) {
+                    place(oldHashes[i], oldTable[i] - 1);
+                }
+            }
+        }
+        place(hash, record);
+    }
+
+    /**
+     * Stores a record number in the first free slot of its probe sequence.
+     */
+
+    private void place(int hash, int record) {
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = record + 1;
+        tableHashes[slot] = hash;
+    }
+
+    /**
+     * Spreads the bits of a String hash code so that linear probing stays short.
+     */
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Retrieves the segment of an address.
+     */
+
+    private ByteBuffer segment(long address) {
+        return segments.get((int) (address >>> 32));
+    }
+
+    /**
+     * Retrieves the offset within the segment of an address.
+     */
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+}
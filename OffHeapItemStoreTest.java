@@ -0,0 +1,116 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The OffHeapItemStoreTest class contains unit tests for the OffHeapItemStore class.
+ * It tests the off-heap store through a StoredLibrary, so the results can be compared with
+ * those of the in-memory Library.
+ */
+
+public class OffHeapItemStoreTest {
+    private OffHeapItemStore store;
+    private StoredLibrary library;
+
+    /**
+     * Sets up a stored library with small segments and some sample items before each test.
+     */
+
+    @Before
+    public void setUp() {
+        store = new OffHeapItemStore(1024);
+        library = new StoredLibrary(store);
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        library.addItem(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+        library.addItem(new CD("Thriller", "Michael Jackson", "Pop"));
+    }
+
+    /**
+     * Tests if adding an item the codec cannot encode throws an IllegalArgumentException.
+     */
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddUnsupportedItem() {
+        library.addItem(new LibraryItem("Custom") {
+            @Override
+            public List<String> getSearchableAttributes() {
+                return List.of("custom");
+            }
+
+            @Override
+            public String getUniqueIdentifier() {
+                return "custom";
+            }
+        });
+    }
+
+    /**
+     * Tests that items read back from off-heap memory keep all of their fields.
+     */
+
+    @Test
+    public void testGetItemByIdentifier() {
+        LibraryItem item = library.getItemByIdentifier("Thriller_Michael Jackson");
+        Assert.assertTrue(item instanceof CD);
+        Assert.assertEquals("Title: Thriller, Status: available, Artist: Michael Jackson, Genre: Pop", item.toString());
+        Assert.assertNull(library.getItemByIdentifier("missing"));
+    }
+
+    /**
+     * Tests that searching the encoded records gives the same results as the in-memory library,
+     * including case folding and non-ASCII attributes.
+     */
+
+    @Test
+    public void testSearchItems() {
+        library.addItem(new Book("Crime and Punishment", "F\u00ebdor Dostoevsky", "014044913X"));
+        Assert.assertEquals("Inception", library.searchItems("NOLAN").get(0).getTitle());
+        Assert.assertEquals(1, library.searchItems("dostoevsky").size());
+        Assert.assertEquals(1, library.searchItems("f\u00ebdor").size());
+        Assert.assertEquals("ISBNs are searched as stored", 0, library.searchItems("x").size());
+        Assert.assertEquals(4, library.searchItems("").size());
+    }
+
+    /**
+     * Tests borrowing and returning through the store, including compaction of superseded records.
+     */
+
+    @Test
+    public void testBorrowAndReturnItem() {
+        for (int i = 0; i < 50; i++) {
+            Assert.assertTrue(library.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu"));
+            Assert.assertEquals("borrowed", library.getItemByIdentifier("0316769177").getStatus());
+            Assert.assertEquals("John Doe", library.getItemByIdentifier("0316769177").getBorrowerName());
+            Assert.assertTrue(library.returnItem("0316769177"));
+        }
+        LibraryItem returned = library.getItemByIdentifier("0316769177");
+        Assert.assertEquals("available", returned.getStatus());
+        Assert.assertEquals("", returned.getBorrowerName());
+        Assert.assertTrue("Superseded records should be compacted", store.getOffHeapBytes() < 2048);
+    }
+
+    /**
+     * Tests saving the stored items and loading them into a plain library.
+     */
+
+    @Test
+    public void testSaveToFileAndLoadFromFile() throws IOException, ClassNotFoundException {
+        String testFilename = "test_offheap_library.libtest";
+        library.borrowItem("Inception_Christopher Nolan", "John Doe", "johndoe@students.csu.edu");
+        library.saveToFile(testFilename);
+
+        Library plain = new Library();
+        plain.loadFromFile(testFilename);
+        Assert.assertEquals(3, plain.searchItems("").size());
+        Assert.assertEquals("borrowed", plain.getItemByIdentifier("Inception_Christopher Nolan").getStatus());
+
+        StoredLibrary reloaded = new StoredLibrary(new OffHeapItemStore());
+        reloaded.loadFromFile(testFilename);
+        Assert.assertEquals("John Doe", reloaded.getItemByIdentifier("Inception_Christopher Nolan").getBorrowerName());
+
+        new File(testFilename).delete();
+    }
+}
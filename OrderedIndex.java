@@ -0,0 +1,120 @@
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+
+/**
+ * The `OrderedIndex` class keeps the positions of items sorted in every `BrowseOrder`, so a page
+ * of the catalog in title or creator order is found with one seek and a walk over the page instead
+ * of sorting all items. Each order is a concurrent skip list from sort key to positions; readers may
+ * walk it while a writer adds items, which is what lets snapshots of a versioned catalog share it.
+ */
+
+public class OrderedIndex {
+    private final Map<BrowseOrder, ConcurrentSkipListMap<String, int[]>> orders = new EnumMap<>(BrowseOrder.class);
+
+    /**
+     * Creates an empty index.
+     */
+
+    public OrderedIndex() {
+        for (BrowseOrder order : BrowseOrder.values()) {
+            orders.put(order, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    /**
+     * Adds an item at a position.
+     *
+     * @param item     The item.
+     * @param position The position of the item.
+     */
+
+    public void add(LibraryItem item, int position) {
+        for (Map.Entry<BrowseOrder, ConcurrentSkipListMap<String, int[]>> entry : orders.entrySet()) {
+            entry.getValue().merge(entry.getKey().keyOf(item), new int[] {position}, OrderedIndex::concat);
+        }
+    }
+
+    /**
+     * Checks whether a position is indexed under the keys of an item in every order.
+     *
+     * @param item     The item expected at the position.
+     * @param position The position of the item.
+     * @return true if every order lists the position under the item's key.
+     */
+
+    public boolean contains(LibraryItem item, int position) {
+        for (Map.Entry<BrowseOrder, ConcurrentSkipListMap<String, int[]>> entry : orders.entrySet()) {
+            int[] positions = entry.getValue().get(entry.getKey().keyOf(item));
+            if (positions == null || IntStream.of(positions).noneMatch(p -> p == position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all entries.
+     */
+
+    public void clear() {
+        for (ConcurrentSkipListMap<String, int[]> index : orders.values()) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Retrieves the positions of the next page for a cursor. The cursor is not moved.
+     *
+     * @param cursor The cursor.
+     * @param limit  The maximum number of positions to return.
+     * @param size   The number of items visible to the caller; larger positions are ignored.
+     * @return The positions in browse order.
+     */
+
+    public int[] scan(BrowseCursor cursor, int limit, int size) {
+        String upper = cursor.getUpper();
+        if (upper != null && upper.compareTo(cursor.getKey()) <= 0) {
+            return new int[0];
+        }
+        NavigableMap<String, int[]> range = orders.get(cursor.getOrder()).tailMap(cursor.getKey(), true);
+        if (upper != null) {
+            range = range.headMap(upper, false);
+        }
+        int[] page = new int[Math.min(limit, 64)];
+        int count = 0;
+        for (Map.Entry<String, int[]> entry : range.entrySet()) {
+            int skip = entry.getKey().equals(cursor.getKey()) ? cursor.getSkip() : 0;
+            for (int position : entry.getValue()) {
+                if (position >= size) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                if (count == page.length) {
+                    page = Arrays.copyOf(page, Math.min(limit, page.length * 2));
+                }
+                page[count++] = position;
+                if (count == limit) {
+                    return page;
+                }
+            }
+        }
+        return Arrays.copyOf(page, count);
+    }
+
+    /**
+     * Appends the positions of a second array to the first.
+     */
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] positions = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, positions, first.length, second.length);
+        return positions;
+    }
+}
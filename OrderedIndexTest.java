@@ -0,0 +1,185 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The OrderedIndexTest class contains unit tests for browsing the catalog in title and creator
+ * order with a BrowseCursor, backed by the OrderedIndex.
+ */
+
+public class OrderedIndexTest {
+    private Library library;
+
+    /**
+     * Sets up a library with items whose titles are not in alphabetical order.
+     */
+
+    @Before
+    public void setUp() {
+        library = new Library();
+        library.addItem(new Book("Moby Dick", "Herman Melville", "0142437247"));
+        library.addItem(new DVD("Arrival", "Sci-Fi", "Denis Villeneuve"));
+        library.addItem(new CD("Thriller", "Michael Jackson", "Pop"));
+        library.addItem(new Book("middlemarch", "George Eliot", "0141439548"));
+        library.addItem(new DVD("Memento", "Thriller", "Christopher Nolan"));
+        library.addItem(new Book("Nineteen Eighty-Four", "George Orwell", "0451524934"));
+    }
+
+    /**
+     * Tests that browsing from the start returns every title in order, ignoring case.
+     */
+
+    @Test
+    public void testBrowseAllTitles() {
+        List<LibraryItem> page = library.browse(BrowseCursor.seek(BrowseOrder.TITLE, null), 10);
+        Assert.assertEquals(List.of("Arrival", "Memento", "middlemarch", "Moby Dick", "Nineteen Eighty-Four", "Thriller"),
+                titles(page));
+    }
+
+    /**
+     * Tests a range scan over the titles starting with a letter.
+     */
+
+    @Test
+    public void testRange() {
+        BrowseCursor cursor = BrowseCursor.seek(BrowseOrder.TITLE, "M").until("n");
+        Assert.assertEquals(List.of("Memento", "middlemarch", "Moby Dick"), titles(library.browse(cursor, 10)));
+        Assert.assertTrue(cursor.isExhausted());
+        Assert.assertTrue(library.browse(BrowseCursor.seek(BrowseOrder.TITLE, "z").until("a"), 10).isEmpty());
+    }
+
+    /**
+     * Tests that a cursor pages through the catalog without gaps or repeats, and sees items added
+     * between pages that sort after its position.
+     */
+
+    @Test
+    public void testPaging() {
+        BrowseCursor cursor = BrowseCursor.seek(BrowseOrder.TITLE, "b");
+        Assert.assertEquals(List.of("Memento", "middlemarch"), titles(library.browse(cursor, 2)));
+        Assert.assertFalse(cursor.isExhausted());
+        library.addItem(new CD("Abbey Road", "The Beatles", "Rock"));
+        library.addItem(new CD("Off the Wall", "Michael Jackson", "Pop"));
+        Assert.assertEquals(List.of("Moby Dick", "Nineteen Eighty-Four"), titles(library.browse(cursor, 2)));
+        Assert.assertEquals(List.of("Off the Wall", "Thriller"), titles(library.browse(cursor, 2)));
+        Assert.assertTrue(library.browse(cursor, 2).isEmpty());
+        Assert.assertTrue(cursor.isExhausted());
+    }
+
+    /**
+     * Tests browsing by author, artist or director.
+     */
+
+    @Test
+    public void testBrowseCreators() {
+        List<LibraryItem> page = library.browse(BrowseCursor.seek(BrowseOrder.CREATOR, "g").until("h"), 10);
+        Assert.assertEquals(List.of("middlemarch", "Nineteen Eighty-Four"), titles(page));
+    }
+
+    /**
+     * Tests that items with the same title and identifier are all returned, even when they are
+     * split across pages.
+     */
+
+    @Test
+    public void testDuplicateKeysAcrossPages() {
+        for (int i = 0; i < 3; i++) {
+            library.addItem(new DVD("Memento", "Thriller", "Christopher Nolan"));
+        }
+        BrowseCursor cursor = BrowseCursor.seek(BrowseOrder.TITLE, "memento").until("mementp");
+        int count = 0;
+        while (!cursor.isExhausted()) {
+            count += library.browse(cursor, 3).size();
+        }
+        Assert.assertEquals(4, count);
+    }
+
+    /**
+     * Tests that the index is rebuilt when the items are replaced.
+     */
+
+    @Test
+    public void testReplaceItems() {
+        library.replaceItems(List.of(new Book("Emma", "Jane Austen", "0141439580")));
+        Assert.assertEquals(List.of("Emma"), titles(library.browse(BrowseCursor.seek(BrowseOrder.TITLE, ""), 10)));
+    }
+
+    /**
+     * Tests that invalid arguments are rejected.
+     */
+
+    @Test
+    public void testInvalidArguments() {
+        try {
+            library.browse(null, 10);
+            Assert.fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Cursor cannot be null", e.getMessage());
+        }
+        try {
+            library.browse(BrowseCursor.seek(BrowseOrder.TITLE, "a"), 0);
+            Assert.fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Limit must be positive", e.getMessage());
+        }
+        try {
+            BrowseCursor.seek(null, "a");
+            Assert.fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Browse order cannot be null", e.getMessage());
+        }
+    }
+
+    /**
+     * Tests that every kind of library pages through the same items in the same order.
+     */
+
+    @Test
+    public void testAllLibrariesAgree() {
+        List<LibraryItem> catalog = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            if (i % 2 == 0) {
+                catalog.add(new Book("Title " + (i * 7919 % 300), "Author " + (i % 13), LibraryWorkload.isbn(i)));
+            } else {
+                catalog.add(new CD("Title " + (i * 7919 % 300), "Artist " + (i % 17), "Pop"));
+            }
+        }
+        List<LibraryItem> expected = new ArrayList<>(catalog);
+        expected.sort(Comparator.comparing(BrowseOrder.CREATOR::keyOf));
+
+        Library[] libraries = {new Library(), new ShardedLibrary(4), new VersionedLibrary(),
+                new StoredLibrary(new OffHeapItemStore())};
+        for (Library candidate : libraries) {
+            for (LibraryItem item : catalog) {
+                candidate.addItem(item);
+            }
+            BrowseCursor cursor = BrowseCursor.seek(BrowseOrder.CREATOR, "");
+            List<String> seen = new ArrayList<>();
+            while (!cursor.isExhausted()) {
+                for (LibraryItem item : candidate.browse(cursor, 17)) {
+                    seen.add(item.getUniqueIdentifier());
+                }
+            }
+            List<String> expectedIdentifiers = new ArrayList<>();
+            for (LibraryItem item : expected) {
+                expectedIdentifiers.add(item.getUniqueIdentifier());
+            }
+            Assert.assertEquals(candidate.getClass().getName(), expectedIdentifiers, seen);
+        }
+    }
+
+    /**
+     * Collects the titles of a list of items.
+     */
+
+    private static List<String> titles(List<LibraryItem> items) {
+        List<String> titles = new ArrayList<>();
+        for (LibraryItem item : items) {
+            titles.add(item.getTitle());
+        }
+        return titles;
+    }
+}
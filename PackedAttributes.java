@@ -0,0 +1,228 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The `PackedAttributes` class is a brute-force search engine for the terms no index can answer.
+ * The searchable attributes of every item are stored as UTF-8 in one contiguous byte array, each
+ * attribute followed by a zero byte, with an offset table marking where each item starts. Since
+ * UTF-8 never splits a character into bytes that also encode another one, a term occurs in an
+ * attribute exactly when its bytes occur in the attribute's bytes, and the zero separators keep
+ * a match from running across attributes or items.
+ *
+ * The scan compares eight positions at a time within a `long` (SIMD within a register): it looks
+ * for positions where both the first and the last byte of the term occur at the right distance,
+ * and only compares the full term at those candidates. After a match the rest of the item is
+ * skipped. Items whose attributes cannot be encoded losslessly, such as strings with unpaired
+ * surrogates, are left empty in the array and checked with `ItemMatcher` instead.
+ */
+
+final class PackedAttributes {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+    private static final int PADDING = Long.BYTES;
+
+    private byte[] data = new byte[1024];
+    private int length;
+    private int[] offsets = new int[65];
+    private int count;
+    private int[] unpacked = new int[0];
+    private int unpackedCount;
+
+    /**
+     * Appends the searchable attributes of the next item.
+     *
+     * @param item The item, whose position is the number of items added before it.
+     */
+
+    void add(LibraryItem item) {
+        List<String> attributes = item.getSearchableAttributes();
+        byte[][] encoded = new byte[attributes.size()][];
+        int size = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            String attribute = attributes.get(i);
+            encoded[i] = attribute.getBytes(StandardCharsets.UTF_8);
+            if (!isLossless(attribute, encoded[i])) {
+                encoded = new byte[0][];
+                size = 0;
+                addUnpacked(count);
+                break;
+            }
+            size += encoded[i].length + 1;
+        }
+        ensureCapacity(length + size);
+        for (byte[] attribute : encoded) {
+            System.arraycopy(attribute, 0, data, length, attribute.length);
+            length += attribute.length;
+            data[length++] = 0;
+        }
+        if (count + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        count++;
+        offsets[count] = length;
+    }
+
+    /**
+     * Removes all items.
+     */
+
+    void clear() {
+        length = 0;
+        count = 0;
+        unpackedCount = 0;
+    }
+
+    /**
+     * Retrieves the number of items.
+     *
+     * @return The number of items added since the last clear.
+     */
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Finds the items with a searchable attribute that contains a term.
+     *
+     * @param lowerCaseTerm The search term, already converted to lower case.
+     * @param items         The items in the order they were added, for the items that are not packed.
+     * @return The positions of the matching items, or null if the term cannot be searched as
+     *         bytes, in which case the caller has to fall back to `ItemMatcher`.
+     */
+
+    BitSet search(String lowerCaseTerm, List<LibraryItem> items) {
+        byte[] term = lowerCaseTerm.getBytes(StandardCharsets.UTF_8);
+        if (!isLossless(lowerCaseTerm, term) || indexOfZero(term) >= 0) {
+            return null;
+        }
+        BitSet matches = new BitSet(count);
+        if (term.length == 0) {
+            matches.set(0, count);
+            return matches;
+        }
+        scan(term, matches);
+        for (int i = 0; i < unpackedCount; i++) {
+            if (ItemMatcher.matches(items.get(unpacked[i]), lowerCaseTerm)) {
+                matches.set(unpacked[i]);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Scans the packed bytes eight positions at a time and marks every item containing the term.
+     */
+
+    private void scan(byte[] term, BitSet matches) {
+        byte[] data = this.data;
+        int last = term.length - 1;
+        long firstBytes = (term[0] & 0xFFL) * ONES;
+        long lastBytes = (term[last] & 0xFFL) * ONES;
+        int limit = length - term.length; // the last position a match can start at
+        int item = 0;
+        int position = 0;
+        while (position <= limit) {
+            long candidates = zeroBytes((long) LONGS.get(data, position) ^ firstBytes)
+                    & zeroBytes((long) LONGS.get(data, position + last) ^ lastBytes);
+            if (candidates == 0) {
+                position += Long.BYTES;
+                continue;
+            }
+            int start = verify(term, position, candidates, limit);
+            if (start < 0) {
+                position += Long.BYTES;
+                continue;
+            }
+            while (offsets[item + 1] <= start) {
+                item++;
+            }
+            matches.set(item);
+            position = offsets[item + 1]; // the rest of the item cannot add anything
+        }
+    }
+
+    /**
+     * Compares the full term at each candidate position of a word, kept out of the scan loop so
+     * the loop stays small.
+     *
+     * @return The first position where the term occurs, or -1 if none of the candidates match.
+     */
+
+    private int verify(byte[] term, int position, long candidates, int limit) {
+        while (candidates != 0) {
+            int start = position + (Long.numberOfTrailingZeros(candidates) >>> 3);
+            if (start > limit) {
+                return -1;
+            }
+            if (Arrays.equals(data, start, start + term.length, term, 0, term.length)) {
+                return start;
+            }
+            candidates &= candidates - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the high bit of every byte of a word that is zero, and clears every other bit.
+     */
+
+    private static long zeroBytes(long word) {
+        return ~(((word & LOWS) + LOWS) | word | LOWS);
+    }
+
+    /**
+     * Checks whether a string survives encoding to UTF-8 unchanged, which only fails for unpaired
+     * surrogates.
+     */
+
+    private static boolean isLossless(String value, byte[] encoded) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isSurrogate(value.charAt(i))) {
+                return new String(encoded, StandardCharsets.UTF_8).equals(value);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first zero byte, which would match a separator.
+     */
+
+    private static int indexOfZero(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records an item that has to be matched with `ItemMatcher`.
+     */
+
+    private void addUnpacked(int position) {
+        if (unpackedCount == unpacked.length) {
+            unpacked = Arrays.copyOf(unpacked, Math.max(4, unpackedCount * 2));
+        }
+        unpacked[unpackedCount++] = position;
+    }
+
+    /**
+     * Grows the byte array to hold the given number of bytes plus the padding that lets the scan
+     * read a whole word at the last positions.
+     */
+
+    private void ensureCapacity(int required) {
+        if (required + PADDING > data.length) {
+            data = Arrays.copyOf(data, Math.max(required + PADDING, data.length * 2));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The PackedAttributesTest class contains unit tests for the PackedAttributes class. It tests that
+ * the packed byte scan finds exactly the items `ItemMatcher` finds.
+ */
+
+public class PackedAttributesTest {
+    private PackedAttributes packed;
+    private List<LibraryItem> items;
+
+    /**
+     * Sets up packed attributes of a few items before each test.
+     */
+
+    @Before
+    public void setUp() {
+        packed = new PackedAttributes();
+        items = new ArrayList<>();
+        add(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        add(new CD("Caf\u00e9 del Mar", "Jos\u00e9 Padilla", "Chillout"));
+        add(new DVD("\u5343\u3068\u5343\u5c0b\u306e\u795e\u96a0\u3057", "Animation", "Hayao Miyazaki"));
+        add(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+    }
+
+    /**
+     * Tests matches at the start and end of attributes and outside the ASCII range.
+     */
+
+    @Test
+    public void testMatches() {
+        Assert.assertEquals(positions(0), packed.search("the", items));
+        Assert.assertEquals(positions(0), packed.search("0316769177", items));
+        Assert.assertEquals(positions(1), packed.search("caf\u00e9", items));
+        Assert.assertEquals(positions(2), packed.search("\u5343\u5c0b", items));
+        Assert.assertEquals(positions(3), packed.search("nolan", items));
+        Assert.assertEquals(positions(0, 1, 2, 3), packed.search("", items));
+        Assert.assertEquals(positions(), packed.search("cafe", items));
+    }
+
+    /**
+     * Tests that a term never matches across two attributes or two items.
+     */
+
+    @Test
+    public void testSeparators() {
+        Assert.assertEquals(positions(), packed.search("rye j.d.", items));
+        Assert.assertEquals(positions(), packed.search("ryej.d.", items));
+        Assert.assertEquals(positions(), packed.search("chillout" + "inception", items));
+        Assert.assertNull(packed.search("rye\u0000j.d.", items));
+    }
+
+    /**
+     * Tests that items whose attributes cannot be packed are still matched.
+     */
+
+    @Test
+    public void testUnpackableItems() {
+        add(new Book("Broken \ud800 title", "Someone", "BROKEN-1"));
+        Assert.assertEquals(positions(4), packed.search("broken", items));
+        Assert.assertEquals(positions(4), packed.search("someone", items));
+        Assert.assertEquals(positions(0), packed.search("catcher", items));
+    }
+
+    /**
+     * Tests random terms against the matches of `ItemMatcher` on a larger catalog.
+     */
+
+    @Test
+    public void testAgreesWithItemMatcher() {
+        packed.clear();
+        items.clear();
+        Random random = new Random(42);
+        for (int i = 0; i < 3000; i++) {
+            if (i % 3 == 0) {
+                add(new Book("Title " + i, "Author " + random.nextInt(100), LibraryWorkload.isbn(i)));
+            } else if (i % 3 == 1) {
+                add(new CD("Album " + i, "Artist " + random.nextInt(100), "Rock"));
+            } else {
+                add(new DVD("Movie " + i, "Drama", "Director " + random.nextInt(100)));
+            }
+        }
+        String alphabet = "abcdeilmnorstu 0123456789-";
+        for (int t = 0; t < 500; t++) {
+            StringBuilder term = new StringBuilder();
+            int length = 1 + random.nextInt(6);
+            for (int i = 0; i < length; i++) {
+                term.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            BitSet expected = new BitSet();
+            for (int i = 0; i < items.size(); i++) {
+                if (ItemMatcher.matches(items.get(i), term.toString())) {
+                    expected.set(i);
+                }
+            }
+            Assert.assertEquals(term.toString(), expected, packed.search(term.toString(), items));
+        }
+        Assert.assertEquals(3000, packed.size());
+    }
+
+    /**
+     * Tests that a library search returns the same items after its items are replaced.
+     */
+
+    @Test
+    public void testLibrarySearch() {
+        Library library = new Library();
+        for (LibraryItem item : items) {
+            library.addItem(item);
+        }
+        Assert.assertEquals(List.of(items.get(3)), library.searchItems("NOLAN"));
+        library.replaceItems(List.of(items.get(1), items.get(3)));
+        Assert.assertEquals(List.of(items.get(1)), library.searchItems("padilla"));
+        Assert.assertEquals(2, library.searchItems("").size());
+    }
+
+    /**
+     * Adds an item to the packed attributes and the item list.
+     */
+
+    private void add(LibraryItem item) {
+        items.add(item);
+        packed.add(item);
+    }
+
+    /**
+     * Creates a bit set of positions.
+     */
+
+    private static BitSet positions(int... positions) {
+        BitSet bits = new BitSet();
+        for (int position : positions) {
+            bits.set(position);
+        }
+        return bits;
+    }
+}
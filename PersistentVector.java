@@ -0,0 +1,258 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The `PersistentVector` class is an immutable list stored as a 32-way trie of arrays, with the
+ * last up to 32 elements kept in a separate tail array. Appending or replacing an element copies
+ * only the path from the root to the changed leaf, so a new version shares almost all of its
+ * structure with the version it was derived from and older versions stay valid and unchanged.
+ *
+ * @param <T> The type of the elements.
+ */
+
+public final class PersistentVector<T> {
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    /**
+     * Creates a vector from its parts.
+     */
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Retrieves the empty vector.
+     *
+     * @param <T> The type of the elements.
+     * @return A vector without elements.
+     */
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    /**
+     * Creates a vector holding the elements of a list, building the trie bottom-up.
+     *
+     * @param elements The elements in order.
+     * @param <T>      The type of the elements.
+     * @return A vector with the same elements.
+     */
+
+    public static <T> PersistentVector<T> of(List<? extends T> elements) {
+        int size = elements.size();
+        if (size == 0) {
+            return empty();
+        }
+        Object[] all = elements.toArray();
+        int tailOffset = tailOffset(size);
+        Object[] tail = Arrays.copyOfRange(all, tailOffset, size);
+
+        List<Object[]> nodes = new ArrayList<>();
+        for (int i = 0; i < tailOffset; i += WIDTH) {
+            nodes.add(Arrays.copyOfRange(all, i, i + WIDTH));
+        }
+        int shift = BITS;
+        while (nodes.size() > WIDTH) {
+            List<Object[]> parents = new ArrayList<>();
+            for (int i = 0; i < nodes.size(); i += WIDTH) {
+                Object[] parent = new Object[WIDTH];
+                for (int j = 0; j < WIDTH && i + j < nodes.size(); j++) {
+                    parent[j] = nodes.get(i + j);
+                }
+                parents.add(parent);
+            }
+            nodes = parents;
+            shift += BITS;
+        }
+        Object[] root = new Object[WIDTH];
+        for (int i = 0; i < nodes.size(); i++) {
+            root[i] = nodes.get(i);
+        }
+        return new PersistentVector<>(size, shift, root, tail);
+    }
+
+    /**
+     * Retrieves the number of elements.
+     *
+     * @return The size of the vector.
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the element at a position.
+     *
+     * @param index The position of the element.
+     * @return The element.
+     * @throws IndexOutOfBoundsException if the position is outside the vector.
+     */
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) arrayFor(index)[index & MASK];
+    }
+
+    /**
+     * Creates a new vector with an element appended; this vector is not changed.
+     *
+     * @param element The element to append.
+     * @return The new vector.
+     */
+
+    public PersistentVector<T> append(T element) {
+        if (size - tailOffset(size) < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        // The tail is full: push it into the trie, adding a level if the root is full as well.
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] {element});
+    }
+
+    /**
+     * Creates a new vector with the element at a position replaced; this vector is not changed.
+     *
+     * @param index   The position of the element to replace.
+     * @param element The new element.
+     * @return The new vector.
+     * @throws IndexOutOfBoundsException if the position is outside the vector.
+     */
+
+    public PersistentVector<T> set(int index, T element) {
+        checkIndex(index);
+        if (index >= tailOffset(size)) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, assoc(shift, root, index, element), tail);
+    }
+
+    /**
+     * Retrieves the leaf array holding a position, for scanning 32 elements at a time.
+     * The array must not be modified; only the elements below the size belong to the vector.
+     *
+     * @param index The position of an element.
+     * @return The array holding the element at `index & 31`.
+     * @throws IndexOutOfBoundsException if the position is outside the vector.
+     */
+
+    Object[] arrayFor(int index) {
+        checkIndex(index);
+        if (index >= tailOffset(size)) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    /**
+     * Copies the elements into a new mutable list.
+     *
+     * @return A new list with the elements in order.
+     */
+
+    @SuppressWarnings("unchecked")
+    public List<T> toList() {
+        List<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i += WIDTH) {
+            Object[] leaf = arrayFor(i);
+            for (int j = 0; j < WIDTH && i + j < size; j++) {
+                list.add((T) leaf[j]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Computes the position of the first element held in the tail.
+     */
+
+    private static int tailOffset(int size) {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * Throws if a position is outside the vector.
+     */
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * Copies the path to the rightmost leaf and attaches a full tail as the new last leaf.
+     */
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int subIndex = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+        if (level == BITS) {
+            copy[subIndex] = tailNode;
+        } else {
+            Object[] child = (Object[]) parent[subIndex];
+            copy[subIndex] = child != null ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+        }
+        return copy;
+    }
+
+    /**
+     * Wraps a leaf in single-child nodes up to the given level.
+     */
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+
+    /**
+     * Copies the path to a position and replaces the element at its end.
+     */
+
+    private static Object[] assoc(int level, Object[] node, int index, Object element) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = element;
+        } else {
+            int subIndex = (index >>> level) & MASK;
+            copy[subIndex] = assoc(level - BITS, (Object[]) node[subIndex], index, element);
+        }
+        return copy;
+    }
+}
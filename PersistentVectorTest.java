@@ -0,0 +1,81 @@
+import org.junit.Assert;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The PersistentVectorTest class contains unit tests for the PersistentVector class.
+ * It tests appending and replacing elements across several trie levels and that
+ * older versions are not changed by newer ones.
+ */
+
+public class PersistentVectorTest {
+
+    /**
+     * Tests that appended elements can be read back across the tail and several trie levels.
+     */
+
+    @Test
+    public void testAppendAndGet() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int i = 0; i < 40000; i++) {
+            vector = vector.append(i);
+        }
+        Assert.assertEquals(40000, vector.size());
+        for (int i = 0; i < 40000; i++) {
+            Assert.assertEquals(Integer.valueOf(i), vector.get(i));
+        }
+    }
+
+    /**
+     * Tests that a vector built from a list matches one built by appending, for sizes
+     * around the tail and level boundaries.
+     */
+
+    @Test
+    public void testOfMatchesAppend() {
+        int[] sizes = {0, 1, 31, 32, 33, 64, 1024, 1056, 1057, 33824, 33825};
+        for (int size : sizes) {
+            List<Integer> list = new ArrayList<>();
+            PersistentVector<Integer> appended = PersistentVector.empty();
+            for (int i = 0; i < size; i++) {
+                list.add(i);
+                appended = appended.append(i);
+            }
+            PersistentVector<Integer> built = PersistentVector.of(list);
+            Assert.assertEquals(list, built.toList());
+            Assert.assertEquals(list, appended.toList());
+            // Appending after a bulk build must keep working at every size.
+            Assert.assertEquals(Integer.valueOf(-1), built.append(-1).get(size));
+        }
+    }
+
+    /**
+     * Tests that replacing an element creates a new version and leaves the old one unchanged.
+     */
+
+    @Test
+    public void testSetKeepsOldVersion() {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            list.add("item " + i);
+        }
+        PersistentVector<String> original = PersistentVector.of(list);
+        PersistentVector<String> changed = original.set(5, "changed").set(1999, "last");
+
+        Assert.assertEquals("item 5", original.get(5));
+        Assert.assertEquals("item 1999", original.get(1999));
+        Assert.assertEquals("changed", changed.get(5));
+        Assert.assertEquals("last", changed.get(1999));
+        Assert.assertEquals("item 6", changed.get(6));
+    }
+
+    /**
+     * Tests that reading outside the vector throws an IndexOutOfBoundsException.
+     */
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        PersistentVector.of(List.of("a", "b")).get(2);
+    }
+}
@@ -0,0 +1,202 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The `QueryPlanner` class evaluates a `LibraryQuery` against a catalog. Before touching any item
+ * it asks the catalog which terms its indexes can answer and how many items each would return.
+ * A conjunction is driven by its most selective indexed term, a disjunction by the union of its
+ * children if every child is indexed, and the remaining predicates are only checked on those
+ * candidates. Queries without a usable index fall back to a scan with the predicates ordered from
+ * cheapest to most expensive.
+ */
+
+public final class QueryPlanner {
+
+    /**
+     * The `Source` interface gives the planner positional access to a catalog and its indexes.
+     */
+
+    public interface Source {
+
+        /**
+         * Retrieves the number of items.
+         *
+         * @return The number of items.
+         */
+        int size();
+
+        /**
+         * Retrieves the item at a position.
+         *
+         * @param position The position of the item.
+         * @return The item.
+         */
+        LibraryItem get(int position);
+
+        /**
+         * Estimates the number of items matching a term from index statistics.
+         *
+         * @param term The term.
+         * @return The estimated number of matches, or -1 if no index can answer the term.
+         */
+        long estimate(LibraryQuery.Term term);
+
+        /**
+         * Retrieves the positions of the items an index returns for a term. The positions must
+         * include every matching item and may include others; they are checked afterwards.
+         *
+         * @param term A term for which `estimate` returned a value of at least zero.
+         * @return The positions in ascending order.
+         */
+        int[] lookup(LibraryQuery.Term term);
+    }
+
+    /**
+     * A way of producing candidate positions for a query from indexes.
+     */
+
+    private static final class AccessPath {
+        private final long estimate;
+        private final Supplier<int[]> positions;
+        private final String description;
+
+        /**
+         * Creates an access path.
+         */
+
+        AccessPath(long estimate, Supplier<int[]> positions, String description) {
+            this.estimate = estimate;
+            this.positions = positions;
+            this.description = description;
+        }
+    }
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * Finds all items matching a query.
+     *
+     * @param query  The query to evaluate.
+     * @param source The catalog to evaluate it against.
+     * @return The matching items in catalog order.
+     */
+
+    public static List<LibraryItem> execute(LibraryQuery query, Source source) {
+        AccessPath path = choose(query, source);
+        List<LibraryItem> matches = new ArrayList<>();
+        if (path == null) {
+            for (int i = 0; i < source.size(); i++) {
+                LibraryItem item = source.get(i);
+                if (query.matches(item)) {
+                    matches.add(item);
+                }
+            }
+        } else {
+            for (int position : path.positions.get()) {
+                LibraryItem item = source.get(position);
+                if (query.matches(item)) {
+                    matches.add(item);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Describes how a query would be evaluated, for diagnostics and tests.
+     *
+     * @param query  The query to plan.
+     * @param source The catalog to plan it against.
+     * @return A one-line description of the plan.
+     */
+
+    public static String explain(LibraryQuery query, Source source) {
+        AccessPath path = choose(query, source);
+        if (path == null) {
+            return "SCAN " + source.size() + " FILTER " + query;
+        }
+        return "INDEX " + path.description + " ~" + path.estimate + " FILTER " + query;
+    }
+
+    /**
+     * Chooses the access path of a query, or null if the catalog has to be scanned.
+     */
+
+    private static AccessPath choose(LibraryQuery query, Source source) {
+        AccessPath path = accessPath(query, source);
+        return path != null && path.estimate < source.size() ? path : null;
+    }
+
+    /**
+     * Builds the cheapest access path that covers every match of a query, if there is one.
+     */
+
+    private static AccessPath accessPath(LibraryQuery query, Source source) {
+        if (query instanceof LibraryQuery.Term) {
+            LibraryQuery.Term term = (LibraryQuery.Term) query;
+            long estimate = source.estimate(term);
+            return estimate < 0 ? null : new AccessPath(estimate, () -> source.lookup(term), term.toString());
+        }
+        if (query instanceof LibraryQuery.And) {
+            // Any indexed child covers all matches of the conjunction; take the most selective one.
+            AccessPath best = null;
+            for (LibraryQuery child : ((LibraryQuery.And) query).getChildren()) {
+                AccessPath path = accessPath(child, source);
+                if (path != null && (best == null || path.estimate < best.estimate)) {
+                    best = path;
+                }
+            }
+            return best;
+        }
+        if (query instanceof LibraryQuery.Or) {
+            // A disjunction can only use indexes if every child can.
+            List<AccessPath> paths = new ArrayList<>();
+            long estimate = 0;
+            for (LibraryQuery child : ((LibraryQuery.Or) query).getChildren()) {
+                AccessPath path = accessPath(child, source);
+                if (path == null) {
+                    return null;
+                }
+                paths.add(path);
+                estimate += path.estimate;
+            }
+            StringBuilder description = new StringBuilder("UNION(");
+            for (int i = 0; i < paths.size(); i++) {
+                description.append(i == 0 ? "" : ", ").append(paths.get(i).description);
+            }
+            return new AccessPath(estimate, () -> union(paths), description.append(')').toString());
+        }
+        return null;
+    }
+
+    /**
+     * Merges the positions of several access paths into one ascending list without duplicates.
+     */
+
+    private static int[] union(List<AccessPath> paths) {
+        int[] merged = new int[0];
+        for (AccessPath path : paths) {
+            int[] positions = path.positions.get();
+            int[] next = new int[merged.length + positions.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < merged.length || j < positions.length) {
+                int value;
+                if (j >= positions.length || (i < merged.length && merged[i] <= positions[j])) {
+                    value = merged[i++];
+                } else {
+                    value = positions[j++];
+                }
+                if (n == 0 || next[n - 1] != value) {
+                    next[n++] = value;
+                }
+            }
+            merged = Arrays.copyOf(next, n);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,566 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The `ReplicatedLibrary` class is the leader of a log-shipping replication group. Every successful
+ * mutation (add, borrow, return, load) is assigned the next sequence number, encoded once into a
+ * log entry and streamed in order to each connected `LibraryReplica` over a socket. A follower that
+ * connects late first receives a snapshot of the current items and then the live log.
+ *
+ * Each follower has a bounded queue of entries that are waiting to be sent. A follower that falls
+ * so far behind that its queue overflows is disconnected instead of letting the leader buffer
+ * without limit; the replica then reconnects and resynchronizes from a new snapshot.
+ */
+
+public class ReplicatedLibrary extends Library implements Closeable {
+    private static final long serialVersionUID = 1L;
+    static final int FOLLOWER_QUEUE_CAPACITY = 4096;
+
+    private final ServerSocket serverSocket;
+    private final int followerQueueCapacity;
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    private final Thread acceptor;
+    private long sequence;
+    private volatile boolean running = true;
+
+    /**
+     * Initializes a new, empty leader library that accepts followers on the given port of the
+     * loopback interface.
+     *
+     * @param port The port followers connect to, or 0 to pick a free port.
+     * @throws IOException if the port cannot be bound.
+     */
+
+    public ReplicatedLibrary(int port) throws IOException {
+        this(null, port);
+    }
+
+    /**
+     * Initializes a new, empty leader library that accepts followers on the given address and port.
+     *
+     * @param host The address to listen on, or null to listen only on the loopback interface.
+     *             The replication stream is not authenticated, so other addresses should only
+     *             be used on a trusted network.
+     * @param port The port followers connect to, or 0 to pick a free port.
+     * @throws IOException if the address cannot be resolved or bound.
+     */
+
+    public ReplicatedLibrary(String host, int port) throws IOException {
+        this(host, port, FOLLOWER_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Initializes a new, empty leader library with the given capacity of the follower queues.
+     */
+
+    ReplicatedLibrary(String host, int port, int followerQueueCapacity) throws IOException {
+        this.followerQueueCapacity = followerQueueCapacity;
+        InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(address, port));
+        acceptor = new Thread(this::acceptFollowers, "replication-leader-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Retrieves the port followers connect to.
+     *
+     * @return The local port of the replication socket.
+     */
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Retrieves the sequence number of the latest mutation.
+     *
+     * @return The sequence number of the latest log entry, or 0 if nothing has changed yet.
+     */
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Retrieves the number of currently connected followers.
+     *
+     * @return The number of followers.
+     */
+
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    /**
+     * Adds a new library item and ships it to the followers.
+     *
+     * @param item The library item to be added.
+     * @throws IllegalArgumentException if the item is null.
+     */
+
+    @Override
+    public synchronized void addItem(LibraryItem item) {
+        super.addItem(item);
+        LogEntry entry = newEntry(LogEntry.ADD);
+        entry.item = item;
+        ship(entry);
+    }
+
+    /**
+     * Searches for items while no mutation is in progress.
+     *
+     * @param searchTerm The search term to match against item titles or specific attributes.
+     * @return A list of items that match the search term.
+     */
+
+    @Override
+    public synchronized List<LibraryItem> searchItems(String searchTerm) {
+        return super.searchItems(searchTerm);
+    }
+
+    /**
+     * Evaluates a query while no mutation is in progress.
+     *
+     * @param queryText The query.
+     * @return A list of the matching items.
+     * @throws IllegalArgumentException if the query is null, empty or invalid.
+     */
+
+    @Override
+    public synchronized List<LibraryItem> query(String queryText) {
+        return super.query(queryText);
+    }
+
+    /**
+     * Audits the catalog while no mutation is in progress, and ships the complete new contents to
+     * the followers if it was repaired.
+     *
+     * @param repair Whether to repair the violations found.
+     * @return The report of the audit, taken before any repair.
+     */
+
+    @Override
+    public synchronized CatalogAudit audit(boolean repair) {
+        CatalogAudit audit = super.audit(repair);
+        if (audit.getRepairedCount() > 0) {
+            LogEntry entry = newEntry(LogEntry.LOAD);
+            entry.items = new ArrayList<>(super.getAllItems());
+            ship(entry);
+        }
+        return audit;
+    }
+
+    /**
+     * Retrieves the next page in title or creator order while no mutation is in progress.
+     *
+     * @param cursor The cursor to continue from.
+     * @param limit  The maximum number of items to return.
+     * @return The items of the page in browse order.
+     * @throws IllegalArgumentException if the cursor is null or the limit is not positive.
+     */
+
+    @Override
+    public synchronized List<LibraryItem> browse(BrowseCursor cursor, int limit) {
+        return super.browse(cursor, limit);
+    }
+
+    /**
+     * Runs a search of a session while no mutation is in progress.
+     *
+     * @param session    The session.
+     * @param searchTerm The search term.
+     * @return A list of items that match the search term.
+     */
+
+    @Override
+    synchronized List<LibraryItem> search(SearchSession session, String searchTerm) {
+        return super.search(session, searchTerm);
+    }
+
+    /**
+     * Retrieves all items while no mutation is in progress.
+     *
+     * @return A new list containing every item in the library.
+     */
+
+    @Override
+    public synchronized List<LibraryItem> getAllItems() {
+        return super.getAllItems();
+    }
+
+    /**
+     * Retrieves an item while no mutation is in progress.
+     *
+     * @param identifier The unique identifier of the item to be retrieved.
+     * @return The item with the specified identifier or null if not found.
+     */
+
+    @Override
+    public synchronized LibraryItem getItemByIdentifier(String identifier) {
+        return super.getItemByIdentifier(identifier);
+    }
+
+    /**
+     * Borrows an item and ships the change to the followers if it succeeded.
+     *
+     * @param identifier The unique identifier of the item to be borrowed.
+     * @param borrowerName The name of the person borrowing the item.
+     * @param borrowerContact The contact information of the borrower.
+     * @return true if the item was successfully borrowed, false otherwise.
+     * @throws IllegalArgumentException if identifier, borrowerName, or borrowerContact is null or empty.
+     */
+
+    @Override
+    public synchronized boolean borrowItem(String identifier, String borrowerName, String borrowerContact) {
+        boolean borrowed = super.borrowItem(identifier, borrowerName, borrowerContact);
+        if (borrowed) {
+            LogEntry entry = newEntry(LogEntry.BORROW);
+            entry.identifier = identifier;
+            entry.borrowerName = borrowerName;
+            entry.borrowerContact = borrowerContact;
+            ship(entry);
+        }
+        return borrowed;
+    }
+
+    /**
+     * Returns an item and ships the change to the followers if it succeeded.
+     *
+     * @param identifier   The unique identifier of the item to be returned.
+     * @param borrowerName The name of the borrower returning a copy, or null to return the
+     *                     lowest numbered copy on loan.
+     * @return true if the item was successfully returned, false otherwise.
+     * @throws IllegalArgumentException if identifier is null or empty, or the borrower name is empty.
+     */
+
+    @Override
+    public synchronized boolean returnItem(String identifier, String borrowerName) {
+        boolean returned = super.returnItem(identifier, borrowerName);
+        if (returned) {
+            LogEntry entry = newEntry(LogEntry.RETURN);
+            entry.identifier = identifier;
+            entry.borrowerName = borrowerName;
+            ship(entry);
+        }
+        return returned;
+    }
+
+    /**
+     * Adds copies of an item and ships the change to the followers if it succeeded.
+     *
+     * @param identifier The unique identifier of the item.
+     * @param count      The number of copies to add.
+     * @return true if the item was found and the copies were added, false otherwise.
+     * @throws IllegalArgumentException if identifier is null or empty, or the count is not positive.
+     */
+
+    @Override
+    public synchronized boolean addCopies(String identifier, int count) {
+        boolean added = super.addCopies(identifier, count);
+        if (added) {
+            LogEntry entry = newEntry(LogEntry.COPIES);
+            entry.identifier = identifier;
+            entry.count = count;
+            ship(entry);
+        }
+        return added;
+    }
+
+    /**
+     * Saves the items while no mutation is in progress.
+     *
+     * @param filename The name of the file to save the items to.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    @Override
+    public synchronized void saveToFile(String filename) throws IOException {
+        super.saveToFile(filename);
+    }
+
+    /**
+     * Saves the items and optionally their index segment while no mutation is in progress.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Whether to write the index segment as well.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to either file.
+     */
+
+    @Override
+    public synchronized void saveToFile(String filename, boolean writeIndexSegments) throws IOException {
+        super.saveToFile(filename, writeIndexSegments);
+    }
+
+    /**
+     * Saves the items to a compressed file while no mutation is in progress.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Whether to write the index segment as well.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to either file.
+     */
+
+    @Override
+    public synchronized void saveCompressedToFile(String filename, boolean writeIndexSegments) throws IOException {
+        super.saveCompressedToFile(filename, writeIndexSegments);
+    }
+
+    /**
+     * Loads items from a file and ships the complete new contents to the followers.
+     *
+     * @param filename The name of the file to load the items from.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error reading from the file.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public synchronized void loadFromFile(String filename) throws IOException, ClassNotFoundException {
+        super.loadFromFile(filename);
+        LogEntry entry = newEntry(LogEntry.LOAD);
+        entry.items = new ArrayList<>(super.getAllItems());
+        ship(entry);
+    }
+
+    /**
+     * Merges items from a file and ships the complete new contents to the followers.
+     *
+     * @param filename The name of the file to merge the items from.
+     * @param policy   The policy that resolves items present on both sides.
+     * @throws IllegalArgumentException if the filename is null or empty or the policy is null.
+     * @throws IOException if there is an error reading from the file.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public synchronized void mergeFromFile(String filename, MergePolicy policy)
+            throws IOException, ClassNotFoundException {
+        super.mergeFromFile(filename, policy);
+        LogEntry entry = newEntry(LogEntry.LOAD);
+        entry.items = new ArrayList<>(super.getAllItems());
+        ship(entry);
+    }
+
+    /**
+     * Applies a patch and ships the complete new contents to the followers.
+     *
+     * @param patchFile The name of the patch file.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error reading the patch.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public synchronized void applyPatch(String patchFile) throws IOException, ClassNotFoundException {
+        super.applyPatch(patchFile);
+        LogEntry entry = newEntry(LogEntry.LOAD);
+        entry.items = new ArrayList<>(super.getAllItems());
+        ship(entry);
+    }
+
+    /**
+     * Stops accepting followers and disconnects the connected ones.
+     */
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Shutting down anyway.
+        }
+        for (Follower follower : followers) {
+            follower.close();
+        }
+    }
+
+    /**
+     * Creates the log entry for the next mutation. Must be called while holding the library lock.
+     */
+
+    private LogEntry newEntry(int operation) {
+        LogEntry entry = new LogEntry();
+        entry.sequence = ++sequence;
+        entry.timestamp = System.currentTimeMillis();
+        entry.operation = operation;
+        return entry;
+    }
+
+    /**
+     * Encodes an entry once and queues it for every follower. Encoding happens while the library
+     * lock is held, so the entry captures the item state at the time of the mutation. A follower
+     * whose queue is full is disconnected, so it misses no entry it would later apply; it
+     * resynchronizes from a snapshot when it reconnects.
+     */
+
+    private void ship(LogEntry entry) {
+        if (followers.isEmpty()) {
+            return;
+        }
+        byte[] encoded = encode(entry);
+        for (Follower follower : followers) {
+            if (!follower.queue.offer(encoded)) {
+                System.err.println("Replication leader disconnected a follower that fell "
+                        + followerQueueCapacity + " entries behind: " + follower.socket.getRemoteSocketAddress());
+                followers.remove(follower);
+                follower.close();
+            }
+        }
+    }
+
+    /**
+     * Accepts follower connections until the leader is closed.
+     */
+
+    private void acceptFollowers() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Follower follower = new Follower(socket);
+                synchronized (this) {
+                    // The snapshot and the registration happen atomically, so the follower
+                    // sees every mutation exactly once.
+                    LogEntry snapshot = new LogEntry();
+                    snapshot.sequence = sequence;
+                    snapshot.timestamp = System.currentTimeMillis();
+                    snapshot.operation = LogEntry.LOAD;
+                    snapshot.items = new ArrayList<>(super.getAllItems());
+                    follower.queue.add(encode(snapshot));
+                    followers.add(follower);
+                }
+                follower.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Replication leader failed to accept a follower: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Serializes a log entry into a standalone byte array.
+     */
+
+    private static byte[] encode(LogEntry entry) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(entry);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Log entry could not be encoded", e);
+        }
+    }
+
+    /**
+     * One ordered mutation of the leader. The operation decides which fields are used.
+     */
+
+    static class LogEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        static final int ADD = 1;
+        static final int BORROW = 2;
+        static final int RETURN = 3;
+        static final int LOAD = 4;
+        static final int COPIES = 5;
+
+        long sequence;
+        long timestamp;
+        int operation;
+        LibraryItem item;
+        String identifier;
+        String borrowerName;
+        String borrowerContact;
+        int count;
+        List<LibraryItem> items;
+    }
+
+    /**
+     * A connected follower with its own bounded queue of encoded entries and a sender thread
+     * that writes them as length-prefixed frames.
+     */
+
+    private class Follower {
+        private final Socket socket;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(followerQueueCapacity);
+        private final Thread sender;
+
+        /**
+         * Creates the follower state for an accepted socket.
+         */
+
+        private Follower(Socket socket) {
+            this.socket = socket;
+            this.sender = new Thread(this::send, "replication-sender-" + socket.getRemoteSocketAddress());
+            this.sender.setDaemon(true);
+        }
+
+        /**
+         * Starts the sender thread.
+         */
+
+        private void start() {
+            sender.start();
+        }
+
+        /**
+         * Writes queued entries until the connection fails or the leader is closed.
+         * All entries that are already queued are written before each flush.
+         */
+
+        private void send() {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                while (running) {
+                    byte[] frame = queue.take();
+                    do {
+                        out.writeInt(frame.length);
+                        out.write(frame);
+                    } while ((frame = queue.poll()) != null);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // The follower disconnected.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                followers.remove(this);
+                close();
+            }
+        }
+
+        /**
+         * Disconnects the follower.
+         */
+
+        private void close() {
+            sender.interrupt();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already disconnected.
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * The ReplicatedLibraryTest class contains unit tests for the ReplicatedLibrary and LibraryReplica classes.
+ * It tests that the leader's mutations reach the followers in order on a single machine.
+ */
+
+public class ReplicatedLibraryTest {
+    private ReplicatedLibrary leader;
+
+    /**
+     * Starts a leader with one sample item before each test.
+     */
+
+    @Before
+    public void setUp() throws IOException {
+        leader = new ReplicatedLibrary(0);
+        leader.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+    }
+
+    /**
+     * Stops the leader after each test.
+     */
+
+    @After
+    public void tearDown() {
+        leader.close();
+    }
+
+    /**
+     * Tests that a follower receives the existing items and the live mutations of the leader.
+     */
+
+    @Test
+    public void testReplicatesMutations() throws Exception {
+        try (LibraryReplica replica = new LibraryReplica("localhost", leader.getPort())) {
+            leader.addItem(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+            leader.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu");
+
+            Assert.assertTrue("Replica should catch up", replica.awaitSequence(leader.getSequence(), 5000));
+            Assert.assertEquals(1, replica.searchItems("nolan").size());
+            Assert.assertEquals("borrowed", replica.getItemByIdentifier("0316769177").getStatus());
+            Assert.assertEquals("John Doe", replica.getItemByIdentifier("0316769177").getBorrowerName());
+            Assert.assertEquals(0, replica.getReplicationLagMillis());
+
+            leader.returnItem("0316769177");
+            Assert.assertTrue(replica.awaitSequence(leader.getSequence(), 5000));
+            Assert.assertEquals("available", replica.getItemByIdentifier("0316769177").getStatus());
+        }
+    }
+
+    /**
+     * Tests that several followers can serve reads of the same catalog.
+     */
+
+    @Test
+    public void testMultipleReplicas() throws Exception {
+        try (LibraryReplica first = new LibraryReplica("localhost", leader.getPort());
+             LibraryReplica second = new LibraryReplica("localhost", leader.getPort())) {
+            for (int i = 0; i < 50; i++) {
+                leader.addItem(new CD("Album " + i, "Artist " + i, "Pop"));
+            }
+            Assert.assertTrue(first.awaitSequence(leader.getSequence(), 5000));
+            Assert.assertTrue(second.awaitSequence(leader.getSequence(), 5000));
+            Assert.assertEquals(51, first.searchItems("").size());
+            Assert.assertEquals(51, second.searchItems("").size());
+        }
+    }
+
+    /**
+     * Tests that a replica rejects writes.
+     */
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReplicaIsReadOnly() throws IOException {
+        try (LibraryReplica replica = new LibraryReplica("localhost", leader.getPort())) {
+            replica.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu");
+        }
+    }
+
+    /**
+     * Tests that a follower that stops reading is disconnected once its queue overflows, and
+     * that a replica of the same leader still catches up with it.
+     */
+
+    @Test
+    public void testSlowFollowerIsDisconnected() throws Exception {
+        try (ReplicatedLibrary smallLeader = new ReplicatedLibrary(null, 0, 8);
+             Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(1024);
+            stalled.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), smallLeader.getPort()));
+            try (LibraryReplica replica = new LibraryReplica("localhost", smallLeader.getPort())) {
+                long deadline = System.currentTimeMillis() + 5000;
+                while (smallLeader.getFollowerCount() < 2 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                Assert.assertEquals(2, smallLeader.getFollowerCount());
+
+                for (int i = 0; i < 200000 && smallLeader.getFollowerCount() == 2; i++) {
+                    smallLeader.addItem(new CD("Album " + i, "Artist " + i, "Pop"));
+                }
+                Assert.assertTrue(smallLeader.getFollowerCount() < 2);
+
+                Assert.assertTrue("Replica should catch up", replica.awaitSequence(smallLeader.getSequence(), 10000));
+                Assert.assertEquals(smallLeader.getAllItems().size(), replica.getAllItems().size());
+            }
+        }
+    }
+}
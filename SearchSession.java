@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * The `SearchSession` class runs a series of searches as the user types, such as "inc", "ince"
+ * and "incep". Every item matching a search term also matches the previous term whenever the new
+ * term contains the previous one, so the session remembers the positions of the previous matches
+ * and only checks those again, together with any items added since. When the term changes in any
+ * other way, or the catalog was reloaded, it falls back to a full search. A sharded library keeps
+ * one session per shard, so every shard narrows its own matches; a library whose items have no
+ * stable positions narrows the previous matches themselves as long as it has not changed.
+ *
+ * A session returns the same items as `Library.searchItems`. Sessions are not thread-safe; each
+ * user gets their own from `Library.openSearchSession`.
+ */
+
+public final class SearchSession {
+    private final Library library;
+    private String previousTerm;
+    private int[] candidates = new int[0];
+    private int scanned; // positions below this were checked by the previous search
+    private long generation;
+    private int examined;
+    private SearchSession[] parts; // one per shard of a sharded library
+    private List<LibraryItem> previousMatches; // for libraries without stable positions
+
+    /**
+     * Creates a session for a library.
+     *
+     * @param library The library to search.
+     */
+
+    SearchSession(Library library) {
+        this.library = library;
+    }
+
+    /**
+     * Searches for items matching a term, narrowing the results of the previous search if possible.
+     *
+     * @param searchTerm The search term to match against item titles or specific attributes.
+     * @return A list of items that match the search term, in the order they were added.
+     * @throws IllegalArgumentException if the search term is null.
+     */
+
+    public List<LibraryItem> search(String searchTerm) {
+        if (searchTerm == null) {
+            throw new IllegalArgumentException("Search term cannot be null");
+        }
+        return library.search(this, searchTerm);
+    }
+
+    /**
+     * Forgets the previous search, so the next one searches the whole catalog.
+     */
+
+    public void reset() {
+        previousTerm = null;
+        candidates = new int[0];
+        scanned = 0;
+        parts = null;
+        previousMatches = null;
+    }
+
+    /**
+     * Retrieves the number of items the last search had to check.
+     *
+     * @return The number of items checked.
+     */
+
+    public int getExaminedCount() {
+        return examined;
+    }
+
+    /**
+     * Retrieves the sessions of the parts of a catalog, such as the shards of a sharded library,
+     * creating them on first use. Each part session must only be used by one thread at a time.
+     *
+     * @param libraries The parts of the catalog.
+     * @return One session per part, in the same order.
+     */
+
+    SearchSession[] parts(Library[] libraries) {
+        if (parts == null || parts.length != libraries.length) {
+            parts = new SearchSession[libraries.length];
+        }
+        for (int i = 0; i < libraries.length; i++) {
+            if (parts[i] == null || parts[i].library != libraries[i]) {
+                parts[i] = new SearchSession(libraries[i]);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Records the number of items the parts of a catalog checked for the last search.
+     *
+     * @param examined The number of items checked.
+     */
+
+    void setExaminedCount(int examined) {
+        this.examined = examined;
+    }
+
+    /**
+     * Runs a search over a catalog whose items have no stable positions. While the catalog is
+     * unchanged, a term that contains the previous one only checks the previous matches again;
+     * otherwise the full search runs.
+     *
+     * @param searchTerm The search term.
+     * @param size       The number of items in the catalog, which a full search checks.
+     * @param generation A number that changes whenever the catalog changes.
+     * @param fullSearch Runs a full search for a term, already converted to lower case.
+     * @return Copies of the matching items in the order of the full search.
+     */
+
+    List<LibraryItem> narrow(String searchTerm, int size, long generation,
+            Function<String, List<LibraryItem>> fullSearch) {
+        String term = searchTerm.toLowerCase();
+        List<LibraryItem> matches;
+        if (previousMatches != null && term.contains(previousTerm) && this.generation == generation) {
+            matches = new ArrayList<>();
+            for (LibraryItem item : previousMatches) {
+                if (ItemMatcher.matches(item, term)) {
+                    matches.add(item);
+                }
+            }
+            examined = previousMatches.size();
+        } else {
+            matches = fullSearch.apply(term);
+            examined = size;
+        }
+        previousTerm = term;
+        previousMatches = matches;
+        this.generation = generation;
+        List<LibraryItem> items = new ArrayList<>(matches.size());
+        for (LibraryItem item : matches) {
+            items.add(item.copy()); // callers get detached copies, as from the full search
+        }
+        return items;
+    }
+
+    /**
+     * Runs a search over a positional view of a catalog.
+     *
+     * @param searchTerm The search term.
+     * @param size       The number of items in the catalog.
+     * @param itemAt     Retrieves the item at a position.
+     * @param generation A number that changes whenever existing positions are reassigned.
+     * @return The matching items in position order.
+     */
+
+    List<LibraryItem> run(String searchTerm, int size, IntFunction<LibraryItem> itemAt, long generation) {
+        String term = searchTerm.toLowerCase();
+        boolean narrowing = previousTerm != null && term.contains(previousTerm)
+                && this.generation == generation && scanned <= size;
+        int[] matches = new int[Math.max(16, narrowing ? candidates.length : 16)];
+        int count = 0;
+        int from = 0;
+        examined = 0;
+        if (narrowing) {
+            for (int position : candidates) {
+                examined++;
+                if (ItemMatcher.matches(itemAt.apply(position), term)) {
+                    matches[count++] = position;
+                }
+            }
+            from = scanned;
+        }
+        for (int position = from; position < size; position++) {
+            examined++;
+            if (ItemMatcher.matches(itemAt.apply(position), term)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = position;
+            }
+        }
+
+        previousTerm = term;
+        candidates = Arrays.copyOf(matches, count);
+        scanned = size;
+        this.generation = generation;
+        List<LibraryItem> items = new ArrayList<>(count);
+        for (int position : candidates) {
+            items.add(itemAt.apply(position));
+        }
+        return items;
+    }
+}
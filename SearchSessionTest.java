@@ -0,0 +1,172 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The SearchSessionTest class contains unit tests for incremental searches with a SearchSession.
+ */
+
+public class SearchSessionTest {
+    private Library library;
+
+    /**
+     * Sets up a library with a few hundred items before each test.
+     */
+
+    @Before
+    public void setUp() {
+        library = new Library();
+        library.addItem(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+        library.addItem(new DVD("Incendies", "Drama", "Denis Villeneuve"));
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        for (int i = 0; i < 300; i++) {
+            library.addItem(new CD("Album " + i, "Artist " + i, "Pop"));
+        }
+    }
+
+    /**
+     * Tests that extending the term only checks the previous matches and gives the same results
+     * as a full search.
+     */
+
+    @Test
+    public void testNarrowing() {
+        SearchSession session = library.openSearchSession();
+        Assert.assertEquals(library.searchItems("inc"), session.search("inc"));
+        Assert.assertEquals(303, session.getExaminedCount());
+
+        List<LibraryItem> results = session.search("ince");
+        Assert.assertEquals(library.searchItems("ince"), results);
+        Assert.assertEquals(2, session.getExaminedCount());
+
+        results = session.search("INCEP");
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("Inception", results.get(0).getTitle());
+        Assert.assertEquals(2, session.getExaminedCount());
+    }
+
+    /**
+     * Tests that a term that does not extend the previous one searches the whole catalog.
+     */
+
+    @Test
+    public void testChangedTermSearchesEverything() {
+        SearchSession session = library.openSearchSession();
+        session.search("incep");
+        List<LibraryItem> results = session.search("album 29");
+        Assert.assertEquals(library.searchItems("album 29"), results);
+        Assert.assertEquals(303, session.getExaminedCount());
+
+        session.search("album 299");
+        Assert.assertEquals(11, session.getExaminedCount());
+    }
+
+    /**
+     * Tests that items added between searches are found, and only they are checked besides the
+     * previous matches.
+     */
+
+    @Test
+    public void testItemsAddedBetweenSearches() {
+        SearchSession session = library.openSearchSession();
+        session.search("inc");
+        library.addItem(new DVD("Incredibles", "Animation", "Brad Bird"));
+        library.addItem(new CD("Inca Gold", "Various", "Folk"));
+        List<LibraryItem> results = session.search("incr");
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("Incredibles", results.get(0).getTitle());
+        Assert.assertEquals(4, library.searchItems("inc").size());
+        Assert.assertEquals(2 + 2, session.getExaminedCount());
+    }
+
+    /**
+     * Tests that replacing the items of the library makes the next search start over.
+     */
+
+    @Test
+    public void testReplaceItemsStartsOver() {
+        SearchSession session = library.openSearchSession();
+        session.search("inc");
+        library.replaceItems(List.of(new Book("Incidents", "Harriet Jacobs", "0486419312"),
+                new DVD("Inception", "Sci-Fi", "Christopher Nolan")));
+        Assert.assertEquals(library.searchItems("ince"), session.search("ince"));
+        Assert.assertEquals(2, session.getExaminedCount());
+    }
+
+    /**
+     * Tests that a versioned library narrows across versions and returns current copies.
+     */
+
+    @Test
+    public void testVersionedLibrary() {
+        VersionedLibrary versioned = new VersionedLibrary();
+        for (LibraryItem item : library.getAllItems()) {
+            versioned.addItem(item);
+        }
+        SearchSession session = versioned.openSearchSession();
+        session.search("inc");
+        Assert.assertTrue(versioned.borrowItem("Inception_Christopher Nolan", "John Doe", "johndoe@students.csu.edu"));
+        LibraryItem inception = versioned.searchItems("inception").get(0);
+        Assert.assertEquals("borrowed", inception.getStatus());
+        List<LibraryItem> results = session.search("incep");
+        Assert.assertEquals(List.of(inception), results);
+        Assert.assertEquals(2, session.getExaminedCount());
+    }
+
+    /**
+     * Tests that a sharded library narrows the matches of every shard, and searches a shard in
+     * full again once it changed.
+     */
+
+    @Test
+    public void testShardedLibrary() {
+        ShardedLibrary sharded = new ShardedLibrary(4);
+        for (LibraryItem item : library.getAllItems()) {
+            sharded.addItem(item);
+        }
+        SearchSession session = sharded.openSearchSession();
+        Assert.assertEquals(2, session.search("inc").size());
+        Assert.assertEquals(303, session.getExaminedCount());
+        Assert.assertEquals(1, session.search("incep").size());
+        Assert.assertEquals(2, session.getExaminedCount());
+
+        sharded.addItem(new DVD("Inception Extended", "Sci-Fi", "Christopher Nolan"));
+        Assert.assertEquals(2, session.search("incept").size());
+        Assert.assertEquals(2, session.getExaminedCount());
+        Assert.assertEquals(sharded.searchItems("incepti"), session.search("incepti"));
+    }
+
+    /**
+     * Tests that a stored library narrows the previous matches while the store is unchanged.
+     */
+
+    @Test
+    public void testStoredLibrary() throws IOException {
+        try (StoredLibrary stored = new StoredLibrary(new OffHeapItemStore())) {
+            for (LibraryItem item : library.getAllItems()) {
+                stored.addItem(item);
+            }
+            SearchSession session = stored.openSearchSession();
+            Assert.assertEquals(2, session.search("inc").size());
+            Assert.assertEquals(303, session.getExaminedCount());
+            Assert.assertEquals(1, session.search("incep").size());
+            Assert.assertEquals(2, session.getExaminedCount());
+
+            Assert.assertTrue(stored.borrowItem("Inception_Christopher Nolan", "John Doe", "johndoe@students.csu.edu"));
+            List<LibraryItem> results = session.search("incept");
+            Assert.assertEquals(303, session.getExaminedCount());
+            Assert.assertEquals("borrowed", results.get(0).getStatus());
+        }
+    }
+
+    /**
+     * Tests that a null search term is rejected.
+     */
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullTerm() {
+        library.openSearchSession().search(null);
+    }
+}
@@ -0,0 +1,510 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The `ShardedLibrary` class partitions its items across several inner `Library` shards by the
+ * hash of their unique identifier. Point operations are routed to the single shard owning the
+ * identifier and only lock that shard, while searches fan out to all shards in parallel and merge
+ * the results. A `ShardedLibrary` can be used anywhere a `Library` is expected.
+ */
+
+public class ShardedLibrary extends Library {
+    private static final long serialVersionUID = 1L;
+    private final Library[] shards;
+
+    /**
+     * Initializes a new instance of the `ShardedLibrary` class with the given number of empty shards.
+     *
+     * @param shardCount The number of shards to partition the items across.
+     * @throws IllegalArgumentException if the shard count is not positive.
+     */
+
+    public ShardedLibrary(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        shards = new Library[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Library();
+        }
+    }
+
+    /**
+     * Retrieves the number of shards.
+     *
+     * @return The number of shards.
+     */
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Retrieves the shard that owns the given unique identifier.
+     *
+     * @param identifier The unique identifier of an item.
+     * @return The shard the item is stored in.
+     */
+
+    Library shardFor(String identifier) {
+        return shards[shardIndex(identifier)];
+    }
+
+    /**
+     * Computes the index of the shard that owns the given unique identifier. ISBNs are hashed in
+     * their canonical form, so either form of a book's ISBN is routed to the same shard.
+     */
+
+    private int shardIndex(String identifier) {
+        long isbn = IsbnIndex.normalize(identifier);
+        int hash = isbn > 0 ? Long.hashCode(isbn) : identifier.hashCode();
+        return Math.floorMod(hash, shards.length);
+    }
+
+    /**
+     * Adds a new library item to the shard owning its unique identifier.
+     *
+     * @param item The library item to be added.
+     * @throws IllegalArgumentException if the item is null.
+     */
+
+    @Override
+    public void addItem(LibraryItem item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        Library shard = shardFor(item.getUniqueIdentifier());
+        synchronized (shard) {
+            shard.addItem(item);
+            publish(LibraryEvent.Type.ADD, item, null, null, 0);
+        }
+    }
+
+    /**
+     * Searches all shards in parallel and merges their results.
+     * Matches are grouped by shard, and within a shard they are in the order they were added.
+     *
+     * @param searchTerm The search term to match against item titles or specific attributes.
+     * @return A list of items that match the search term.
+     */
+
+    @Override
+    public List<LibraryItem> searchItems(String searchTerm) {
+        List<List<LibraryItem>> partials = Arrays.stream(shards)
+                .parallel()
+                .map(shard -> {
+                    synchronized (shard) {
+                        return shard.searchItems(searchTerm);
+                    }
+                })
+                .toList();
+        int size = 0;
+        for (List<LibraryItem> partial : partials) {
+            size += partial.size();
+        }
+        List<LibraryItem> matchingItems = new ArrayList<>(size);
+        for (List<LibraryItem> partial : partials) {
+            matchingItems.addAll(partial);
+        }
+        return matchingItems;
+    }
+
+    /**
+     * Evaluates a query on all shards in parallel, each with its own indexes, and merges the
+     * results. Matches are grouped by shard, and within a shard they are in the order they were added.
+     *
+     * @param queryText The query.
+     * @return A list of the matching items.
+     * @throws IllegalArgumentException if the query is null, empty or invalid.
+     */
+
+    @Override
+    public List<LibraryItem> query(String queryText) {
+        LibraryQuery.parse(queryText); // reject invalid queries before fanning out
+        List<List<LibraryItem>> partials = Arrays.stream(shards)
+                .parallel()
+                .map(shard -> {
+                    synchronized (shard) {
+                        return shard.query(queryText);
+                    }
+                })
+                .toList();
+        List<LibraryItem> matchingItems = new ArrayList<>();
+        for (List<LibraryItem> partial : partials) {
+            matchingItems.addAll(partial);
+        }
+        return matchingItems;
+    }
+
+    /**
+     * Audits all shards in parallel, each while it is locked. Items with the same identifier
+     * always live in the same shard, so every shard can check uniqueness on its own. Positions in
+     * the report follow the order of `getAllItems`.
+     *
+     * @param repair Whether to repair the violations found.
+     * @return The combined report of the shards, taken before any repair.
+     */
+
+    @Override
+    public CatalogAudit audit(boolean repair) {
+        List<CatalogAudit> parts = Arrays.stream(shards)
+                .parallel()
+                .map(shard -> {
+                    synchronized (shard) {
+                        return shard.audit(repair);
+                    }
+                })
+                .toList();
+        CatalogAudit audit = CatalogAudit.combine(parts);
+        if (audit.getRepairedCount() > 0) {
+            publish(LibraryEvent.Type.LOAD, null, null, null, getAllItems().size());
+        }
+        return audit;
+    }
+
+    /**
+     * Retrieves the next page in title or creator order by reading a page from every shard in
+     * parallel and merging them. Unlike searches, the result is in browse order across shards.
+     *
+     * @param cursor The cursor to continue from.
+     * @param limit  The maximum number of items to return.
+     * @return The items of the page in browse order.
+     * @throws IllegalArgumentException if the cursor is null or the limit is not positive.
+     */
+
+    @Override
+    public List<LibraryItem> browse(BrowseCursor cursor, int limit) {
+        checkBrowse(cursor, limit);
+        // Items with equal sort keys share an identifier and therefore a shard, so every shard
+        // can start from the same cursor position.
+        List<List<LibraryItem>> partials = Arrays.stream(shards)
+                .parallel()
+                .map(shard -> {
+                    synchronized (shard) {
+                        return shard.browse(cursor.copy(), limit);
+                    }
+                })
+                .toList();
+        List<LibraryItem> merged = new ArrayList<>();
+        for (List<LibraryItem> partial : partials) {
+            merged.addAll(partial);
+        }
+        merged.sort(Comparator.comparing(cursor.getOrder()::keyOf));
+        List<LibraryItem> page = new ArrayList<>(merged.subList(0, Math.min(limit, merged.size())));
+        cursor.advance(page, limit);
+        return page;
+    }
+
+    /**
+     * Runs a search of a session on all shards in parallel. The session keeps one session per
+     * shard, so each shard narrows its own previous matches.
+     *
+     * @param session    The session.
+     * @param searchTerm The search term.
+     * @return A list of items that match the search term, grouped by shard.
+     */
+
+    @Override
+    List<LibraryItem> search(SearchSession session, String searchTerm) {
+        SearchSession[] parts = session.parts(shards);
+        List<List<LibraryItem>> partials = IntStream.range(0, shards.length)
+                .parallel()
+                .mapToObj(i -> {
+                    synchronized (shards[i]) {
+                        return shards[i].search(parts[i], searchTerm);
+                    }
+                })
+                .toList();
+        List<LibraryItem> matchingItems = new ArrayList<>();
+        int examined = 0;
+        for (int i = 0; i < shards.length; i++) {
+            matchingItems.addAll(partials.get(i));
+            examined += parts[i].getExaminedCount();
+        }
+        session.setExaminedCount(examined);
+        return matchingItems;
+    }
+
+    /**
+     * Retrieves all items of every shard, grouped by shard.
+     *
+     * @return A new list containing every item in the library.
+     */
+
+    @Override
+    public List<LibraryItem> getAllItems() {
+        List<LibraryItem> allItems = new ArrayList<>();
+        for (Library shard : shards) {
+            synchronized (shard) {
+                allItems.addAll(shard.getAllItems());
+            }
+        }
+        return allItems;
+    }
+
+    /**
+     * Retrieves an item from the shard owning its unique identifier.
+     *
+     * @param identifier The unique identifier of the item to be retrieved.
+     * @return The item with the specified identifier or null if not found.
+     */
+
+    @Override
+    public LibraryItem getItemByIdentifier(String identifier) {
+        if (identifier == null) {
+            return null;
+        }
+        Library shard = shardFor(identifier);
+        synchronized (shard) {
+            return shard.getItemByIdentifier(identifier);
+        }
+    }
+
+    /**
+     * Borrows an item from the shard owning its unique identifier.
+     *
+     * @param identifier The unique identifier of the item to be borrowed.
+     * @param borrowerName The name of the person borrowing the item.
+     * @param borrowerContact The contact information of the borrower.
+     * @return true if the item was successfully borrowed, false otherwise.
+     * @throws IllegalArgumentException if identifier, borrowerName, or borrowerContact is null or empty.
+     */
+
+    @Override
+    public boolean borrowItem(String identifier, String borrowerName, String borrowerContact) {
+        if (identifier == null || identifier.isEmpty()) {
+            throw new IllegalArgumentException("Identifier cannot be null or empty");
+        }
+        Library shard = shardFor(identifier);
+        synchronized (shard) {
+            if (!shard.borrowItem(identifier, borrowerName, borrowerContact)) {
+                return false;
+            }
+            publish(LibraryEvent.Type.BORROW, shard.getItemByIdentifier(identifier), borrowerName, borrowerContact, 0);
+            return true;
+        }
+    }
+
+    /**
+     * Returns an item to the shard owning its unique identifier.
+     *
+     * @param identifier   The unique identifier of the item to be returned.
+     * @param borrowerName The name of the borrower returning a copy, or null to return the
+     *                     lowest numbered copy on loan.
+     * @return true if the item was successfully returned, false otherwise.
+     * @throws IllegalArgumentException if identifier is null or empty, or the borrower name is empty.
+     */
+
+    @Override
+    public boolean returnItem(String identifier, String borrowerName) {
+        if (identifier == null || identifier.isEmpty()) {
+            throw new IllegalArgumentException("Identifier cannot be null or empty");
+        }
+        if (borrowerName != null && borrowerName.isEmpty()) {
+            throw new IllegalArgumentException("Borrower name cannot be empty");
+        }
+        Library shard = shardFor(identifier);
+        synchronized (shard) {
+            if (!shard.returnItem(identifier, borrowerName)) {
+                return false;
+            }
+            publish(LibraryEvent.Type.RETURN, shard.getItemByIdentifier(identifier), null, null, 0);
+            return true;
+        }
+    }
+
+    /**
+     * Adds copies of an item in the shard owning its unique identifier.
+     *
+     * @param identifier The unique identifier of the item.
+     * @param count      The number of copies to add.
+     * @return true if the item was found and the copies were added, false otherwise.
+     * @throws IllegalArgumentException if identifier is null or empty, or the count is not positive.
+     */
+
+    @Override
+    public boolean addCopies(String identifier, int count) {
+        if (identifier == null || identifier.isEmpty()) {
+            throw new IllegalArgumentException("Identifier cannot be null or empty");
+        }
+        Library shard = shardFor(identifier);
+        synchronized (shard) {
+            if (!shard.addCopies(identifier, count)) {
+                return false;
+            }
+            publish(LibraryEvent.Type.COPIES, shard.getItemByIdentifier(identifier), null, null, count);
+            return true;
+        }
+    }
+
+    /**
+     * Saves the items of all shards to one file in the same format as `Library.saveToFile`,
+     * so the file can be loaded by a plain or a differently sharded library. An index segment
+     * of an older save of the file is deleted.
+     *
+     * @param filename The name of the file to save the items to.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    @Override
+    public void saveToFile(String filename) throws IOException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        writeItems(getAllItems(), filename);
+        IndexSegments.delete(filename);
+    }
+
+    /**
+     * Saves the items of all shards to one file and optionally writes an index segment next to
+     * it. The shards have no index over the whole catalog, so the segment is built from the
+     * merged items of all shards, in the order they are saved.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Whether to write the index segment as well.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to either file.
+     */
+
+    @Override
+    public void saveToFile(String filename, boolean writeIndexSegments) throws IOException {
+        if (writeIndexSegments) {
+            merged().saveToFile(filename, true);
+        } else {
+            saveToFile(filename);
+        }
+    }
+
+    /**
+     * Saves the items of all shards to one block-compressed file and optionally writes an index
+     * segment, built from the merged items, next to it. Without a segment, the segment of an
+     * older save of the file is deleted.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Whether to write the index segment as well.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to either file.
+     */
+
+    @Override
+    public void saveCompressedToFile(String filename, boolean writeIndexSegments) throws IOException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        if (writeIndexSegments) {
+            merged().saveCompressedToFile(filename, true);
+        } else {
+            CompressedCatalogFile.write(getAllItems(), filename);
+            IndexSegments.delete(filename);
+        }
+    }
+
+    /**
+     * Creates a plain library holding the items of all shards, in the order they are saved.
+     */
+
+    private Library merged() {
+        Library merged = new Library();
+        merged.replaceItems(getAllItems());
+        return merged;
+    }
+
+    /**
+     * Loads items from a file and redistributes them across the shards, replacing
+     * the current contents of every shard.
+     *
+     * @param filename The name of the file to load the items from.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error reading from the file.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public void loadFromFile(String filename) throws IOException, ClassNotFoundException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        List<List<LibraryItem>> partitions = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (LibraryItem item : readItems(filename)) {
+            partitions.get(shardIndex(item.getUniqueIdentifier())).add(item);
+        }
+        int itemCount = 0;
+        for (int i = 0; i < shards.length; i++) {
+            synchronized (shards[i]) {
+                shards[i].replaceItems(partitions.get(i));
+            }
+            itemCount += partitions.get(i).size();
+        }
+        publish(LibraryEvent.Type.LOAD, null, null, null, itemCount);
+    }
+
+    /**
+     * Merges the items of a saved library into the shards. Items with the same identifier always
+     * live in the same shard, so every shard merges its part of the file independently and the
+     * shards are merged in parallel.
+     *
+     * @param filename The name of the file to merge the items from.
+     * @param policy   The policy that resolves items present on both sides.
+     * @throws IllegalArgumentException if the filename is null or empty or the policy is null.
+     * @throws IOException if there is an error reading from the file.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public void mergeFromFile(String filename, MergePolicy policy) throws IOException, ClassNotFoundException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Merge policy cannot be null");
+        }
+        List<List<LibraryItem>> partitions = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (LibraryItem item : readItems(filename)) {
+            partitions.get(shardIndex(item.getUniqueIdentifier())).add(item);
+        }
+        IntStream.range(0, shards.length).parallel().forEach(i -> {
+            synchronized (shards[i]) {
+                shards[i].replaceItems(merge(shards[i].getAllItems(), partitions.get(i), policy));
+            }
+        });
+        publish(LibraryEvent.Type.LOAD, null, null, null, getAllItems().size());
+    }
+
+    /**
+     * Applies a patch written by `CatalogDiff.compare`. Every entry belongs to the shard owning
+     * its identifier, so the shards apply their parts of the patch in parallel.
+     *
+     * @param patchFile The name of the patch file.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error reading the patch.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public void applyPatch(String patchFile) throws IOException, ClassNotFoundException {
+        List<List<CatalogDiff.Entry>> partitions = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (CatalogDiff.Entry entry : CatalogDiff.readPatch(patchFile)) {
+            partitions.get(shardIndex(entry.getIdentifier())).add(entry);
+        }
+        IntStream.range(0, shards.length).parallel().forEach(i -> {
+            synchronized (shards[i]) {
+                shards[i].replaceItems(CatalogDiff.apply(shards[i].getAllItems(), partitions.get(i)));
+            }
+        });
+        publish(LibraryEvent.Type.LOAD, null, null, null, getAllItems().size());
+    }
+}
@@ -0,0 +1,120 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The ShardedLibraryTest class contains unit tests for the ShardedLibrary class.
+ * It tests routing of point operations to shards, scatter-gather search and file operations.
+ */
+
+public class ShardedLibraryTest {
+    private ShardedLibrary library;
+
+    /**
+     * Sets up a sharded library with some sample items before each test.
+     */
+
+    @Before
+    public void setUp() {
+        library = new ShardedLibrary(4);
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        library.addItem(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+        library.addItem(new CD("Thriller", "Michael Jackson", "Pop"));
+        for (int i = 0; i < 100; i++) {
+            library.addItem(new Book("Title " + i, "Author " + i, "isbn-" + i));
+        }
+    }
+
+    /**
+     * Tests if creating a sharded library without shards throws an IllegalArgumentException.
+     */
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroShards() {
+        new ShardedLibrary(0);
+    }
+
+    /**
+     * Tests that items are stored in the shard owning their identifier and can be found again.
+     */
+
+    @Test
+    public void testGetItemByIdentifier() {
+        Assert.assertEquals("Inception", library.getItemByIdentifier("Inception_Christopher Nolan").getTitle());
+        Assert.assertNotNull(library.shardFor("isbn-42").getItemByIdentifier("isbn-42"));
+        Assert.assertNull(library.getItemByIdentifier("missing"));
+    }
+
+    /**
+     * Tests that a search gathers matches from every shard.
+     */
+
+    @Test
+    public void testSearchItems() {
+        Assert.assertEquals("Every sample book should match", 100, library.searchItems("author").size());
+        List<LibraryItem> results = library.searchItems("Thriller");
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("Thriller", results.get(0).getTitle());
+    }
+
+    /**
+     * Tests borrowing and returning through the sharded library.
+     */
+
+    @Test
+    public void testBorrowAndReturnItem() {
+        Assert.assertTrue(library.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu"));
+        Assert.assertFalse("A borrowed item cannot be borrowed again",
+                library.borrowItem("0316769177", "Jane Doe", "janedoe@students.csu.edu"));
+        Assert.assertEquals("borrowed", library.getItemByIdentifier("0316769177").getStatus());
+        Assert.assertTrue(library.returnItem("0316769177"));
+        Assert.assertEquals("available", library.getItemByIdentifier("0316769177").getStatus());
+    }
+
+    /**
+     * Tests that a file saved by a sharded library can be loaded with a different shard count
+     * and by a plain library.
+     */
+
+    @Test
+    public void testSaveToFileAndLoadFromFile() throws IOException, ClassNotFoundException {
+        String testFilename = "test_sharded_library.libtest";
+        library.saveToFile(testFilename);
+
+        ShardedLibrary resharded = new ShardedLibrary(3);
+        resharded.loadFromFile(testFilename);
+        Library plain = new Library();
+        plain.loadFromFile(testFilename);
+
+        Assert.assertEquals(103, resharded.searchItems("").size());
+        Assert.assertEquals(103, plain.searchItems("").size());
+        Assert.assertNotNull(resharded.getItemByIdentifier("Thriller_Michael Jackson"));
+
+        new File(testFilename).delete();
+    }
+
+    /**
+     * Tests that merging a file into a sharded library merges every shard consistently.
+     */
+
+    @Test
+    public void testMergeFromFile() throws IOException, ClassNotFoundException {
+        String testFilename = "test_sharded_merge.libtest";
+        Library branch = new Library();
+        Book borrowed = new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177");
+        borrowed.borrowItem("Jane Doe", "jane@example.com");
+        branch.addItem(borrowed);
+        branch.addItem(new Book("Dune", "Frank Herbert", "0441013597"));
+        branch.saveToFile(testFilename);
+
+        library.mergeFromFile(testFilename, MergePolicy.REPLACE);
+        Assert.assertEquals(104, library.getAllItems().size());
+        Assert.assertEquals("borrowed", library.getItemByIdentifier("0316769177").getStatus());
+        Assert.assertEquals("Dune", library.getItemByIdentifier("0441013597").getTitle());
+
+        new File(testFilename).delete();
+    }
+}
@@ -0,0 +1,385 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The `SortedTable` class is an immutable file of `ItemCodec` records sorted by key, the on-disk
+ * level of a `DiskItemStore`. The file is laid out as:
+ *
+ * <pre>
+ * data blocks   entries of u16 key length, UTF-8 key, record; about 4 KB per block
+ * index         i32 block count, then per block: u16 key length, first key, i64 offset, i32 length
+ * bloom filter  see BloomFilter.writeTo
+ * footer        i64 index offset, i64 filter offset, i32 entry count, i32 magic "LSST"
+ * </pre>
+ *
+ * Only the index and the Bloom filter are held in memory. A lookup checks the filter, finds the
+ * one block that may hold the key by binary search over the first keys, and reads that block
+ * through the `BlockCache`.
+ */
+
+public final class SortedTable implements Closeable {
+    static final int MAGIC = 0x4C535354; // "LSST"
+    static final int BLOCK_SIZE = 4096;
+    private static final int FOOTER_SIZE = 2 * Long.BYTES + 2 * Integer.BYTES;
+
+    /**
+     * The `Cursor` interface walks the entries of a sorted source in ascending key order.
+     */
+
+    public interface Cursor {
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return true if there is a next entry, false if the source is exhausted.
+         * @throws IOException if the source cannot be read.
+         */
+        boolean next() throws IOException;
+
+        /**
+         * Retrieves the key of the current entry.
+         *
+         * @return The key.
+         */
+        String key();
+
+        /**
+         * Retrieves the buffer holding the record of the current entry.
+         *
+         * @return The buffer.
+         */
+        ByteBuffer buffer();
+
+        /**
+         * Retrieves the position of the record of the current entry in its buffer.
+         *
+         * @return The position of the first byte of the record.
+         */
+        int offset();
+    }
+
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final String[] firstKeys;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final BloomFilter filter;
+    private final int entryCount;
+
+    /**
+     * Creates a table from its parts.
+     */
+
+    private SortedTable(long id, Path path, FileChannel channel, String[] firstKeys, long[] blockOffsets,
+            int[] blockLengths, BloomFilter filter, int entryCount) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.firstKeys = firstKeys;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.filter = filter;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Writes the entries of a cursor to a new table file and opens it.
+     *
+     * @param path            The file to create; an existing file is overwritten.
+     * @param id              The id of the new table.
+     * @param entries         The entries in ascending key order without duplicate keys.
+     * @param expectedEntries The approximate number of entries, used to size the Bloom filter.
+     * @return The new table.
+     * @throws IOException if the file cannot be written.
+     */
+
+    public static SortedTable write(Path path, long id, Cursor entries, int expectedEntries) throws IOException {
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BloomFilter filter = new BloomFilter(expectedEntries);
+            List<byte[]> firstKeys = new ArrayList<>();
+            long[] offsets = new long[16];
+            int[] lengths = new int[16];
+            ByteBuffer block = ByteBuffer.allocate(2 * BLOCK_SIZE);
+            long position = 0;
+            int count = 0;
+            while (entries.next()) {
+                byte[] key = entries.key().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer source = entries.buffer();
+                int offset = entries.offset();
+                int length = ItemCodec.recordLength(source, offset);
+                int needed = 2 + key.length + length;
+                if (block.position() > 0 && block.position() + needed > BLOCK_SIZE) {
+                    position += writeFully(out, block.flip(), position);
+                    block.clear();
+                }
+                if (block.position() == 0) {
+                    int blocks = firstKeys.size();
+                    if (blocks == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, blocks * 2);
+                        lengths = Arrays.copyOf(lengths, blocks * 2);
+                    }
+                    offsets[blocks] = position;
+                    firstKeys.add(key);
+                }
+                if (block.remaining() < needed) {
+                    block = ByteBuffer.allocate(block.position() + needed).put(block.flip());
+                }
+                block.putShort((short) key.length).put(key);
+                source.get(offset, block.array(), block.position(), length);
+                block.position(block.position() + length);
+                lengths[firstKeys.size() - 1] += needed;
+                filter.add(entries.key());
+                count++;
+            }
+            if (block.position() > 0) {
+                position += writeFully(out, block.flip(), position);
+            }
+
+            int indexSize = Integer.BYTES;
+            for (byte[] key : firstKeys) {
+                indexSize += 2 + key.length + Long.BYTES + Integer.BYTES;
+            }
+            ByteBuffer tail = ByteBuffer.allocate(indexSize + filter.serializedSize() + FOOTER_SIZE);
+            tail.putInt(firstKeys.size());
+            for (int i = 0; i < firstKeys.size(); i++) {
+                tail.putShort((short) firstKeys.get(i).length).put(firstKeys.get(i));
+                tail.putLong(offsets[i]).putInt(lengths[i]);
+            }
+            filter.writeTo(tail);
+            tail.putLong(position).putLong(position + indexSize).putInt(count).putInt(MAGIC);
+            writeFully(out, tail.flip(), position);
+            out.force(true);
+        }
+        return open(path, id);
+    }
+
+    /**
+     * Opens an existing table file and reads its index and Bloom filter.
+     *
+     * @param path The table file.
+     * @param id   The id of the table.
+     * @return The table.
+     * @throws IOException if the file cannot be read or is not a table file.
+     */
+
+    public static SortedTable open(Path path, long id) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if (fileSize < FOOTER_SIZE) {
+                throw new IOException("Not a sorted table file: " + path);
+            }
+            ByteBuffer footer = readFully(channel, fileSize - FOOTER_SIZE, FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            long filterOffset = footer.getLong();
+            int entryCount = footer.getInt();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException("Not a sorted table file: " + path);
+            }
+            ByteBuffer tail = readFully(channel, indexOffset, (int) (fileSize - FOOTER_SIZE - indexOffset));
+            int blocks = tail.getInt();
+            String[] firstKeys = new String[blocks];
+            long[] offsets = new long[blocks];
+            int[] lengths = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                byte[] key = new byte[tail.getShort() & 0xFFFF];
+                tail.get(key);
+                firstKeys[i] = new String(key, StandardCharsets.UTF_8);
+                offsets[i] = tail.getLong();
+                lengths[i] = tail.getInt();
+            }
+            tail.position((int) (filterOffset - indexOffset));
+            BloomFilter filter = BloomFilter.readFrom(tail);
+            return new SortedTable(id, path, channel, firstKeys, offsets, lengths, filter, entryCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves the id of this table. Tables with larger ids hold newer entries.
+     *
+     * @return The id.
+     */
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Retrieves the number of entries in this table.
+     *
+     * @return The number of entries.
+     */
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Checks the Bloom filter for a key.
+     *
+     * @param key The key.
+     * @return false if the key is certainly not in this table.
+     */
+
+    public boolean mightContain(String key) {
+        return filter.mightContain(key);
+    }
+
+    /**
+     * Looks up the record stored under a key.
+     *
+     * @param key   The key.
+     * @param cache The cache to read the block through.
+     * @return A buffer holding the record at position 0, or null if the key is not in this table.
+     * @throws IOException if the file cannot be read.
+     */
+
+    public ByteBuffer get(String key, BlockCache cache) throws IOException {
+        int low = 0;
+        int high = firstKeys.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (firstKeys[middle].compareTo(key) <= 0) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (block < 0) {
+            return null;
+        }
+        ByteBuffer buffer = cache.get(id, block);
+        if (buffer == null) {
+            buffer = readFully(channel, blockOffsets[block], blockLengths[block]);
+            cache.put(id, block, buffer);
+        }
+        int position = 0;
+        while (position < buffer.limit()) {
+            int keyLength = buffer.getShort(position) & 0xFFFF;
+            String entryKey = new String(buffer.array(), position + 2, keyLength, StandardCharsets.UTF_8);
+            int record = position + 2 + keyLength;
+            int length = ItemCodec.recordLength(buffer, record);
+            int comparison = entryKey.compareTo(key);
+            if (comparison == 0) {
+                return buffer.slice(record, length);
+            }
+            if (comparison > 0) {
+                return null;
+            }
+            position = record + length;
+        }
+        return null;
+    }
+
+    /**
+     * Opens a cursor over all entries of this table. Blocks are read directly from the file and
+     * not added to the cache.
+     *
+     * @return The cursor, positioned before the first entry.
+     */
+
+    public Cursor cursor() {
+        return new Cursor() {
+            private int block = -1;
+            private ByteBuffer buffer = ByteBuffer.allocate(0);
+            private int next;
+            private String key;
+            private int offset;
+
+            @Override
+            public boolean next() throws IOException {
+                while (next >= buffer.limit()) {
+                    if (++block >= blockOffsets.length) {
+                        return false;
+                    }
+                    buffer = readFully(channel, blockOffsets[block], blockLengths[block]);
+                    next = 0;
+                }
+                int keyLength = buffer.getShort(next) & 0xFFFF;
+                key = new String(buffer.array(), next + 2, keyLength, StandardCharsets.UTF_8);
+                offset = next + 2 + keyLength;
+                next = offset + ItemCodec.recordLength(buffer, offset);
+                return true;
+            }
+
+            @Override
+            public String key() {
+                return key;
+            }
+
+            @Override
+            public ByteBuffer buffer() {
+                return buffer;
+            }
+
+            @Override
+            public int offset() {
+                return offset;
+            }
+        };
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Closes and deletes the file.
+     *
+     * @throws IOException if the file cannot be deleted.
+     */
+
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer at a position of a file.
+     */
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * Reads a range of a file into a new heap buffer.
+     */
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of table file");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,255 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The `SpaceSaving` class finds the most frequent keys of a stream while monitoring only a fixed
+ * number of them. When a key that is not monitored arrives and every slot is taken, it replaces
+ * the key with the smallest count and inherits that count as its possible overestimate. Any key
+ * that occurred more than `total / capacity` times is guaranteed to be monitored.
+ *
+ * Counters are kept in a stream summary: a list of buckets of equal count in ascending order, so
+ * each occurrence is counted in constant time.
+ */
+
+public final class SpaceSaving {
+
+    /**
+     * The `Counter` class is a snapshot of one monitored key.
+     */
+
+    public static final class Counter {
+        private final String key;
+        private final long count;
+        private final long error;
+
+        /**
+         * Creates a counter snapshot.
+         */
+
+        Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        /**
+         * Retrieves the key.
+         *
+         * @return The key.
+         */
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Retrieves the counted occurrences, which may include up to `getError` occurrences of
+         * the keys this one replaced.
+         *
+         * @return The count.
+         */
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Retrieves the maximum overestimate of the count.
+         *
+         * @return The error bound.
+         */
+
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * Creates a string representation of the counter.
+         *
+         * @return The key and count.
+         */
+
+        @Override
+        public String toString() {
+            return key + "=" + count + (error > 0 ? " (\u00b1" + error + ")" : "");
+        }
+    }
+
+    /**
+     * A monitored key, linked into the bucket of its count.
+     */
+
+    private static final class Slot {
+        private String key;
+        private long error;
+        private Bucket bucket;
+        private Slot previous;
+        private Slot next;
+    }
+
+    /**
+     * The slots that share a count.
+     */
+
+    private static final class Bucket {
+        private final long count;
+        private Slot head;
+        private Bucket previous;
+        private Bucket next;
+
+        /**
+         * Creates an empty bucket.
+         */
+
+        Bucket(long count) {
+            this.count = count;
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Slot> slots;
+    private Bucket smallest;
+    private Bucket largest;
+
+    /**
+     * Creates an empty summary.
+     *
+     * @param capacity The number of keys to monitor.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slots = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Counts one occurrence of a key.
+     *
+     * @param key The key.
+     */
+
+    public void offer(String key) {
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            if (slots.size() < capacity) {
+                slot = new Slot();
+                slot.key = key;
+                slots.put(key, slot);
+                Bucket first = smallest;
+                if (first == null || first.count != 1) {
+                    first = insertAfter(null, 1);
+                }
+                attach(slot, first);
+                return;
+            }
+            slot = smallest.head;
+            slots.remove(slot.key);
+            slot.key = key;
+            slot.error = slot.bucket.count;
+            slots.put(key, slot);
+        }
+        Bucket current = slot.bucket;
+        Bucket next = current.next;
+        if (next == null || next.count != current.count + 1) {
+            next = insertAfter(current, current.count + 1);
+        }
+        detach(slot);
+        attach(slot, next);
+    }
+
+    /**
+     * Retrieves the monitored keys with the largest counts.
+     *
+     * @param n The maximum number of keys to return.
+     * @return The counters in descending order of count.
+     */
+
+    public List<Counter> top(int n) {
+        List<Counter> top = new ArrayList<>(Math.min(n, slots.size()));
+        for (Bucket bucket = largest; bucket != null && top.size() < n; bucket = bucket.previous) {
+            for (Slot slot = bucket.head; slot != null && top.size() < n; slot = slot.next) {
+                top.add(new Counter(slot.key, bucket.count, slot.error));
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Retrieves the number of monitored keys.
+     *
+     * @return The number of keys, at most the capacity.
+     */
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Creates a bucket after another one, or as the first bucket.
+     */
+
+    private Bucket insertAfter(Bucket previous, long count) {
+        Bucket bucket = new Bucket(count);
+        bucket.previous = previous;
+        bucket.next = previous == null ? smallest : previous.next;
+        if (bucket.next != null) {
+            bucket.next.previous = bucket;
+        } else {
+            largest = bucket;
+        }
+        if (previous != null) {
+            previous.next = bucket;
+        } else {
+            smallest = bucket;
+        }
+        return bucket;
+    }
+
+    /**
+     * Links a slot into a bucket.
+     */
+
+    private static void attach(Slot slot, Bucket bucket) {
+        slot.bucket = bucket;
+        slot.previous = null;
+        slot.next = bucket.head;
+        if (bucket.head != null) {
+            bucket.head.previous = slot;
+        }
+        bucket.head = slot;
+    }
+
+    /**
+     * Unlinks a slot from its bucket and removes the bucket if it became empty.
+     */
+
+    private void detach(Slot slot) {
+        Bucket bucket = slot.bucket;
+        if (slot.previous != null) {
+            slot.previous.next = slot.next;
+        } else {
+            bucket.head = slot.next;
+        }
+        if (slot.next != null) {
+            slot.next.previous = slot.previous;
+        }
+        if (bucket.head == null) {
+            if (bucket.previous != null) {
+                bucket.previous.next = bucket.next;
+            } else {
+                smallest = bucket.next;
+            }
+            if (bucket.next != null) {
+                bucket.next.previous = bucket.previous;
+            } else {
+                largest = bucket.previous;
+            }
+        }
+    }
+}
@@ -0,0 +1,405 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The `StoredLibrary` class is a `Library` whose items live in a pluggable `ItemStore` instead
+ * of an in-memory list. All operations are serialized on the library, and items returned by
+ * searches and lookups are detached copies of the stored state.
+ */
+
+public class StoredLibrary extends Library implements Closeable {
+    private static final long serialVersionUID = 1L;
+    private final ItemStore store;
+    private long changes; // incremented before every write to the store
+
+    /**
+     * Initializes a new instance of the `StoredLibrary` class on top of the given store.
+     *
+     * @param store The storage engine holding the items.
+     * @throws IllegalArgumentException if the store is null.
+     */
+
+    public StoredLibrary(ItemStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        this.store = store;
+    }
+
+    /**
+     * Retrieves the storage engine of this library.
+     *
+     * @return The item store.
+     */
+
+    public ItemStore getStore() {
+        return store;
+    }
+
+    /**
+     * Adds a new library item to the store.
+     *
+     * @param item The library item to be added.
+     * @throws IllegalArgumentException if the item is null or cannot be stored.
+     */
+
+    @Override
+    public synchronized void addItem(LibraryItem item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        try {
+            changes++;
+            store.add(item);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        publish(LibraryEvent.Type.ADD, item, null, null, 0);
+    }
+
+    /**
+     * Searches the store for items matching the search term.
+     *
+     * @param searchTerm The search term to match against item titles or specific attributes.
+     * @return A list of items that match the search term.
+     */
+
+    @Override
+    public synchronized List<LibraryItem> searchItems(String searchTerm) {
+        try {
+            return store.search(searchTerm.toLowerCase());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Evaluates a query by scanning the store. The store keeps no attribute indexes.
+     *
+     * @param queryText The query.
+     * @return A list of the matching items.
+     * @throws IllegalArgumentException if the query is null, empty or invalid.
+     */
+
+    @Override
+    public synchronized List<LibraryItem> query(String queryText) {
+        LibraryQuery query = LibraryQuery.parse(queryText);
+        List<LibraryItem> matchingItems = new ArrayList<>();
+        for (LibraryItem item : getAllItems()) {
+            if (query.matches(item)) {
+                matchingItems.add(item);
+            }
+        }
+        return matchingItems;
+    }
+
+    /**
+     * Audits the items of the store and rewrites its contents if they are repaired. The store
+     * keeps no library indexes, so only the items themselves are checked.
+     *
+     * @param repair Whether to repair the violations found.
+     * @return The report of the audit, taken before any repair.
+     */
+
+    @Override
+    public synchronized CatalogAudit audit(boolean repair) {
+        List<LibraryItem> items = getAllItems();
+        CatalogAudit audit = CatalogAudit.check(items, null);
+        if (repair && audit.needsRepair()) {
+            try {
+                changes++;
+                store.replaceAll(CatalogAudit.repair(items, audit));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            publish(LibraryEvent.Type.LOAD, null, null, null, store.size());
+        }
+        return audit;
+    }
+
+    /**
+     * Retrieves the next page in title or creator order by sorting the items of the store.
+     * The store keeps no ordered index.
+     *
+     * @param cursor The cursor to continue from.
+     * @param limit  The maximum number of items to return.
+     * @return The items of the page in browse order.
+     * @throws IllegalArgumentException if the cursor is null or the limit is not positive.
+     */
+
+    @Override
+    public synchronized List<LibraryItem> browse(BrowseCursor cursor, int limit) {
+        checkBrowse(cursor, limit);
+        List<LibraryItem> page = BrowseCursor.page(cursor, getAllItems(), limit);
+        cursor.advance(page, limit);
+        return page;
+    }
+
+    /**
+     * Runs a search of a session. Stored items have no stable positions, so the session narrows
+     * its previous matches while the store has not been written to, and searches the whole store
+     * otherwise.
+     *
+     * @param session    The session.
+     * @param searchTerm The search term.
+     * @return A list of items that match the search term.
+     */
+
+    @Override
+    synchronized List<LibraryItem> search(SearchSession session, String searchTerm) {
+        return session.narrow(searchTerm, store.size(), changes, term -> {
+            try {
+                return store.search(term);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Retrieves all items of the store.
+     *
+     * @return A new list containing every item in the library.
+     */
+
+    @Override
+    public synchronized List<LibraryItem> getAllItems() {
+        try {
+            return store.getAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Retrieves an item from the store based on its unique identifier.
+     *
+     * @param identifier The unique identifier of the item to be retrieved.
+     * @return A copy of the item with the specified identifier or null if not found.
+     */
+
+    @Override
+    public synchronized LibraryItem getItemByIdentifier(String identifier) {
+        if (identifier == null) {
+            return null;
+        }
+        try {
+            return store.get(identifier);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Borrows an item and writes its new state back to the store.
+     *
+     * @param identifier The unique identifier of the item to be borrowed.
+     * @param borrowerName The name of the person borrowing the item.
+     * @param borrowerContact The contact information of the borrower.
+     * @return true if the item was successfully borrowed, false otherwise.
+     * @throws IllegalArgumentException if identifier, borrowerName, or borrowerContact is null or empty.
+     */
+
+    @Override
+    public synchronized boolean borrowItem(String identifier, String borrowerName, String borrowerContact) {
+        if (identifier == null || identifier.isEmpty()) {
+            throw new IllegalArgumentException("Identifier cannot be null or empty");
+        }
+        if (borrowerName == null || borrowerName.isEmpty()) {
+            throw new IllegalArgumentException("Borrower name cannot be null or empty");
+        }
+        if (borrowerContact == null || borrowerContact.isEmpty()) {
+            throw new IllegalArgumentException("Borrower contact cannot be null or empty");
+        }
+
+        LibraryItem item = getItemByIdentifier(identifier);
+        if (item != null && item.checkOut(borrowerName, borrowerContact)) {
+            if (update(item)) {
+                publish(LibraryEvent.Type.BORROW, item, borrowerName, borrowerContact, 0);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an item and writes its new state back to the store.
+     *
+     * @param identifier   The unique identifier of the item to be returned.
+     * @param borrowerName The name of the borrower returning a copy, or null to return the
+     *                     lowest numbered copy on loan.
+     * @return true if the item was successfully returned, false otherwise.
+     * @throws IllegalArgumentException if identifier is null or empty, or the borrower name is empty.
+     */
+
+    @Override
+    public synchronized boolean returnItem(String identifier, String borrowerName) {
+        if (identifier == null || identifier.isEmpty()) {
+            throw new IllegalArgumentException("Identifier cannot be null or empty");
+        }
+        if (borrowerName != null && borrowerName.isEmpty()) {
+            throw new IllegalArgumentException("Borrower name cannot be empty");
+        }
+
+        LibraryItem item = getItemByIdentifier(identifier);
+        if (item != null && item.checkIn(borrowerName)) {
+            if (update(item)) {
+                publish(LibraryEvent.Type.RETURN, item, null, null, 0);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores keep one record per item with a single borrower, so copies cannot be added.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+
+    @Override
+    public boolean addCopies(String identifier, int count) {
+        throw new UnsupportedOperationException("Stored items hold a single copy");
+    }
+
+    /**
+     * Saves all stored items in the same format as `Library.saveToFile`. An index segment of an
+     * older save of the file is deleted.
+     *
+     * @param filename The name of the file to save the items to.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    @Override
+    public synchronized void saveToFile(String filename) throws IOException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        writeItems(store.getAll(), filename);
+        IndexSegments.delete(filename);
+    }
+
+    /**
+     * Saves all stored items in the same format as `Library.saveToFile`.
+     * Stored libraries keep no index structures, so no index segment is written.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Ignored, since there are no indexes to write.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    @Override
+    public synchronized void saveToFile(String filename, boolean writeIndexSegments) throws IOException {
+        saveToFile(filename);
+    }
+
+    /**
+     * Saves all stored items in the same block-compressed format as `Library.saveCompressedToFile`.
+     * Stored libraries keep no index structures, so no index segment is written.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Ignored, since there are no indexes to write.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    @Override
+    public synchronized void saveCompressedToFile(String filename, boolean writeIndexSegments) throws IOException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        CompressedCatalogFile.write(store.getAll(), filename);
+        IndexSegments.delete(filename);
+    }
+
+    /**
+     * Loads items from a file written by `Library.saveToFile` or `Library.saveCompressedToFile` into the store, replacing its contents.
+     *
+     * @param filename The name of the file to load the items from.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error reading from the file.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public synchronized void loadFromFile(String filename) throws IOException, ClassNotFoundException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        List<LibraryItem> loaded = readItems(filename);
+        changes++;
+        store.replaceAll(loaded);
+        publish(LibraryEvent.Type.LOAD, null, null, null, store.size());
+    }
+
+    /**
+     * Merges items from a file into the store by rewriting its contents with the merged items.
+     *
+     * @param filename The name of the file to merge the items from.
+     * @param policy   The policy that resolves items present on both sides.
+     * @throws IllegalArgumentException if the filename is null or empty or the policy is null.
+     * @throws IOException if there is an error reading from the file.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public synchronized void mergeFromFile(String filename, MergePolicy policy)
+            throws IOException, ClassNotFoundException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Merge policy cannot be null");
+        }
+        List<LibraryItem> merged = merge(store.getAll(), readItems(filename), policy);
+        changes++;
+        store.replaceAll(merged);
+        publish(LibraryEvent.Type.LOAD, null, null, null, store.size());
+    }
+
+    /**
+     * Closes the underlying store.
+     *
+     * @throws IOException if the store cannot be closed.
+     */
+
+    @Override
+    public synchronized void close() throws IOException {
+        store.close();
+    }
+
+    /**
+     * Applies a patch written by `CatalogDiff.compare` by rewriting the store with the patched items.
+     *
+     * @param patchFile The name of the patch file.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error reading the patch or writing the store.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public synchronized void applyPatch(String patchFile) throws IOException, ClassNotFoundException {
+        List<LibraryItem> patched = CatalogDiff.apply(store.getAll(), CatalogDiff.readPatch(patchFile));
+        changes++;
+        store.replaceAll(patched);
+        publish(LibraryEvent.Type.LOAD, null, null, null, store.size());
+    }
+
+    /**
+     * Writes the new state of an item back to the store.
+     */
+
+    private boolean update(LibraryItem item) {
+        changes++;
+        try {
+            return store.update(item);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
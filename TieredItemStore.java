@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The `TieredItemStore` class keeps the items that are looked up most often decoded on the heap
+ * and leaves every other item in a compact cold store, such as an `OffHeapItemStore` or a
+ * `DiskItemStore`. The cold store always holds every item and receives every write; the hot tier is
+ * a bounded cache in front of it for `get`, which is what `getItemByIdentifier`, borrows and
+ * returns use. Searches and full scans go straight to the cold store, so they do not flush the
+ * cache.
+ *
+ * The cache follows W-TinyLFU. New entries enter a small LRU window. An entry leaving the window
+ * is only admitted to the main area if a `FrequencySketch` estimates that it has been requested
+ * more often recently than the entry it would evict; otherwise it is dropped. The main area is a
+ * segmented LRU whose protected segment holds entries that were hit again after admission. This
+ * keeps one-off lookups and scans of rarely used identifiers from pushing out the popular items.
+ */
+
+public class TieredItemStore implements ItemStore {
+    private final ItemStore cold;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final int mainCapacity;
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<String, LibraryItem> window = new LinkedHashMap<>();
+    private final LinkedHashMap<String, LibraryItem> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<String, LibraryItem> protectedSegment = new LinkedHashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * Initializes a tiered store over a cold store.
+     *
+     * @param cold     The store that holds every item.
+     * @param capacity The maximum number of items kept decoded on the heap.
+     * @throws IllegalArgumentException if the cold store is null or the capacity is not positive.
+     */
+
+    public TieredItemStore(ItemStore cold, int capacity) {
+        if (cold == null) {
+            throw new IllegalArgumentException("Cold store cannot be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.cold = cold;
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.mainCapacity = capacity - windowCapacity;
+        this.protectedCapacity = mainCapacity * 4 / 5;
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * Adds an item to the cold store. New items are only cached once they are looked up.
+     *
+     * @param item The item to store.
+     * @throws IllegalArgumentException if the cold store cannot store the item.
+     * @throws IOException if the cold store fails.
+     */
+
+    @Override
+    public void add(LibraryItem item) throws IOException {
+        cold.add(item);
+    }
+
+    /**
+     * Looks up an item in the cache, and in the cold store if it is not cached.
+     *
+     * @param identifier The unique identifier of the item.
+     * @return A copy of the stored item, or null if not found.
+     * @throws IOException if the cold store fails.
+     */
+
+    @Override
+    public LibraryItem get(String identifier) throws IOException {
+        if (identifier == null) {
+            return null;
+        }
+        sketch.increment(identifier);
+        LibraryItem item = hit(identifier);
+        if (item != null) {
+            hits++;
+            return item.copy();
+        }
+        misses++;
+        item = cold.get(identifier);
+        if (item != null) {
+            admit(identifier, item.copy());
+        }
+        return item;
+    }
+
+    /**
+     * Writes an item through to the cold store and refreshes its cached copy.
+     *
+     * @param item The item whose state should be stored.
+     * @return true if an item with that identifier was stored, false otherwise.
+     * @throws IOException if the cold store fails.
+     */
+
+    @Override
+    public boolean update(LibraryItem item) throws IOException {
+        if (!cold.update(item)) {
+            return false;
+        }
+        String identifier = item.getUniqueIdentifier();
+        LibraryItem copy = item.copy();
+        if (window.containsKey(identifier)) {
+            window.put(identifier, copy);
+        } else if (probation.containsKey(identifier)) {
+            probation.put(identifier, copy);
+        } else if (protectedSegment.containsKey(identifier)) {
+            protectedSegment.put(identifier, copy);
+        }
+        return true;
+    }
+
+    /**
+     * Searches the cold store.
+     *
+     * @param lowerCaseTerm The search term, already converted to lower case.
+     * @return Copies of the matching items in the storage order of the cold store.
+     * @throws IOException if the cold store fails.
+     */
+
+    @Override
+    public List<LibraryItem> search(String lowerCaseTerm) throws IOException {
+        return cold.search(lowerCaseTerm);
+    }
+
+    /**
+     * Retrieves every item of the cold store.
+     *
+     * @return Copies of all items in the storage order of the cold store.
+     * @throws IOException if the cold store fails.
+     */
+
+    @Override
+    public List<LibraryItem> getAll() throws IOException {
+        return cold.getAll();
+    }
+
+    /**
+     * Replaces the content of the cold store and empties the cache.
+     *
+     * @param items The items the store should contain from now on.
+     * @throws IOException if the cold store fails.
+     */
+
+    @Override
+    public void replaceAll(List<LibraryItem> items) throws IOException {
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        cold.replaceAll(items);
+    }
+
+    /**
+     * Retrieves the number of stored items.
+     *
+     * @return The number of items in the cold store.
+     */
+
+    @Override
+    public int size() {
+        return cold.size();
+    }
+
+    /**
+     * Retrieves the number of items currently cached.
+     *
+     * @return The number of cached items.
+     */
+
+    public int getCachedCount() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * Retrieves the number of lookups answered from the cache.
+     *
+     * @return The number of hits.
+     */
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of lookups that went to the cold store.
+     *
+     * @return The number of misses.
+     */
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Retrieves the share of lookups answered from the cache.
+     *
+     * @return The hit rate between 0 and 1, or 0 before the first lookup.
+     */
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Retrieves the number of cached items that were evicted to make room for more popular ones.
+     *
+     * @return The number of evictions.
+     */
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Retrieves the number of items leaving the window that were not admitted to the main area.
+     *
+     * @return The number of rejected candidates.
+     */
+
+    public long getRejections() {
+        return rejections;
+    }
+
+    /**
+     * Closes the cold store.
+     *
+     * @throws IOException if the cold store cannot be closed.
+     */
+
+    @Override
+    public void close() throws IOException {
+        cold.close();
+    }
+
+    /**
+     * Finds a cached item and moves it according to the policy: to the front of the window, or
+     * from probation or protected to the front of the protected segment.
+     */
+
+    private LibraryItem hit(String identifier) {
+        LibraryItem item = window.remove(identifier);
+        if (item != null) {
+            window.put(identifier, item);
+            return item;
+        }
+        item = probation.remove(identifier);
+        if (item == null) {
+            item = protectedSegment.remove(identifier);
+        }
+        if (item != null) {
+            protectedSegment.put(identifier, item);
+            if (protectedSegment.size() > protectedCapacity) {
+                Map.Entry<String, LibraryItem> demoted = removeEldest(protectedSegment);
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Adds an item that was read from the cold store to the window, and lets the item leaving the
+     * window compete with the eviction victim of the main area.
+     */
+
+    private void admit(String identifier, LibraryItem item) {
+        window.put(identifier, item);
+        if (window.size() <= windowCapacity) {
+            return;
+        }
+        Map.Entry<String, LibraryItem> candidate = removeEldest(window);
+        if (probation.size() + protectedSegment.size() < mainCapacity) {
+            probation.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        if (mainCapacity == 0) {
+            evictions++;
+            return;
+        }
+        LinkedHashMap<String, LibraryItem> victims = probation.isEmpty() ? protectedSegment : probation;
+        String victim = victims.keySet().iterator().next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim)) {
+            victims.remove(victim);
+            probation.put(candidate.getKey(), candidate.getValue());
+            evictions++;
+        } else {
+            rejections++;
+        }
+    }
+
+    /**
+     * Removes and returns the least recently used entry of a segment.
+     */
+
+    private static Map.Entry<String, LibraryItem> removeEldest(LinkedHashMap<String, LibraryItem> segment) {
+        Iterator<Map.Entry<String, LibraryItem>> iterator = segment.entrySet().iterator();
+        Map.Entry<String, LibraryItem> eldest = iterator.next();
+        Map.Entry<String, LibraryItem> removed = Map.entry(eldest.getKey(), eldest.getValue());
+        iterator.remove();
+        return removed;
+    }
+}
@@ -0,0 +1,123 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The TieredItemStoreTest class contains unit tests for the TieredItemStore class and its
+ * W-TinyLFU cache over an OffHeapItemStore.
+ */
+
+public class TieredItemStoreTest {
+    private static final int ITEMS = 5000;
+
+    private TieredItemStore store;
+
+    /**
+     * Sets up a tiered store caching 200 of 5000 books before each test.
+     */
+
+    @Before
+    public void setUp() throws IOException {
+        store = new TieredItemStore(new OffHeapItemStore(), 200);
+        for (int i = 0; i < ITEMS; i++) {
+            store.add(new Book("Book " + i, "Author " + (i % 50), LibraryWorkload.isbn(i)));
+        }
+    }
+
+    /**
+     * Tests that a skewed workload is mostly answered from the cache, which never grows beyond
+     * its capacity.
+     */
+
+    @Test
+    public void testSkewedWorkload() throws IOException {
+        LibraryWorkload.Zipf zipf = new LibraryWorkload.Zipf(ITEMS, 1.0);
+        Random random = new Random(42);
+        for (int i = 0; i < 50000; i++) {
+            int rank = zipf.next(random);
+            Assert.assertEquals("Book " + rank, store.get(LibraryWorkload.isbn(rank)).getTitle());
+            Assert.assertTrue(store.getCachedCount() <= 200);
+        }
+        Assert.assertEquals(50000, store.getHits() + store.getMisses());
+        Assert.assertTrue("hit rate " + store.getHitRate(), store.getHitRate() > 0.5);
+        Assert.assertTrue(store.getEvictions() + store.getRejections() > 0);
+    }
+
+    /**
+     * Tests that a single pass over many rarely used items does not push the popular items out.
+     */
+
+    @Test
+    public void testScanResistance() throws IOException {
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 100; i++) {
+                store.get(LibraryWorkload.isbn(i));
+            }
+        }
+        for (int i = 1000; i < 3000; i++) {
+            store.get(LibraryWorkload.isbn(i));
+        }
+        long hits = store.getHits();
+        for (int i = 0; i < 100; i++) {
+            store.get(LibraryWorkload.isbn(i));
+        }
+        Assert.assertTrue(store.getHits() - hits >= 95);
+    }
+
+    /**
+     * Tests that cached items are handed out as copies and updates refresh the cached copy.
+     */
+
+    @Test
+    public void testCopiesAndUpdates() throws IOException {
+        String isbn = LibraryWorkload.isbn(7);
+        LibraryItem item = store.get(isbn);
+        item.borrowItem("John Doe", "johndoe@students.csu.edu");
+        Assert.assertEquals("available", store.get(isbn).getStatus());
+
+        Assert.assertTrue(store.update(item));
+        Assert.assertEquals("borrowed", store.get(isbn).getStatus());
+        Assert.assertTrue(store.getHits() >= 2);
+        Assert.assertFalse(store.update(new Book("Missing", "Nobody", "0316769177")));
+    }
+
+    /**
+     * Tests that replacing the content empties the cache.
+     */
+
+    @Test
+    public void testReplaceAll() throws IOException {
+        store.get(LibraryWorkload.isbn(1));
+        store.replaceAll(List.of(new Book("Emma", "Jane Austen", "0141439580")));
+        Assert.assertEquals(0, store.getCachedCount());
+        Assert.assertNull(store.get(LibraryWorkload.isbn(1)));
+        Assert.assertEquals(1, store.size());
+    }
+
+    /**
+     * Tests the tiered store behind a StoredLibrary.
+     */
+
+    @Test
+    public void testStoredLibrary() {
+        StoredLibrary library = new StoredLibrary(store);
+        String isbn = LibraryWorkload.isbn(3);
+        Assert.assertTrue(library.borrowItem(isbn, "John Doe", "johndoe@students.csu.edu"));
+        Assert.assertEquals("borrowed", library.getItemByIdentifier(isbn).getStatus());
+        Assert.assertTrue(library.returnItem(isbn));
+        Assert.assertEquals("available", library.getItemByIdentifier(isbn).getStatus());
+        Assert.assertEquals(100, library.searchItems("author 7").size());
+    }
+
+    /**
+     * Tests that invalid arguments are rejected.
+     */
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new TieredItemStore(new OffHeapItemStore(), 0);
+    }
+}
@@ -0,0 +1,480 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The `VersionedLibrary` class is a `Library` with multi-version concurrency control. The catalog
+ * is held in an immutable `CatalogSnapshot` that is replaced as a whole on every change. Searches,
+ * lookups and saves read whatever version is current when they start and never take a lock, so a
+ * long search neither blocks nor sees a half-finished borrow. Writers are serialized on the
+ * library; a borrow or return changes a copy of the item and publishes a new version that shares
+ * everything else with the previous one.
+ *
+ * A new catalog file can be hot reloaded with `reloadFromFile`: the file is read and indexed in the
+ * background while readers keep using the current version, and the finished version is swapped in
+ * with a single reference write.
+ *
+ * Items returned by this library belong to a published version and must be treated as read-only.
+ */
+
+public class VersionedLibrary extends Library {
+    private static final long serialVersionUID = 1L;
+    private volatile CatalogSnapshot current = CatalogSnapshot.of(0, List.of());
+
+    /**
+     * Retrieves the current version of the catalog. The snapshot stays consistent and unchanged
+     * however many changes are made to the library afterwards.
+     *
+     * @return The current snapshot.
+     */
+
+    public CatalogSnapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Adds a new library item by publishing a version with the item appended.
+     *
+     * @param item The library item to be added.
+     * @throws IllegalArgumentException if the item is null.
+     */
+
+    @Override
+    public synchronized void addItem(LibraryItem item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        current = current.withAdded(item);
+        publish(LibraryEvent.Type.ADD, item, null, null, 0);
+    }
+
+    /**
+     * Searches the current version of the catalog without blocking writers.
+     *
+     * @param searchTerm The search term to match against item titles or specific attributes.
+     * @return A list of items that match the search term.
+     */
+
+    @Override
+    public List<LibraryItem> searchItems(String searchTerm) {
+        return current.searchItems(searchTerm);
+    }
+
+    /**
+     * Evaluates a query against the current version of the catalog without blocking writers.
+     * `isbn:` terms use the ISBN lookup table of the snapshot; other queries are scanned.
+     *
+     * @param queryText The query.
+     * @return A list of the matching items.
+     * @throws IllegalArgumentException if the query is null, empty or invalid.
+     */
+
+    @Override
+    public List<LibraryItem> query(String queryText) {
+        LibraryQuery query = LibraryQuery.parse(queryText);
+        CatalogSnapshot snapshot = current;
+        return QueryPlanner.execute(query, new QueryPlanner.Source() {
+            @Override
+            public int size() {
+                return snapshot.size();
+            }
+
+            @Override
+            public LibraryItem get(int position) {
+                return snapshot.get(position);
+            }
+
+            @Override
+            public long estimate(LibraryQuery.Term term) {
+                // The lookup table keeps only the first book with an ISBN, so it can only answer
+                // for every match while no two books share one.
+                return term.getField() == LibraryQuery.Field.ISBN && term.getIsbn() > 0
+                        && snapshot.hasUniqueIsbns() ? 1 : -1;
+            }
+
+            @Override
+            public int[] lookup(LibraryQuery.Term term) {
+                int position = snapshot.positionOfIsbn(term.getIsbn());
+                return position < 0 ? new int[0] : new int[] {position};
+            }
+        });
+    }
+
+    /**
+     * Audits the current version of the catalog, checking that the identifier lookup table of the
+     * snapshot finds every book. An audit without repair does not block writers; a repair
+     * publishes the repaired items as a new version.
+     *
+     * @param repair Whether to repair the violations found.
+     * @return The report of the audit, taken before any repair.
+     */
+
+    @Override
+    public CatalogAudit audit(boolean repair) {
+        if (!repair) {
+            return audit(current);
+        }
+        synchronized (this) {
+            CatalogSnapshot snapshot = current;
+            CatalogAudit audit = audit(snapshot);
+            if (audit.needsRepair()) {
+                replaceItems(CatalogAudit.repair(snapshot.getAllItems(), audit));
+                publish(LibraryEvent.Type.LOAD, null, null, null, current.size());
+            }
+            return audit;
+        }
+    }
+
+    /**
+     * Audits the items of a snapshot.
+     */
+
+    private static CatalogAudit audit(CatalogSnapshot snapshot) {
+        return CatalogAudit.check(snapshot.getAllItems(), (item, position, firstPosition) ->
+                !(item instanceof Book) || snapshot.positionOf(item.getUniqueIdentifier()) == firstPosition);
+    }
+
+    /**
+     * Retrieves the next page of the current version of the catalog in title or creator order.
+     * Each page is read from the version that is current when it is requested.
+     *
+     * @param cursor The cursor to continue from.
+     * @param limit  The maximum number of items to return.
+     * @return The items of the page in browse order.
+     * @throws IllegalArgumentException if the cursor is null or the limit is not positive.
+     */
+
+    @Override
+    public List<LibraryItem> browse(BrowseCursor cursor, int limit) {
+        return current.browse(cursor, limit);
+    }
+
+    /**
+     * Runs a search of a session against the current version of the catalog. Candidates from an
+     * earlier version of the same series are looked up again, so the results show current statuses.
+     *
+     * @param session    The session.
+     * @param searchTerm The search term.
+     * @return A list of items that match the search term.
+     */
+
+    @Override
+    List<LibraryItem> search(SearchSession session, String searchTerm) {
+        CatalogSnapshot snapshot = current;
+        return session.run(searchTerm, snapshot.size(), snapshot::get, snapshot.getSeries());
+    }
+
+    /**
+     * Retrieves all items of the current version of the catalog.
+     *
+     * @return A new list containing every item in the library.
+     */
+
+    @Override
+    public List<LibraryItem> getAllItems() {
+        return current.getAllItems();
+    }
+
+    /**
+     * Retrieves an item from the current version of the catalog.
+     *
+     * @param identifier The unique identifier of the item to be retrieved.
+     * @return The item with the specified identifier or null if not found.
+     */
+
+    @Override
+    public LibraryItem getItemByIdentifier(String identifier) {
+        return current.getItemByIdentifier(identifier);
+    }
+
+    /**
+     * Borrows an item by publishing a version with a borrowed copy of it.
+     *
+     * @param identifier The unique identifier of the item to be borrowed.
+     * @param borrowerName The name of the person borrowing the item.
+     * @param borrowerContact The contact information of the borrower.
+     * @return true if the item was successfully borrowed, false otherwise.
+     * @throws IllegalArgumentException if identifier, borrowerName, or borrowerContact is null or empty.
+     */
+
+    @Override
+    public synchronized boolean borrowItem(String identifier, String borrowerName, String borrowerContact) {
+        if (identifier == null || identifier.isEmpty()) {
+            throw new IllegalArgumentException("Identifier cannot be null or empty");
+        }
+        if (borrowerName == null || borrowerName.isEmpty()) {
+            throw new IllegalArgumentException("Borrower name cannot be null or empty");
+        }
+        if (borrowerContact == null || borrowerContact.isEmpty()) {
+            throw new IllegalArgumentException("Borrower contact cannot be null or empty");
+        }
+
+        CatalogSnapshot snapshot = current;
+        int position = snapshot.positionOf(identifier);
+        if (position >= 0 && "available".equals(snapshot.get(position).getStatus())) {
+            LibraryItem copy = snapshot.get(position).copy();
+            copy.checkOut(borrowerName, borrowerContact);
+            current = snapshot.withReplaced(position, copy);
+            publish(LibraryEvent.Type.BORROW, copy, borrowerName, borrowerContact, 0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns an item by publishing a version with a returned copy of it.
+     *
+     * @param identifier   The unique identifier of the item to be returned.
+     * @param borrowerName The name of the borrower returning a copy, or null to return the
+     *                     lowest numbered copy on loan.
+     * @return true if the item was successfully returned, false otherwise.
+     * @throws IllegalArgumentException if identifier is null or empty, or the borrower name is empty.
+     */
+
+    @Override
+    public synchronized boolean returnItem(String identifier, String borrowerName) {
+        if (identifier == null || identifier.isEmpty()) {
+            throw new IllegalArgumentException("Identifier cannot be null or empty");
+        }
+        if (borrowerName != null && borrowerName.isEmpty()) {
+            throw new IllegalArgumentException("Borrower name cannot be empty");
+        }
+
+        CatalogSnapshot snapshot = current;
+        int position = snapshot.positionOf(identifier);
+        LibraryItem item = position < 0 ? null : snapshot.get(position);
+        if (item != null && item.getAvailableCopies() < item.getCopyCount()) {
+            LibraryItem copy = item.copy();
+            if (!copy.checkIn(borrowerName)) {
+                return false;
+            }
+            current = snapshot.withReplaced(position, copy);
+            publish(LibraryEvent.Type.RETURN, copy, null, null, 0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds copies of an item by publishing a version with a copy of it that holds more copies.
+     *
+     * @param identifier The unique identifier of the item.
+     * @param count      The number of copies to add.
+     * @return true if the item was found and the copies were added, false otherwise.
+     * @throws IllegalArgumentException if identifier is null or empty, or the count is not positive.
+     */
+
+    @Override
+    public synchronized boolean addCopies(String identifier, int count) {
+        if (identifier == null || identifier.isEmpty()) {
+            throw new IllegalArgumentException("Identifier cannot be null or empty");
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException("Copy count must be positive");
+        }
+
+        CatalogSnapshot snapshot = current;
+        int position = snapshot.positionOf(identifier);
+        if (position < 0) {
+            return false;
+        }
+        LibraryItem copy = snapshot.get(position).copy();
+        copy.addCopies(count);
+        current = snapshot.withReplaced(position, copy);
+        publish(LibraryEvent.Type.COPIES, copy, null, null, count);
+        return true;
+    }
+
+    /**
+     * Saves the current version of the catalog without blocking writers.
+     *
+     * @param filename The name of the file to save the items to.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    @Override
+    public void saveToFile(String filename) throws IOException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        writeItems(current.getAllItems(), filename);
+        IndexSegments.delete(filename);
+    }
+
+    /**
+     * Saves the current version of the catalog. Versioned libraries keep their lookup tables in
+     * the snapshots, so no index segment is written.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Ignored, since there are no index segments to write.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    @Override
+    public void saveToFile(String filename, boolean writeIndexSegments) throws IOException {
+        saveToFile(filename);
+    }
+
+    /**
+     * Saves the current version of the catalog to a compressed file without blocking writers.
+     *
+     * @param filename           The name of the file to save the items to.
+     * @param writeIndexSegments Ignored, since there are no index segments to write.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error writing to the file.
+     */
+
+    @Override
+    public void saveCompressedToFile(String filename, boolean writeIndexSegments) throws IOException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        CompressedCatalogFile.write(current.getAllItems(), filename);
+        IndexSegments.delete(filename);
+    }
+
+    /**
+     * Loads items from a file and publishes them as a new version of the catalog.
+     * Searches that are already running finish on the version they started with.
+     *
+     * @param filename The name of the file to load the items from.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error reading from the file.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public void loadFromFile(String filename) throws IOException, ClassNotFoundException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        List<LibraryItem> loaded = readItems(filename);
+        synchronized (this) {
+            replaceItems(loaded);
+            publish(LibraryEvent.Type.LOAD, null, null, null, loaded.size());
+        }
+    }
+
+    /**
+     * Reloads the catalog from a file on a background thread. See `reloadFromFile(String, Executor)`.
+     *
+     * @param filename The name of the file to load the items from.
+     * @return A future completed with the published version, or exceptionally with the
+     *         `IOException` or `ClassNotFoundException` that stopped the reload.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     */
+
+    public CompletableFuture<CatalogSnapshot> reloadFromFile(String filename) {
+        return reloadFromFile(filename, task -> {
+            Thread thread = new Thread(task, "catalog-reload");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Reloads the catalog from a file without pausing readers. The executor reads the file,
+     * builds the lookup tables and ordered index of the new version and computes the lower case
+     * attributes searches need, all while searches and writers keep using the current version.
+     * The finished version is then published with one write of the current snapshot, so searches
+     * that already started finish on the old version and later ones see only the new one.
+     *
+     * Like `loadFromFile`, the file replaces the whole catalog, including borrows and additions
+     * made while it was being read. If several reloads overlap, the one that finishes last wins.
+     *
+     * @param filename The name of the file to load the items from.
+     * @param executor The executor that runs the reload.
+     * @return A future completed with the published version, or exceptionally with the
+     *         `IOException` or `ClassNotFoundException` that stopped the reload.
+     * @throws IllegalArgumentException if the filename is null or empty, or the executor is null.
+     */
+
+    public CompletableFuture<CatalogSnapshot> reloadFromFile(String filename, Executor executor) {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        CompletableFuture<CatalogSnapshot> reloaded = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                List<LibraryItem> loaded = readItems(filename);
+                loaded.parallelStream().forEach(LibraryItem::warmSearchCaches);
+                reloaded.complete(swapIn(CatalogSnapshot.of(0, loaded)));
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                reloaded.completeExceptionally(e);
+            }
+        });
+        return reloaded;
+    }
+
+    /**
+     * Publishes a version built in the background as the start of a new series.
+     */
+
+    private synchronized CatalogSnapshot swapIn(CatalogSnapshot prepared) {
+        CatalogSnapshot next = prepared.asSeries(current.getVersion() + 1);
+        current = next;
+        publish(LibraryEvent.Type.LOAD, null, null, null, next.size());
+        return next;
+    }
+
+    /**
+     * Merges items from a file and publishes the result as a new version of the catalog.
+     *
+     * @param filename The name of the file to merge the items from.
+     * @param policy   The policy that resolves items present on both sides.
+     * @throws IllegalArgumentException if the filename is null or empty or the policy is null.
+     * @throws IOException if there is an error reading from the file.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public void mergeFromFile(String filename, MergePolicy policy) throws IOException, ClassNotFoundException {
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("Filename cannot be null or empty");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Merge policy cannot be null");
+        }
+        List<LibraryItem> incoming = readItems(filename);
+        synchronized (this) {
+            current = CatalogSnapshot.of(current.getVersion() + 1, merge(current.getAllItems(), incoming, policy));
+            publish(LibraryEvent.Type.LOAD, null, null, null, current.size());
+        }
+    }
+
+    /**
+     * Applies a patch written by `CatalogDiff.compare` and publishes the result as a new version.
+     * The patch is read before the library is locked.
+     *
+     * @param patchFile The name of the patch file.
+     * @throws IllegalArgumentException if the filename is null or empty.
+     * @throws IOException if there is an error reading the patch.
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found.
+     */
+
+    @Override
+    public void applyPatch(String patchFile) throws IOException, ClassNotFoundException {
+        List<CatalogDiff.Entry> patch = CatalogDiff.readPatch(patchFile);
+        synchronized (this) {
+            replaceItems(CatalogDiff.apply(current.getAllItems(), patch));
+            publish(LibraryEvent.Type.LOAD, null, null, null, current.size());
+        }
+    }
+
+    /**
+     * Replaces every item by publishing a new series of versions.
+     *
+     * @param newItems The items the library should contain from now on.
+     */
+
+    @Override
+    synchronized void replaceItems(List<LibraryItem> newItems) {
+        current = CatalogSnapshot.of(current.getVersion() + 1, newItems);
+    }
+}
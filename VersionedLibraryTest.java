@@ -0,0 +1,190 @@
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The VersionedLibraryTest class contains unit tests for the VersionedLibrary class.
+ * It tests that the library behaves like a `Library` and that snapshots stay consistent
+ * while writers publish new versions.
+ */
+
+public class VersionedLibraryTest {
+    private VersionedLibrary library;
+
+    /**
+     * Sets up a versioned library with some sample items before each test.
+     */
+
+    @Before
+    public void setUp() {
+        library = new VersionedLibrary();
+        library.addItem(new Book("The Catcher in the Rye", "J.D. Salinger", "0316769177"));
+        library.addItem(new DVD("Inception", "Sci-Fi", "Christopher Nolan"));
+        library.addItem(new CD("Thriller", "Michael Jackson", "Pop"));
+        for (int i = 0; i < 1000; i++) {
+            library.addItem(new Book("Title " + i, "Author " + i, "BOOK-" + i));
+        }
+    }
+
+    /**
+     * Tests searching, lookups by either ISBN form, borrowing and returning.
+     */
+
+    @Test
+    public void testLibraryOperations() {
+        Assert.assertEquals(1, library.searchItems("catcher").size());
+        Assert.assertEquals(1000, library.searchItems("author").size());
+        Assert.assertEquals("The Catcher in the Rye", library.getItemByIdentifier("978-0-316-76917-4").getTitle());
+        Assert.assertNotNull(library.getItemByIdentifier("Thriller_Michael Jackson"));
+        Assert.assertNull(library.getItemByIdentifier("missing"));
+
+        Assert.assertTrue(library.borrowItem("0316769177", "John Doe", "johndoe@students.csu.edu"));
+        Assert.assertFalse(library.borrowItem("0316769177", "Jane Doe", "janedoe@students.csu.edu"));
+        Assert.assertEquals("borrowed", library.getItemByIdentifier("0316769177").getStatus());
+        Assert.assertTrue(library.returnItem("0316769177"));
+        Assert.assertEquals("available", library.getItemByIdentifier("0316769177").getStatus());
+        Assert.assertFalse(library.returnItem("0316769177"));
+    }
+
+    /**
+     * Tests that a snapshot keeps showing the catalog as it was when it was taken.
+     */
+
+    @Test
+    public void testSnapshotIsolation() {
+        CatalogSnapshot before = library.snapshot();
+        library.borrowItem("BOOK-7", "John Doe", "johndoe@students.csu.edu");
+        library.addItem(new Book("New Book", "New Author", "BOOK-NEW"));
+
+        Assert.assertEquals("available", before.getItemByIdentifier("BOOK-7").getStatus());
+        Assert.assertNull(before.getItemByIdentifier("BOOK-NEW"));
+        Assert.assertEquals(1003, before.size());
+        Assert.assertEquals("borrowed", library.getItemByIdentifier("BOOK-7").getStatus());
+        Assert.assertEquals(1004, library.snapshot().size());
+        Assert.assertTrue(library.snapshot().getVersion() > before.getVersion());
+    }
+
+    /**
+     * Tests that concurrent searches always see a consistent catalog while items are borrowed:
+     * every borrow publishes exactly one version, so a snapshot must show exactly as many
+     * borrowed items as borrows were published before it.
+     */
+
+    @Test
+    public void testSearchesSeeConsistentVersions() throws InterruptedException {
+        long initialVersion = library.snapshot().getVersion();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                CatalogSnapshot snapshot = library.snapshot();
+                int borrowed = 0;
+                for (LibraryItem item : snapshot.searchItems("author")) {
+                    if ("borrowed".equals(item.getStatus())) {
+                        borrowed++;
+                    }
+                }
+                if (borrowed != snapshot.getVersion() - initialVersion) {
+                    failure.set("Snapshot " + snapshot.getVersion() + " showed " + borrowed + " borrowed items");
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 1000; i++) {
+            library.borrowItem("BOOK-" + i, "John Doe", "johndoe@students.csu.edu");
+        }
+        running.set(false);
+        reader.join();
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(1000, library.searchItems("author").stream()
+                .filter(item -> "borrowed".equals(item.getStatus())).count());
+    }
+
+    /**
+     * Tests saving and loading, and that a snapshot taken before a load is not affected by it.
+     */
+
+    @Test
+    public void testSaveToFileAndLoadFromFile() throws IOException, ClassNotFoundException {
+        String testFilename = "test_versioned_library.libtest";
+        library.borrowItem("BOOK-1", "John Doe", "johndoe@students.csu.edu");
+        library.saveToFile(testFilename);
+
+        VersionedLibrary loaded = new VersionedLibrary();
+        loaded.addItem(new CD("Other", "Artist", "Jazz"));
+        CatalogSnapshot before = loaded.snapshot();
+        loaded.loadFromFile(testFilename);
+        List<LibraryItem> items = loaded.getAllItems();
+
+        Assert.assertEquals(1003, items.size());
+        Assert.assertEquals("borrowed", loaded.getItemByIdentifier("BOOK-1").getStatus());
+        Assert.assertNull(loaded.getItemByIdentifier("Other_Artist"));
+        Assert.assertEquals(1, before.size());
+        Assert.assertNotNull(before.getItemByIdentifier("Other_Artist"));
+
+        new File(testFilename).delete();
+    }
+
+    /**
+     * Tests that a hot reload swaps in the new catalog while searches keep running, and that
+     * every search sees either the old or the new catalog, never a mix of both.
+     */
+
+    @Test
+    public void testReloadFromFile() throws Exception {
+        String testFilename = "test_versioned_reload.libtest";
+        Library nightly = new Library();
+        for (int i = 0; i < 2000; i++) {
+            nightly.addItem(new Book("Nightly " + i, "Author " + i, "NIGHTLY-" + i));
+        }
+        nightly.saveToFile(testFilename);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                CatalogSnapshot snapshot = library.snapshot();
+                int found = snapshot.searchItems("author").size();
+                boolean old = found == 1000 && snapshot.size() == 1003;
+                boolean reloadedVersion = found == 2000 && snapshot.size() == 2000;
+                if (!old && !reloadedVersion) {
+                    failure.set("Snapshot " + snapshot.getVersion() + " found " + found + " of " + snapshot.size());
+                }
+            }
+        });
+        reader.start();
+        CatalogSnapshot reloaded = library.reloadFromFile(testFilename).get();
+        running.set(false);
+        reader.join();
+        new File(testFilename).delete();
+
+        Assert.assertNull(failure.get());
+        Assert.assertSame(reloaded, library.snapshot());
+        Assert.assertEquals(2000, library.searchItems("nightly").size());
+        Assert.assertNull(library.getItemByIdentifier("BOOK-1"));
+        Assert.assertTrue(library.borrowItem("NIGHTLY-5", "John Doe", "johndoe@students.csu.edu"));
+    }
+
+    /**
+     * Tests that a reload of a missing file fails without changing the catalog.
+     */
+
+    @Test
+    public void testReloadFromMissingFile() throws InterruptedException {
+        CatalogSnapshot before = library.snapshot();
+        try {
+            library.reloadFromFile("missing_reload.libtest").get();
+            Assert.fail("The reload should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof FileNotFoundException);
+        }
+        Assert.assertSame(before, library.snapshot());
+    }
+}